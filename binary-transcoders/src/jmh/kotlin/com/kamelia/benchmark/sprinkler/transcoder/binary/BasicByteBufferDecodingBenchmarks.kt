@@ -37,6 +37,30 @@ open class BasicByteBufferDecodingBenchmarks {
         } while (s != null && s.isNotDone())
     }
 
+    @Benchmark
+    fun handmadeDecoderSingleStepReadModeDecoding(state: BasicByteBufferPersonDecodingState) {
+        state.handmade.decode(state.readModeInput)
+    }
+
+    @Benchmark
+    fun compositionDecoderSingleStepReadModeDecoding(state: BasicByteBufferPersonDecodingState) {
+        state.composition.decode(state.readModeInput)
+    }
+
+    @Benchmark
+    fun handmadeDecoderSingleStepFullBufferDecoding(state: BasicByteBufferPersonDecodingState) {
+        state.handmade.decode(state.fullBufferInput)
+    }
+
+    @Benchmark
+    fun handmadeDecoderSingleStepFullBufferReadModeDecoding(state: BasicByteBufferPersonDecodingState) {
+        state.handmade.decode(state.fullBufferReadModeInput)
+    }
+
+    @Benchmark
+    fun handmadeDecoderFullBufferDecoding(state: BasicByteBufferPersonDecodingState) {
+        state.handmade.decode(state.fullBuffer)
+    }
 
 }
 
@@ -55,11 +79,39 @@ open class BasicByteBufferPersonDecodingState {
     @JvmField
     var proxiedInput: DecoderInput = DecoderInput.nullInput()
 
+    @JvmField
+    var readModeInput: DecoderInput = DecoderInput.nullInput()
+
+    @JvmField
+    var fullBufferInput: DecoderInput = DecoderInput.nullInput()
+
+    @JvmField
+    var fullBufferReadModeInput: DecoderInput = DecoderInput.nullInput()
+
+    @JvmField
+    var fullBuffer: ByteBuffer = ByteBuffer.allocate(0)
+
     @Setup(Level.Invocation)
     fun inputSetup() {
         val array = ARRAY
         input = DecoderInput.from(ByteBuffer.wrap(array).position(array.size))
         proxiedInput = inputProxy(DecoderInput.from(ByteBuffer.wrap(array).position(array.size)))
+        readModeInput = DecoderInput.fromReadMode(ByteBuffer.wrap(array))
+
+        // 64 KiB buffers (typical socket buffer size) filled with the person followed by other data
+        fullBufferInput = DecoderInput.from(fullBuffer(array).position(FULL_BUFFER_SIZE))
+        fullBufferReadModeInput = DecoderInput.fromReadMode(fullBuffer(array))
+        fullBuffer = fullBuffer(array).position(FULL_BUFFER_SIZE)
+    }
+
+    private fun fullBuffer(array: ByteArray): ByteBuffer = ByteBuffer.allocateDirect(FULL_BUFFER_SIZE)
+        .put(array)
+        .position(0)
+
+    private companion object {
+
+        const val FULL_BUFFER_SIZE = 64 * 1024
+
     }
 
 }
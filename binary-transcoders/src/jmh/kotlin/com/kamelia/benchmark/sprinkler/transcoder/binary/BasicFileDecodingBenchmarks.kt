@@ -6,6 +6,11 @@ import com.kamelia.benchmark.sprinkler.transcoder.binary.`object`.basicPersonDec
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
 import java.io.Closeable
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import kotlin.io.path.createTempFile
+import kotlin.io.path.deleteIfExists
+import kotlin.io.path.writeBytes
 import org.openjdk.jmh.annotations.Benchmark
 import org.openjdk.jmh.annotations.Level
 import org.openjdk.jmh.annotations.Scope
@@ -41,6 +46,21 @@ open class BasicFileDecodingBenchmarks {
         } while (s != null && s.isNotDone())
     }
 
+    @Benchmark
+    fun handmadeDecoderSingleStepMappedDecoding(state: BasicFilePersonDecodingState) {
+        state.handmade.decode(state.mappedInput)
+    }
+
+    @Benchmark
+    fun compositionDecoderSingleStepMappedDecoding(state: BasicFilePersonDecodingState) {
+        state.composition.decode(state.mappedInput)
+    }
+
+    @Benchmark
+    fun handmadeDecoderPathDecoding(state: BasicFilePersonDecodingState) {
+        state.handmade.decode(state.path)
+    }
+
 }
 
 @State(Scope.Benchmark)
@@ -60,6 +80,23 @@ open class BasicFilePersonDecodingState {
     @JvmField
     var proxiedInput: DecoderInput = DecoderInput.nullInput()
 
+    @JvmField
+    var mappedInput: DecoderInput = DecoderInput.nullInput()
+
+    @JvmField
+    var path: Path = Path.of("")
+
+    @Setup(Level.Trial)
+    fun fileSetup() {
+        path = createTempFile()
+        path.writeBytes(ARRAY)
+    }
+
+    @TearDown(Level.Trial)
+    fun fileTearDown() {
+        path.deleteIfExists()
+    }
+
     @Setup(Level.Invocation)
     fun inputSetup() {
         // get resource from classpath
@@ -69,11 +106,15 @@ open class BasicFilePersonDecodingState {
         val stream2 = javaClass.getResourceAsStream("/basic_person.bin")!!
         proxiedInput = inputProxy(DecoderInput.from(stream2))
         streams.add(stream2)
+        val channel = FileChannel.open(path)
+        mappedInput = DecoderInput.from(channel)
+        streams.add(channel)
     }
 
     @TearDown(Level.Invocation)
     fun inputTearDown() {
         streams.forEach(Closeable::close)
+        streams.clear()
     }
 
 }
@@ -0,0 +1,121 @@
+package com.kamelia.benchmark.sprinkler.transcoder.binary
+
+import com.kamelia.sprinkler.transcoder.binary.columnar.ColumnBatch
+import com.kamelia.sprinkler.transcoder.binary.columnar.ColumnEncoding
+import com.kamelia.sprinkler.transcoder.binary.columnar.ColumnarSchema
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.toList
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.ByteArrayEncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.toCollection
+import com.kamelia.sprinkler.transcoder.binary.transcoder.core.Transcoder
+import kotlin.random.Random
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+open class ColumnarBenchmarks {
+
+    @Benchmark
+    fun rowEncoding(state: ColumnarState): Int {
+        state.output.reset()
+        state.rowEncoder.encode(state.points, state.output)
+        return state.output.size
+    }
+
+    @Benchmark
+    fun columnarEncoding(state: ColumnarState): Int {
+        state.output.reset()
+        state.columnarEncoder.encode(state.points, state.output)
+        return state.output.size
+    }
+
+    @Benchmark
+    fun rowDecoding(state: ColumnarState): Decoder.State<List<SamplePoint>> =
+        state.rowDecoder.decode(DecoderInput.from(state.rowEncoded))
+
+    @Benchmark
+    fun columnarDecoding(state: ColumnarState): Decoder.State<List<SamplePoint>> =
+        state.columnarDecoder.decode(DecoderInput.from(state.columnarEncoded))
+
+    @Benchmark
+    fun columnarColumnsDecoding(state: ColumnarState): Decoder.State<ColumnBatch> =
+        state.columnsDecoder.decode(DecoderInput.from(state.columnarEncoded))
+
+}
+
+@State(Scope.Benchmark)
+open class ColumnarState {
+
+    @Param("PLAIN", "DELTA", "DELTA_BIT_PACKED")
+    lateinit var timestampEncoding: String
+
+    @JvmField
+    val points = List(COUNT) {
+        SamplePoint(START + it * PERIOD, Random.nextInt(100), Random.nextFloat(), Random.nextFloat())
+    }
+
+    lateinit var rowEncoder: Encoder<Collection<SamplePoint>>
+
+    lateinit var rowDecoder: Decoder<List<SamplePoint>>
+
+    lateinit var columnarEncoder: Encoder<List<SamplePoint>>
+
+    lateinit var columnarDecoder: Decoder<List<SamplePoint>>
+
+    lateinit var columnsDecoder: Decoder<ColumnBatch>
+
+    lateinit var rowEncoded: ByteArray
+
+    lateinit var columnarEncoded: ByteArray
+
+    @JvmField
+    val output: ByteArrayEncoderOutput = EncoderOutput.toByteArray(COUNT * SamplePoint.SIZE_BYTES + Int.SIZE_BYTES)
+
+    @Setup
+    fun setup() {
+        val record = Transcoder.forRecord(SamplePoint::class.java)
+        rowEncoder = record.toCollection()
+        rowDecoder = record.toList()
+
+        val schema = ColumnarSchema.builder<SamplePoint>()
+            .longColumn(ColumnEncoding.valueOf(timestampEncoding)) { it.timestamp }
+            .intColumn(ColumnEncoding.BIT_PACKED) { it.sensor }
+            .floatColumn { it.x }
+            .floatColumn { it.y }
+            .build()
+        columnarEncoder = schema.encoder()
+        columnarDecoder = schema.decoder { batch, row ->
+            SamplePoint(batch.longs(0)[row], batch.ints(1)[row], batch.floats(2)[row], batch.floats(3)[row])
+        }
+        columnsDecoder = schema.columnsDecoder()
+
+        rowEncoded = rowEncoder.encode(points)
+        columnarEncoded = columnarEncoder.encode(points)
+    }
+
+    private companion object {
+
+        const val COUNT = 10_000
+
+        const val START = 1_700_000_000_000L
+
+        const val PERIOD = 1_000L
+
+    }
+
+}
+
+data class SamplePoint(val timestamp: Long, val sensor: Int, val x: Float, val y: Float) {
+
+    companion object {
+
+        const val SIZE_BYTES = Long.SIZE_BYTES + Int.SIZE_BYTES + 2 * Float.SIZE_BYTES
+
+    }
+
+}
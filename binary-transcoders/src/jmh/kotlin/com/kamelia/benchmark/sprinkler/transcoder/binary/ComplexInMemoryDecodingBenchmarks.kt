@@ -0,0 +1,80 @@
+package com.kamelia.benchmark.sprinkler.transcoder.binary
+
+import com.kamelia.benchmark.sprinkler.transcoder.binary.`object`.Address
+import com.kamelia.benchmark.sprinkler.transcoder.binary.`object`.ComplexPerson
+import com.kamelia.benchmark.sprinkler.transcoder.binary.`object`.compiledComplexPersonDecoder
+import com.kamelia.benchmark.sprinkler.transcoder.binary.`object`.complexPersonDecoder
+import com.kamelia.benchmark.sprinkler.transcoder.binary.`object`.complexPersonEncoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import org.openjdk.jmh.annotations.*
+
+open class ComplexInMemoryDecodingBenchmarks {
+
+    @Benchmark
+    fun compositionDecoderSingleStepDecoding(state: ComplexInMemoryPersonDecodingState) {
+        state.composition.decode(state.input)
+    }
+
+    @Benchmark
+    fun compiledDecoderSingleStepDecoding(state: ComplexInMemoryPersonDecodingState) {
+        state.compiled.decode(state.input)
+    }
+
+    @Benchmark
+    fun compositionDecoderSeveralStepsDecoding(state: ComplexInMemoryPersonDecodingState) {
+        var s: Decoder.State<ComplexPerson>?
+        do {
+            s = state.composition.decode(state.proxiedInput)
+        } while (s != null && s.isNotDone())
+    }
+
+    @Benchmark
+    fun compiledDecoderSeveralStepsDecoding(state: ComplexInMemoryPersonDecodingState) {
+        var s: Decoder.State<ComplexPerson>?
+        do {
+            s = state.compiled.decode(state.proxiedInput)
+        } while (s != null && s.isNotDone())
+    }
+
+}
+
+@State(Scope.Benchmark)
+open class ComplexInMemoryPersonDecodingState {
+
+    @JvmField
+    var composition: Decoder<ComplexPerson> = complexPersonDecoder()
+
+    @JvmField
+    var compiled: Decoder<ComplexPerson> = compiledComplexPersonDecoder()
+
+    @JvmField
+    var input: DecoderInput = DecoderInput.nullInput()
+
+    @JvmField
+    var proxiedInput: DecoderInput = DecoderInput.nullInput()
+
+    @Setup(Level.Invocation)
+    fun inputSetup() {
+        input = DecoderInput.from(COMPLEX_PERSON_ARRAY)
+        proxiedInput = inputProxy(DecoderInput.from(COMPLEX_PERSON_ARRAY))
+    }
+
+    private companion object {
+
+        val COMPLEX_PERSON_ARRAY: ByteArray = complexPersonEncoder.encode(
+            ComplexPerson(
+                "John",
+                "Doe",
+                42,
+                1.8f,
+                80.5f,
+                true,
+                Address(12, "Main Street", "Springfield", "12345", "USA", "Second floor"),
+                "+1 555 0100",
+            )
+        )
+
+    }
+
+}
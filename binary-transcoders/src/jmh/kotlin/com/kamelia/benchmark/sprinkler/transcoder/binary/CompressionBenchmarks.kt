@@ -0,0 +1,124 @@
+package com.kamelia.benchmark.sprinkler.transcoder.binary
+
+import com.kamelia.benchmark.sprinkler.transcoder.binary.`object`.BasicPersonDecoder
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.ByteArrayEncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.InflaterInputStream
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+open class CompressionBenchmarks {
+
+    @Benchmark
+    fun deflatingOutputEncoding(state: CompressionState, counters: CompressionCounters): Int {
+        state.output.reset()
+        EncoderOutput.deflating(state.output, state.level, pool = state.pool).use {
+            repeat(RECORDS) { _ -> it.write(state.record) }
+        }
+        return counters.count(state.record.size * RECORDS, state.output.size)
+    }
+
+    @Benchmark
+    fun deflaterStreamEncoding(state: CompressionState, counters: CompressionCounters): Int {
+        val stream = ByteArrayOutputStream(state.compressed.size)
+        val deflater = Deflater(state.level)
+        DeflaterOutputStream(stream, deflater).use {
+            repeat(RECORDS) { _ -> it.write(state.record) }
+        }
+        deflater.end()
+        return counters.count(state.record.size * RECORDS, stream.size())
+    }
+
+    @Benchmark
+    fun inflatingInputDecoding(state: CompressionState): Int {
+        DecoderInput.inflating(DecoderInput.from(state.compressed), pool = state.pool).use {
+            return decodeAll(state, it)
+        }
+    }
+
+    @Benchmark
+    fun inflaterStreamDecoding(state: CompressionState): Int {
+        InflaterInputStream(ByteArrayInputStream(state.compressed)).use {
+            return decodeAll(state, DecoderInput.from(it))
+        }
+    }
+
+    private fun decodeAll(state: CompressionState, input: DecoderInput): Int {
+        var age = 0
+        repeat(RECORDS) { age += state.decoder.decode(input).getOrThrow(::IllegalStateException).age }
+        return age
+    }
+
+}
+
+@State(Scope.Benchmark)
+open class CompressionState {
+
+    @Param("1", "6", "9")
+    var level: Int = Deflater.DEFAULT_COMPRESSION
+
+    @JvmField
+    val record: ByteArray = javaClass.getResourceAsStream("/basic_person.bin")!!.use { it.readAllBytes() }
+
+    @JvmField
+    val decoder = BasicPersonDecoder()
+
+    @JvmField
+    val pool: BufferPool = BufferPool.create()
+
+    @JvmField
+    val output: ByteArrayEncoderOutput = EncoderOutput.toByteArray(record.size * RECORDS)
+
+    lateinit var compressed: ByteArray
+
+    @Setup
+    fun setup() {
+        val stream = ByteArrayOutputStream()
+        DeflaterOutputStream(stream, Deflater(level)).use {
+            repeat(RECORDS) { _ -> it.write(record) }
+        }
+        compressed = stream.toByteArray()
+    }
+
+}
+
+/**
+ * Counts the raw and compressed bytes written by the encoding benchmarks, reported as rates whose quotient is the
+ * compression ratio.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+open class CompressionCounters {
+
+    @JvmField
+    var rawBytes = 0L
+
+    @JvmField
+    var compressedBytes = 0L
+
+    @Setup(Level.Iteration)
+    fun clean() {
+        rawBytes = 0L
+        compressedBytes = 0L
+    }
+
+    fun count(rawSize: Int, compressedSize: Int): Int {
+        rawBytes += rawSize
+        compressedBytes += compressedSize
+        return compressedSize
+    }
+
+}
+
+private const val RECORDS = 10_000
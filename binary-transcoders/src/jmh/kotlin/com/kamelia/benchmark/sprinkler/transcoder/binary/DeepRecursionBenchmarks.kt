@@ -0,0 +1,57 @@
+package com.kamelia.benchmark.sprinkler.transcoder.binary
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.composer.composedDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.composer.composedEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import org.openjdk.jmh.annotations.*
+
+open class DeepRecursionBenchmarks {
+
+    @Benchmark
+    fun compositionEncoderDeepRecursion(state: DeepRecursionState): ByteArray = state.encoder.encode(state.list)
+
+    @Benchmark
+    fun compositionDecoderDeepRecursion(state: DeepRecursionState): LinkedNode = state.decoder.decode(state.bytes).get()
+
+}
+
+class LinkedNode(val value: Int, val next: LinkedNode?)
+
+@State(Scope.Benchmark)
+open class DeepRecursionState {
+
+    @Param("1000", "1000000")
+    @JvmField
+    var depth = 0
+
+    @JvmField
+    val encoder: Encoder<LinkedNode> = composedEncoder {
+        encode(it.value)
+        encode(it.next)
+    }
+
+    @JvmField
+    val decoder: Decoder<LinkedNode> = composedDecoder {
+        val value = int()
+        val next = if (boolean()) self() else null
+        LinkedNode(value, next)
+    }
+
+    @JvmField
+    var list = LinkedNode(0, null)
+
+    @JvmField
+    var bytes = ByteArray(0)
+
+    @Setup(Level.Trial)
+    fun setup() {
+        var node = LinkedNode(0, null)
+        for (i in 1 until depth) {
+            node = LinkedNode(i, node)
+        }
+        list = node
+        bytes = encoder.encode(node)
+    }
+
+}
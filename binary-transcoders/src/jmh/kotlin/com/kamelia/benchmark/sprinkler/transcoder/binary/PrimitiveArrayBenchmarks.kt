@@ -0,0 +1,108 @@
+package com.kamelia.benchmark.sprinkler.transcoder.binary
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.FloatArrayDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.FloatDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.toArray
+import com.kamelia.sprinkler.transcoder.binary.encoder.FloatArrayEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.FloatEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.ByteArrayEncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.toArray
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.random.Random
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+open class PrimitiveArrayBenchmarks {
+
+    @Benchmark
+    fun bulkByteArrayEncoding(state: PrimitiveArrayState): Int {
+        state.arrayOutput.reset()
+        state.bulkEncoder.encode(state.floats, state.arrayOutput)
+        return state.arrayOutput.size
+    }
+
+    @Benchmark
+    fun elementWiseByteArrayEncoding(state: PrimitiveArrayState): Int {
+        state.arrayOutput.reset()
+        state.elementWiseEncoder.encode(state.boxedFloats, state.arrayOutput)
+        return state.arrayOutput.size
+    }
+
+    @Benchmark
+    fun bulkDirectBufferEncoding(state: PrimitiveArrayState): Int {
+        state.directBuffer.clear()
+        state.bulkEncoder.encode(state.floats, state.directOutput)
+        return state.directBuffer.position()
+    }
+
+    @Benchmark
+    fun bulkDecoding(state: PrimitiveArrayState): Decoder.State<FloatArray> =
+        state.bulkDecoder.decode(DecoderInput.from(state.encoded))
+
+    @Benchmark
+    fun elementWiseDecoding(state: PrimitiveArrayState): Decoder.State<Array<Float>> =
+        state.elementWiseDecoder.decode(DecoderInput.from(state.encoded))
+
+}
+
+@State(Scope.Benchmark)
+open class PrimitiveArrayState {
+
+    @Param("BIG_ENDIAN", "LITTLE_ENDIAN")
+    lateinit var endianness: String
+
+    @JvmField
+    val floats = FloatArray(COUNT) { Random.nextFloat() }
+
+    @JvmField
+    val boxedFloats = floats.toTypedArray()
+
+    lateinit var bulkEncoder: Encoder<FloatArray>
+
+    lateinit var elementWiseEncoder: Encoder<Array<Float>>
+
+    lateinit var bulkDecoder: Decoder<FloatArray>
+
+    lateinit var elementWiseDecoder: Decoder<Array<Float>>
+
+    lateinit var encoded: ByteArray
+
+    @JvmField
+    val arrayOutput: ByteArrayEncoderOutput = EncoderOutput.toByteArray(SIZE)
+
+    @JvmField
+    val directBuffer: ByteBuffer = ByteBuffer.allocateDirect(SIZE)
+
+    @JvmField
+    val directOutput = EncoderOutput.from(directBuffer)
+
+    @Setup
+    fun setup() {
+        val order = if (endianness == "BIG_ENDIAN") ByteOrder.BIG_ENDIAN else ByteOrder.LITTLE_ENDIAN
+        // same size prefix for both, so that the element-wise decoder reads the bytes of the bulk encoder
+        bulkEncoder = FloatArrayEncoder(order, IntEncoder())
+        elementWiseEncoder = FloatEncoder(order).toArray(IntEncoder())
+        bulkDecoder = FloatArrayDecoder(order, IntDecoder())
+        elementWiseDecoder = FloatDecoder(order).toArray(::arrayOfNulls, IntDecoder())
+        encoded = bulkEncoder.encode(floats)
+    }
+
+    private companion object {
+
+        const val COUNT = 10_000
+
+        const val SIZE = Int.SIZE_BYTES + COUNT * Float.SIZE_BYTES
+
+    }
+
+}
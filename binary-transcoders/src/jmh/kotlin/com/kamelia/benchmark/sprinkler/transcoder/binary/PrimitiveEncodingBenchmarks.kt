@@ -0,0 +1,107 @@
+package com.kamelia.benchmark.sprinkler.transcoder.binary
+
+import com.kamelia.sprinkler.transcoder.binary.encoder.DoubleEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.LongEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.ByteArrayEncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.random.Random
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+open class PrimitiveEncodingBenchmarks {
+
+    @Benchmark
+    fun outputStreamEncoding(state: PrimitiveEncodingState): Int {
+        state.stream.reset()
+        state.encodeAll(state.streamOutput)
+        return state.stream.size()
+    }
+
+    @Benchmark
+    fun byteArrayEncoding(state: PrimitiveEncodingState): Int {
+        state.arrayOutput.reset()
+        state.encodeAll(state.arrayOutput)
+        return state.arrayOutput.size
+    }
+
+    @Benchmark
+    fun heapBufferEncoding(state: PrimitiveEncodingState): Int {
+        state.heapBuffer.clear()
+        state.encodeAll(state.heapOutput)
+        return state.heapBuffer.position()
+    }
+
+    @Benchmark
+    fun directBufferEncoding(state: PrimitiveEncodingState): Int {
+        state.directBuffer.clear()
+        state.encodeAll(state.directOutput)
+        return state.directBuffer.position()
+    }
+
+}
+
+@State(Scope.Benchmark)
+open class PrimitiveEncodingState {
+
+    @Param("BIG_ENDIAN", "LITTLE_ENDIAN")
+    lateinit var endianness: String
+
+    private lateinit var longEncoder: Encoder<Long>
+
+    private lateinit var doubleEncoder: Encoder<Double>
+
+    private val longs = LongArray(COUNT) { Random.nextLong() }
+
+    private val doubles = DoubleArray(COUNT) { Random.nextDouble() }
+
+    @JvmField
+    val stream = ByteArrayOutputStream(SIZE)
+
+    @JvmField
+    val streamOutput = EncoderOutput.from(stream)
+
+    @JvmField
+    val arrayOutput: ByteArrayEncoderOutput = EncoderOutput.toByteArray(SIZE)
+
+    @JvmField
+    val heapBuffer: ByteBuffer = ByteBuffer.allocate(SIZE)
+
+    @JvmField
+    val heapOutput = EncoderOutput.from(heapBuffer)
+
+    @JvmField
+    val directBuffer: ByteBuffer = ByteBuffer.allocateDirect(SIZE)
+
+    @JvmField
+    val directOutput = EncoderOutput.from(directBuffer)
+
+    @Setup
+    fun setup() {
+        val order = if (endianness == "BIG_ENDIAN") ByteOrder.BIG_ENDIAN else ByteOrder.LITTLE_ENDIAN
+        longEncoder = LongEncoder(order)
+        doubleEncoder = DoubleEncoder(order)
+    }
+
+    fun encodeAll(output: EncoderOutput) {
+        for (i in 0 until COUNT) {
+            longEncoder.encode(longs[i], output)
+            doubleEncoder.encode(doubles[i], output)
+        }
+    }
+
+    private companion object {
+
+        const val COUNT = 1024
+
+        const val SIZE = COUNT * (Long.SIZE_BYTES + Double.SIZE_BYTES)
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.kamelia.benchmark.sprinkler.transcoder.binary
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoderEM
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoderEM
+import org.openjdk.jmh.annotations.*
+
+open class StringDecodingBenchmarks {
+
+    @Benchmark
+    fun prefixedStringDecoding(state: StringDecodingState): Decoder.State<String> =
+        state.prefixed.decode(state.prefixedInput)
+
+    @Benchmark
+    fun endMarkerStringDecoding(state: StringDecodingState): Decoder.State<String> =
+        state.endMarker.decode(state.endMarkerInput)
+
+}
+
+@State(Scope.Benchmark)
+open class StringDecodingState {
+
+    @Param("16", "256", "4096")
+    @JvmField
+    var length: Int = 0
+
+    @JvmField
+    var prefixed: Decoder<String> = UTF8StringDecoder()
+
+    @JvmField
+    var endMarker: Decoder<String> = UTF8StringDecoderEM()
+
+    @JvmField
+    var prefixedInput: DecoderInput = DecoderInput.nullInput()
+
+    @JvmField
+    var endMarkerInput: DecoderInput = DecoderInput.nullInput()
+
+    private var prefixedBytes = ByteArray(0)
+
+    private var endMarkerBytes = ByteArray(0)
+
+    @Setup(Level.Trial)
+    fun dataSetup() {
+        val string = "Sprinkler ".repeat(length / 10 + 1).substring(0, length)
+        prefixedBytes = UTF8StringEncoder().encode(string)
+        endMarkerBytes = UTF8StringEncoderEM().encode(string)
+    }
+
+    @Setup(Level.Invocation)
+    fun inputSetup() {
+        prefixedInput = DecoderInput.from(prefixedBytes)
+        endMarkerInput = DecoderInput.from(endMarkerBytes)
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.kamelia.benchmark.sprinkler.transcoder.binary.`object`
 
 import com.kamelia.sprinkler.transcoder.binary.decoder.composer.composedDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.composer2.ComposedDecoderBuilder
+import com.kamelia.sprinkler.transcoder.binary.decoder.composer2.ComposedDecoderContext
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.composer.composedEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
@@ -57,6 +59,81 @@ fun complexPersonDecoder(): Decoder<ComplexPerson> {
     }
 }
 
+fun compiledAddressDecoder(): Decoder<Address> = ComposedDecoderBuilder.create { AddressContext() }
+    .decodeInt()
+    .decodeString()
+    .decodeString()
+    .decodeString()
+    .decodeString()
+    .decodeNullable(ComposedDecoderBuilder.Key.Simple(String::class.java))
+    .build()
+
+fun compiledComplexPersonDecoder(): Decoder<ComplexPerson> = ComposedDecoderBuilder.create { ComplexPersonContext() }
+    .decodeString()
+    .decodeString()
+    .decodeInt()
+    .decodeFloat()
+    .decodeFloat()
+    .decodeBoolean()
+    .decode(compiledAddressDecoder())
+    .decodeString()
+    .build()
+
+private class AddressContext : ComposedDecoderContext<Address> {
+
+    private var index = 0
+    private var streetNumber = 0
+    private var streetName = ""
+    private var city = ""
+    private var zipcode = ""
+    private var country = ""
+    private var extraInformation: String? = null
+
+    override fun accept(element: Any?) {
+        when (index++) {
+            0 -> streetNumber = element as Int
+            1 -> streetName = element as String
+            2 -> city = element as String
+            3 -> zipcode = element as String
+            4 -> country = element as String
+            else -> extraInformation = element as String?
+        }
+    }
+
+    override fun build(): Address = Address(streetNumber, streetName, city, zipcode, country, extraInformation)
+
+}
+
+private class ComplexPersonContext : ComposedDecoderContext<ComplexPerson> {
+
+    private var index = 0
+    private var firstname = ""
+    private var lastname = ""
+    private var age = 0
+    private var height = 0f
+    private var weight = 0f
+    private var isMarried = false
+    private var address: Address? = null
+    private var phoneNumber = ""
+
+    override fun accept(element: Any?) {
+        when (index++) {
+            0 -> firstname = element as String
+            1 -> lastname = element as String
+            2 -> age = element as Int
+            3 -> height = element as Float
+            4 -> weight = element as Float
+            5 -> isMarried = element as Boolean
+            6 -> address = element as Address
+            else -> phoneNumber = element as String
+        }
+    }
+
+    override fun build(): ComplexPerson =
+        ComplexPerson(firstname, lastname, age, height, weight, isMarried, address!!, phoneNumber)
+
+}
+
 val addressEncoder: Encoder<Address> = composedEncoder {
     encode(it.streetNumber)
     encode(it.streetName)
@@ -0,0 +1,177 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.nio.ByteOrder
+import java.util.function.ToDoubleFunction
+import java.util.function.ToIntFunction
+import java.util.function.ToLongFunction
+
+/**
+ * Column of a [ColumnarSchema], extracting its values from the objects of a batch into a primitive array, and writing
+ * and reading this array according to its [encoding].
+ *
+ * The arrays are passed around as [Any] so that the schema can handle its columns uniformly, each column only ever
+ * receiving the arrays it created.
+ */
+internal sealed class Column<E>(val encoding: ColumnEncoding) {
+
+    /**
+     * Extracts the values of the column from the given [rows] into a primitive array.
+     */
+    abstract fun extract(rows: List<E>): Any
+
+    /**
+     * Returns the exact number of bytes written by [write] for the given [values].
+     */
+    abstract fun encodedSize(values: Any): Long
+
+    /**
+     * Returns an upper bound of the number of bytes written by [write] for a column of [rows] values, computed without
+     * the values.
+     */
+    abstract fun maxEncodedSize(rows: Int): Long
+
+    /**
+     * Writes the given [values] to the [output], [scratch] being an array of at least [PACKED_SCRATCH_SIZE] bytes.
+     */
+    abstract fun write(values: Any, output: EncoderOutput, order: ByteOrder, scratch: ByteArray)
+
+    /**
+     * Reads the [rows] values of the column from the [input].
+     *
+     * @throws IllegalStateException if the column is malformed
+     */
+    abstract fun read(input: ColumnInput, rows: Int, order: ByteOrder): Any
+
+    class OfInt<E>(private val extractor: ToIntFunction<E>, encoding: ColumnEncoding) : Column<E>(encoding) {
+
+        // integral encodings work on longs, the values are thus widened once at extraction
+        override fun extract(rows: List<E>): Any = if (encoding == ColumnEncoding.PLAIN) {
+            val values = IntArray(rows.size)
+            rows.forEachIndexed { index, row -> values[index] = extractor.applyAsInt(row) }
+            values
+        } else {
+            val values = LongArray(rows.size)
+            rows.forEachIndexed { index, row -> values[index] = extractor.applyAsInt(row).toLong() }
+            values
+        }
+
+        override fun encodedSize(values: Any): Long = if (encoding == ColumnEncoding.PLAIN) {
+            (values as IntArray).size.toLong() * Int.SIZE_BYTES
+        } else {
+            integralSize(values as LongArray, encoding)
+        }
+
+        override fun maxEncodedSize(rows: Int): Long = maxIntegralSize(rows, encoding, Int.SIZE_BYTES)
+
+        override fun write(values: Any, output: EncoderOutput, order: ByteOrder, scratch: ByteArray) {
+            if (encoding == ColumnEncoding.PLAIN) {
+                val ints = values as IntArray
+                output.writeInts(ints, 0, ints.size, order)
+            } else {
+                writeIntegral(values as LongArray, encoding, output, scratch)
+            }
+        }
+
+        override fun read(input: ColumnInput, rows: Int, order: ByteOrder): Any {
+            if (encoding == ColumnEncoding.PLAIN) {
+                val values = IntArray(input.checkPlain(rows, Int.SIZE_BYTES))
+                input.view(rows * Int.SIZE_BYTES, order).asIntBuffer().get(values)
+                return values
+            }
+            val values = IntArray(checkIntegral(input, rows, encoding))
+            readIntegral(input, rows, encoding) { index, value -> values[index] = value.toInt() }
+            return values
+        }
+
+    }
+
+    class OfLong<E>(private val extractor: ToLongFunction<E>, encoding: ColumnEncoding) : Column<E>(encoding) {
+
+        override fun extract(rows: List<E>): Any {
+            val values = LongArray(rows.size)
+            rows.forEachIndexed { index, row -> values[index] = extractor.applyAsLong(row) }
+            return values
+        }
+
+        override fun encodedSize(values: Any): Long = if (encoding == ColumnEncoding.PLAIN) {
+            (values as LongArray).size.toLong() * Long.SIZE_BYTES
+        } else {
+            integralSize(values as LongArray, encoding)
+        }
+
+        override fun maxEncodedSize(rows: Int): Long = maxIntegralSize(rows, encoding, Long.SIZE_BYTES)
+
+        override fun write(values: Any, output: EncoderOutput, order: ByteOrder, scratch: ByteArray) {
+            val longs = values as LongArray
+            if (encoding == ColumnEncoding.PLAIN) {
+                output.writeLongs(longs, 0, longs.size, order)
+            } else {
+                writeIntegral(longs, encoding, output, scratch)
+            }
+        }
+
+        override fun read(input: ColumnInput, rows: Int, order: ByteOrder): Any {
+            if (encoding == ColumnEncoding.PLAIN) {
+                val values = LongArray(input.checkPlain(rows, Long.SIZE_BYTES))
+                input.view(rows * Long.SIZE_BYTES, order).asLongBuffer().get(values)
+                return values
+            }
+            val values = LongArray(checkIntegral(input, rows, encoding))
+            readIntegral(input, rows, encoding) { index, value -> values[index] = value }
+            return values
+        }
+
+    }
+
+    class OfFloat<E>(private val extractor: ColumnarSchema.ToFloatFunction<E>) : Column<E>(ColumnEncoding.PLAIN) {
+
+        override fun extract(rows: List<E>): Any {
+            val values = FloatArray(rows.size)
+            rows.forEachIndexed { index, row -> values[index] = extractor.applyAsFloat(row) }
+            return values
+        }
+
+        override fun encodedSize(values: Any): Long = (values as FloatArray).size.toLong() * Float.SIZE_BYTES
+
+        override fun maxEncodedSize(rows: Int): Long = rows.toLong() * Float.SIZE_BYTES
+
+        override fun write(values: Any, output: EncoderOutput, order: ByteOrder, scratch: ByteArray) {
+            val floats = values as FloatArray
+            output.writeFloats(floats, 0, floats.size, order)
+        }
+
+        override fun read(input: ColumnInput, rows: Int, order: ByteOrder): Any {
+            val values = FloatArray(input.checkPlain(rows, Float.SIZE_BYTES))
+            input.view(rows * Float.SIZE_BYTES, order).asFloatBuffer().get(values)
+            return values
+        }
+
+    }
+
+    class OfDouble<E>(private val extractor: ToDoubleFunction<E>) : Column<E>(ColumnEncoding.PLAIN) {
+
+        override fun extract(rows: List<E>): Any {
+            val values = DoubleArray(rows.size)
+            rows.forEachIndexed { index, row -> values[index] = extractor.applyAsDouble(row) }
+            return values
+        }
+
+        override fun encodedSize(values: Any): Long = (values as DoubleArray).size.toLong() * Double.SIZE_BYTES
+
+        override fun maxEncodedSize(rows: Int): Long = rows.toLong() * Double.SIZE_BYTES
+
+        override fun write(values: Any, output: EncoderOutput, order: ByteOrder, scratch: ByteArray) {
+            val doubles = values as DoubleArray
+            output.writeDoubles(doubles, 0, doubles.size, order)
+        }
+
+        override fun read(input: ColumnInput, rows: Int, order: ByteOrder): Any {
+            val values = DoubleArray(input.checkPlain(rows, Double.SIZE_BYTES))
+            input.view(rows * Double.SIZE_BYTES, order).asDoubleBuffer().get(values)
+            return values
+        }
+
+    }
+
+}
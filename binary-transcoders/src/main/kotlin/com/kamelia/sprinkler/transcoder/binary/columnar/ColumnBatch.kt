@@ -0,0 +1,82 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+import java.util.Objects
+
+/**
+ * Batch of rows decoded by a [ColumnarSchema], stored as one primitive array per column.
+ *
+ * Each column is stored in an array of the type of the column ([IntArray], [LongArray], [FloatArray] or [DoubleArray]),
+ * holding the values of the [size] rows of the batch in order. The columns are indexed in the order in which they have
+ * been declared in the [ColumnarSchema.Builder].
+ *
+ * The arrays are returned without being copied, and are owned by the batch: they are not reused by the decoder, and can
+ * thus be kept or modified freely.
+ *
+ * @see ColumnarSchema.columnsDecoder
+ */
+class ColumnBatch internal constructor(
+    /**
+     * The number of rows of the batch, which is the size of each of its columns.
+     */
+    val size: Int,
+    private val columns: Array<Any>,
+) {
+
+    /**
+     * The number of columns of the batch.
+     */
+    val columnCount: Int
+        get() = columns.size
+
+    /**
+     * Returns the values of the [Int] column at the given [index].
+     *
+     * @param index the index of the column
+     * @return the values of the column
+     * @throws IndexOutOfBoundsException if [index] is not a valid column index
+     * @throws IllegalArgumentException if the column at [index] is not an [Int] column
+     */
+    fun ints(index: Int): IntArray = column(index)
+
+    /**
+     * Returns the values of the [Long] column at the given [index].
+     *
+     * @param index the index of the column
+     * @return the values of the column
+     * @throws IndexOutOfBoundsException if [index] is not a valid column index
+     * @throws IllegalArgumentException if the column at [index] is not a [Long] column
+     */
+    fun longs(index: Int): LongArray = column(index)
+
+    /**
+     * Returns the values of the [Float] column at the given [index].
+     *
+     * @param index the index of the column
+     * @return the values of the column
+     * @throws IndexOutOfBoundsException if [index] is not a valid column index
+     * @throws IllegalArgumentException if the column at [index] is not a [Float] column
+     */
+    fun floats(index: Int): FloatArray = column(index)
+
+    /**
+     * Returns the values of the [Double] column at the given [index].
+     *
+     * @param index the index of the column
+     * @return the values of the column
+     * @throws IndexOutOfBoundsException if [index] is not a valid column index
+     * @throws IllegalArgumentException if the column at [index] is not a [Double] column
+     */
+    fun doubles(index: Int): DoubleArray = column(index)
+
+    override fun toString(): String = "ColumnBatch(size=$size, columnCount=$columnCount)"
+
+    private inline fun <reified A> column(index: Int): A {
+        Objects.checkIndex(index, columns.size)
+        val column = columns[index]
+        require(column is A) {
+            "Column $index is a ${column.javaClass.simpleName}, not a ${A::class.java.simpleName}"
+        }
+        return column
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+/**
+ * Encoding of a column of a [ColumnarSchema].
+ *
+ * The [PLAIN] encoding is the only one supported by all the columns. The other encodings only apply to the integral
+ * columns ([Int] and [Long]), and trade a bit of computation for a smaller payload on columns whose values are close to
+ * each other or to their neighbours, such as timestamps, identifiers or counters.
+ *
+ * @see ColumnarSchema.Builder
+ */
+enum class ColumnEncoding {
+
+    /**
+     * Each value is written on its full width (4 bytes for [Ints][Int] and [Floats][Float], 8 bytes for [Longs][Long]
+     * and [Doubles][Double]), in the endianness of the schema. The column is written and read in bulk.
+     */
+    PLAIN,
+
+    /**
+     * Each value is written as its difference with the previous value (the first value being written as is), encoded
+     * as a ZigZag variable-length [Long]. Suited to slowly varying values, such as sorted timestamps.
+     */
+    DELTA,
+
+    /**
+     * The values are split in blocks of 128 values, each block being written as its minimum value, encoded as a ZigZag
+     * variable-length [Long], followed by the width in bits of the largest difference between a value of the block and
+     * this minimum, encoded on a single byte, and by the differences of all the values of the block, packed on this
+     * width. Suited to values spanning a narrow range.
+     */
+    BIT_PACKED,
+
+    /**
+     * The first value is written as a ZigZag variable-length [Long], followed by the differences between consecutive
+     * values, written like the values of a [BIT_PACKED] column. Suited to regular series, such as timestamps sampled at
+     * a fixed rate.
+     */
+    DELTA_BIT_PACKED,
+
+}
@@ -0,0 +1,76 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Cursor over the bytes of a complete batch, reading the values of its columns.
+ *
+ * All the reads check that the bytes they need are available, and throw an [IllegalStateException] otherwise, so that
+ * a malformed batch never reads past the bytes of the batch.
+ */
+internal class ColumnInput(private val bytes: ByteArray, private var position: Int, private val limit: Int) {
+
+    /**
+     * The number of bytes left to read.
+     */
+    val remaining: Int
+        get() = limit - position
+
+    /**
+     * Checks that at least [count] bytes are left to read.
+     */
+    fun require(count: Long) {
+        check(count <= remaining) { "Truncated batch, $count bytes expected but only $remaining remaining" }
+    }
+
+    /**
+     * Checks that [rows] values of [width] bytes are left to read, and returns [rows].
+     */
+    fun checkPlain(rows: Int, width: Int): Int {
+        require(rows.toLong() * width)
+        return rows
+    }
+
+    fun readByte(): Int {
+        require(1)
+        return bytes[position++].toInt() and 0xFF
+    }
+
+    fun readVarLong(): Long {
+        var value = 0L
+        var shift = 0
+        while (true) {
+            val byte = readByte()
+            // the tenth byte only holds the most significant bit
+            check(shift < 63 || byte <= 1) { "Variable-length long is too long" }
+            value = value or ((byte and 0x7F).toLong() shl shift)
+            if (byte and 0x80 == 0) return value
+            shift += 7
+        }
+    }
+
+    /**
+     * Reads [length] bytes (at most 8) as the least significant bytes of a little-endian [Long]. The bytes must have
+     * been [required][require] beforehand.
+     */
+    fun readLittleEndian(length: Int): Long {
+        var value = 0L
+        for (i in 0 until length) {
+            value = value or ((bytes[position + i].toLong() and 0xFF) shl (i * Byte.SIZE_BITS))
+        }
+        position += length
+        return value
+    }
+
+    /**
+     * Returns a view of the next [length] bytes in the given [order], and skips them. The bytes must have been
+     * [required][require] beforehand.
+     */
+    fun view(length: Int, order: ByteOrder): ByteBuffer {
+        val view = ByteBuffer.wrap(bytes, position, length).slice().order(order)
+        position += length
+        return view
+    }
+
+}
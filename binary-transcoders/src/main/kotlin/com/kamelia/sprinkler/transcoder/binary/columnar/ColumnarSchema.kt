@@ -0,0 +1,213 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.transcoder.core.Transcoder
+import java.nio.ByteOrder
+import java.util.function.ToDoubleFunction
+import java.util.function.ToIntFunction
+import java.util.function.ToLongFunction
+
+/**
+ * Schema of a columnar batch, encoding a [List] of objects of type [E] column by column instead of object by object.
+ *
+ * A schema is made of columns, each of them holding a primitive field of the objects, read by an extractor given to the
+ * [Builder]. Where [toCollection][com.kamelia.sprinkler.transcoder.binary.encoder.toCollection] writes the fields of
+ * each object one after the other, a schema writes all the values of the first column, then all the values of the
+ * second one, and so on. Each column is thus a contiguous run of values of the same type, which can be written and read
+ * in bulk, or compressed with the [ColumnEncoding] of the column.
+ *
+ * A batch is encoded as follows:
+ * - the number of bytes of the rest of the batch, encoded as a variable-length [Int];
+ * - the number of rows of the batch, encoded as a variable-length [Long];
+ * - each column in declaration order, encoded according to its [ColumnEncoding].
+ *
+ * The batches can be decoded either into objects, with the [decoder] returned for a [RowReader], or directly into
+ * primitive arrays, with the [columnsDecoder], avoiding to create the objects at all when only some columns are needed.
+ *
+ * Here is an example of a schema of points sampled at a fixed rate:
+ *
+ * ```
+ * data class Point(val timestamp: Long, val x: Float, val y: Float)
+ *
+ * val schema = ColumnarSchema.builder<Point>()
+ *     .longColumn(ColumnEncoding.DELTA_BIT_PACKED) { it.timestamp }
+ *     .floatColumn { it.x }
+ *     .floatColumn { it.y }
+ *     .build()
+ *
+ * val transcoder = schema.transcoder { batch, row ->
+ *     Point(batch.longs(0)[row], batch.floats(1)[row], batch.floats(2)[row])
+ * }
+ * ```
+ *
+ * A schema is immutable and can be shared, each call to [encoder], [decoder], [columnsDecoder] and [transcoder]
+ * returning a new instance.
+ *
+ * @param E the type of the objects of the batches
+ * @see ColumnEncoding
+ * @see ColumnBatch
+ */
+sealed interface ColumnarSchema<E> {
+
+    /**
+     * The number of columns of the schema.
+     */
+    val columnCount: Int
+
+    /**
+     * The endianness of the values of the [PLAIN][ColumnEncoding.PLAIN] columns.
+     */
+    val endianness: ByteOrder
+
+    /**
+     * Returns an [Encoder] writing a [List] of objects as a batch of this schema.
+     *
+     * The values of each column are first extracted from the objects into a primitive array, and then written at once.
+     * The encoder is stateless, and can thus be used concurrently.
+     *
+     * @return the [Encoder] of the batches of this schema
+     */
+    fun encoder(): Encoder<List<E>>
+
+    /**
+     * Returns a [Decoder] reading a batch of this schema into a [ColumnBatch], holding a primitive array per column.
+     *
+     * The decoder is resumable: the bytes of a batch are accumulated until the batch is complete, and then decoded at
+     * once. A malformed batch (e.g. a truncated column or an invalid bit width) makes the decoder return a
+     * [Decoder.State.Error]. The size of the batch is checked against [maxBatchSize] before its bytes are accumulated,
+     * so that a malicious or corrupted size cannot make the decoder allocate an arbitrary amount of memory.
+     *
+     * @param maxBatchSize the maximum size of a batch, in bytes, its size prefix excluded (defaults to 16 MiB)
+     * @return the [Decoder] of the columns of the batches of this schema
+     * @throws IllegalArgumentException if [maxBatchSize] is negative
+     */
+    fun columnsDecoder(maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE): Decoder<ColumnBatch>
+
+    /**
+     * Returns a [Decoder] reading a batch of this schema into a [List] of objects, each object being created by the
+     * given [reader] from the [ColumnBatch] decoded by the [columnsDecoder].
+     *
+     * @param maxBatchSize the maximum size of a batch, in bytes, its size prefix excluded (defaults to 16 MiB)
+     * @param reader the function creating an object from a row of a batch
+     * @return the [Decoder] of the batches of this schema
+     * @throws IllegalArgumentException if [maxBatchSize] is negative
+     */
+    fun decoder(maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE, reader: RowReader<E>): Decoder<List<E>>
+
+    /**
+     * Returns a [Transcoder] made of the [encoder] and of the [decoder] returned for the given [reader].
+     *
+     * @param maxBatchSize the maximum size of a decoded batch, in bytes, its size prefix excluded (defaults to 16 MiB)
+     * @param reader the function creating an object from a row of a batch
+     * @return the [Transcoder] of the batches of this schema
+     * @throws IllegalArgumentException if [maxBatchSize] is negative
+     */
+    fun transcoder(maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE, reader: RowReader<E>): Transcoder<List<E>>
+
+    /**
+     * Function creating an object of type [E] from a row of a [ColumnBatch].
+     *
+     * @param E the type of the created objects
+     */
+    fun interface RowReader<E> {
+
+        /**
+         * Creates the object stored in the given [row] of the [batch].
+         *
+         * @param batch the batch holding the columns
+         * @param row the index of the row in the batch
+         * @return the created object
+         */
+        fun read(batch: ColumnBatch, row: Int): E
+
+    }
+
+    /**
+     * Function extracting a [Float] from an object of type [E], without boxing it.
+     *
+     * @param E the type of the objects
+     */
+    fun interface ToFloatFunction<E> {
+
+        /**
+         * Returns the [Float] extracted from the given [value].
+         *
+         * @param value the object
+         * @return the extracted [Float]
+         */
+        fun applyAsFloat(value: E): Float
+
+    }
+
+    /**
+     * Builder of a [ColumnarSchema]. The columns are indexed in the order in which they are added, starting at `0`.
+     *
+     * **NOTE**: This builder is not thread-safe.
+     *
+     * @param E the type of the objects of the batches
+     */
+    sealed interface Builder<E> {
+
+        /**
+         * Adds an [Int] column, whose values are extracted by the given [extractor].
+         *
+         * @param encoding the encoding of the column (defaults to [ColumnEncoding.PLAIN])
+         * @param extractor the function extracting the value of the column from an object
+         * @return this builder
+         */
+        fun intColumn(encoding: ColumnEncoding = ColumnEncoding.PLAIN, extractor: ToIntFunction<E>): Builder<E>
+
+        /**
+         * Adds a [Long] column, whose values are extracted by the given [extractor].
+         *
+         * @param encoding the encoding of the column (defaults to [ColumnEncoding.PLAIN])
+         * @param extractor the function extracting the value of the column from an object
+         * @return this builder
+         */
+        fun longColumn(encoding: ColumnEncoding = ColumnEncoding.PLAIN, extractor: ToLongFunction<E>): Builder<E>
+
+        /**
+         * Adds a [Float] column, whose values are extracted by the given [extractor]. The column is always encoded with
+         * the [PLAIN][ColumnEncoding.PLAIN] encoding.
+         *
+         * @param extractor the function extracting the value of the column from an object
+         * @return this builder
+         */
+        fun floatColumn(extractor: ToFloatFunction<E>): Builder<E>
+
+        /**
+         * Adds a [Double] column, whose values are extracted by the given [extractor]. The column is always encoded
+         * with the [PLAIN][ColumnEncoding.PLAIN] encoding.
+         *
+         * @param extractor the function extracting the value of the column from an object
+         * @return this builder
+         */
+        fun doubleColumn(extractor: ToDoubleFunction<E>): Builder<E>
+
+        /**
+         * Builds the [ColumnarSchema] made of the columns added so far.
+         *
+         * @param endianness the endianness of the values of the [PLAIN][ColumnEncoding.PLAIN] columns (defaults to
+         * [ByteOrder.BIG_ENDIAN])
+         * @return the built schema
+         * @throws IllegalStateException if no column has been added
+         */
+        fun build(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): ColumnarSchema<E>
+
+    }
+
+    companion object {
+
+        /**
+         * Creates a new [Builder] of [ColumnarSchema].
+         *
+         * @return a new builder
+         * @param E the type of the objects of the batches
+         */
+        @JvmStatic
+        fun <E> builder(): Builder<E> = ColumnarSchemaImpl.BuilderImpl()
+
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.VarIntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.PrefixedSizeItemDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.mapResult
+import com.kamelia.sprinkler.transcoder.binary.decoder.mapState
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.varLongSize
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.writeVarLong
+import com.kamelia.sprinkler.transcoder.binary.transcoder.core.Transcoder
+import java.nio.ByteOrder
+import java.util.function.ToDoubleFunction
+import java.util.function.ToIntFunction
+import java.util.function.ToLongFunction
+
+internal const val DEFAULT_MAX_BATCH_SIZE = 16 * 1024 * 1024
+
+internal class ColumnarSchemaImpl<E>(
+    private val columns: Array<Column<E>>,
+    override val endianness: ByteOrder,
+) : ColumnarSchema<E> {
+
+    override val columnCount: Int
+        get() = columns.size
+
+    override fun encoder(): Encoder<List<E>> = BatchEncoder()
+
+    override fun columnsDecoder(maxBatchSize: Int): Decoder<ColumnBatch> {
+        require(maxBatchSize >= 0) { "Maximum batch size must be positive (was $maxBatchSize)" }
+        // checked before the accumulator is allocated, as the size cannot be trusted
+        val sizeDecoder = VarIntDecoder().mapState { size ->
+            if (size <= maxBatchSize) {
+                Decoder.State.Done(size)
+            } else {
+                Decoder.State.Error("Batch size ($size) exceeds the maximum batch size ($maxBatchSize)")
+            }
+        }
+        return PrefixedSizeItemDecoder(sizeDecoder) { size -> readBatch(this, size) }.mapState { it }
+    }
+
+    override fun decoder(maxBatchSize: Int, reader: ColumnarSchema.RowReader<E>): Decoder<List<E>> =
+        columnsDecoder(maxBatchSize).mapResult { batch -> List(batch.size) { reader.read(batch, it) } }
+
+    override fun transcoder(maxBatchSize: Int, reader: ColumnarSchema.RowReader<E>): Transcoder<List<E>> =
+        Transcoder.create(encoder(), decoder(maxBatchSize, reader))
+
+    // the bytes of the batch are complete, the state is thus either done or an error
+    private fun readBatch(bytes: ByteArray, size: Int): Decoder.State<ColumnBatch> = try {
+        val input = ColumnInput(bytes, 0, size)
+        val rows = input.readVarLong()
+        check(rows in 0..Int.MAX_VALUE) { "Invalid number of rows $rows" }
+        val values = Array(columns.size) { columns[it].read(input, rows.toInt(), endianness) }
+        check(input.remaining == 0) { "Batch has ${input.remaining} trailing bytes" }
+        Decoder.State.Done(ColumnBatch(rows.toInt(), values))
+    } catch (e: IllegalStateException) {
+        Decoder.State.Error(e)
+    }
+
+    private inner class BatchEncoder : Encoder<List<E>> {
+
+        override fun encode(obj: List<E>, output: EncoderOutput) {
+            val values = extract(obj)
+            val bodySize = bodySize(obj.size, values)
+            require(bodySize <= Int.MAX_VALUE) { "Batch is too large to be encoded ($bodySize bytes)" }
+
+            writeVarLong(bodySize, output)
+            writeVarLong(obj.size.toLong(), output)
+            val scratch = if (columns.any { it.encoding != ColumnEncoding.PLAIN }) {
+                ByteArray(PACKED_SCRATCH_SIZE)
+            } else {
+                EMPTY_SCRATCH
+            }
+            columns.forEachIndexed { index, column -> column.write(values[index], output, endianness, scratch) }
+        }
+
+        override fun encodedSize(obj: List<E>): Long {
+            val bodySize = bodySize(obj.size, extract(obj))
+            return if (bodySize <= Int.MAX_VALUE) varLongSize(bodySize) + bodySize else -1
+        }
+
+        // upper bound computed without extracting the values
+        override fun sizeHint(obj: List<E>): Int {
+            var bodySize = varLongSize(obj.size.toLong())
+            columns.forEach { bodySize += it.maxEncodedSize(obj.size) }
+            val size = varLongSize(bodySize) + bodySize
+            return if (size <= Int.MAX_VALUE) size.toInt() else -1
+        }
+
+        private fun extract(rows: List<E>): Array<Any> = Array(columns.size) { columns[it].extract(rows) }
+
+        private fun bodySize(rows: Int, values: Array<Any>): Long {
+            var size = varLongSize(rows.toLong())
+            columns.forEachIndexed { index, column -> size += column.encodedSize(values[index]) }
+            return size
+        }
+
+    }
+
+    class BuilderImpl<E> : ColumnarSchema.Builder<E> {
+
+        private val columns = ArrayList<Column<E>>()
+
+        override fun intColumn(encoding: ColumnEncoding, extractor: ToIntFunction<E>): ColumnarSchema.Builder<E> =
+            apply { columns += Column.OfInt(extractor, encoding) }
+
+        override fun longColumn(encoding: ColumnEncoding, extractor: ToLongFunction<E>): ColumnarSchema.Builder<E> =
+            apply { columns += Column.OfLong(extractor, encoding) }
+
+        override fun floatColumn(extractor: ColumnarSchema.ToFloatFunction<E>): ColumnarSchema.Builder<E> =
+            apply { columns += Column.OfFloat(extractor) }
+
+        override fun doubleColumn(extractor: ToDoubleFunction<E>): ColumnarSchema.Builder<E> =
+            apply { columns += Column.OfDouble(extractor) }
+
+        override fun build(endianness: ByteOrder): ColumnarSchema<E> {
+            check(columns.isNotEmpty()) { "A schema must have at least one column" }
+            return ColumnarSchemaImpl(columns.toTypedArray(), endianness)
+        }
+
+    }
+
+    private companion object {
+
+        val EMPTY_SCRATCH = ByteArray(0)
+
+    }
+
+}
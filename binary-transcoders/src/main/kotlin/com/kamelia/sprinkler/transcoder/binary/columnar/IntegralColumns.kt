@@ -0,0 +1,226 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.varLongSize
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.writeVarLong
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.zigZag
+import kotlin.math.min
+
+/**
+ * Number of values of a block of a bit-packed column.
+ */
+internal const val BLOCK_SIZE = 128
+
+/**
+ * Size of the scratch array in which a block of a bit-packed column is packed before being written.
+ */
+internal const val PACKED_SCRATCH_SIZE = BLOCK_SIZE * Long.SIZE_BYTES
+
+// maximum size of the header of a block: its minimum as a variable-length long, and its bit width
+private const val MAX_BLOCK_HEADER_SIZE = 11
+
+private const val MAX_VAR_LONG_SIZE = 10
+
+/**
+ * Returns the exact number of bytes written by [writeIntegral] for the given [values].
+ */
+internal fun integralSize(values: LongArray, encoding: ColumnEncoding): Long = when (encoding) {
+    ColumnEncoding.DELTA -> {
+        var size = 0L
+        var previous = 0L
+        for (value in values) {
+            size += varLongSize(zigZag(value - previous))
+            previous = value
+        }
+        size
+    }
+    ColumnEncoding.BIT_PACKED -> packedSize(values.size) { values[it] }
+    ColumnEncoding.DELTA_BIT_PACKED -> if (values.isEmpty()) {
+        0L
+    } else {
+        varLongSize(zigZag(values[0])) + packedSize(values.size - 1) { values[it + 1] - values[it] }
+    }
+    ColumnEncoding.PLAIN -> throw AssertionError("Plain columns are not integral columns")
+}
+
+/**
+ * Returns an upper bound of the number of bytes written by [writeIntegral] for [rows] values, [width] being the size
+ * of a value in a [PLAIN][ColumnEncoding.PLAIN] column.
+ */
+internal fun maxIntegralSize(rows: Int, encoding: ColumnEncoding, width: Int): Long = when (encoding) {
+    ColumnEncoding.PLAIN -> rows.toLong() * width
+    ColumnEncoding.DELTA -> rows.toLong() * MAX_VAR_LONG_SIZE
+    // the differences of a column of ints may need one more bit than an int, hence a whole long
+    ColumnEncoding.BIT_PACKED,
+    ColumnEncoding.DELTA_BIT_PACKED,
+    -> MAX_VAR_LONG_SIZE + rows.toLong() * Long.SIZE_BYTES + blockCount(rows).toLong() * MAX_BLOCK_HEADER_SIZE
+}
+
+/**
+ * Writes the given [values] with the given integral [encoding].
+ */
+internal fun writeIntegral(values: LongArray, encoding: ColumnEncoding, output: EncoderOutput, scratch: ByteArray) {
+    when (encoding) {
+        ColumnEncoding.DELTA -> {
+            var previous = 0L
+            for (value in values) {
+                writeVarLong(zigZag(value - previous), output)
+                previous = value
+            }
+        }
+        ColumnEncoding.BIT_PACKED -> writePacked(values.size, output, scratch) { values[it] }
+        ColumnEncoding.DELTA_BIT_PACKED -> if (values.isNotEmpty()) {
+            writeVarLong(zigZag(values[0]), output)
+            writePacked(values.size - 1, output, scratch) { values[it + 1] - values[it] }
+        }
+        ColumnEncoding.PLAIN -> throw AssertionError("Plain columns are not integral columns")
+    }
+}
+
+/**
+ * Checks that the [input] holds enough bytes for [rows] values with the given integral [encoding], before allocating
+ * the array of the column, and returns [rows].
+ *
+ * @throws IllegalStateException if the input is too small
+ */
+internal fun checkIntegral(input: ColumnInput, rows: Int, encoding: ColumnEncoding): Int {
+    val minSize = when (encoding) {
+        ColumnEncoding.DELTA -> rows.toLong() // at least one byte per value
+        else -> blockCount(rows) * 2L // at least the minimum and the bit width of each block
+    }
+    input.require(minSize)
+    return rows
+}
+
+/**
+ * Reads [rows] values with the given integral [encoding], passing each of them to [store] along with its index.
+ *
+ * @throws IllegalStateException if the column is malformed
+ */
+internal inline fun readIntegral(
+    input: ColumnInput,
+    rows: Int,
+    encoding: ColumnEncoding,
+    store: (Int, Long) -> Unit,
+) {
+    when (encoding) {
+        ColumnEncoding.DELTA -> {
+            var previous = 0L
+            for (i in 0 until rows) {
+                previous += unZigZag(input.readVarLong())
+                store(i, previous)
+            }
+        }
+        ColumnEncoding.BIT_PACKED -> readPacked(input, rows, store)
+        ColumnEncoding.DELTA_BIT_PACKED -> if (rows > 0) {
+            var previous = unZigZag(input.readVarLong())
+            store(0, previous)
+            readPacked(input, rows - 1) { index, delta ->
+                previous += delta
+                store(index + 1, previous)
+            }
+        }
+        ColumnEncoding.PLAIN -> throw AssertionError("Plain columns are not integral columns")
+    }
+}
+
+internal fun unZigZag(value: Long): Long = (value ushr 1) xor -(value and 1)
+
+private fun blockCount(count: Int): Int = (count + BLOCK_SIZE - 1) / BLOCK_SIZE
+
+// width in bits of the largest difference between the values of the block and its minimum
+private inline fun blockWidth(from: Int, to: Int, min: Long, value: (Int) -> Long): Int {
+    var bits = 0L
+    for (i in from until to) {
+        bits = bits or (value(i) - min)
+    }
+    return Long.SIZE_BITS - bits.countLeadingZeroBits()
+}
+
+private inline fun blockMin(from: Int, to: Int, value: (Int) -> Long): Long {
+    var min = value(from)
+    for (i in from + 1 until to) {
+        min = min(min, value(i))
+    }
+    return min
+}
+
+private inline fun packedSize(count: Int, value: (Int) -> Long): Long {
+    var size = 0L
+    for (from in 0 until count step BLOCK_SIZE) {
+        val to = min(from + BLOCK_SIZE, count)
+        val min = blockMin(from, to, value)
+        val width = blockWidth(from, to, min, value)
+        size += varLongSize(zigZag(min)) + 1 + ((to - from) * width + 7) / 8
+    }
+    return size
+}
+
+// the differences are packed LSB-first, in an accumulator flushed to the scratch array 64 bits at a time
+private inline fun writePacked(count: Int, output: EncoderOutput, scratch: ByteArray, value: (Int) -> Long) {
+    for (from in 0 until count step BLOCK_SIZE) {
+        val to = min(from + BLOCK_SIZE, count)
+        val min = blockMin(from, to, value)
+        val width = blockWidth(from, to, min, value)
+        writeVarLong(zigZag(min), output)
+        output.write(width)
+        if (width == 0) continue
+
+        var accumulator = 0L
+        var bits = 0
+        var position = 0
+        for (i in from until to) {
+            val difference = value(i) - min
+            accumulator = accumulator or (difference shl bits)
+            val total = bits + width
+            if (total < Long.SIZE_BITS) {
+                bits = total
+                continue
+            }
+            for (shift in 0 until Long.SIZE_BITS step Byte.SIZE_BITS) {
+                scratch[position++] = (accumulator ushr shift).toByte()
+            }
+            // keeps the bits of the difference which did not fit in the accumulator
+            accumulator = if (bits == 0) 0L else difference ushr (Long.SIZE_BITS - bits)
+            bits = total - Long.SIZE_BITS
+        }
+        while (bits > 0) {
+            scratch[position++] = accumulator.toByte()
+            accumulator = accumulator ushr Byte.SIZE_BITS
+            bits -= Byte.SIZE_BITS
+        }
+        output.write(scratch, 0, position)
+    }
+}
+
+internal inline fun readPacked(input: ColumnInput, count: Int, store: (Int, Long) -> Unit) {
+    for (from in 0 until count step BLOCK_SIZE) {
+        val to = min(from + BLOCK_SIZE, count)
+        val min = unZigZag(input.readVarLong())
+        val width = input.readByte()
+        check(width <= Long.SIZE_BITS) { "Invalid bit width $width, must be at most ${Long.SIZE_BITS}" }
+        var remaining = ((to - from) * width + 7) / 8
+        input.require(remaining.toLong())
+
+        val mask = if (width == Long.SIZE_BITS) -1L else (1L shl width) - 1
+        var accumulator = 0L
+        var bits = 0 // always less than 64, a refill consuming at least one bit
+        for (i in from until to) {
+            val difference: Long
+            if (bits >= width) {
+                difference = accumulator and mask
+                accumulator = accumulator ushr width
+                bits -= width
+            } else {
+                val length = min(Long.SIZE_BYTES, remaining)
+                val next = input.readLittleEndian(length)
+                remaining -= length
+                difference = (accumulator or (next shl bits)) and mask
+                val used = width - bits
+                accumulator = if (used == Long.SIZE_BITS) 0L else next ushr used
+                bits = length * Byte.SIZE_BITS - used
+            }
+            store(i, min + difference)
+        }
+    }
+}
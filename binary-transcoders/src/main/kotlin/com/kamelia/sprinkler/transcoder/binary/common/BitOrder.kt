@@ -2,6 +2,11 @@ package com.kamelia.sprinkler.transcoder.binary.common
 
 /**
  * The order in which bits are read from a byte.
+ *
+ * The order also defines how the bits are numbered when reading or writing a range of bits of a byte (bit `0` being the
+ * first bit read or written), and how the bits are arranged in a value read or written at once (the first bit being the
+ * most significant bit of the value with [MSB_FIRST], and the least significant bit of the value with [LSB_FIRST]).
+ * In both cases, reading or writing 8 bits at once on a byte boundary yields the byte unchanged.
  */
 enum class BitOrder {
 
@@ -13,7 +18,7 @@ enum class BitOrder {
     /**
      * Least significant bit first.
      */
-//    LSB_FIRST,
+    LSB_FIRST,
     ;
 
     /**
@@ -21,7 +26,7 @@ enum class BitOrder {
      *
      * @return `true` if this is [MSB_FIRST]
      */
-//    val isMsbFirst: Boolean
-//        get() = this === MSB_FIRST
+    val isMsbFirst: Boolean
+        get() = this === MSB_FIRST
 
 }
@@ -0,0 +1,121 @@
+package com.kamelia.sprinkler.transcoder.binary.common
+
+import java.nio.ByteBuffer
+
+/**
+ * Pool of [ByteArrays][ByteArray] and direct [ByteBuffers][ByteBuffer], used by decoders and outputs to reuse their
+ * scratch buffers instead of allocating new ones.
+ *
+ * A buffer acquired from a pool may be larger than the requested size, and may contain the bytes written by its
+ * previous user. Once it is not used anymore, it should be given back with [release] (resp. [releaseDirect]), after
+ * which it must not be used nor released again, as it may be handed to another user at any time.
+ *
+ * Two implementations are provided:
+ * - [noOp], allocating a new buffer of the exact requested size on each acquisition and dropping the released ones,
+ * which is the default of the decoders and outputs accepting a pool;
+ * - [create], pooling the buffers by size classes.
+ *
+ * @see com.kamelia.sprinkler.transcoder.binary.decoder.core.PrefixedSizeItemDecoder
+ * @see com.kamelia.sprinkler.transcoder.binary.decoder.core.MarkerEndedItemDecoder
+ * @see com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput.toByteArray
+ */
+interface BufferPool {
+
+    /**
+     * Acquires an array of at least [minSize] bytes.
+     *
+     * @param minSize the minimum size of the array
+     * @return the acquired array
+     * @throws IllegalArgumentException if [minSize] is negative
+     */
+    fun acquire(minSize: Int): ByteArray
+
+    /**
+     * Releases the given [array] to this pool. The array must not be used after this call.
+     *
+     * @param array the array to release
+     */
+    fun release(array: ByteArray)
+
+    /**
+     * Acquires a cleared direct buffer with a capacity of at least [minCapacity] bytes.
+     *
+     * @param minCapacity the minimum capacity of the buffer
+     * @return the acquired buffer
+     * @throws IllegalArgumentException if [minCapacity] is negative
+     */
+    fun acquireDirect(minCapacity: Int): ByteBuffer
+
+    /**
+     * Releases the given direct [buffer] to this pool. The buffer must not be used after this call.
+     *
+     * @param buffer the buffer to release
+     */
+    fun releaseDirect(buffer: ByteBuffer)
+
+    companion object {
+
+        /**
+         * Returns a [BufferPool] which does not pool anything. Each acquisition allocates a new buffer of the exact
+         * requested size, and the released buffers are left to the garbage collector.
+         *
+         * @return the [BufferPool] which does not pool anything
+         */
+        @JvmStatic
+        fun noOp(): BufferPool = NoOpBufferPool
+
+        /**
+         * Creates a thread-safe [BufferPool] pooling the buffers by size classes.
+         *
+         * The sizes are rounded up to the next power of two, from 64 bytes to [maxBufferSize], each power of two being
+         * a size class with its own buffers. Larger buffers are allocated with the exact requested size and are never
+         * retained. The released buffers are first kept in a cache bound to the releasing thread, holding up to
+         * [threadCacheSize] buffers of each size class up to 64 KiB, so that a thread acquiring and releasing buffers
+         * does not contend with the other ones. The other released buffers are kept in a shared store, as long as the
+         * total size of its buffers does not exceed [maxRetainedBytes].
+         *
+         * @param maxBufferSize the size of the largest pooled buffers, rounded up to a power of two (defaults to 1 MiB)
+         * @param maxRetainedBytes the maximum total size of the buffers kept in the shared store (defaults to 32 MiB)
+         * @param threadCacheSize the number of buffers of each size class cached by each thread (defaults to 4)
+         * @return the created [BufferPool]
+         * @throws IllegalArgumentException if [maxBufferSize] is lower than 64 or greater than 2^30, or if
+         * [maxRetainedBytes] or [threadCacheSize] is negative
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun create(
+            maxBufferSize: Int = 1 shl 20,
+            maxRetainedBytes: Long = 32L shl 20,
+            threadCacheSize: Int = 4,
+        ): BufferPool {
+            require(maxBufferSize in SizeClassBufferPool.MIN_SIZE..(1 shl 30)) {
+                "Maximum buffer size must be between ${SizeClassBufferPool.MIN_SIZE} and 2^30 (was $maxBufferSize)"
+            }
+            require(maxRetainedBytes >= 0) { "Maximum retained bytes must be positive (was $maxRetainedBytes)" }
+            require(threadCacheSize >= 0) { "Thread cache size must be positive (was $threadCacheSize)" }
+            return SizeClassBufferPool(maxBufferSize, maxRetainedBytes, threadCacheSize)
+        }
+
+    }
+
+}
+
+private object NoOpBufferPool : BufferPool {
+
+    override fun acquire(minSize: Int): ByteArray {
+        require(minSize >= 0) { "Size must be positive (was $minSize)" }
+        return ByteArray(minSize)
+    }
+
+    override fun release(array: ByteArray) = Unit
+
+    override fun acquireDirect(minCapacity: Int): ByteBuffer {
+        require(minCapacity >= 0) { "Capacity must be positive (was $minCapacity)" }
+        return ByteBuffer.allocateDirect(minCapacity)
+    }
+
+    override fun releaseDirect(buffer: ByteBuffer) = Unit
+
+    override fun toString(): String = "BufferPool.noOp()"
+
+}
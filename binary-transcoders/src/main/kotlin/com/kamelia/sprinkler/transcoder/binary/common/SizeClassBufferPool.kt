@@ -0,0 +1,135 @@
+package com.kamelia.sprinkler.transcoder.binary.common
+
+import java.nio.ByteBuffer
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * [BufferPool] pooling the buffers by size classes, each size class being a power of two between [MIN_SIZE] and
+ * [maxBufferSize]. The arrays and the direct buffers are pooled separately, but the [maxRetainedBytes] limit of the
+ * shared stores applies to their sum.
+ *
+ * A buffer is only pooled if its size is exactly the one of a size class, which is the case of all the buffers of at
+ * most [maxBufferSize] bytes acquired from this pool. The other released buffers are dropped.
+ */
+internal class SizeClassBufferPool(
+    maxBufferSize: Int,
+    private val maxRetainedBytes: Long,
+    threadCacheSize: Int,
+) : BufferPool {
+
+    private val maxBufferSize = Integer.highestOneBit(maxBufferSize - 1) shl 1
+
+    private val retainedBytes = AtomicLong()
+
+    private val arrays = SizeClasses<ByteArray>(threadCacheSize, { ByteArray(it) }) { it.size }
+
+    private val directBuffers = SizeClasses<ByteBuffer>(threadCacheSize, ByteBuffer::allocateDirect) { it.capacity() }
+
+    override fun acquire(minSize: Int): ByteArray {
+        require(minSize >= 0) { "Size must be positive (was $minSize)" }
+        return arrays.acquire(minSize)
+    }
+
+    override fun release(array: ByteArray) = arrays.release(array)
+
+    override fun acquireDirect(minCapacity: Int): ByteBuffer {
+        require(minCapacity >= 0) { "Capacity must be positive (was $minCapacity)" }
+        return directBuffers.acquire(minCapacity).clear()
+    }
+
+    override fun releaseDirect(buffer: ByteBuffer) {
+        if (buffer.isDirect) {
+            directBuffers.release(buffer)
+        }
+    }
+
+    override fun toString(): String =
+        "BufferPool(maxBufferSize=$maxBufferSize, maxRetainedBytes=$maxRetainedBytes, retained=${retainedBytes.get()})"
+
+    private inner class SizeClasses<T : Any>(
+        private val threadCacheSize: Int,
+        private val allocate: (Int) -> T,
+        private val sizeOf: (T) -> Int,
+    ) {
+
+        private val classCount = sizeClass(maxBufferSize) + 1
+
+        private val threadCacheClassCount = minOf(classCount, sizeClass(MAX_THREAD_CACHED_SIZE) + 1)
+
+        private val shared = Array(classCount) { ArrayDeque<T>() }
+
+        private val threadCaches = ThreadLocal.withInitial { ThreadCache() }
+
+        fun acquire(minSize: Int): T {
+            if (minSize > maxBufferSize) return allocate(minSize)
+            val sizeClass = sizeClass(minSize)
+            if (sizeClass < threadCacheClassCount) {
+                threadCaches.get().poll(sizeClass)?.let { return it }
+            }
+            val store = shared[sizeClass]
+            val pooled = synchronized(store) { store.removeLastOrNull() }
+            if (pooled != null) {
+                retainedBytes.addAndGet(-sizeOf(pooled).toLong())
+                return pooled
+            }
+            return allocate(MIN_SIZE shl sizeClass)
+        }
+
+        fun release(buffer: T) {
+            val size = sizeOf(buffer)
+            if (size < MIN_SIZE || size > maxBufferSize || size and (size - 1) != 0) return // not from this pool
+            val sizeClass = sizeClass(size)
+            if (sizeClass < threadCacheClassCount && threadCaches.get().offer(sizeClass, buffer)) return
+            if (retainedBytes.addAndGet(size.toLong()) > maxRetainedBytes) { // the buffer is dropped
+                retainedBytes.addAndGet(-size.toLong())
+                return
+            }
+            val store = shared[sizeClass]
+            synchronized(store) { store.addLast(buffer) }
+        }
+
+        private inner class ThreadCache {
+
+            private val buffers = Array(threadCacheClassCount) { arrayOfNulls<Any>(threadCacheSize) }
+
+            private val counts = IntArray(threadCacheClassCount)
+
+            fun poll(sizeClass: Int): T? {
+                val count = counts[sizeClass]
+                if (count == 0) return null
+                val buffers = buffers[sizeClass]
+                counts[sizeClass] = count - 1
+                @Suppress("UNCHECKED_CAST")
+                val buffer = buffers[count - 1] as T
+                buffers[count - 1] = null
+                return buffer
+            }
+
+            fun offer(sizeClass: Int, buffer: T): Boolean {
+                val count = counts[sizeClass]
+                val buffers = buffers[sizeClass]
+                if (count == buffers.size) return false
+                buffers[count] = buffer
+                counts[sizeClass] = count + 1
+                return true
+            }
+
+        }
+
+    }
+
+    companion object {
+
+        const val MIN_SIZE = 64
+
+        private const val MIN_SHIFT = 6
+
+        private const val MAX_THREAD_CACHED_SIZE = 64 * 1024
+
+        // index of the smallest size class containing the given size
+        private fun sizeClass(size: Int): Int =
+            if (size <= MIN_SIZE) 0 else Int.SIZE_BITS - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT
+
+    }
+
+}
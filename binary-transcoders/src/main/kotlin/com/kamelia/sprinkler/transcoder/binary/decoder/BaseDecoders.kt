@@ -17,64 +17,64 @@ import java.nio.charset.Charset
 /**
  * Creates a [Decoder] that reads a single [Byte] from the input.
  *
- * @return a [Decoder] that reads a single [Byte] from the input
+ * @return a [PrimitiveDecoder] that reads a single [Byte] from the input
  */
-fun ByteDecoder(): Decoder<Byte> = ConstantSizedItemDecoder(Byte.SIZE_BYTES) { readByte() }
+fun ByteDecoder(): PrimitiveDecoder<Byte> = ConstantSizedPrimitiveDecoder.OfByte()
 
 /**
  * Creates a [Decoder] that reads a [Short] from the input. The endianness of the short is specified by the [endianness]
  * parameter.
  *
  * @param endianness the endianness of the short (defaults to [ByteOrder.BIG_ENDIAN])
- * @return a [Decoder] that reads [Short] from the input
+ * @return a [PrimitiveDecoder] that reads [Short] from the input
  */
 @JvmOverloads
-fun ShortDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Decoder<Short> =
-    ConstantSizedItemDecoder(Short.SIZE_BYTES) { readShort(endianness) }
+fun ShortDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): PrimitiveDecoder<Short> =
+    ConstantSizedPrimitiveDecoder.OfShort(endianness)
 
 /**
  * Creates a [Decoder] that reads an [Int] from the input. The endianness of the int is specified by the [endianness]
  * parameter.
  *
  * @param endianness the endianness of the int (defaults to [ByteOrder.BIG_ENDIAN])
- * @return a [Decoder] that reads [Int] from the input
+ * @return a [PrimitiveDecoder] that reads [Int] from the input
  */
 @JvmOverloads
-fun IntDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Decoder<Int> =
-    ConstantSizedItemDecoder(Int.SIZE_BYTES) { readInt(endianness) }
+fun IntDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): PrimitiveDecoder<Int> =
+    ConstantSizedPrimitiveDecoder.OfInt(endianness)
 
 /**
  * Creates a [Decoder] that reads a [Long] from the input. The endianness of the long is specified by the [endianness]
  * parameter.
  *
  * @param endianness the endianness of the long (defaults to [ByteOrder.BIG_ENDIAN])
- * @return a [Decoder] that reads [Long] from the input
+ * @return a [PrimitiveDecoder] that reads [Long] from the input
  */
 @JvmOverloads
-fun LongDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Decoder<Long> =
-    ConstantSizedItemDecoder(Long.SIZE_BYTES) { readLong(endianness) }
+fun LongDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): PrimitiveDecoder<Long> =
+    ConstantSizedPrimitiveDecoder.OfLong(endianness)
 
 /**
  * Creates a [Decoder] that reads a [Float] from the input. The endianness of the float is specified by the [endianness]
  * parameter.
  *
  * @param endianness the endianness of the float (defaults to [ByteOrder.BIG_ENDIAN])
- * @return a [Decoder] that reads [Float] from the input
+ * @return a [PrimitiveDecoder] that reads [Float] from the input
  */
 @JvmOverloads
-fun FloatDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Decoder<Float> =
-    ConstantSizedItemDecoder(Float.SIZE_BYTES) { readFloat(endianness) }
+fun FloatDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): PrimitiveDecoder<Float> =
+    ConstantSizedPrimitiveDecoder.OfFloat(endianness)
 
 /**
  * Creates a [Decoder] that reads a [Double] from the input. The endianness of the double is specified by the
  * [endianness] parameter.
  *
  * @param endianness the endianness of the double (defaults to [ByteOrder.BIG_ENDIAN])
- * @return a [Decoder] that reads [Double] from the input
+ * @return a [PrimitiveDecoder] that reads [Double] from the input
  */
 @JvmOverloads
-fun DoubleDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Decoder<Double> =
-    ConstantSizedItemDecoder(Double.SIZE_BYTES) { readDouble(endianness) }
+fun DoubleDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): PrimitiveDecoder<Double> =
+    ConstantSizedPrimitiveDecoder.OfDouble(endianness)
 
 /**
  * Creates a [Decoder] that reads a [Boolean] from the input.
@@ -83,7 +83,228 @@ fun DoubleDecoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Decoder<Double>
  *
  * @return a [Decoder] that reads a [Boolean] from the input
  */
-fun BooleanDecoder(): Decoder<Boolean> = ConstantSizedItemDecoder(1) { readBoolean() }
+fun BooleanDecoder(): Decoder<Boolean> = object : Decoder<Boolean> {
+    override fun decode(input: DecoderInput): Decoder.State<Boolean> {
+        val byte = input.read()
+        return when {
+            byte < 0 -> Decoder.State.Processing
+            byte == 0 -> FALSE_STATE
+            else -> TRUE_STATE
+        }
+    }
+
+    override fun reset() = Unit
+}
+
+/**
+ * Creates a [Decoder] that reads a variable-length [Int] from the input.
+ *
+ * The int is encoded as an unsigned LEB128 value (also known as varint): each byte holds 7 bits of the value, the least
+ * significant group first, and its most significant bit is set if another byte follows. Values lower than 128 are
+ * therefore encoded on a single byte, and the encoding of an int never exceeds 5 bytes. Negative values are read as the
+ * unsigned representation of their 32 bits, and always use 5 bytes; [ZigZagVarIntDecoder] should be preferred for
+ * signed values.
+ *
+ * If the value spans more than 5 bytes or does not fit in 32 bits, the decoder returns a [Decoder.State.Error].
+ *
+ * @return a [PrimitiveDecoder] that reads a variable-length [Int] from the input
+ */
+fun VarIntDecoder(): PrimitiveDecoder<Int> = VariableLengthPrimitiveDecoder.OfInt(false)
+
+/**
+ * Creates a [Decoder] that reads a variable-length [Long] from the input.
+ *
+ * The long is encoded as an unsigned LEB128 value (also known as varint): each byte holds 7 bits of the value, the least
+ * significant group first, and its most significant bit is set if another byte follows. The encoding of a long never
+ * exceeds 10 bytes. Negative values are read as the unsigned representation of their 64 bits, and always use 10 bytes;
+ * [ZigZagVarLongDecoder] should be preferred for signed values.
+ *
+ * If the value spans more than 10 bytes or does not fit in 64 bits, the decoder returns a [Decoder.State.Error].
+ *
+ * @return a [PrimitiveDecoder] that reads a variable-length [Long] from the input
+ */
+fun VarLongDecoder(): PrimitiveDecoder<Long> = VariableLengthPrimitiveDecoder.OfLong(false)
+
+/**
+ * Creates a [Decoder] that reads a variable-length signed [Int] from the input.
+ *
+ * The int is encoded like in [VarIntDecoder], after having been mapped to an unsigned value using the ZigZag encoding
+ * (`0 -> 0`, `-1 -> 1`, `1 -> 2`, `-2 -> 3`, ...), so that values of small magnitude use few bytes whatever their sign.
+ *
+ * @return a [PrimitiveDecoder] that reads a variable-length signed [Int] from the input
+ */
+fun ZigZagVarIntDecoder(): PrimitiveDecoder<Int> = VariableLengthPrimitiveDecoder.OfInt(true)
+
+/**
+ * Creates a [Decoder] that reads a variable-length signed [Long] from the input.
+ *
+ * The long is encoded like in [VarLongDecoder], after having been mapped to an unsigned value using the ZigZag encoding
+ * (`0 -> 0`, `-1 -> 1`, `1 -> 2`, `-2 -> 3`, ...), so that values of small magnitude use few bytes whatever their sign.
+ *
+ * @return a [PrimitiveDecoder] that reads a variable-length signed [Long] from the input
+ */
+fun ZigZagVarLongDecoder(): PrimitiveDecoder<Long> = VariableLengthPrimitiveDecoder.OfLong(true)
+
+//endregion
+
+//region Primitive Array Decoders
+
+/**
+ * Creates a [Decoder] that reads a [ByteArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as a single byte.
+ *
+ * The elements are read in bulk, and the decoder can be resumed at any byte of the array.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to the default [IntDecoder])
+ * @return a [Decoder] that reads a [ByteArray] from the input
+ */
+@JvmOverloads
+fun ByteArrayDecoder(sizeDecoder: Decoder<Number> = IntDecoder()): Decoder<ByteArray> =
+    PrimitiveArrayDecoder.OfByte(sizeDecoder)
+
+/**
+ * Creates a [Decoder] that reads a [BooleanArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as a single byte, where 0 represents `false`
+ * and any other value represents `true`.
+ *
+ * The elements are read in bulk, and the decoder can be resumed at any byte of the array.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to the default [IntDecoder])
+ * @return a [Decoder] that reads a [BooleanArray] from the input
+ */
+@JvmOverloads
+fun BooleanArrayDecoder(sizeDecoder: Decoder<Number> = IntDecoder()): Decoder<BooleanArray> =
+    PrimitiveArrayDecoder.OfBoolean(sizeDecoder)
+
+/**
+ * Creates a [Decoder] that reads a [ShortArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as 2 bytes, in the byte order specified by the
+ * [endianness] parameter.
+ *
+ * The elements are read in bulk and converted by chunks, instead of being decoded one by one, and the decoder can be
+ * resumed at any byte of the array, including in the middle of an element.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to an [IntDecoder] with the given
+ * [endianness])
+ * @return a [Decoder] that reads a [ShortArray] from the input
+ */
+@JvmOverloads
+fun ShortArrayDecoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeDecoder: Decoder<Number> = IntDecoder(endianness),
+): Decoder<ShortArray> = PrimitiveArrayDecoder.OfShort(sizeDecoder, endianness)
+
+/**
+ * Creates a [Decoder] that reads a [CharArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as the 2 bytes of its [code][Char.code], in
+ * the byte order specified by the [endianness] parameter.
+ *
+ * The elements are read in bulk and converted by chunks, instead of being decoded one by one, and the decoder can be
+ * resumed at any byte of the array, including in the middle of an element.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to an [IntDecoder] with the given
+ * [endianness])
+ * @return a [Decoder] that reads a [CharArray] from the input
+ */
+@JvmOverloads
+fun CharArrayDecoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeDecoder: Decoder<Number> = IntDecoder(endianness),
+): Decoder<CharArray> = PrimitiveArrayDecoder.OfChar(sizeDecoder, endianness)
+
+/**
+ * Creates a [Decoder] that reads an [IntArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as 4 bytes, in the byte order specified by the
+ * [endianness] parameter.
+ *
+ * The elements are read in bulk and converted by chunks, instead of being decoded one by one, and the decoder can be
+ * resumed at any byte of the array, including in the middle of an element.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to an [IntDecoder] with the given
+ * [endianness])
+ * @return a [Decoder] that reads an [IntArray] from the input
+ */
+@JvmOverloads
+fun IntArrayDecoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeDecoder: Decoder<Number> = IntDecoder(endianness),
+): Decoder<IntArray> = PrimitiveArrayDecoder.OfInt(sizeDecoder, endianness)
+
+/**
+ * Creates a [Decoder] that reads a [LongArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as 8 bytes, in the byte order specified by the
+ * [endianness] parameter.
+ *
+ * The elements are read in bulk and converted by chunks, instead of being decoded one by one, and the decoder can be
+ * resumed at any byte of the array, including in the middle of an element.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to an [IntDecoder] with the given
+ * [endianness])
+ * @return a [Decoder] that reads a [LongArray] from the input
+ */
+@JvmOverloads
+fun LongArrayDecoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeDecoder: Decoder<Number> = IntDecoder(endianness),
+): Decoder<LongArray> = PrimitiveArrayDecoder.OfLong(sizeDecoder, endianness)
+
+/**
+ * Creates a [Decoder] that reads a [FloatArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as the 4 bytes of its [raw
+ * bits][Float.fromBits], in the byte order specified by the [endianness] parameter.
+ *
+ * The elements are read in bulk and converted by chunks, instead of being decoded one by one, and the decoder can be
+ * resumed at any byte of the array, including in the middle of an element.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to an [IntDecoder] with the given
+ * [endianness])
+ * @return a [Decoder] that reads a [FloatArray] from the input
+ */
+@JvmOverloads
+fun FloatArrayDecoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeDecoder: Decoder<Number> = IntDecoder(endianness),
+): Decoder<FloatArray> = PrimitiveArrayDecoder.OfFloat(sizeDecoder, endianness)
+
+/**
+ * Creates a [Decoder] that reads a [DoubleArray] from the input. The array is prefixed with its number of elements,
+ * decoded using the [sizeDecoder] parameter, and each element is encoded as the 8 bytes of its [raw
+ * bits][Double.fromBits], in the byte order specified by the [endianness] parameter.
+ *
+ * The elements are read in bulk and converted by chunks, instead of being decoded one by one, and the decoder can be
+ * resumed at any byte of the array, including in the middle of an element.
+ *
+ * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeDecoder the decoder used to decode the number of elements (defaults to an [IntDecoder] with the given
+ * [endianness])
+ * @return a [Decoder] that reads a [DoubleArray] from the input
+ */
+@JvmOverloads
+fun DoubleArrayDecoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeDecoder: Decoder<Number> = IntDecoder(endianness),
+): Decoder<DoubleArray> = PrimitiveArrayDecoder.OfDouble(sizeDecoder, endianness)
 
 //endregion
 
@@ -340,4 +561,9 @@ private val UNIT_DECODER = ConstantDecoder(Unit)
 
 private val NULL_DECODER = ConstantDecoder(null)
 
+// states are immutable, so the boolean ones can be shared by all decoders
+private val TRUE_STATE = Decoder.State.Done(true)
+
+private val FALSE_STATE = Decoder.State.Done(false)
+
 //endregion
@@ -0,0 +1,217 @@
+@file:JvmName("RecordFiles")
+
+package com.kamelia.sprinkler.transcoder.binary.decoder
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.CountingDecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Decodes in parallel the records of the file at the given [path], and passes them to the given [action].
+ *
+ * The file must be a sequence of records, each of them being prefixed by its size in bytes, decoded by the decoders
+ * created by [sizeDecoderFactory] (e.g. records written one after the other with an encoder prefixing them with their
+ * size). The file is processed in two phases:
+ * - an index pass reads the size prefixes and skips the records, without decoding them, to split the file into chunks
+ * of consecutive records of about [chunkSize] bytes;
+ * - the chunks are decoded on the given [executor], each chunk being mapped in memory and decoded with its own decoder
+ * created by [decoderFactory], so that the decoders are never shared between threads.
+ *
+ * The [action] is always called on the calling thread, this function returning once all the records have been passed
+ * to it. If [ordered] is `true`, the records are passed in the order of the file, otherwise the records of each chunk
+ * are passed as soon as the chunk is decoded, the chunks being processed in any order. In both cases, at most twice as
+ * many chunks as processors are decoded or waiting at the same time, bounding the memory used regardless of the size of
+ * the file.
+ *
+ * Each record must be fully decoded from exactly the number of bytes given by its prefix, otherwise an
+ * [IllegalStateException] is thrown. As the chunks are mapped in a single buffer, an [IllegalStateException] is also
+ * thrown during the index pass if a record is larger than [Int.MAX_VALUE] bytes, its size prefix included. If the file ends in the middle of a record, a [MissingBytesException] is thrown.
+ * If the decoding of a record fails, the [error][Decoder.State.Error.error] returned by the decoder is thrown.
+ *
+ * **NOTE**: Threads other than the ones of the [executor] can be used by passing another [Executor], such as an
+ * executor creating a virtual thread per task.
+ *
+ * @param path the path of the file to read
+ * @param decoderFactory the factory of the decoders of the records
+ * @param sizeDecoderFactory the factory of the decoders of the size prefixes (defaults to a factory of [IntDecoder])
+ * @param ordered whether the records must be passed to the [action] in the order of the file (defaults to `true`)
+ * @param executor the executor on which the chunks are decoded (defaults to the [common pool][ForkJoinPool.commonPool])
+ * @param chunkSize the approximate size of the chunks, in bytes (defaults to 1 MiB)
+ * @param action the action to perform on each record
+ * @throws IllegalArgumentException if [chunkSize] is not strictly positive
+ * @throws IOException if an I/O error occurs
+ * @param T the type of the decoded records
+ */
+@JvmOverloads
+fun <T> decodeRecordsInParallel(
+    path: Path,
+    decoderFactory: () -> Decoder<T>,
+    sizeDecoderFactory: () -> Decoder<Int> = { IntDecoder() },
+    ordered: Boolean = true,
+    executor: Executor = ForkJoinPool.commonPool(),
+    chunkSize: Int = 1 shl 20,
+    action: (T) -> Unit,
+) {
+    require(chunkSize > 0) { "Chunk size must be strictly positive (was $chunkSize)" }
+    FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+        val chunks = indexRecords(channel, sizeDecoderFactory(), chunkSize)
+        val parallelism = if (executor is ForkJoinPool) executor.parallelism else Runtime.getRuntime().availableProcessors()
+        val window = 2 * parallelism
+        val aborted = AtomicBoolean() // set when returning, so that the pending chunks are not decoded for nothing
+        val decode = { chunk: RecordChunk ->
+            decodeChunkAsync(channel, chunk, decoderFactory, sizeDecoderFactory, executor, aborted)
+        }
+        try {
+            if (ordered) {
+                decodeOrdered(chunks, window, action, decode)
+            } else {
+                decodeUnordered(chunks, window, action, decode)
+            }
+        } finally {
+            aborted.set(true)
+        }
+    }
+}
+
+/**
+ * Range of the file containing [count] consecutive records, from the size prefix of the first one at [start] to the end
+ * of the last one at [end].
+ */
+private class RecordChunk(val start: Long, val end: Long, val count: Int)
+
+private fun indexRecords(channel: FileChannel, sizeDecoder: Decoder<Int>, chunkSize: Int): List<RecordChunk> {
+    val chunks = ArrayList<RecordChunk>()
+    val start = channel.position()
+    val fileSize = channel.size()
+    val input = CountingDecoderInput(DecoderInput.from(channel))
+    var chunkStart = start
+    var chunkEnd = start
+    var count = 0
+    while (start + input.bytes < fileSize) {
+        val recordStart = start + input.bytes
+        val size = when (val state = sizeDecoder.decode(input)) {
+            is Decoder.State.Done -> state.value
+            is Decoder.State.Processing -> throw MissingBytesException()
+            is Decoder.State.Error -> throw state.error
+        }
+        check(size >= 0) { "Record size must be positive, but was $size at offset ${start + input.bytes}" }
+        val recordEnd = start + input.bytes + size
+        check(recordEnd - recordStart <= Int.MAX_VALUE) { // even alone in its chunk, it could not be mapped
+            "Record at offset $recordStart is too large (${recordEnd - recordStart} bytes, its size prefix included)"
+        }
+        if (input.skip(size.toLong()) != size.toLong()) throw MissingBytesException()
+        if (count > 0 && recordEnd - chunkStart > Int.MAX_VALUE) { // a chunk must fit in a single mapped buffer
+            chunks += RecordChunk(chunkStart, chunkEnd, count)
+            chunkStart = chunkEnd
+            count = 0
+        }
+        chunkEnd = recordEnd
+        count++
+        if (chunkEnd - chunkStart >= chunkSize) {
+            chunks += RecordChunk(chunkStart, chunkEnd, count)
+            chunkStart = chunkEnd
+            count = 0
+        }
+    }
+    if (count > 0) {
+        chunks += RecordChunk(chunkStart, chunkEnd, count)
+    }
+    return chunks
+}
+
+private fun <T> decodeChunkAsync(
+    channel: FileChannel,
+    chunk: RecordChunk,
+    decoderFactory: () -> Decoder<T>,
+    sizeDecoderFactory: () -> Decoder<Int>,
+    executor: Executor,
+    aborted: AtomicBoolean,
+): CompletableFuture<List<T>> = CompletableFuture.supplyAsync({
+    if (aborted.get()) return@supplyAsync emptyList()
+    val buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start)
+    decodeChunk(buffer, chunk, decoderFactory(), sizeDecoderFactory())
+}, executor)
+
+private fun <T> decodeChunk(
+    buffer: ByteBuffer,
+    chunk: RecordChunk,
+    decoder: Decoder<T>,
+    sizeDecoder: Decoder<Int>,
+): List<T> {
+    val input = DecoderInput.fromReadMode(buffer)
+    val records = ArrayList<T>(chunk.count)
+    val chunkLimit = buffer.limit()
+    repeat(chunk.count) {
+        val size = sizeDecoder.decode(input).get()
+        val end = buffer.position() + size
+        buffer.limit(end) // prevents the decoder from reading the next record
+        val record = when (val state = decoder.decode(input)) {
+            is Decoder.State.Done -> state.value
+            is Decoder.State.Processing -> throw IllegalStateException(
+                "Record at offset ${chunk.start + end - size} is not complete after its $size bytes"
+            )
+            is Decoder.State.Error -> throw state.error
+        }
+        check(buffer.position() == end) {
+            "Record at offset ${chunk.start + end - size} has ${end - buffer.position()} unread bytes"
+        }
+        buffer.limit(chunkLimit)
+        records += record
+    }
+    return records
+}
+
+private inline fun <T> decodeOrdered(
+    chunks: List<RecordChunk>,
+    window: Int,
+    action: (T) -> Unit,
+    decode: (RecordChunk) -> CompletableFuture<List<T>>,
+) {
+    val pending = ArrayDeque<CompletableFuture<List<T>>>()
+    var next = 0
+    while (next < chunks.size || pending.isNotEmpty()) {
+        while (next < chunks.size && pending.size < window) {
+            pending.addLast(decode(chunks[next++]))
+        }
+        awaitChunk(pending.removeFirst()).forEach(action)
+    }
+}
+
+private inline fun <T> decodeUnordered(
+    chunks: List<RecordChunk>,
+    window: Int,
+    action: (T) -> Unit,
+    decode: (RecordChunk) -> CompletableFuture<List<T>>,
+) {
+    val completed = LinkedBlockingQueue<CompletableFuture<List<T>>>()
+    var next = 0
+    var running = 0
+    while (next < chunks.size || running > 0) {
+        while (next < chunks.size && running < window) {
+            val future = decode(chunks[next++])
+            future.whenComplete { _, _ -> completed.add(future) }
+            running++
+        }
+        val future = completed.take()
+        running--
+        awaitChunk(future).forEach(action)
+    }
+}
+
+private fun <T> awaitChunk(future: CompletableFuture<List<T>>): List<T> = try {
+    future.join()
+} catch (e: CompletionException) {
+    throw e.cause ?: e
+}
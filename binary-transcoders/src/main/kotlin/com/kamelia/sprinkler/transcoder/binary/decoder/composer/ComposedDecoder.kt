@@ -4,6 +4,7 @@ package com.kamelia.sprinkler.transcoder.binary.decoder.composer
 
 import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.VarIntDecoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
 import com.zwendo.restrikt2.annotation.PackagePrivate
@@ -20,12 +21,21 @@ import java.nio.ByteOrder
  * [self][DecodingScope.self] property).
  * - Nullable objects decoding will be decoded assuming that the object is prefixed with a [Boolean] (represented as a
  * single byte) that indicates if the object is present or not (`true` if present, `false` if not).
- * - All collection decoding will be decoded assuming that the collection is prefixed with its size represented by an
- * [Int].
+ * - All collection decoding will be decoded assuming that the collection is prefixed with its size, decoded with the
+ * [sizeDecoder] parameter.
  * - All nullable collections decoding will be decoded assuming that the collection is prefixed with a [Boolean] that
  * indicates if the collection is present or not (`true` if present, `false` if not). Then, if the collection is
- * present, the size of the collection will be decoded as an [Int]. Finally, if the collection is present and its size
- * is greater than 0, the elements of the collection will be decoded.
+ * present, the size of the collection will be decoded with the [sizeDecoder]. Finally, if the collection is present
+ * and its size is greater than 0, the elements of the collection will be decoded.
+ *
+ * Using a variable-length decoder such as [VarIntDecoder] as [sizeDecoder] allows to decode data encoded by a
+ * [composedEncoder][com.kamelia.sprinkler.transcoder.binary.encoder.composer.composedEncoder] using a
+ * [VarIntEncoder][com.kamelia.sprinkler.transcoder.binary.encoder.VarIntEncoder] for its size prefixes.
+ *
+ * Recursive objects (decoded through the [self][DecodingScope.self] property) are decoded iteratively, the elements of
+ * the objects being decoded being kept on a single array-backed stack. The depth of the recursion is bounded by
+ * [maxDepth], the decoder returning a [Decoder.State.Error] wrapping an [IllegalStateException] when an object is
+ * nested deeper than this limit, instead of exhausting the memory on malformed or malicious input.
  *
  * **NOTE**: The [DecodingScope] used in the lambda [block] is not designed to be used outside the lambda. Any use of
  * the scope outside the lambda may lead to unexpected results and can change the behaviour of the scope decoding
@@ -33,32 +43,42 @@ import java.nio.ByteOrder
  * inside the lambda.
  *
  * @param endianness the endianness of the decoder (defaults to [ByteOrder.BIG_ENDIAN])
- * @param stringDecoder the decoder to use for [String] objects (defaults to [UTF8StringDecoder] with the same
- *                      endianness as the [endianness] parameter)
+ * @param sizeDecoder the decoder to use for the size prefixes of collections (defaults to [IntDecoder] with the same
+ *                    endianness as the [endianness] parameter)
+ * @param stringDecoder the decoder to use for [String] objects (defaults to [UTF8StringDecoder] using the
+ *                      [sizeDecoder] for the size of the strings)
+ * @param maxDepth the maximum depth of the recursive objects, the decoded object being at depth `0` (defaults to
+ *                 [Int.MAX_VALUE])
  * @param block the block that will decode the object
  * @return the created decoder of type [T]
+ * @throws IllegalArgumentException if [maxDepth] is negative
  * @see DecodingScope
  */
 @JvmOverloads
 fun <T> composedDecoder(
     endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
-    stringDecoder: Decoder<String> = UTF8StringDecoder(IntDecoder(endianness)),
+    sizeDecoder: Decoder<Int> = IntDecoder(endianness),
+    stringDecoder: Decoder<String> = UTF8StringDecoder(sizeDecoder),
+    maxDepth: Int = Int.MAX_VALUE,
     block: DecodingScope<T>.() -> T,
 ): Decoder<T> {
+    require(maxDepth >= 0) { "Maximum depth must be positive (was $maxDepth)" }
     val cache = HashMap<Class<*>, Decoder<*>>().apply {
         put(String::class.java, stringDecoder)
     }
-    return ComposedDecoderImpl(endianness, cache, block)
+    return ComposedDecoderImpl(endianness, sizeDecoder, cache, maxDepth, block)
 }
 
 private class ComposedDecoderImpl<E>(
     endianness: ByteOrder,
+    private val sizeDecoder: Decoder<Int>,
     private val cache: HashMap<Class<*>, Decoder<*>>,
+    private val maxDepth: Int,
     private val block: DecodingScope<E>.() -> E,
 ) : Decoder<E> {
 
     private val elements = ElementsAccumulator()
-    private val scope = DecodingScopeImpl<E>(::elements, cache, endianness)
+    private val scope = DecodingScopeImpl<E>(::elements, cache, endianness, sizeDecoder)
 
     override fun decode(input: DecoderInput): Decoder.State<E> {
         scope.input = input
@@ -76,6 +96,9 @@ private class ComposedDecoderImpl<E>(
             } catch (_: ProcessingMarker) { // bytes are missing
                 return Decoder.State.Processing
             } catch (_: RecursionMarker) { // recursion
+                if (elements.depth == maxDepth) {
+                    return Decoder.State.Error(IllegalStateException("Maximum recursion depth ($maxDepth) exceeded"))
+                }
                 elements.recurse()
             } catch (e: ErrorStateHolder) { // an error state should be returned
                 return e.errorState
@@ -85,15 +108,12 @@ private class ComposedDecoderImpl<E>(
 
     override fun reset() {
         elements.reset()
+        sizeDecoder.reset()
         cache.values.forEach(Decoder<*>::reset)
     }
 
 }
 
-@JvmField
-@PackagePrivate
-internal val DEFAULT_LAYER = ElementsAccumulator.Layer(0, null)
-
 @PackagePrivate
 internal fun castErrorMessage(obj: Any?, clazz: Class<*>) = """
         Error while trying to cast $obj as $clazz.
@@ -21,6 +21,7 @@ internal class DecodingScopeImpl<E>(
     private val accumulatorProvider: () -> ElementsAccumulator,
     private val cache: HashMap<Class<*>, Decoder<*>>,
     private val endianness: ByteOrder,
+    private val sizeDecoder: Decoder<Int>,
 ) : DecodingScope<E> {
 
     var input: DecoderInput = DecoderInput.nullInput()
@@ -104,7 +105,7 @@ internal class DecodingScopeImpl<E>(
     @JvmName("decodeSelfCollection")
     override fun <R> selfCollection(collector: Collector<E, *, R>): R {
         val decoder = objectScope {
-            self.toCollection(collector, computed { IntDecoder(endianness) })
+            self.toCollection(collector, sizeDecoder)
         }
         return decode(decoder)
     }
@@ -119,15 +120,10 @@ internal class DecodingScopeImpl<E>(
         }
     }
 
-    private inline fun <reified T> computed(noinline block: () -> Decoder<T>): Decoder<T> =
-        cache.computeIfAbsent(T::class.java) { block() }.unsafeCast()
-
     private inner class SelfDecoder : Decoder<E> {
 
         override fun decode(input: DecoderInput): Decoder.State<E> = if (accumulator.hasRecursionElement()) {
-            val element = accumulator.getFromRecursion()
-            currentIndex++
-            Decoder.State.Done(element.unsafeCast())
+            Decoder.State.Done(accumulator.getFromRecursion().unsafeCast())
         } else {
             throw RecursionMarker
         }
@@ -2,80 +2,108 @@ package com.kamelia.sprinkler.transcoder.binary.decoder.composer
 
 import com.zwendo.restrikt2.annotation.PackagePrivate
 
+/**
+ * Elements decoded by a composed decoder, stored on a single array-backed stack of layers, one layer per object being
+ * decoded. Each recursion pushes a new layer starting after the elements of the previous one, and the element decoded by
+ * a recursion is stored in a single slot until the previous layer reads it.
+ */
 @PackagePrivate
 internal class ElementsAccumulator {
 
-    private var list = ArrayList<Any?>()
+    private var elements = arrayOfNulls<Any?>(INITIAL_ELEMENTS_CAPACITY)
 
-    private var _recursionElements: ArrayDeque<Any?>? = null
+    private var count = 0
 
-    private val recursionElements: ArrayDeque<Any?>
-        get() {
-            if (_recursionElements == null) _recursionElements = ArrayDeque()
-            return _recursionElements!!
-        }
+    private var layerStarts = IntArray(INITIAL_LAYERS_CAPACITY)
+
+    /**
+     * The index of the current layer, `0` being the layer of the object decoded by the composed decoder.
+     */
+    var depth = 0
+        private set
+
+    private var recursionElement: Any? = null
 
-    private var currentLayer = DEFAULT_LAYER
+    private var hasRecursionElement = false
 
     val size: Int
-        get() = list.size - currentLayer.start
+        get() = count - layerStarts[depth]
 
     val isLastLayer: Boolean
-        get() = currentLayer.previous == null
+        get() = depth == 0
 
     fun add(element: Any?) {
-        list.add(element)
+        if (count == elements.size) {
+            elements = elements.copyOf(count * 2)
+        }
+        elements[count++] = element
     }
 
     fun addToRecursion(element: Any?) {
-        recursionElements.add(element)
+        check(!hasRecursionElement) { "The element of the previous recursion has not been read" }
+        recursionElement = element
+        hasRecursionElement = true
     }
 
-    operator fun get(index: Int): Any? {
-        require(index >= 0) { "Index $index is negative" }
-        val actualIndex = currentLayer.start + index
-        require(actualIndex < list.size) {
-            "Index $actualIndex ($index + ${currentLayer.start}) is out of bounds for size ${list.size}"
-        }
-        return list[actualIndex]
-    }
+    operator fun get(index: Int): Any? = elements[actualIndex(index)]
 
     operator fun set(index: Int, element: Any?) {
-        require(index >= 0) { "Index $index is negative" }
-        val actualIndex = currentLayer.start + index
-        require(actualIndex < list.size) {
-            "Index $actualIndex ($index + ${currentLayer.start}) is out of bounds for size ${list.size}"
-        }
-        list[actualIndex] = element
+        elements[actualIndex(index)] = element
     }
 
-    fun hasRecursionElement(): Boolean = recursionElements.isNotEmpty()
+    fun hasRecursionElement(): Boolean = hasRecursionElement
 
-    fun getFromRecursion(): Any? = recursionElements.removeFirst()
+    fun getFromRecursion(): Any? {
+        if (!hasRecursionElement) throw NoSuchElementException("No recursion element")
+        val element = recursionElement
+        recursionElement = null
+        hasRecursionElement = false
+        return element
+    }
 
     fun recurse() {
-        currentLayer = Layer(list.size, currentLayer)
+        if (depth + 1 == layerStarts.size) {
+            layerStarts = layerStarts.copyOf(layerStarts.size * 2)
+        }
+        layerStarts[++depth] = count
     }
 
     fun popRecursion() {
-        val previous = currentLayer.previous
-        check(previous != null) { "No element to pop" }
-        val toPop = list.size - currentLayer.start
-        repeat(toPop) { list.removeLast() }
-        currentLayer = previous
+        check(depth > 0) { "No element to pop" }
+        val start = layerStarts[depth--]
+        elements.fill(null, start, count)
+        count = start
     }
 
     fun reset() {
-        list = ArrayList()
-        _recursionElements = null
-        currentLayer = DEFAULT_LAYER
+        if (elements.size > MAX_RETAINED_CAPACITY) { // do not retain the memory used by a deep recursion
+            elements = arrayOfNulls(INITIAL_ELEMENTS_CAPACITY)
+            layerStarts = IntArray(INITIAL_LAYERS_CAPACITY)
+        } else {
+            elements.fill(null, 0, count)
+        }
+        count = 0
+        depth = 0
+        recursionElement = null
+        hasRecursionElement = false
+    }
+
+    private fun actualIndex(index: Int): Int {
+        require(index >= 0) { "Index $index is negative" }
+        val start = layerStarts[depth]
+        val actualIndex = start + index
+        require(actualIndex < count) { "Index $actualIndex ($index + $start) is out of bounds for size $count" }
+        return actualIndex
     }
 
-    class Layer(
-        @JvmField
-        val start: Int,
-        @JvmField
-        val previous: Layer?,
-    )
+    private companion object {
+
+        const val INITIAL_ELEMENTS_CAPACITY = 16
+
+        const val INITIAL_LAYERS_CAPACITY = 4
+
+        const val MAX_RETAINED_CAPACITY = 1024
+
+    }
 
 }
@@ -0,0 +1,106 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.composer2
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+
+/**
+ * [Decoder] executing the steps of a [ComposedDecoderBuilder] as a state machine.
+ *
+ * Each step is described by its value decoder (`null` for a recursive step) and its nullability decoder (`null` for a
+ * non-nullable step). The state of the objects being decoded (their context, the index of their current step and
+ * whether the nullability flag of this step has already been read) is kept on an explicit stack of frames, a recursive
+ * step pushing a new frame and a completed frame being popped and its object passed to the frame below. A call to
+ * [decode] thus resumes at the exact step where the previous one stopped.
+ */
+internal class CompiledComposedDecoder<E>(
+    private val decoders: Array<Decoder<*>?>,
+    private val nullabilityDecoders: Array<Decoder<Boolean>?>,
+    private val contextFactory: () -> ComposedDecoderContext<E>,
+) : Decoder<E> {
+
+    private var depth = 0
+
+    private var contexts = arrayOfNulls<ComposedDecoderContext<E>>(INITIAL_STACK_SIZE)
+
+    private var steps = IntArray(INITIAL_STACK_SIZE)
+
+    private var present = BooleanArray(INITIAL_STACK_SIZE)
+
+    override fun decode(input: DecoderInput): Decoder.State<E> {
+        frames@ while (true) {
+            val context = contexts[depth] ?: contextFactory().also { contexts[depth] = it }
+            var step = steps[depth]
+            while (step < decoders.size) {
+                val nullabilityDecoder = nullabilityDecoders[step]
+                if (nullabilityDecoder != null && !present[depth]) {
+                    val state = nullabilityDecoder.decode(input)
+                    if (state !is Decoder.State.Done) {
+                        steps[depth] = step
+                        return state.mapEmptyState()
+                    }
+                    if (!state.value) {
+                        context.accept(null)
+                        step++
+                        continue
+                    }
+                    present[depth] = true
+                }
+
+                val decoder = decoders[step]
+                if (decoder == null) { // recursive step, the nested object is decoded in a new frame
+                    steps[depth] = step
+                    push()
+                    continue@frames
+                }
+                val state = decoder.decode(input)
+                if (state !is Decoder.State.Done) {
+                    steps[depth] = step
+                    return state.mapEmptyState()
+                }
+                context.accept(state.value)
+                present[depth] = false
+                step++
+            }
+
+            val result = context.build()
+            clearFrame(depth)
+            if (depth == 0) return Decoder.State.Done(result)
+            depth--
+            contexts[depth]!!.accept(result)
+            steps[depth]++
+            present[depth] = false
+        }
+    }
+
+    override fun reset() {
+        for (i in 0..depth) {
+            clearFrame(i)
+        }
+        depth = 0
+        decoders.forEach { it?.reset() }
+        nullabilityDecoders.forEach { it?.reset() }
+    }
+
+    private fun push() {
+        depth++
+        if (depth == contexts.size) {
+            val size = contexts.size * 2
+            contexts = contexts.copyOf(size)
+            steps = steps.copyOf(size)
+            present = present.copyOf(size)
+        }
+    }
+
+    private fun clearFrame(index: Int) {
+        contexts[index] = null
+        steps[index] = 0
+        present[index] = false
+    }
+
+    private companion object {
+
+        const val INITIAL_STACK_SIZE = 8
+
+    }
+
+}
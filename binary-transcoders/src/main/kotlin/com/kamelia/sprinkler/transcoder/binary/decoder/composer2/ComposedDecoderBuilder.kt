@@ -1,89 +1,318 @@
-//package com.kamelia.sprinkler.transcoder.binary.decoder.composer2
-//
-//import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
-//
-//sealed interface ComposedDecoderBuilder<E> {
-//
-//    fun <T> decode(decoderKey: Key<T>): ComposedDecoderBuilder<E>
-//
-//    fun <T> decode(decoderKey: Class<T>): ComposedDecoderBuilder<E> = decode(Key.Simple(decoderKey))
-//
-//    fun decodeByte(): ComposedDecoderBuilder<E> = decode(Byte::class.java)
-//
-//    fun decodeShort(): ComposedDecoderBuilder<E> = decode(Short::class.java)
-//
-//    fun decodeInt(): ComposedDecoderBuilder<E> = decode(Int::class.java)
-//
-//    fun decodeLong(): ComposedDecoderBuilder<E> = decode(Long::class.java)
-//
-//    fun decodeFloat(): ComposedDecoderBuilder<E> = decode(Float::class.java)
-//
-//    fun decodeDouble(): ComposedDecoderBuilder<E> = decode(Double::class.java)
-//
-//    fun decodeBoolean(): ComposedDecoderBuilder<E> = decode(Boolean::class.java)
-//
-//    fun decodeString(): ComposedDecoderBuilder<E> = decode(String::class.java)
-//
-//    fun <T : Any> decodeNullable(
-//        valueDecoderKey: Key<T>,
-//        nullabilityDecoderKey: Key<Boolean>,
-//    ): ComposedDecoderBuilder<E> = decode(Key.Nullable(valueDecoderKey, nullabilityDecoderKey))
-//
-//    fun <T : Any> decodeNullable(valueDecoderKey: Key<T>): ComposedDecoderBuilder<E> =
-//        decode(Key.Nullable(valueDecoderKey, Key.Simple(Boolean::class.java)))
-//
-//    fun decodeSelfOrNull(nullabilityDecoderKey: Key<Boolean>): ComposedDecoderBuilder<E> =
-//        decodeNullable(Key.Self, nullabilityDecoderKey)
-//
-//    fun decodeSelfOrNull(): ComposedDecoderBuilder<E> = decodeSelfOrNull(Key.Simple(Boolean::class.java))
-//
-//    fun build(): Decoder<E>
-//
-//    companion object {
-//
-//        @JvmStatic
-//        @JvmOverloads
-//        fun <T> create(
-//            cacheFactory: () -> (Any) -> Decoder<*> = { defaultCache() },
-//            contextFactory: () -> ComposedDecoderContext<T>,
-//        ): ComposedDecoderBuilder<T> = ComposedDecoderBuilderImpl(contextFactory, cacheFactory)
-//
-//    }
-//
-//    sealed interface Key<T> {
-//
-//        class Simple<T>(internal val clazz: Class<T>) : Key<T> {
-//
-//            override fun toString(): String = "Key.Class(${clazz.simpleName})"
-//
-//            override fun equals(other: Any?): Boolean = other is Simple<*> && clazz == other.clazz
-//
-//            override fun hashCode(): Int = clazz.hashCode()
-//
-//        }
-//
-//        class Nullable<T : Any>(
-//            internal val valueDecoder: Key<T>,
-//            internal val nullabilityDecoder: Key<Boolean>,
-//        ) : Key<T> {
-//
-//            override fun toString(): String = "Key.Nullable(${valueDecoder}, ${nullabilityDecoder})"
-//
-//            override fun equals(other: Any?): Boolean = other is Nullable<*> && valueDecoder == other.valueDecoder && nullabilityDecoder == other.nullabilityDecoder
-//
-//            override fun hashCode(): Int = valueDecoder.hashCode() * 31 + nullabilityDecoder.hashCode()
-//
-//        }
-//
-//        data object Self : Key<Any>
-//
-//        class Custom<T> @JvmOverloads constructor(private val label: String? = null) : Key<T> {
-//
-//            override fun toString(): String = label ?: "Key.Custom"
-//
-//        }
-//
-//    }
-//
-//}
-//
+package com.kamelia.sprinkler.transcoder.binary.decoder.composer2
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.BooleanDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.ByteDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.DoubleDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.FloatDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.LongDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.ShortDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import java.nio.ByteOrder
+
+/**
+ * Builder of decoders composed of a fixed sequence of steps, each step decoding one element of the object. Unlike the
+ * decoders created by [composedDecoder][com.kamelia.sprinkler.transcoder.binary.decoder.composer.composedDecoder],
+ * which replay their whole block on each call to [Decoder.decode], the decoders built by this builder are state
+ * machines resuming at the exact step where the previous call stopped, without throwing any exception.
+ *
+ * The steps are declared in the order in which the elements are read, and each decoded element is passed, in the same
+ * order, to the [ComposedDecoderContext] created for the object, which then creates the object:
+ *
+ * ```
+ * class Person(val name: String, val age: Int)
+ *
+ * class PersonContext : ComposedDecoderContext<Person> {
+ *     private lateinit var name: String
+ *     private var age = 0
+ *     private var index = 0
+ *
+ *     override fun accept(element: Any?) {
+ *         when (index++) {
+ *             0 -> name = element as String
+ *             else -> age = element as Int
+ *         }
+ *     }
+ *
+ *     override fun build(): Person = Person(name, age)
+ * }
+ *
+ * val personDecoder = ComposedDecoderBuilder.create { PersonContext() }
+ *     .decodeString()
+ *     .decodeInt()
+ *     .build()
+ * ```
+ *
+ * The decoder of each step is resolved once, when [build] is called, from its [Key] using the cache created by the
+ * `cacheFactory` given to [create]. The [default cache][defaultCache] resolves the [Simple][Key.Simple] keys of the
+ * primitive types and of [String], other keys (e.g. [Custom][Key.Custom] keys) requiring a cache providing them.
+ * Recursive objects can be decoded with [decodeSelfOrNull], the nested objects being decoded on an explicit stack
+ * rather than through recursive calls.
+ *
+ * **NOTE**: A builder is not thread-safe, and the decoders built by it are stateful, like any other [Decoder].
+ *
+ * @param E the type of the object to decode
+ * @see ComposedDecoderContext
+ */
+sealed interface ComposedDecoderBuilder<E> {
+
+    /**
+     * Adds a step decoding an element with the decoder resolved from the given [decoderKey].
+     *
+     * @param decoderKey the key of the decoder of the element
+     * @return this builder
+     * @throws IllegalArgumentException if [decoderKey] is [Key.Self], which can only be decoded through
+     * [decodeSelfOrNull]
+     * @param T the type of the element
+     */
+    fun <T> decode(decoderKey: Key<T>): ComposedDecoderBuilder<E>
+
+    /**
+     * Adds a step decoding an element with the given [decoder]. The decoder is used as is by the decoders built by
+     * this builder, meaning that it should not be used elsewhere.
+     *
+     * @param decoder the decoder of the element
+     * @return this builder
+     * @param T the type of the element
+     */
+    fun <T> decode(decoder: Decoder<T>): ComposedDecoderBuilder<E>
+
+    /**
+     * Adds a step decoding an element with the decoder resolved from the [Simple][Key.Simple] key of the given
+     * [decoderKey] class.
+     *
+     * @param decoderKey the class of the element
+     * @return this builder
+     * @param T the type of the element
+     */
+    fun <T> decode(decoderKey: Class<T>): ComposedDecoderBuilder<E> = decode(Key.Simple(decoderKey))
+
+    /**
+     * Adds a step decoding a [Byte].
+     *
+     * @return this builder
+     */
+    fun decodeByte(): ComposedDecoderBuilder<E> = decode(Byte::class.java)
+
+    /**
+     * Adds a step decoding a [Short].
+     *
+     * @return this builder
+     */
+    fun decodeShort(): ComposedDecoderBuilder<E> = decode(Short::class.java)
+
+    /**
+     * Adds a step decoding an [Int].
+     *
+     * @return this builder
+     */
+    fun decodeInt(): ComposedDecoderBuilder<E> = decode(Int::class.java)
+
+    /**
+     * Adds a step decoding a [Long].
+     *
+     * @return this builder
+     */
+    fun decodeLong(): ComposedDecoderBuilder<E> = decode(Long::class.java)
+
+    /**
+     * Adds a step decoding a [Float].
+     *
+     * @return this builder
+     */
+    fun decodeFloat(): ComposedDecoderBuilder<E> = decode(Float::class.java)
+
+    /**
+     * Adds a step decoding a [Double].
+     *
+     * @return this builder
+     */
+    fun decodeDouble(): ComposedDecoderBuilder<E> = decode(Double::class.java)
+
+    /**
+     * Adds a step decoding a [Boolean].
+     *
+     * @return this builder
+     */
+    fun decodeBoolean(): ComposedDecoderBuilder<E> = decode(Boolean::class.java)
+
+    /**
+     * Adds a step decoding a [String].
+     *
+     * @return this builder
+     */
+    fun decodeString(): ComposedDecoderBuilder<E> = decode(String::class.java)
+
+    /**
+     * Adds a step decoding a nullable element. The element is prefixed by a [Boolean] decoded with the decoder resolved
+     * from the [nullabilityDecoderKey], indicating whether the element is present (`true`) or `null` (`false`).
+     *
+     * @param valueDecoderKey the key of the decoder of the element
+     * @param nullabilityDecoderKey the key of the decoder of the nullability flag
+     * @return this builder
+     * @param T the type of the element
+     */
+    fun <T : Any> decodeNullable(
+        valueDecoderKey: Key<T>,
+        nullabilityDecoderKey: Key<Boolean>,
+    ): ComposedDecoderBuilder<E> = decode(Key.Nullable(valueDecoderKey, nullabilityDecoderKey))
+
+    /**
+     * Adds a step decoding a nullable element, prefixed by a [Boolean] indicating whether the element is present
+     * (`true`) or `null` (`false`).
+     *
+     * @param valueDecoderKey the key of the decoder of the element
+     * @return this builder
+     * @param T the type of the element
+     */
+    fun <T : Any> decodeNullable(valueDecoderKey: Key<T>): ComposedDecoderBuilder<E> =
+        decode(Key.Nullable(valueDecoderKey, Key.Simple(Boolean::class.java)))
+
+    /**
+     * Adds a step recursively decoding a nullable object of the type decoded by this builder. The object is prefixed
+     * by a [Boolean] decoded with the decoder resolved from the [nullabilityDecoderKey], indicating whether the object
+     * is present (`true`) or `null` (`false`).
+     *
+     * @param nullabilityDecoderKey the key of the decoder of the nullability flag
+     * @return this builder
+     */
+    fun decodeSelfOrNull(nullabilityDecoderKey: Key<Boolean>): ComposedDecoderBuilder<E> =
+        decodeNullable(Key.Self, nullabilityDecoderKey)
+
+    /**
+     * Adds a step recursively decoding a nullable object of the type decoded by this builder, prefixed by a [Boolean]
+     * indicating whether the object is present (`true`) or `null` (`false`).
+     *
+     * @return this builder
+     */
+    fun decodeSelfOrNull(): ComposedDecoderBuilder<E> = decodeSelfOrNull(Key.Simple(Boolean::class.java))
+
+    /**
+     * Builds a new decoder executing the steps added to this builder. The decoders of the steps are resolved from a
+     * new cache, meaning that two decoders built by the same builder do not share their step decoders (except the ones
+     * given directly through [decode]).
+     *
+     * @return the built decoder
+     * @throws IllegalArgumentException if a key cannot be resolved by the cache
+     */
+    fun build(): Decoder<E>
+
+    companion object {
+
+        /**
+         * Creates a new [ComposedDecoderBuilder].
+         *
+         * @param cacheFactory the factory of the cache used to resolve the decoders of the steps, called once per
+         * [build] (defaults to a factory of [default caches][defaultCache])
+         * @param contextFactory the factory of the contexts, called once per decoded object
+         * @return the created builder
+         * @param T the type of the object to decode
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun <T> create(
+            cacheFactory: () -> (Key<*>) -> Decoder<*> = { defaultCache() },
+            contextFactory: () -> ComposedDecoderContext<T>,
+        ): ComposedDecoderBuilder<T> = ComposedDecoderBuilderImpl(contextFactory, cacheFactory)
+
+        /**
+         * Creates a new cache resolving the [Simple][Key.Simple] keys of the primitive types (and their boxed
+         * counterparts) and of [String], using the given [endianness]. [String]s are decoded as UTF-8 prefixed by
+         * their size in bytes, decoded as an [Int].
+         *
+         * The cache always returns the same decoder for the same key, and throws an [IllegalArgumentException] for
+         * any other key.
+         *
+         * @param endianness the endianness of the decoders (defaults to [ByteOrder.BIG_ENDIAN])
+         * @return the created cache
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun defaultCache(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): (Key<*>) -> Decoder<*> {
+            val cache = HashMap<Key<*>, Decoder<*>>()
+            return { key -> cache.getOrPut(key) { defaultDecoder(key, endianness) } }
+        }
+
+        private fun defaultDecoder(key: Key<*>, endianness: ByteOrder): Decoder<*> {
+            require(key is Key.Simple<*>) { "No default decoder for $key" }
+            return when ((key.clazz as Class<*>).kotlin.javaObjectType) {
+                Byte::class.javaObjectType -> ByteDecoder()
+                Short::class.javaObjectType -> ShortDecoder(endianness)
+                Int::class.javaObjectType -> IntDecoder(endianness)
+                Long::class.javaObjectType -> LongDecoder(endianness)
+                Float::class.javaObjectType -> FloatDecoder(endianness)
+                Double::class.javaObjectType -> DoubleDecoder(endianness)
+                Boolean::class.javaObjectType -> BooleanDecoder()
+                String::class.java -> UTF8StringDecoder(IntDecoder(endianness))
+                else -> throw IllegalArgumentException("No default decoder for $key")
+            }
+        }
+
+    }
+
+    /**
+     * Key identifying the decoder of a step of a [ComposedDecoderBuilder].
+     *
+     * @param T the type of the decoded element
+     */
+    sealed interface Key<T> {
+
+        /**
+         * Key identifying a decoder by the class of the elements it decodes.
+         *
+         * @param T the type of the decoded element
+         */
+        class Simple<T>(internal val clazz: Class<T>) : Key<T> {
+
+            override fun toString(): String = "Key.Simple(${clazz.simpleName})"
+
+            override fun equals(other: Any?): Boolean = other is Simple<*> && clazz == other.clazz
+
+            override fun hashCode(): Int = clazz.hashCode()
+
+        }
+
+        /**
+         * Key of a nullable element, decoded with the decoder of the [valueDecoder] key and prefixed by a [Boolean]
+         * decoded with the decoder of the [nullabilityDecoder] key.
+         *
+         * @param T the type of the decoded element
+         */
+        class Nullable<T : Any>(
+            internal val valueDecoder: Key<T>,
+            internal val nullabilityDecoder: Key<Boolean>,
+        ) : Key<T> {
+
+            override fun toString(): String = "Key.Nullable($valueDecoder, $nullabilityDecoder)"
+
+            override fun equals(other: Any?): Boolean =
+                other is Nullable<*>
+                    && valueDecoder == other.valueDecoder
+                    && nullabilityDecoder == other.nullabilityDecoder
+
+            override fun hashCode(): Int = valueDecoder.hashCode() * 31 + nullabilityDecoder.hashCode()
+
+        }
+
+        /**
+         * Key of the decoder being built, only usable as the value of a [Nullable] key (see
+         * [decodeSelfOrNull]).
+         */
+        data object Self : Key<Any>
+
+        /**
+         * Key identifying a decoder provided by a custom cache. Custom keys are only equal to themselves.
+         *
+         * @param label the label of the key, used by [toString] (defaults to `null`)
+         * @param T the type of the decoded element
+         */
+        class Custom<T> @JvmOverloads constructor(private val label: String? = null) : Key<T> {
+
+            override fun toString(): String = label ?: "Key.Custom"
+
+        }
+
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.composer2
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.composer2.ComposedDecoderBuilder.Key
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.toOptional
+
+internal class ComposedDecoderBuilderImpl<E>(
+    private val contextFactory: () -> ComposedDecoderContext<E>,
+    private val cacheFactory: () -> (Key<*>) -> Decoder<*>,
+) : ComposedDecoderBuilder<E> {
+
+    private val steps = ArrayList<Any>() // keys or decoders
+
+    override fun <T> decode(decoderKey: Key<T>): ComposedDecoderBuilder<E> = apply {
+        require(decoderKey !is Key.Self) { "${Key.Self} can only be decoded as a nullable value" }
+        steps += decoderKey
+    }
+
+    override fun <T> decode(decoder: Decoder<T>): ComposedDecoderBuilder<E> = apply {
+        steps += decoder
+    }
+
+    override fun build(): Decoder<E> {
+        val cache = cacheFactory()
+        val decoders = arrayOfNulls<Decoder<*>>(steps.size)
+        val nullabilityDecoders = arrayOfNulls<Decoder<Boolean>>(steps.size)
+        steps.forEachIndexed { index, step ->
+            when (step) {
+                is Decoder<*> -> decoders[index] = step
+                is Key.Nullable<*> -> { // nullability is handled by the state machine to support Self
+                    nullabilityDecoders[index] = resolve(cache, step.nullabilityDecoder)
+                    decoders[index] = if (step.valueDecoder is Key.Self) null else resolve(cache, step.valueDecoder)
+                }
+                else -> decoders[index] = resolve(cache, step as Key<*>)
+            }
+        }
+        return CompiledComposedDecoder(decoders, nullabilityDecoders, contextFactory)
+    }
+
+    private fun <T> resolve(cache: (Key<*>) -> Decoder<*>, key: Key<T>): Decoder<T> {
+        @Suppress("UNCHECKED_CAST")
+        return when (key) {
+            is Key.Self -> throw IllegalArgumentException("$key can only be decoded as a nullable value")
+            is Key.Nullable<*> -> {
+                val valueDecoder = resolve(cache, key.valueDecoder) as Decoder<Any>
+                valueDecoder.toOptional(resolve(cache, key.nullabilityDecoder))
+            }
+            else -> cache(key)
+        } as Decoder<T>
+    }
+
+}
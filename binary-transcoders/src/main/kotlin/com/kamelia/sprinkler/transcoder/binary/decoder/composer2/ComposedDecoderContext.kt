@@ -0,0 +1,29 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.composer2
+
+/**
+ * Context in which an object decoded by a decoder built with a [ComposedDecoderBuilder] is created.
+ *
+ * A new context is created for each decoded object. It receives the decoded elements through [accept], in the order of
+ * the steps added to the builder, and [build] is called once all the elements have been received. Elements decoded by
+ * nullable steps are passed as `null` when absent.
+ *
+ * @param T the type of the created object
+ * @see ComposedDecoderBuilder
+ */
+interface ComposedDecoderContext<T> {
+
+    /**
+     * Receives the next decoded element.
+     *
+     * @param element the decoded element
+     */
+    fun accept(element: Any?)
+
+    /**
+     * Creates the object from the received elements.
+     *
+     * @return the created object
+     */
+    fun build(): T
+
+}
@@ -0,0 +1,47 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import java.io.InputStream
+
+/**
+ * A [DecoderInput] reading from an [InputStream] through an internal buffer.
+ *
+ * Bytes are read from the stream by chunks of the size of the buffer, using
+ * [InputStream.read(ByteArray, Int, Int)][InputStream.read], and bulk reads larger than the buffer are done directly in
+ * the destination array. Skips consume the buffered bytes first, and then rely on [InputStream.skip].
+ *
+ * As the stream is read ahead, bytes following the last decoded object may have been read from the stream without
+ * having been consumed by a decoder. Their number is returned by [bufferedBytes], and the [remainder] method returns a
+ * stream reading them followed by the rest of the underlying stream, allowing to hand the stream over to another reader:
+ *
+ * ```
+ * val input = DecoderInput.buffered(socket.getInputStream())
+ * val header = headerDecoder.decode(input).get()
+ * val body = input.remainder() // the bytes following the header, including the ones already buffered
+ * ```
+ *
+ * Instances of this interface are not thread-safe.
+ *
+ * @see DecoderInput.buffered
+ */
+interface BufferedDecoderInput : DecoderInput {
+
+    /**
+     * Returns the number of bytes read from the underlying stream which have not been consumed yet. Bits already read
+     * from the buffer but not yet consumed are not taken into account.
+     *
+     * @return the number of bytes read ahead from the underlying stream
+     */
+    fun bufferedBytes(): Int
+
+    /**
+     * Returns an [InputStream] reading the [buffered bytes][bufferedBytes] followed by the rest of the underlying
+     * stream. The buffered bytes are transferred to the returned stream, meaning that this input must not be used
+     * anymore after a call to this method.
+     *
+     * Closing the returned stream closes the underlying stream.
+     *
+     * @return a stream reading the bytes not consumed by this input
+     */
+    fun remainder(): InputStream
+
+}
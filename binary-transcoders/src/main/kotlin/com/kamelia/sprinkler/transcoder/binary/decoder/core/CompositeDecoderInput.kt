@@ -0,0 +1,56 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import java.nio.ByteBuffer
+
+/**
+ * A [DecoderInput] reading across a queue of [ByteBuffer] segments, to which new segments can be appended at any time.
+ *
+ * This input allows to decode data received in several buffers (e.g. network frames split by the transport) without
+ * copying them into a single contiguous buffer. Reading methods read the segments in the order in which they have been
+ * appended, and bulk reads and skips span segment boundaries. When a decoder returns [Decoder.State.Processing]
+ * because the queued segments are exhausted, the decoding can simply be resumed after appending new segments:
+ *
+ * ```
+ * val input = DecoderInput.composite { pool.release(it) }
+ * val decoder = IntDecoder()
+ * input.append(ByteBuffer.wrap(byteArrayOf(0, 0)))
+ * decoder.decode(input) // Processing
+ * input.append(ByteBuffer.wrap(byteArrayOf(0, 5)))
+ * decoder.decode(input) // Done(5)
+ * ```
+ *
+ * The appended buffers are expected to be in read mode, meaning that the bytes available for reading are the ones
+ * between their [position][ByteBuffer.position] and their [limit][ByteBuffer.limit]. They are read in place by
+ * advancing their position, and must not be modified while they are queued. Each segment is removed from the queue and
+ * passed to the release callback given on creation as soon as it has been fully consumed.
+ *
+ * Instances of this interface are not thread-safe.
+ *
+ * @see DecoderInput.composite
+ */
+interface CompositeDecoderInput : DecoderInput {
+
+    /**
+     * Appends the given [buffer] at the end of the queue of segments. A buffer without any remaining byte is directly
+     * passed to the release callback.
+     *
+     * @param buffer the buffer to append, in read mode
+     */
+    fun append(buffer: ByteBuffer)
+
+    /**
+     * Returns the number of bytes remaining in the queued segments. Bits already read from the segments but not yet
+     * consumed are not taken into account.
+     *
+     * @return the number of bytes remaining in the queued segments
+     */
+    fun remaining(): Long
+
+    /**
+     * Returns the number of segments currently queued.
+     *
+     * @return the number of segments currently queued
+     */
+    fun segmentCount(): Int
+
+}
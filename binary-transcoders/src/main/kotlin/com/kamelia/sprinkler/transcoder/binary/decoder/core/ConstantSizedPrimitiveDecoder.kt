@@ -0,0 +1,100 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import java.nio.ByteOrder
+import kotlin.math.max
+
+/**
+ * Base class of the built-in [PrimitiveDecoder]s. The bytes are accumulated in a small array and assembled directly
+ * into a [Long] slot, without going through a converter function nor boxing the value, which is only done by the
+ * [decode] method.
+ */
+internal sealed class ConstantSizedPrimitiveDecoder<T>(
+    byteSize: Int,
+    endianness: ByteOrder,
+) : PrimitiveDecoder<T> {
+
+    private val array = ByteArray(byteSize)
+    private val bigEndian = endianness == ByteOrder.BIG_ENDIAN
+    private var index = 0
+
+    @JvmField
+    protected var bits = 0L
+
+    final override fun decodePrimitive(input: DecoderInput): Boolean {
+        index += max(0, input.read(array, index))
+        if (index < array.size) return false
+
+        val array = array
+        var result = 0L
+        if (bigEndian) {
+            for (i in array.indices) {
+                result = (result shl 8) or (array[i].toLong() and 0xFF)
+            }
+        } else {
+            for (i in array.size - 1 downTo 0) {
+                result = (result shl 8) or (array[i].toLong() and 0xFF)
+            }
+        }
+        bits = result
+        index = 0
+        return true
+    }
+
+    final override fun decode(input: DecoderInput): Decoder.State<T> =
+        if (decodePrimitive(input)) Decoder.State.Done(value()) else Decoder.State.Processing
+
+    final override fun reset() {
+        index = 0
+    }
+
+    protected abstract fun value(): T
+
+    class OfByte : ConstantSizedPrimitiveDecoder<Byte>(Byte.SIZE_BYTES, ByteOrder.BIG_ENDIAN) {
+        override fun value(): Byte = bits.toByte()
+        override fun intValue(): Int = bits.toByte().toInt()
+        override fun longValue(): Long = bits.toByte().toLong()
+        override fun floatValue(): Float = bits.toByte().toFloat()
+        override fun doubleValue(): Double = bits.toByte().toDouble()
+    }
+
+    class OfShort(endianness: ByteOrder) : ConstantSizedPrimitiveDecoder<Short>(Short.SIZE_BYTES, endianness) {
+        override fun value(): Short = bits.toShort()
+        override fun intValue(): Int = bits.toShort().toInt()
+        override fun longValue(): Long = bits.toShort().toLong()
+        override fun floatValue(): Float = bits.toShort().toFloat()
+        override fun doubleValue(): Double = bits.toShort().toDouble()
+    }
+
+    class OfInt(endianness: ByteOrder) : ConstantSizedPrimitiveDecoder<Int>(Int.SIZE_BYTES, endianness) {
+        override fun value(): Int = bits.toInt()
+        override fun intValue(): Int = bits.toInt()
+        override fun longValue(): Long = bits.toInt().toLong()
+        override fun floatValue(): Float = bits.toInt().toFloat()
+        override fun doubleValue(): Double = bits.toInt().toDouble()
+    }
+
+    class OfLong(endianness: ByteOrder) : ConstantSizedPrimitiveDecoder<Long>(Long.SIZE_BYTES, endianness) {
+        override fun value(): Long = bits
+        override fun intValue(): Int = bits.toInt()
+        override fun longValue(): Long = bits
+        override fun floatValue(): Float = bits.toFloat()
+        override fun doubleValue(): Double = bits.toDouble()
+    }
+
+    class OfFloat(endianness: ByteOrder) : ConstantSizedPrimitiveDecoder<Float>(Float.SIZE_BYTES, endianness) {
+        override fun value(): Float = floatValue()
+        override fun intValue(): Int = floatValue().toInt()
+        override fun longValue(): Long = floatValue().toLong()
+        override fun floatValue(): Float = Float.fromBits(bits.toInt())
+        override fun doubleValue(): Double = floatValue().toDouble()
+    }
+
+    class OfDouble(endianness: ByteOrder) : ConstantSizedPrimitiveDecoder<Double>(Double.SIZE_BYTES, endianness) {
+        override fun value(): Double = doubleValue()
+        override fun intValue(): Int = doubleValue().toInt()
+        override fun longValue(): Long = doubleValue().toLong()
+        override fun floatValue(): Float = doubleValue().toFloat()
+        override fun doubleValue(): Double = Double.fromBits(bits)
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+/**
+ * [DecoderInput] delegating to another [DecoderInput] and counting the bytes and bits consumed through it.
+ *
+ * Bytes consumed through the byte methods (reads and skips) are counted in [bytes], while bits consumed through the bit
+ * methods are counted in [bits], so that [bytes] is the offset of the next byte in the underlying input as long as no
+ * bit method is used.
+ */
+internal class CountingDecoderInput(private val inner: DecoderInput) : DecoderInput {
+
+    @JvmField
+    var bytes = 0L
+
+    @JvmField
+    var bits = 0L
+
+    /**
+     * Returns the total number of bits consumed through this input.
+     */
+    fun consumedBits(): Long = bytes * 8 + bits
+
+    override fun readBit(): Int = inner.readBit().also { if (it >= 0) bits++ }
+
+    override fun read(): Int = inner.read().also { if (it >= 0) bytes++ }
+
+    override fun readBitsAsLong(n: Int): Long = inner.readBitsAsLong(n).also { if (it >= 0L) bits += n }
+
+    override fun readBits(bytes: ByteArray, start: Int, length: Int): Int =
+        inner.readBits(bytes, start, length).also { if (it > 0) bits += it }
+
+    override fun read(bytes: ByteArray, start: Int, length: Int): Int =
+        inner.read(bytes, start, length).also { if (it > 0) this.bytes += it }
+
+    override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int =
+        inner.readUntil(delimiter, bytes, start, length).also { if (it > 0) this.bytes += it }
+
+    override fun read(bytes: MutableCollection<Byte>, length: Int): Int =
+        inner.read(bytes, length).also { if (it > 0) this.bytes += it }
+
+    override fun skip(n: Long): Long = inner.skip(n).also { if (it > 0L) bytes += it }
+
+}
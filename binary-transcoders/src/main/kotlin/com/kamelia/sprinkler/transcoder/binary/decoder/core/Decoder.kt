@@ -5,9 +5,15 @@ import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder.State.Done
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder.State.Error
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder.State.Processing
 import com.kamelia.sprinkler.util.unsafeCast
+import java.io.File
 import java.io.IOException
 import java.io.InputStream
 import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.ReadableByteChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
 
 /**
  * Represents an object that can deserialize a stream of bytes into an object of type [T]. A decoder is stateful and can
@@ -72,12 +78,45 @@ interface Decoder<out T> {
      * Tries to decode an object of type [T] from the given [ByteBuffer] [input].
      *
      * The [ByteBuffer] is assumed to be in write mode before the call to this method and will be in write mode after
-     * the call to this method.
+     * the call to this method. The buffer is flipped once before decoding and compacted once after decoding, the
+     * decoding itself being done through a [DecoderInput.fromReadMode] input.
      *
      * @param input the input from which to decode the object
      * @return a [State] object representing the state of the decoding process
      */
-    fun decode(input: ByteBuffer): State<T> = decode(DecoderInput.from(input))
+    fun decode(input: ByteBuffer): State<T> {
+        input.flip()
+        try {
+            return decode(DecoderInput.fromReadMode(input))
+        } finally {
+            input.compact()
+        }
+    }
+
+    /**
+     * Tries to decode an object of type [T] from the file at the given [Path] [input].
+     *
+     * The file is read through memory-mapped windows (see [DecoderInput.from] with a
+     * [FileChannel][java.nio.channels.FileChannel]) and is closed before this method returns. As the file cannot be
+     * read any further after the call, a [State.Processing] state means that the file is truncated.
+     *
+     * @param input the path of the file from which to decode the object
+     * @return a [State] object representing the state of the decoding process
+     * @throws IOException if an I/O error occurs
+     */
+    fun decode(input: Path): State<T> =
+        FileChannel.open(input, StandardOpenOption.READ).use { decode(DecoderInput.from(it)) }
+
+    /**
+     * Tries to decode an object of type [T] from the given [File] [input].
+     *
+     * This method behaves exactly like the [decode] method taking a [Path].
+     *
+     * @param input the file from which to decode the object
+     * @return a [State] object representing the state of the decoding process
+     * @throws IOException if an I/O error occurs
+     */
+    fun decode(input: File): State<T> = decode(input.toPath())
 
     /**
      * Tries to decode an object of type [T] from the given [ByteArray] [input].
@@ -87,6 +126,82 @@ interface Decoder<out T> {
      */
     fun decode(input: ByteArray): State<T> = decode(DecoderInput.from(input))
 
+    /**
+     * Returns an [Iterator] lazily decoding consecutive objects of type [T] from the given [DecoderInput] [input]. Each
+     * object is decoded when it is requested, meaning that the objects are never all held in memory at once.
+     *
+     * The input is considered exhausted as soon as this decoder returns a [State.Processing] state, the returned
+     * iterator is therefore meant to be used with inputs reading from a blocking source (such as an [InputStream]).
+     * If some bytes have been read since the last decoded object when the input ends, the iterator throws a
+     * [MissingBytesException], and if the decoding of an object fails, it throws the [error][State.Error.error] of
+     * the returned state. In both cases, this decoder is reset and the iteration ends.
+     *
+     * This decoder must not be used by anything else while the iteration is in progress.
+     *
+     * @param input the input from which to decode the objects
+     * @return an iterator over the decoded objects
+     */
+    fun decodeIterator(input: DecoderInput): Iterator<T> = DecodingIterator(this, input)
+
+    /**
+     * Returns an [Iterator] lazily decoding consecutive objects of type [T] from the given [InputStream] [input].
+     *
+     * The stream is read by chunks through a [BufferedDecoderInput] with the default buffer size, a chunk being read
+     * only when the buffered bytes are not enough to decode the next object. Therefore, the memory used by the
+     * iteration does not depend on the size of the stream. To use another buffer size, use [decodeIterator] with a
+     * [DecoderInput] created by [DecoderInput.buffered].
+     *
+     * This method behaves like the [decodeIterator] method taking a [DecoderInput] regarding the end of the stream and
+     * errors. Note that the stream is not closed by the iterator.
+     *
+     * @param input the input from which to decode the objects
+     * @return an iterator over the decoded objects
+     * @see DecoderInput.buffered
+     */
+    fun decodeIterator(input: InputStream): Iterator<T> = decodeIterator(DecoderInput.buffered(input))
+
+    /**
+     * Returns an [Iterator] lazily decoding consecutive objects of type [T] from the given [ReadableByteChannel]
+     * [input].
+     *
+     * This method behaves exactly like the [decodeIterator] method taking an [InputStream], the channel being read
+     * through a stream created by [Channels.newInputStream]. The channel must therefore be in blocking mode.
+     *
+     * @param input the input from which to decode the objects
+     * @return an iterator over the decoded objects
+     */
+    fun decodeIterator(input: ReadableByteChannel): Iterator<T> = decodeIterator(Channels.newInputStream(input))
+
+    /**
+     * Returns a [Sequence] lazily decoding consecutive objects of type [T] from the given [DecoderInput] [input]. The
+     * returned sequence can be iterated only once.
+     *
+     * @param input the input from which to decode the objects
+     * @return a sequence of the decoded objects
+     * @see decodeIterator
+     */
+    fun decodeSequence(input: DecoderInput): Sequence<T> = decodeIterator(input).asSequence()
+
+    /**
+     * Returns a [Sequence] lazily decoding consecutive objects of type [T] from the given [InputStream] [input]. The
+     * returned sequence can be iterated only once.
+     *
+     * @param input the input from which to decode the objects
+     * @return a sequence of the decoded objects
+     * @see decodeIterator
+     */
+    fun decodeSequence(input: InputStream): Sequence<T> = decodeIterator(input).asSequence()
+
+    /**
+     * Returns a [Sequence] lazily decoding consecutive objects of type [T] from the given [ReadableByteChannel]
+     * [input]. The returned sequence can be iterated only once.
+     *
+     * @param input the input from which to decode the objects
+     * @return a sequence of the decoded objects
+     * @see decodeIterator
+     */
+    fun decodeSequence(input: ReadableByteChannel): Sequence<T> = decodeIterator(input).asSequence()
+
     /**
      * Resets the internal state of the decoder. This method can be called at any time, even if the decoder is not in a
      * [State.Done] state.
@@ -1,10 +1,18 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.core
 
 import com.kamelia.sprinkler.transcoder.binary.common.BitOrder
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
+import java.io.ByteArrayInputStream
 import java.io.IOException
 import java.io.InputStream
+import java.io.SequenceInputStream
 import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
 import java.util.*
+import java.util.zip.DataFormatException
+import java.util.zip.Inflater
 import kotlin.math.min
 
 /**
@@ -52,10 +60,40 @@ interface DecoderInput {
      */
     fun read(): Int
 
+    /**
+     * Reads the next [n] bits from the source at once and returns them as a [Long], the first bit read being the most
+     * significant bit of the value with [BitOrder.MSB_FIRST], and its least significant bit with [BitOrder.LSB_FIRST].
+     * Returns -1 if less than [n] bits are left to read.
+     *
+     * The inputs created by the factories of this interface read the bits through a 64-bit accumulator, and guarantee
+     * that no bit is consumed when -1 is returned, meaning that a decoder can call this method again once more bytes
+     * are available. The default implementation reads the bits one by one using [readBit] in the
+     * [BitOrder.MSB_FIRST] order, and therefore does not provide this guarantee.
+     *
+     * @param n the number of bits to read, between 0 and 63
+     * @return the bits read, or -1 if less than [n] bits are left to read
+     * @throws IllegalArgumentException if [n] is not between 0 and 63
+     * @throws IOException if an I/O error occurs
+     */
+    fun readBitsAsLong(n: Int): Long {
+        require(n in 0..63) { "Number of bits must be between 0 and 63 (was $n)" }
+        var result = 0L
+        repeat(n) {
+            val bit = readBit()
+            if (bit < 0) return -1
+            result = (result shl 1) or bit.toLong()
+        }
+        return result
+    }
+
     /**
      * Reads [length] bits from the source and writes them to the given [bytes] byte array. The bits are written
      * starting at the [start] bit index in the [bytes] array. Returns the number of bits actually read.
      *
+     * The bit indices are counted in the [BitOrder] of the input, meaning that the bit `0` of a byte is its most
+     * significant bit with [BitOrder.MSB_FIRST], and its least significant bit with [BitOrder.LSB_FIRST]. The default
+     * implementation uses the [BitOrder.MSB_FIRST] order.
+     *
      * If [length] is zero, or the [ByteArray][bytes]'s length is 0, then no bits are read and `0` is returned;
      * otherwise, there is an attempt to read at least one bit. If no bit is available because the stream is at end of
      * file, the value `-1` is returned; otherwise, at least one bit is read and stored into the [ByteArray][bytes].
@@ -184,6 +222,51 @@ interface DecoderInput {
      */
     fun read(bytes: ByteArray): Int = read(bytes, 0, bytes.size)
 
+    /**
+     * Reads bytes from the source into the given [ByteArray] until the [delimiter] byte has been read, and returns the
+     * number of bytes read. The [start] parameter specifies the start index in the [ByteArray] to read into, and the
+     * [length] parameter specifies the maximum number of bytes to read.
+     *
+     * The reading stops right after the first occurrence of the [delimiter], which is stored in the [ByteArray] as the
+     * last byte read, so that no byte following it is consumed. It also stops when [length] bytes have been read or
+     * when no more bytes are available. The caller can therefore check whether the delimiter has been found by
+     * comparing the last byte read to it.
+     *
+     * If [length] is zero, then no bytes are read and `0` is returned; otherwise, there is an attempt to read at
+     * least one byte. If no byte is available because the stream is at end of file, the value `-1` is returned.
+     *
+     * If there is at least one bit left, but less than 8 (between 1 and 7), then -2 is returned.
+     *
+     * The inputs created by the factories of this interface from in-memory sources (arrays, buffers and files) search
+     * the delimiter in place, several bytes at a time, and then copy the bytes at once.
+     *
+     * @param delimiter the byte stopping the reading
+     * @param bytes the [ByteArray] to read into
+     * @param start the inclusive start index in the [ByteArray] to read into
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read, or -1 if the end of the stream has been reached, and -2 if there is less than
+     * 1 byte left
+     * @throws IndexOutOfBoundsException if [start] < 0 or [length] < 0 or [start] + [length] > [ByteArray.size]
+     * @throws IOException if an I/O error occurs
+     */
+    fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+        Objects.checkFromIndexSize(start, length, bytes.size)
+        if (length == 0) return 0
+
+        val firstByte = read()
+        if (firstByte < 0) return firstByte
+        bytes[start] = firstByte.toByte()
+        if (bytes[start] == delimiter) return 1
+
+        for (i in start + 1 until start + length) {
+            val read = read()
+            if (read < 0) return i - start
+            bytes[i] = read.toByte()
+            if (bytes[i] == delimiter) return i - start + 1
+        }
+        return length
+    }
+
     /**
      * Reads bytes from the source into the given [MutableCollection] and returns the number of bytes read. The [length]
      * parameter specifies the maximum number of bytes to read.
@@ -273,6 +356,11 @@ interface DecoderInput {
                 Objects.checkFromIndexSize(start, length, bytes.size)
                 return -1
             }
+
+            override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                Objects.checkFromIndexSize(start, length, bytes.size)
+                return -1
+            }
         }
 
         /**
@@ -281,16 +369,301 @@ interface DecoderInput {
          *
          * All changes to the [InputStream] will be reflected in the [DecoderInput] and vice versa.
          *
+         * The returned input never reads more bytes from the stream than the ones it consumes, bulk reads being done
+         * using [InputStream.readNBytes] and skips using [InputStream.skip]. When several objects are decoded from the
+         * same stream, [buffered] should be preferred, as it reads the stream by chunks.
+         *
          * @param inner the [InputStream] to read from
          * @param order the [BitOrder] to use when reading bits
          * @return a [DecoderInput] that reads from the given [InputStream]
+         * @see buffered
          */
         @JvmStatic
         @JvmOverloads
         fun from(inner: InputStream, order: BitOrder = BitOrder.MSB_FIRST): DecoderInput =
-            object : AbstractDecoderInput() {
+            object : AbstractDecoderInput(order) {
+
+                override fun read(bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0) return super.read(bytes, start, length)
+                    val read = inner.readNBytes(bytes, start, length)
+                    return if (read == 0) -1 else read
+                }
+
                 override fun readByte(): Int = inner.read()
+
+                override fun skip(n: Long): Long {
+                    if (n <= 0L || bitLeft != 0) return super.skip(n)
+                    return inner.skipAtMost(n)
+                }
+
+            }
+
+        /**
+         * Creates a [BufferedDecoderInput] from the given [InputStream], reading it by chunks of [bufferSize] bytes.
+         * The [order] parameter specifies the order in which bits are read from the [InputStream].
+         *
+         * Contrary to [from], the returned input reads the stream ahead, meaning that bytes following the decoded
+         * objects may have been read from the stream. They can be retrieved using [BufferedDecoderInput.remainder].
+         *
+         * @param inner the [InputStream] to read from
+         * @param order the [BitOrder] to use when reading bits
+         * @param bufferSize the size of the internal buffer, in bytes (defaults to 8 KiB)
+         * @return a [BufferedDecoderInput] that reads from the given [InputStream]
+         * @throws IllegalArgumentException if [bufferSize] is not strictly positive
+         * @see BufferedDecoderInput
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun buffered(
+            inner: InputStream,
+            order: BitOrder = BitOrder.MSB_FIRST,
+            bufferSize: Int = DEFAULT_BUFFER_SIZE,
+        ): BufferedDecoderInput {
+            require(bufferSize > 0) { "Buffer size must be strictly positive (was $bufferSize)" }
+            return object : AbstractDecoderInput(order), BufferedDecoderInput {
+
+                private val buffer = ByteArray(bufferSize)
+                private val view = ByteBuffer.wrap(buffer)
+                private var position = 0
+                private var limit = 0
+
+                override fun bufferedBytes(): Int = limit - position
+
+                override fun remainder(): InputStream {
+                    val buffered = ByteArrayInputStream(buffer.copyOfRange(position, limit))
+                    position = limit
+                    return SequenceInputStream(buffered, inner)
+                }
+
+                override fun read(bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0) return super<AbstractDecoderInput>.read(bytes, start, length)
+
+                    var read = 0
+                    while (read < length) {
+                        if (position == limit) {
+                            if (length - read >= buffer.size) { // large read, bypass the buffer
+                                read += inner.readNBytes(bytes, start + read, length - read)
+                                break
+                            }
+                            if (!fill()) break
+                        }
+                        val count = min(length - read, limit - position)
+                        System.arraycopy(buffer, position, bytes, start + read, count)
+                        position += count
+                        read += count
+                    }
+                    return if (read == 0) -1 else read
+                }
+
+                override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0) return super<AbstractDecoderInput>.readUntil(delimiter, bytes, start, length)
+
+                    var read = 0
+                    while (read < length) {
+                        if (position == limit && !fill()) break
+                        val end = min(limit, position + length - read)
+                        val found = view.indexOf(delimiter, position, end)
+                        val count = (if (found < 0) end else found + 1) - position
+                        System.arraycopy(buffer, position, bytes, start + read, count)
+                        position += count
+                        read += count
+                        if (found >= 0) break
+                    }
+                    return if (read == 0) -1 else read
+                }
+
+                override fun readByte(): Int {
+                    if (position == limit && !fill()) return -1
+                    return buffer[position++].toInt() and 0xFF
+                }
+
+                override fun skip(n: Long): Long {
+                    if (n <= 0L || bitLeft != 0) return super<AbstractDecoderInput>.skip(n)
+                    val fromBuffer = min(n, (limit - position).toLong()).toInt()
+                    position += fromBuffer
+                    if (fromBuffer.toLong() == n) return n
+                    return fromBuffer + inner.skipAtMost(n - fromBuffer)
+                }
+
+                private fun fill(): Boolean {
+                    val read = inner.read(buffer, 0, buffer.size)
+                    if (read <= 0) return false
+                    position = 0
+                    limit = read
+                    return true
+                }
+
+            }
+        }
+
+        /**
+         * Creates an [InflatingDecoderInput], decompressing the bytes compressed with the DEFLATE algorithm in the
+         * zlib format read from the given [inner] input. The [order] parameter specifies the order in which bits are
+         * read from the decompressed bytes.
+         *
+         * The compressed bytes are read from [inner] by chunks of [bufferSize] bytes, and decompressed by chunks of the
+         * same size in a second buffer, from which the reads are served. Reads larger than this buffer are
+         * decompressed directly in the destination array. The same [Inflater][java.util.zip.Inflater] is reused for
+         * all the zlib streams of the input, and both buffers are acquired from the given [pool] and released to it
+         * when the input is [closed][InflatingDecoderInput.close].
+         *
+         * As the returned input is resumable, [inner] can be an input which is fed as the compressed bytes are
+         * received, such as a [CompositeDecoderInput] or an input created by [from] with a [ByteBuffer]:
+         *
+         * ```
+         * val compressed = DecoderInput.composite()
+         * val input = DecoderInput.inflating(compressed)
+         * // for each received buffer
+         * compressed.append(buffer)
+         * val state = decoder.decode(input) // Processing until enough compressed bytes have been received
+         * ```
+         *
+         * @param inner the [DecoderInput] from which the compressed bytes are read
+         * @param bufferSize the size of the internal buffers, in bytes (defaults to 8 KiB)
+         * @param order the [BitOrder] to use when reading bits
+         * @param pool the [BufferPool] from which the internal buffers are acquired (defaults to [BufferPool.noOp])
+         * @return an [InflatingDecoderInput] decompressing the bytes read from [inner]
+         * @throws IllegalArgumentException if [bufferSize] is not strictly positive
+         * @see InflatingDecoderInput
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun inflating(
+            inner: DecoderInput,
+            bufferSize: Int = DEFAULT_BUFFER_SIZE,
+            order: BitOrder = BitOrder.MSB_FIRST,
+            pool: BufferPool = BufferPool.noOp(),
+        ): InflatingDecoderInput {
+            require(bufferSize > 0) { "Buffer size must be strictly positive (was $bufferSize)" }
+            return object : AbstractDecoderInput(order), InflatingDecoderInput {
+
+                private val inflater = Inflater()
+                private var compressed = pool.acquire(bufferSize)
+                private var compressedLimit = 0 // end of the compressed bytes given to the inflater
+                private var buffer = pool.acquire(bufferSize)
+                private var view = ByteBuffer.wrap(buffer)
+                private var position = 0
+                private var limit = 0
+                private var closed = false
+
+                override fun read(bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0) return super<AbstractDecoderInput>.read(bytes, start, length)
+
+                    var read = 0
+                    while (read < length) {
+                        if (position == limit) {
+                            if (length - read >= buffer.size) { // large read, bypass the buffer
+                                val count = inflate(bytes, start + read, length - read)
+                                if (count < 0) break
+                                read += count
+                                continue
+                            }
+                            if (!fill()) break
+                        }
+                        val count = min(length - read, limit - position)
+                        System.arraycopy(buffer, position, bytes, start + read, count)
+                        position += count
+                        read += count
+                    }
+                    return if (read == 0) -1 else read
+                }
+
+                override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0) return super<AbstractDecoderInput>.readUntil(delimiter, bytes, start, length)
+
+                    var read = 0
+                    while (read < length) {
+                        if (position == limit && !fill()) break
+                        val end = min(limit, position + length - read)
+                        val found = view.indexOf(delimiter, position, end)
+                        val count = (if (found < 0) end else found + 1) - position
+                        System.arraycopy(buffer, position, bytes, start + read, count)
+                        position += count
+                        read += count
+                        if (found >= 0) break
+                    }
+                    return if (read == 0) -1 else read
+                }
+
+                override fun readByte(): Int {
+                    if (position == limit && !fill()) return -1
+                    return buffer[position++].toInt() and 0xFF
+                }
+
+                override fun skip(n: Long): Long {
+                    if (n <= 0L || bitLeft != 0) return super<AbstractDecoderInput>.skip(n)
+                    var skipped = 0L
+                    while (skipped < n) {
+                        if (position == limit && !fill()) break
+                        val count = min(n - skipped, (limit - position).toLong()).toInt()
+                        position += count
+                        skipped += count
+                    }
+                    return skipped
+                }
+
+                override fun close() {
+                    if (closed) return
+                    closed = true
+                    inflater.end()
+                    pool.release(compressed)
+                    pool.release(buffer)
+                    compressed = EMPTY_ARRAY
+                    buffer = EMPTY_ARRAY
+                    view = ByteBuffer.wrap(EMPTY_ARRAY)
+                    position = 0
+                    limit = 0
+                }
+
+                private fun fill(): Boolean {
+                    val count = inflate(buffer, 0, buffer.size)
+                    if (count < 0) return false
+                    position = 0
+                    limit = count
+                    return true
+                }
+
+                // decompresses at most length bytes, and returns their number, or -1 if the compressed bytes received
+                // so far have all been decompressed
+                private fun inflate(bytes: ByteArray, start: Int, length: Int): Int {
+                    check(!closed) { "The input is closed" }
+                    while (true) {
+                        val count = try {
+                            inflater.inflate(bytes, start, length)
+                        } catch (e: DataFormatException) {
+                            throw IllegalStateException("Malformed compressed bytes", e)
+                        }
+                        if (count > 0) return count
+
+                        if (inflater.finished()) { // end of a zlib stream, another one may follow
+                            val remaining = inflater.remaining
+                            inflater.reset()
+                            if (remaining > 0) {
+                                inflater.setInput(compressed, compressedLimit - remaining, remaining)
+                            }
+                        } else if (inflater.needsDictionary()) {
+                            throw IllegalStateException("Preset dictionaries are not supported")
+                        } else if (inflater.needsInput()) {
+                            val read = inner.read(compressed, 0, compressed.size)
+                            if (read <= 0) return -1
+                            compressedLimit = read
+                            inflater.setInput(compressed, 0, read)
+                        }
+                    }
+                }
+
             }
+        }
 
         /**
          * Creates a [DecoderInput] from the given [ByteBuffer]. The [order] parameter specifies the order in which
@@ -303,14 +676,19 @@ interface DecoderInput {
          * reading and compacted after reading. This implementation allows to keep the buffer in write mode without
          * having to flip it back and forth.
          *
+         * **NOTE**: As the buffer is compacted after each read, each call to a reading method has a cost proportional
+         * to the number of bytes remaining in the buffer. When reading many bytes at once or from a large buffer,
+         * prefer [fromReadMode], which does not move the content of the buffer.
+         *
          * @param inner the [ByteBuffer] to read from
          * @param order the [BitOrder] to use when reading bits
          * @return a [DecoderInput] that reads from the given [ByteBuffer]
+         * @see fromReadMode
          */
         @JvmStatic
         @JvmOverloads
         fun from(inner: ByteBuffer, order: BitOrder = BitOrder.MSB_FIRST): DecoderInput =
-            object : AbstractDecoderInput() {
+            object : AbstractDecoderInput(order) {
 
                 private var isInWriteMode = true
 
@@ -360,6 +738,18 @@ interface DecoderInput {
                     return read
                 }
 
+                override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0 || !isInWriteMode) return super.readUntil(delimiter, bytes, start, length)
+                    if (inner.position() == 0) return -1
+
+                    inner.flip()
+                    val read = inner.readUntil(delimiter, bytes, start, length)
+                    inner.compact()
+                    return read
+                }
+
                 override fun readByte(): Int {
                     val wasInWriteMode = isInWriteMode
                     if (isInWriteMode) {
@@ -378,6 +768,269 @@ interface DecoderInput {
 
             }
 
+        /**
+         * Creates a [DecoderInput] from the given [ByteBuffer] in read mode. The [order] parameter specifies the order
+         * in which bits are read from the [ByteBuffer].
+         *
+         * Contrary to [from], the [ByteBuffer] is expected to be in read mode, meaning that the bytes available for
+         * reading are the ones between its [position][ByteBuffer.position] and its [limit][ByteBuffer.limit]. The
+         * position of the buffer is used as the read cursor and is advanced by each reading method, the buffer is never
+         * flipped nor compacted. Both heap and direct buffers are supported, and bulk reads are done using a single
+         * [get][ByteBuffer.get] call.
+         *
+         * All changes to the [ByteBuffer] will be reflected in the [DecoderInput] and vice versa.
+         *
+         * @param inner the [ByteBuffer] to read from
+         * @param order the [BitOrder] to use when reading bits
+         * @return a [DecoderInput] that reads from the given [ByteBuffer]
+         * @see from
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun fromReadMode(inner: ByteBuffer, order: BitOrder = BitOrder.MSB_FIRST): DecoderInput =
+            object : AbstractDecoderInput(order) {
+
+                override fun read(bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (!inner.hasRemaining()) return if (bitLeft != 0) -2 else -1
+                    if (bitLeft != 0) return super.read(bytes, start, length)
+
+                    val actualLength = min(length, inner.remaining())
+                    inner.get(bytes, start, actualLength)
+                    return actualLength
+                }
+
+                override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (!inner.hasRemaining()) return if (bitLeft != 0) -2 else -1
+                    if (bitLeft != 0) return super.readUntil(delimiter, bytes, start, length)
+                    return inner.readUntil(delimiter, bytes, start, length)
+                }
+
+                override fun readByte(): Int = if (inner.hasRemaining()) {
+                    inner.get().toInt() and 0xFF
+                } else {
+                    -1
+                }
+
+                override fun skip(n: Long): Long {
+                    if (n <= 0L || bitLeft != 0) return super.skip(n)
+                    val toSkip = min(n, inner.remaining().toLong()).toInt()
+                    inner.position(inner.position() + toSkip)
+                    return toSkip.toLong()
+                }
+
+            }
+
+        /**
+         * Creates a [CompositeDecoderInput], reading across a queue of [ByteBuffer] segments to which new segments can
+         * be appended. The [order] parameter specifies the order in which bits are read from the segments.
+         *
+         * Each segment is passed to the [onRelease] callback as soon as it has been fully consumed, allowing to recycle
+         * it.
+         *
+         * @param order the [BitOrder] to use when reading bits
+         * @param onRelease the callback invoked with each fully consumed segment (defaults to a no-op)
+         * @return a new empty [CompositeDecoderInput]
+         * @see CompositeDecoderInput
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun composite(
+            order: BitOrder = BitOrder.MSB_FIRST,
+            onRelease: (ByteBuffer) -> Unit = {},
+        ): CompositeDecoderInput = object : AbstractDecoderInput(order), CompositeDecoderInput {
+
+            private val segments = ArrayDeque<ByteBuffer>()
+            private var remaining = 0L
+
+            override fun append(buffer: ByteBuffer) {
+                if (!buffer.hasRemaining()) {
+                    onRelease(buffer)
+                    return
+                }
+                segments.addLast(buffer)
+                remaining += buffer.remaining()
+            }
+
+            override fun remaining(): Long = remaining
+
+            override fun segmentCount(): Int = segments.size
+
+            override fun read(bytes: ByteArray, start: Int, length: Int): Int {
+                Objects.checkFromIndexSize(start, length, bytes.size)
+                if (length == 0) return 0
+                if (remaining == 0L) return if (bitLeft != 0) -2 else -1
+                if (bitLeft != 0) return super<AbstractDecoderInput>.read(bytes, start, length)
+
+                var read = 0
+                while (read < length && remaining > 0L) {
+                    val segment = segments.first()
+                    val actualLength = min(length - read, segment.remaining())
+                    segment.get(bytes, start + read, actualLength)
+                    read += actualLength
+                    consumed(segment, actualLength)
+                }
+                return read
+            }
+
+            override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                Objects.checkFromIndexSize(start, length, bytes.size)
+                if (length == 0) return 0
+                if (remaining == 0L) return if (bitLeft != 0) -2 else -1
+                if (bitLeft != 0) return super<AbstractDecoderInput>.readUntil(delimiter, bytes, start, length)
+
+                var read = 0
+                while (read < length && remaining > 0L) {
+                    val segment = segments.first()
+                    val count = segment.readUntil(delimiter, bytes, start + read, length - read)
+                    read += count
+                    consumed(segment, count)
+                    if (bytes[start + read - 1] == delimiter) break
+                }
+                return read
+            }
+
+            override fun readByte(): Int {
+                if (remaining == 0L) return -1
+                val segment = segments.first()
+                val byte = segment.get().toInt() and 0xFF
+                consumed(segment, 1)
+                return byte
+            }
+
+            override fun skip(n: Long): Long {
+                if (n <= 0L || bitLeft != 0) return super<AbstractDecoderInput>.skip(n)
+                var skipped = 0L
+                while (skipped < n && remaining > 0L) {
+                    val segment = segments.first()
+                    val toSkip = min(n - skipped, segment.remaining().toLong()).toInt()
+                    segment.position(segment.position() + toSkip)
+                    skipped += toSkip
+                    consumed(segment, toSkip)
+                }
+                return skipped
+            }
+
+            private fun consumed(segment: ByteBuffer, count: Int) {
+                remaining -= count
+                if (!segment.hasRemaining()) {
+                    segments.removeFirst()
+                    onRelease(segment)
+                }
+            }
+
+        }
+
+        /**
+         * Creates a [DecoderInput] from the given [FileChannel]. The [order] parameter specifies the order in which
+         * bits are read from the [FileChannel].
+         *
+         * The content of the file is read through [MappedByteBuffer]s of at most [windowSize] bytes, which are mapped
+         * lazily and slide across the file as it is read. Bulk reads are therefore simple copies from the mapped memory,
+         * and [skip] only moves the read cursor, without reading the skipped bytes. The end of the file is determined
+         * using the [size][FileChannel.size] of the channel when a window is exhausted, meaning that bytes appended to
+         * the file after the creation of the input will be read.
+         *
+         * Reading starts at the current [position][FileChannel.position] of the channel, which is not updated by the
+         * returned [DecoderInput]. The channel must be opened for reading and must not be closed while the input is in
+         * use.
+         *
+         * **NOTE**: Mapped windows are released by the garbage collector, and not when the channel is closed.
+         *
+         * @param inner the [FileChannel] to read from
+         * @param order the [BitOrder] to use when reading bits
+         * @param windowSize the maximum size of each mapped window, in bytes (defaults to 64 MiB)
+         * @return a [DecoderInput] that reads from the given [FileChannel]
+         * @throws IllegalArgumentException if [windowSize] is not strictly positive
+         * @throws IOException if an I/O error occurs while getting the position of the channel
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun from(
+            inner: FileChannel,
+            order: BitOrder = BitOrder.MSB_FIRST,
+            windowSize: Int = DEFAULT_MAPPED_WINDOW_SIZE,
+        ): DecoderInput {
+            require(windowSize > 0) { "Window size must be strictly positive (was $windowSize)" }
+            val startPosition = inner.position()
+            return object : AbstractDecoderInput(order) {
+
+                private var window: MappedByteBuffer? = null
+                private var windowStart = startPosition // absolute position in the file of the start of the window
+                private var position = startPosition // absolute position in the file of the next byte to read
+
+                override fun read(bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0) return super.read(bytes, start, length)
+
+                    var read = 0
+                    while (read < length) {
+                        val window = currentWindow() ?: break
+                        val actualLength = min(length - read, window.remaining())
+                        window.get(bytes, start + read, actualLength)
+                        position += actualLength
+                        read += actualLength
+                    }
+                    return if (read == 0) -1 else read
+                }
+
+                override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (bitLeft != 0) return super.readUntil(delimiter, bytes, start, length)
+
+                    var read = 0
+                    while (read < length) {
+                        val window = currentWindow() ?: break
+                        val count = window.readUntil(delimiter, bytes, start + read, length - read)
+                        position += count
+                        read += count
+                        if (bytes[start + read - 1] == delimiter) break
+                    }
+                    return if (read == 0) -1 else read
+                }
+
+                override fun readByte(): Int {
+                    val window = currentWindow() ?: return -1
+                    position++
+                    return window.get().toInt() and 0xFF
+                }
+
+                override fun skip(n: Long): Long {
+                    if (n <= 0L || bitLeft != 0) return super.skip(n)
+                    val toSkip = min(n, inner.size() - position)
+                    if (toSkip <= 0L) return 0L
+                    position += toSkip
+                    val window = window
+                    if (window != null && position - windowStart <= window.limit()) {
+                        window.position((position - windowStart).toInt())
+                    } else {
+                        this.window = null
+                    }
+                    return toSkip
+                }
+
+                // returns the window containing the byte at the current position, mapping a new one if needed,
+                // or null if the end of the file has been reached
+                private fun currentWindow(): MappedByteBuffer? {
+                    val current = window
+                    if (current != null && current.hasRemaining()) return current
+
+                    val size = min(inner.size() - position, windowSize.toLong())
+                    if (size <= 0L) return null
+                    return inner.map(FileChannel.MapMode.READ_ONLY, position, size).also {
+                        window = it
+                        windowStart = position
+                    }
+                }
+
+            }
+        }
+
         /**
          * Creates a [DecoderInput] from the given [ByteArray]. The [order] parameter specifies the order in which
          * bits are read from the [ByteArray].
@@ -392,16 +1045,32 @@ interface DecoderInput {
         @JvmStatic
         @JvmOverloads
         fun from(inner: ByteArray, order: BitOrder = BitOrder.MSB_FIRST): DecoderInput =
-            object : AbstractDecoderInput() {
+            object : AbstractDecoderInput(order) {
 
                 private var index = 0
 
+                private val view = ByteBuffer.wrap(inner)
+
                 override fun readByte(): Int = if (index < inner.size) {
                     inner[index++].toInt() and 0xFF
                 } else {
                     -1
                 }
 
+                override fun readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+                    Objects.checkFromIndexSize(start, length, bytes.size)
+                    if (length == 0) return 0
+                    if (index == inner.size) return if (bitLeft != 0) -2 else -1
+                    if (bitLeft != 0) return super.readUntil(delimiter, bytes, start, length)
+
+                    val end = min(inner.size, index + length)
+                    val found = view.indexOf(delimiter, index, end)
+                    val count = (if (found < 0) end else found + 1) - index
+                    System.arraycopy(inner, index, bytes, start, count)
+                    index += count
+                    return count
+                }
+
                 override fun skip(n: Long): Long {
                     val oldIndex = index
                     index = min(index + n.toInt(), inner.size)
@@ -424,7 +1093,7 @@ interface DecoderInput {
         @JvmStatic
         @JvmOverloads
         fun from(order: BitOrder = BitOrder.MSB_FIRST, readByte: () -> Int): DecoderInput =
-            object : AbstractDecoderInput() {
+            object : AbstractDecoderInput(order) {
                 override fun readByte(): Int = readByte()
             }
 
@@ -432,6 +1101,70 @@ interface DecoderInput {
 
 }
 
+private const val DEFAULT_MAPPED_WINDOW_SIZE = 64 * 1024 * 1024
+
+private const val DEFAULT_BUFFER_SIZE = 8 * 1024
+
+private val EMPTY_ARRAY = ByteArray(0)
+
+// skips at most n bytes of the stream, stopping only at the end of the stream, and returns the number of bytes skipped
+private fun InputStream.skipAtMost(n: Long): Long {
+    var skipped = 0L
+    while (skipped < n) {
+        val count = skip(n - skipped)
+        if (count > 0L) {
+            skipped += count
+        } else if (read() == -1) { // skip may return 0 before the end of the stream, which is checked by reading
+            break
+        } else {
+            skipped++
+        }
+    }
+    return skipped
+}
+
+private const val ONES = 0x0101_0101_0101_0101L
+
+private const val LOW_SEVEN_BITS = 0x7F7F_7F7F_7F7F_7F7FL
+
+// returns the index of the first occurrence of the byte in the buffer between from (inclusive) and to (exclusive), or
+// -1 if there is none. The bytes are compared 8 at a time, by flagging the zero bytes of the xor of each word with the
+// repeated byte (without false positives, so that the first flagged byte is the first occurrence).
+private fun ByteBuffer.indexOf(byte: Byte, from: Int, to: Int): Int {
+    val pattern = (byte.toLong() and 0xFF) * ONES
+    val bigEndian = order() == ByteOrder.BIG_ENDIAN
+    var i = from
+    while (i <= to - Long.SIZE_BYTES) {
+        val word = getLong(i) xor pattern
+        val zeros = (((word and LOW_SEVEN_BITS) + LOW_SEVEN_BITS) or word or LOW_SEVEN_BITS).inv()
+        if (zeros != 0L) {
+            val offset = if (bigEndian) {
+                java.lang.Long.numberOfLeadingZeros(zeros)
+            } else {
+                java.lang.Long.numberOfTrailingZeros(zeros)
+            }
+            return i + (offset ushr 3)
+        }
+        i += Long.SIZE_BYTES
+    }
+    while (i < to) {
+        if (get(i) == byte) return i
+        i++
+    }
+    return -1
+}
+
+// reads the bytes of the buffer (in read mode) up to the first occurrence of the delimiter (included), reading at most
+// length bytes, and returns the number of bytes read
+private fun ByteBuffer.readUntil(delimiter: Byte, bytes: ByteArray, start: Int, length: Int): Int {
+    val position = position()
+    val end = position + min(length, remaining())
+    val found = indexOf(delimiter, position, end)
+    val count = (if (found < 0) end else found + 1) - position
+    get(bytes, start, count)
+    return count
+}
+
 private fun DecoderInput.innerReadBits(bytes: ByteArray, index: Int, bitIndex: Int, length: Int): Int {
     if (length == 0) return 0
     var result = 0
@@ -453,45 +1186,127 @@ private fun DecoderInput.innerReadBits(bytes: ByteArray, index: Int, bitIndex: I
     return readBits
 }
 
-private abstract class AbstractDecoderInput : DecoderInput {
+private abstract class AbstractDecoderInput(order: BitOrder) : DecoderInput {
+
+    private val msbFirst = order.isMsbFirst
 
-    // the bits in the buffer are simply shifted to the left when reading
-    // the reading is always done starting from the 15th bit (where 0 is the lsb)
-    private var buffer = 0 // 2 bytes buffer
-    protected var bitLeft = 0 // number of bits left in the buffer [0-15]
+    // the bits are stored in the lowest bits of the accumulator, the next bit to read being the highest of them with
+    // MSB_FIRST and the lowest of them with LSB_FIRST. Bytes are only appended while there is room for 8 more bits.
+    private var accumulator = 0L
+    protected var bitLeft = 0 // number of bits left in the accumulator [0-63]
         private set
 
     final override fun readBit(): Int {
-        if (bitLeft == 0 && !refillBuffer()) return -1
-        val result = (buffer ushr 15) and 1
-        buffer = buffer shl 1
-        bitLeft--
-        return result
+        if (bitLeft == 0 && !appendByte()) return -1
+        return take(1).toInt()
     }
 
     final override fun read(): Int = if (bitLeft == 0) {
         readByte()
+    } else if (bitLeft < 8 && !appendByte()) {
+        -2
     } else {
-        if (!refillBuffer()) {
-            -2
+        take(8).toInt()
+    }
+
+    final override fun readBitsAsLong(n: Int): Long {
+        require(n in 0..63) { "Number of bits must be between 0 and 63 (was $n)" }
+        while (bitLeft < n && bitLeft <= 56) {
+            if (!appendByte()) return -1
+        }
+        if (bitLeft >= n) return take(n)
+
+        // the accumulator cannot hold the next byte, so the last bits are taken directly from it
+        val nextByte = readByte()
+        if (nextByte == -1) return -1
+        val fromByte = n - bitLeft
+        val remaining = 8 - fromByte
+        val fromAccumulatorCount = bitLeft
+        val fromAccumulator = take(fromAccumulatorCount)
+        return if (msbFirst) {
+            accumulator = nextByte.toLong() and mask(remaining)
+            bitLeft = remaining
+            (fromAccumulator shl fromByte) or (nextByte.toLong() ushr remaining)
         } else {
-            // read 8 bits from the buffer
-            val result = ((buffer and 0xFF00) ushr 8) and 0xFF
-            buffer = buffer shl 8
-            bitLeft -= 8
-            result
+            accumulator = nextByte.toLong() ushr fromByte
+            bitLeft = remaining
+            fromAccumulator or ((nextByte.toLong() and mask(fromByte)) shl fromAccumulatorCount)
+        }
+    }
+
+    override fun readBits(bytes: ByteArray, start: Int, length: Int): Int {
+        Objects.checkFromIndexSize(start, length, bytes.size * 8)
+        if (length == 0) return 0
+
+        val end = start + length
+        var index = start
+        while (index < end) {
+            val offset = index and 7
+            if (offset == 0 && bitLeft == 0 && end - index >= 8) { // aligned on both sides, bulk read the full bytes
+                val read = read(bytes, index ushr 3, (end - index) ushr 3)
+                if (read > 0) {
+                    index += read * 8
+                    continue
+                }
+            }
+
+            val count = min(8 - offset, end - index)
+            val value = readBitsAsLong(count)
+            if (value < 0) { // less than count bits left, read them one by one
+                while (index < end) {
+                    val bit = readBit()
+                    if (bit < 0) break
+                    setBits(bytes, index, 1, bit)
+                    index++
+                }
+                break
+            }
+            setBits(bytes, index, count, value.toInt())
+            index += count
         }
+
+        val read = index - start
+        return if (read == 0) -1 else read
     }
 
-    private fun refillBuffer(): Boolean {
+    // writes the count bits of value in bytes, starting at the bit index (which must be in the same byte as the last
+    // bit to write), numbered according to the bit order
+    private fun setBits(bytes: ByteArray, index: Int, count: Int, value: Int) {
+        val byteIndex = index ushr 3
+        val shift = if (msbFirst) 8 - (index and 7) - count else index and 7
+        val mask = ((1 shl count) - 1) shl shift
+        bytes[byteIndex] = ((bytes[byteIndex].toInt() and mask.inv()) or ((value shl shift) and mask)).toByte()
+    }
+
+    private fun appendByte(): Boolean {
         val nextByte = readByte()
         if (nextByte == -1) return false
-        val shiftNextByte = nextByte shl (16 - bitLeft - 8)
-        buffer = buffer or shiftNextByte
+        accumulator = if (msbFirst) {
+            (accumulator shl 8) or nextByte.toLong()
+        } else {
+            accumulator or (nextByte.toLong() shl bitLeft)
+        }
         bitLeft += 8
         return true
     }
 
+    // takes the next n bits of the accumulator, n being lower or equal to bitLeft
+    private fun take(n: Int): Long {
+        val remaining = bitLeft - n
+        val result: Long
+        if (msbFirst) {
+            result = (accumulator ushr remaining) and mask(n)
+            accumulator = accumulator and mask(remaining)
+        } else {
+            result = accumulator and mask(n)
+            accumulator = if (n == 64) 0L else accumulator ushr n
+        }
+        bitLeft = remaining
+        return result
+    }
+
     protected abstract fun readByte(): Int
 
 }
+
+private fun mask(n: Int): Long = if (n >= 64) -1L else (1L shl n) - 1
@@ -0,0 +1,70 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+/**
+ * [Iterator] decoding consecutive objects from a [DecoderInput] with a [Decoder], each object being decoded when it is
+ * requested.
+ *
+ * The input is considered exhausted as soon as the decoder returns [Decoder.State.Processing]. If some bytes have been
+ * read since the last decoded object, the input ended in the middle of an object and a [MissingBytesException] is
+ * thrown, otherwise the iteration simply ends.
+ */
+internal class DecodingIterator<T>(
+    private val decoder: Decoder<T>,
+    input: DecoderInput,
+) : Iterator<T> {
+
+    private val input = CountingDecoderInput(input)
+
+    private var state = PENDING
+
+    private var next: T? = null
+
+    override fun hasNext(): Boolean {
+        if (state == PENDING) {
+            decodeNext()
+        }
+        return state == READY
+    }
+
+    override fun next(): T {
+        if (!hasNext()) throw NoSuchElementException()
+        state = PENDING
+        @Suppress("UNCHECKED_CAST")
+        val value = next as T
+        next = null
+        return value
+    }
+
+    private fun decodeNext() {
+        val consumed = input.consumedBits()
+        when (val result = decoder.decode(input)) {
+            is Decoder.State.Done -> {
+                next = result.value
+                state = READY
+            }
+            is Decoder.State.Processing -> {
+                state = ENDED
+                if (input.consumedBits() != consumed) { // the input ended in the middle of an object
+                    decoder.reset()
+                    throw MissingBytesException()
+                }
+            }
+            is Decoder.State.Error -> {
+                state = ENDED
+                decoder.reset()
+                throw result.error
+            }
+        }
+    }
+
+    private companion object {
+
+        const val PENDING = 0
+
+        const val READY = 1
+
+        const val ENDED = 2
+
+    }
+
+}
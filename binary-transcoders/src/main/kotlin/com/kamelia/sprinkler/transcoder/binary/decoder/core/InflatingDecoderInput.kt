@@ -0,0 +1,31 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+/**
+ * A [DecoderInput] decompressing bytes compressed with the DEFLATE algorithm, in the zlib format, read from an
+ * underlying [DecoderInput]. Instances are created with [DecoderInput.inflating].
+ *
+ * The compressed bytes may be made of several consecutive zlib streams, such as the frames written by a
+ * [DeflatingEncoderOutput][com.kamelia.sprinkler.transcoder.binary.encoder.core.DeflatingEncoderOutput], which are
+ * decompressed one after the other as a single sequence of bytes.
+ *
+ * The input is resumable: when the underlying input has no more compressed bytes available, the reads return `-1` as
+ * at the end of any input, and the decoder reading from this input returns [Decoder.State.Processing]. Once more
+ * compressed bytes are available in the underlying input (e.g. appended to a
+ * [CompositeDecoderInput]), the decompression resumes where it stopped. Compressed bytes are read from the underlying
+ * input ahead of the decompressed ones, meaning that the underlying input should not be read by anything else.
+ *
+ * Malformed compressed bytes make the reads throw an [IllegalStateException].
+ *
+ * **NOTE**: This input is not thread-safe, and must not be used once closed.
+ *
+ * @see DecoderInput.inflating
+ */
+interface InflatingDecoderInput : DecoderInput, AutoCloseable {
+
+    /**
+     * Releases the decompressor and the buffers of this input. The underlying input is not closed. Calling this method
+     * on a closed input has no effect.
+     */
+    override fun close()
+
+}
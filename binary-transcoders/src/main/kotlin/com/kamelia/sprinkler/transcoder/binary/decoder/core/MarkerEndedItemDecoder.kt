@@ -1,24 +1,45 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.core
 
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
+import java.util.Arrays
+import kotlin.math.max
+
 /**
  * A [Decoder] decoding objects represented by a variable number of bytes. The number of bytes to read is undefined and
  * bytes are accumulated internally until an [endMarker] is found. Once the end marker is found, the [converter] function
  * is used to convert all the accumulated bytes to the decoded object.
  *
+ * The accumulator is acquired from the given [pool], and is kept between two objects. When it is full, a twice larger
+ * one is acquired and the previous one is released, and it is released on [reset]. The array given to the [converter]
+ * may therefore be larger than the object, and must not be kept by the converter.
+ *
  * @param E the type of the decoded object
  * @param endMarker the bytes marking the end of the object
+ * @param pool the [BufferPool] from which the accumulator is acquired
  * @param converter a function to convert the bytes (stored in a [ByteArray]) to the decoded object
  * @constructor Creates a new [MarkerEndedItemDecoder].
  * @throws IllegalArgumentException if [endMarker] is empty
  */
 class MarkerEndedItemDecoder<E>(
     endMarker: ByteArray,
+    private val pool: BufferPool,
     private val converter: ByteArray.(Int) -> E,
 ) : Decoder<E> {
 
+    /**
+     * Creates a new [MarkerEndedItemDecoder] which does not pool its accumulator.
+     *
+     * @param endMarker the bytes marking the end of the object
+     * @param converter a function to convert the bytes (stored in a [ByteArray]) to the decoded object
+     * @throws IllegalArgumentException if [endMarker] is empty
+     */
+    constructor(
+        endMarker: ByteArray,
+        converter: ByteArray.(Int) -> E,
+    ) : this(endMarker, BufferPool.noOp(), converter)
+
     private var accumulator: ByteArray? = null
     private var index = 0
-    private var buffer: ArrayDeque<Byte>? = null
 
     init {
         require(endMarker.isNotEmpty()) { "endMarker must be greater than 0 (${endMarker.size})" }
@@ -26,57 +47,49 @@ class MarkerEndedItemDecoder<E>(
 
     private val endMarker = endMarker.copyOf()
 
-    override fun decode(input: DecoderInput): Decoder.State<E> {
-        val buffer = buffer ?: ArrayDeque<Byte>(endMarker.size).also { buffer = it }
+    private val lastMarkerByte = endMarker.last()
 
-        input.read(buffer, endMarker.size - buffer.size) // fill buffer
-        if (buffer.size < endMarker.size) { // not enough data to fill buffer
-            return Decoder.State.Processing
-        }
+    override fun decode(input: DecoderInput): Decoder.State<E> {
+        var accumulator = accumulator ?: pool.acquire(max(INITIAL_SIZE, endMarker.size)).also { accumulator = it }
 
-        while (!bufferContentIsEndMarker()) {
-            val byte = input.read()
-            if (byte == -1) {
-                return Decoder.State.Processing
+        // the bytes are read in bulk up to each occurrence of the last byte of the marker, where the end of the
+        // accumulated bytes is compared to the marker. As all the bytes read are kept, a marker split across several
+        // calls is found as well.
+        while (true) {
+            if (index == accumulator.size) {
+                val larger = pool.acquire(accumulator.size * 2)
+                System.arraycopy(accumulator, 0, larger, 0, index)
+                pool.release(accumulator)
+                accumulator = larger
+                this.accumulator = accumulator
             }
-            addToArray(buffer.removeFirst())
-            buffer.addLast(byte.toByte())
+            val read = input.readUntil(lastMarkerByte, accumulator, index, accumulator.size - index)
+            if (read <= 0) return Decoder.State.Processing
+            index += read
+            if (accumulator[index - 1] == lastMarkerByte && endsWithMarker(accumulator)) break
         }
 
-        val result = (accumulator ?: ByteArray(0)).converter(index) // can be null only if content is empty
-        reset()
+        val result = accumulator.converter(index - endMarker.size)
+        index = 0
         return Decoder.State.Done(result)
     }
 
     override fun reset() {
-        softReset()
+        index = 0
+        accumulator?.let(pool::release)
         accumulator = null
     }
 
-    private fun softReset() {
-        index = 0
-        buffer = null
+    private fun endsWithMarker(accumulator: ByteArray): Boolean {
+        val offset = index - endMarker.size
+        if (offset < 0) return false
+        return Arrays.equals(accumulator, offset, index, endMarker, 0, endMarker.size)
     }
 
-    private fun bufferContentIsEndMarker(): Boolean {
-        val buffer = buffer!!
-        repeat(endMarker.size) {
-            if (buffer[it] != endMarker[it]) return false
-        }
-        return true
-    }
+    private companion object {
 
-    private fun addToArray(bytes: Byte) {
-        val current = accumulator
-        val array = when {
-            current == null -> replaceArray { ByteArray(endMarker.size) }
-            index == current.size -> replaceArray { current.copyOf(current.size * 2) }
-            else -> current
-        }
-        array[index] = bytes
-        index++
-    }
+        const val INITIAL_SIZE = 64
 
-    private inline fun replaceArray(factory: () -> ByteArray): ByteArray = factory().also { accumulator = it }
+    }
 
 }
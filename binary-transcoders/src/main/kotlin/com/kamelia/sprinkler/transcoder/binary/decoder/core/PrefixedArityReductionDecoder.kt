@@ -48,22 +48,33 @@ class PrefixedArityReductionDecoder<T, C, R>(
     private val sizeDecoder: Decoder<Number>,
 ) : Decoder<R> {
 
+    private val primitiveSizeDecoder = sizeDecoder as? PrimitiveDecoder<Number>
+
     private var collection: C? = null
     private var size = -1
     private var index = 0
 
     override fun decode(input: DecoderInput): Decoder.State<R> {
         if (size == -1) {
-            when (val sizeState = sizeDecoder.decode(input)) {
-                is Decoder.State.Done -> {
-                    val size = sizeState.value.toInt()
-                    if (size < 0) {
-                        return Decoder.State.Error(IllegalStateException("Size must be positive, but was $size"))
-                    }
-                    this.size = size
+            val primitiveSizeDecoder = primitiveSizeDecoder
+            val size = if (primitiveSizeDecoder != null) { // avoids boxing the size for the built-in decoders
+                val decoded = try {
+                    primitiveSizeDecoder.decodePrimitive(input)
+                } catch (e: IllegalStateException) {
+                    return Decoder.State.Error(e)
                 }
-                else -> return sizeState.mapEmptyState()
+                if (!decoded) return Decoder.State.Processing
+                primitiveSizeDecoder.intValue()
+            } else {
+                when (val sizeState = sizeDecoder.decode(input)) {
+                    is Decoder.State.Done -> sizeState.value.toInt()
+                    else -> return sizeState.mapEmptyState()
+                }
+            }
+            if (size < 0) {
+                return Decoder.State.Error(IllegalStateException("Size must be positive, but was $size"))
             }
+            this.size = size
             collection = collector.supply()
         }
 
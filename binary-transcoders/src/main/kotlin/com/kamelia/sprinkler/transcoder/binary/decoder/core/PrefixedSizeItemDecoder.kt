@@ -1,5 +1,6 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.core
 
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
 import kotlin.math.max
 
 /**
@@ -7,19 +8,39 @@ import kotlin.math.max
  * of the object. This size is decoded by a [sizeDecoder] and then the n bytes are accumulated internally. Once all
  * bytes have been collected, the [converter] function is used to convert these bytes to the decoded object.
  *
+ * The array in which the bytes are accumulated is acquired from the given [pool], and is kept between two objects as
+ * long as they fit in it. A larger array is acquired when an object does not fit, the previous one being released, and
+ * the array is released on [reset]. The array given to the [converter] may therefore be larger than the object, and
+ * must not be kept by the converter.
+ *
  * **NOTE**:
  * The created decoder will return an [error][Decoder.State.Error] if the size is negative.
  *
  * @param E the type of the decoded object
  * @param sizeDecoder a [Decoder] to decode the number of bytes to read
+ * @param pool the [BufferPool] from which the array is acquired
  * @param converter a function to convert the bytes (stored in a [ByteArray]) to the decoded object
  * @constructor Creates a new [PrefixedSizeItemDecoder].
  */
 class PrefixedSizeItemDecoder<E>(
     private val sizeDecoder: Decoder<Number>,
+    private val pool: BufferPool,
     private val converter: ByteArray.(Int) -> E,
 ) : Decoder<E> {
 
+    /**
+     * Creates a new [PrefixedSizeItemDecoder] which does not pool its array.
+     *
+     * @param sizeDecoder a [Decoder] to decode the number of bytes to read
+     * @param converter a function to convert the bytes (stored in a [ByteArray]) to the decoded object
+     */
+    constructor(
+        sizeDecoder: Decoder<Number>,
+        converter: ByteArray.(Int) -> E,
+    ) : this(sizeDecoder, BufferPool.noOp(), converter)
+
+    private val primitiveSizeDecoder = sizeDecoder as? PrimitiveDecoder<Number>
+
     private var array: ByteArray? = null
     private var index = 0
     private var bytesToRead = -1
@@ -36,20 +57,31 @@ class PrefixedSizeItemDecoder<E>(
     }
 
     private fun decodeSize(input: DecoderInput): Decoder.State<E>? {
-        when (val sizeState = sizeDecoder.decode(input)) {
-            is Decoder.State.Done -> {
-                val size = sizeState.value.toInt()
-                if (size < 0) {
-                    return Decoder.State.Error("Size must be positive, but was $size")
-                }
-                bytesToRead = size
+        val primitiveSizeDecoder = primitiveSizeDecoder
+        val size = if (primitiveSizeDecoder != null) { // avoids boxing the size for the built-in decoders
+            val decoded = try {
+                primitiveSizeDecoder.decodePrimitive(input)
+            } catch (e: IllegalStateException) {
+                return Decoder.State.Error(e)
             }
-            else -> return sizeState.mapEmptyState()
+            if (!decoded) return Decoder.State.Processing
+            primitiveSizeDecoder.intValue()
+        } else {
+            when (val sizeState = sizeDecoder.decode(input)) {
+                is Decoder.State.Done -> sizeState.value.toInt()
+                else -> return sizeState.mapEmptyState()
+            }
+        }
+        if (size < 0) {
+            return Decoder.State.Error("Size must be positive, but was $size")
         }
+        bytesToRead = size
 
         val array = array
-        if (array == null || bytesToRead > array.size) { // allocate new array if needed
-            this.array = ByteArray(bytesToRead)
+        if (array == null || bytesToRead > array.size) { // acquire a larger array if needed
+            array?.let(pool::release)
+            this.array = null // not released twice if the acquisition fails
+            this.array = pool.acquire(bytesToRead)
         }
 
         return null // continue decoding
@@ -72,6 +104,7 @@ class PrefixedSizeItemDecoder<E>(
 
     override fun reset() {
         softReset()
+        array?.let(pool::release)
         array = null
     }
 
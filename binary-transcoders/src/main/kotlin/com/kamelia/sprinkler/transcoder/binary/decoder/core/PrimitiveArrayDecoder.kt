@@ -0,0 +1,296 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Base class of the built-in decoders of primitive arrays, prefixed with their number of elements decoded by a
+ * [sizeDecoder]. The bytes of the elements are read in chunks in a scratch array, and each chunk is converted at once
+ * into the decoded array through a [ByteBuffer] view in the byte order of the elements, instead of assembling the
+ * elements one by one.
+ *
+ * The decoder is resumable at any byte: the elements converted so far are kept in the decoded array, and the bytes of an
+ * element split across two calls are kept at the beginning of the scratch array until the element is complete. The
+ * scratch array is kept between two arrays.
+ *
+ * As the size prefix is not trusted, the decoded array is not allocated with its final size as soon as the size is
+ * decoded, but with at most the number of elements of a scratch chunk, and is grown as the bytes of the elements are
+ * received, so that a forged size cannot make the decoder allocate more memory than the bytes actually received.
+ */
+internal sealed class PrimitiveArrayDecoder<A : Any>(
+    private val sizeDecoder: Decoder<Number>,
+    private val width: Int,
+    private val order: ByteOrder,
+) : Decoder<A> {
+
+    private val primitiveSizeDecoder = sizeDecoder as? PrimitiveDecoder<Number>
+
+    private var array: A? = null
+
+    // number of elements the array can hold
+    private var capacity = 0
+
+    private var scratch: ByteArray? = null
+
+    // number of elements of the array, or -1 while it is not decoded
+    protected var size = -1
+        private set
+
+    // number of elements already converted
+    @JvmField
+    protected var index = 0
+
+    // number of bytes at the beginning of the scratch array which belong to the next element
+    private var pending = 0
+
+    final override fun decode(input: DecoderInput): Decoder.State<A> {
+        if (size == -1) {
+            val state = decodeSize(input)
+            if (state != null) return state
+        }
+
+        if (!readElements(input)) return Decoder.State.Processing
+
+        val array = array!!
+        softReset()
+        return Decoder.State.Done(array)
+    }
+
+    final override fun reset() {
+        sizeDecoder.reset()
+        softReset()
+    }
+
+    /**
+     * Creates an array of the given [size].
+     */
+    protected abstract fun create(size: Int): A
+
+    /**
+     * Returns a copy of the given [array] with the given [size], the additional elements being zero.
+     */
+    protected abstract fun grow(array: A, size: Int): A
+
+    /**
+     * Copies [count] elements from the given [view] into the [array], starting at index [offset] of the array.
+     */
+    protected abstract fun convert(view: ByteBuffer, array: A, offset: Int, count: Int)
+
+    /**
+     * Returns the decoded array, grown if needed so that it can hold at least [minCapacity] elements (and at most [size]
+     * elements).
+     */
+    protected fun ensureCapacity(minCapacity: Int): A {
+        val array = array!!
+        if (minCapacity <= capacity) return array
+        // doubles the capacity to keep the number of copies logarithmic in the size
+        val newCapacity = min(size.toLong(), max(capacity * 2L, minCapacity.toLong())).toInt()
+        val larger = grow(array, newCapacity)
+        this.array = larger
+        capacity = newCapacity
+        return larger
+    }
+
+    /**
+     * Reads as many elements as possible from the [input] into the array, returns whether the array is complete.
+     */
+    protected open fun readElements(input: DecoderInput): Boolean {
+        while (index < size) {
+            val left = (size - index).toLong() * width // including the pending bytes
+            val scratch = scratch(min(SCRATCH_SIZE.toLong(), left).toInt())
+            val read = input.read(scratch, pending, min(scratch.size.toLong(), left).toInt() - pending)
+            if (read <= 0) return false
+
+            val available = pending + read
+            val count = available / width
+            val array = ensureCapacity(index + count)
+            convert(ByteBuffer.wrap(scratch, 0, count * width).order(order), array, index, count)
+            index += count
+            pending = available - count * width
+            if (pending > 0) { // keeps the beginning of the split element
+                System.arraycopy(scratch, count * width, scratch, 0, pending)
+            }
+        }
+        return true
+    }
+
+    private fun decodeSize(input: DecoderInput): Decoder.State<A>? {
+        val primitiveSizeDecoder = primitiveSizeDecoder
+        val size = if (primitiveSizeDecoder != null) { // avoids boxing the size for the built-in decoders
+            val decoded = try {
+                primitiveSizeDecoder.decodePrimitive(input)
+            } catch (e: IllegalStateException) {
+                return Decoder.State.Error(e)
+            }
+            if (!decoded) return Decoder.State.Processing
+            primitiveSizeDecoder.intValue()
+        } else {
+            when (val sizeState = sizeDecoder.decode(input)) {
+                is Decoder.State.Done -> sizeState.value.toInt()
+                else -> return sizeState.mapEmptyState()
+            }
+        }
+        if (size < 0) {
+            return Decoder.State.Error("Size must be positive, but was $size")
+        }
+        this.size = size
+        capacity = min(size, SCRATCH_SIZE / width)
+        array = create(capacity)
+        return null // continue decoding
+    }
+
+    // returns a scratch array of at least the given size, keeping the pending bytes
+    private fun scratch(minSize: Int): ByteArray {
+        val scratch = scratch
+        if (scratch != null && scratch.size >= minSize) return scratch
+        val larger = ByteArray(max(minSize, width))
+        if (scratch != null) {
+            System.arraycopy(scratch, 0, larger, 0, pending)
+        }
+        this.scratch = larger
+        return larger
+    }
+
+    private fun softReset() {
+        array = null
+        capacity = 0
+        size = -1
+        index = 0
+        pending = 0
+    }
+
+    class OfByte(sizeDecoder: Decoder<Number>) : PrimitiveArrayDecoder<ByteArray>(
+        sizeDecoder,
+        Byte.SIZE_BYTES,
+        ByteOrder.BIG_ENDIAN,
+    ) {
+
+        override fun create(size: Int): ByteArray = ByteArray(size)
+
+        override fun convert(view: ByteBuffer, array: ByteArray, offset: Int, count: Int) {
+            view.get(array, offset, count)
+        }
+
+        override fun grow(array: ByteArray, size: Int): ByteArray = array.copyOf(size)
+
+        override fun readElements(input: DecoderInput): Boolean { // read without scratch array
+            while (index < size) {
+                val array = ensureCapacity(index + 1)
+                val read = input.read(array, index, array.size - index)
+                if (read <= 0) return false
+                index += read
+            }
+            return true
+        }
+
+    }
+
+    class OfBoolean(sizeDecoder: Decoder<Number>) : PrimitiveArrayDecoder<BooleanArray>(
+        sizeDecoder,
+        Byte.SIZE_BYTES,
+        ByteOrder.BIG_ENDIAN,
+    ) {
+        override fun create(size: Int): BooleanArray = BooleanArray(size)
+
+        override fun grow(array: BooleanArray, size: Int): BooleanArray = array.copyOf(size)
+
+        override fun convert(view: ByteBuffer, array: BooleanArray, offset: Int, count: Int) {
+            for (i in 0 until count) {
+                array[offset + i] = view.get(i).toInt() != 0
+            }
+        }
+    }
+
+    class OfShort(sizeDecoder: Decoder<Number>, endianness: ByteOrder) : PrimitiveArrayDecoder<ShortArray>(
+        sizeDecoder,
+        Short.SIZE_BYTES,
+        endianness,
+    ) {
+        override fun create(size: Int): ShortArray = ShortArray(size)
+
+        override fun grow(array: ShortArray, size: Int): ShortArray = array.copyOf(size)
+
+        override fun convert(view: ByteBuffer, array: ShortArray, offset: Int, count: Int) {
+            view.asShortBuffer().get(array, offset, count)
+        }
+    }
+
+    class OfChar(sizeDecoder: Decoder<Number>, endianness: ByteOrder) : PrimitiveArrayDecoder<CharArray>(
+        sizeDecoder,
+        Char.SIZE_BYTES,
+        endianness,
+    ) {
+        override fun create(size: Int): CharArray = CharArray(size)
+
+        override fun grow(array: CharArray, size: Int): CharArray = array.copyOf(size)
+
+        override fun convert(view: ByteBuffer, array: CharArray, offset: Int, count: Int) {
+            view.asCharBuffer().get(array, offset, count)
+        }
+    }
+
+    class OfInt(sizeDecoder: Decoder<Number>, endianness: ByteOrder) : PrimitiveArrayDecoder<IntArray>(
+        sizeDecoder,
+        Int.SIZE_BYTES,
+        endianness,
+    ) {
+        override fun create(size: Int): IntArray = IntArray(size)
+
+        override fun grow(array: IntArray, size: Int): IntArray = array.copyOf(size)
+
+        override fun convert(view: ByteBuffer, array: IntArray, offset: Int, count: Int) {
+            view.asIntBuffer().get(array, offset, count)
+        }
+    }
+
+    class OfLong(sizeDecoder: Decoder<Number>, endianness: ByteOrder) : PrimitiveArrayDecoder<LongArray>(
+        sizeDecoder,
+        Long.SIZE_BYTES,
+        endianness,
+    ) {
+        override fun create(size: Int): LongArray = LongArray(size)
+
+        override fun grow(array: LongArray, size: Int): LongArray = array.copyOf(size)
+
+        override fun convert(view: ByteBuffer, array: LongArray, offset: Int, count: Int) {
+            view.asLongBuffer().get(array, offset, count)
+        }
+    }
+
+    class OfFloat(sizeDecoder: Decoder<Number>, endianness: ByteOrder) : PrimitiveArrayDecoder<FloatArray>(
+        sizeDecoder,
+        Float.SIZE_BYTES,
+        endianness,
+    ) {
+        override fun create(size: Int): FloatArray = FloatArray(size)
+
+        override fun grow(array: FloatArray, size: Int): FloatArray = array.copyOf(size)
+
+        override fun convert(view: ByteBuffer, array: FloatArray, offset: Int, count: Int) {
+            view.asFloatBuffer().get(array, offset, count)
+        }
+    }
+
+    class OfDouble(sizeDecoder: Decoder<Number>, endianness: ByteOrder) : PrimitiveArrayDecoder<DoubleArray>(
+        sizeDecoder,
+        Double.SIZE_BYTES,
+        endianness,
+    ) {
+        override fun create(size: Int): DoubleArray = DoubleArray(size)
+
+        override fun grow(array: DoubleArray, size: Int): DoubleArray = array.copyOf(size)
+
+        override fun convert(view: ByteBuffer, array: DoubleArray, offset: Int, count: Int) {
+            view.asDoubleBuffer().get(array, offset, count)
+        }
+    }
+
+    private companion object {
+
+        const val SCRATCH_SIZE = 8 * 1024
+
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+/**
+ * A [Decoder] of primitive values, which can also be used without boxing the decoded values nor allocating a
+ * [Decoder.State] for each of them.
+ *
+ * In addition to the [decode] method inherited from [Decoder], this interface provides the [decodePrimitive] method,
+ * which stores the decoded value in an internal primitive slot instead of returning it. The value can then be retrieved
+ * using one of the [intValue], [longValue], [floatValue] or [doubleValue] methods, which behave like the methods of the
+ * same name of [Number] (e.g. [intValue] on a decoder of [Long] returns the decoded value converted to an [Int]).
+ *
+ * Here is an example of how to use this interface:
+ *
+ * ```
+ * fun sum(decoder: PrimitiveDecoder<Int>, input: DecoderInput, count: Int): Long {
+ *     var sum = 0L
+ *     repeat(count) {
+ *         check(decoder.decodePrimitive(input)) { "Missing bytes" }
+ *         sum += decoder.intValue()
+ *     }
+ *     return sum
+ * }
+ * ```
+ *
+ * Both decoding methods share the same internal state, meaning that a decoding started with one of them can be
+ * continued with the other.
+ *
+ * @param T the type of the decoded primitive
+ * @see Decoder
+ */
+interface PrimitiveDecoder<out T> : Decoder<T> {
+
+    /**
+     * Tries to decode a value from the given [DecoderInput] [input], and stores it in the internal primitive slot of
+     * the decoder.
+     *
+     * If `true` is returned, the value has been fully decoded and can be retrieved using the [intValue], [longValue],
+     * [floatValue] or [doubleValue] methods, until the next call to [decodePrimitive] or [decode]. If `false` is
+     * returned, more bytes are needed, exactly as if [Decoder.State.Processing] had been returned by [decode].
+     *
+     * If the bytes read do not represent a valid value (e.g. a variable-length value longer than allowed), an
+     * [IllegalStateException] is thrown where [decode] would have returned a [Decoder.State.Error], and the decoder is
+     * reset.
+     *
+     * @param input the input from which to decode the value
+     * @return `true` if the value has been fully decoded, `false` if more bytes are needed
+     * @throws IllegalStateException if the bytes read do not represent a valid value
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    fun decodePrimitive(input: DecoderInput): Boolean
+
+    /**
+     * Returns the last value decoded by [decodePrimitive] as an [Int], which may involve rounding or truncation.
+     *
+     * The returned value is unspecified if no value has been decoded yet.
+     *
+     * @return the last decoded value as an [Int]
+     */
+    fun intValue(): Int
+
+    /**
+     * Returns the last value decoded by [decodePrimitive] as a [Long], which may involve rounding or truncation.
+     *
+     * The returned value is unspecified if no value has been decoded yet.
+     *
+     * @return the last decoded value as a [Long]
+     */
+    fun longValue(): Long
+
+    /**
+     * Returns the last value decoded by [decodePrimitive] as a [Float], which may involve rounding.
+     *
+     * The returned value is unspecified if no value has been decoded yet.
+     *
+     * @return the last decoded value as a [Float]
+     */
+    fun floatValue(): Float
+
+    /**
+     * Returns the last value decoded by [decodePrimitive] as a [Double], which may involve rounding.
+     *
+     * The returned value is unspecified if no value has been decoded yet.
+     *
+     * @return the last decoded value as a [Double]
+     */
+    fun doubleValue(): Double
+
+}
@@ -0,0 +1,95 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+/**
+ * Base class of the built-in variable-length (LEB128) [PrimitiveDecoder]s. Each byte holds 7 bits of the value, the
+ * least significant group first, and its most significant bit indicates whether another byte follows.
+ *
+ * The first two bytes of a value are read by an unrolled path, which covers the values lower than 2^14 (e.g. most size
+ * prefixes) without touching the state of the decoder. The remaining bytes are read by a loop which saves the partially
+ * decoded value when the input is exhausted, so that the decoding can be resumed.
+ */
+internal sealed class VariableLengthPrimitiveDecoder<T>(
+    maxBytes: Int,
+    private val lastByteMax: Int,
+    private val zigZag: Boolean,
+) : PrimitiveDecoder<T> {
+
+    private val lastShift = (maxBytes - 1) * 7
+    private var partial = 0L
+    private var shift = 0
+
+    @JvmField
+    protected var bits = 0L
+
+    final override fun decodePrimitive(input: DecoderInput): Boolean {
+        var result: Long
+        var shift = shift
+        if (shift == 0) { // fast path, nothing has been read yet
+            val b0 = input.read()
+            if (b0 < 0) return false
+            if (b0 < 0x80) return done(b0.toLong())
+            val b1 = input.read()
+            if (b1 < 0) return save(b0.toLong() and 0x7F, 7)
+            result = (b0.toLong() and 0x7F) or ((b1.toLong() and 0x7F) shl 7)
+            if (b1 < 0x80) return done(result)
+            shift = 14
+        } else {
+            result = partial
+        }
+
+        while (true) {
+            val byte = input.read()
+            if (byte < 0) return save(result, shift)
+            if (shift == lastShift && byte > lastByteMax) {
+                reset()
+                throw IllegalStateException("Malformed variable-length value, last byte is too large ($byte)")
+            }
+            result = result or ((byte.toLong() and 0x7F) shl shift)
+            if (byte < 0x80) return done(result)
+            shift += 7
+        }
+    }
+
+    final override fun decode(input: DecoderInput): Decoder.State<T> = try {
+        if (decodePrimitive(input)) Decoder.State.Done(value()) else Decoder.State.Processing
+    } catch (e: IllegalStateException) {
+        Decoder.State.Error(e)
+    }
+
+    final override fun reset() {
+        partial = 0L
+        shift = 0
+    }
+
+    protected abstract fun value(): T
+
+    private fun save(result: Long, shift: Int): Boolean {
+        partial = result
+        this.shift = shift
+        return false
+    }
+
+    private fun done(result: Long): Boolean {
+        bits = if (zigZag) (result ushr 1) xor -(result and 1) else result
+        partial = 0L
+        shift = 0
+        return true
+    }
+
+    class OfInt(zigZag: Boolean) : VariableLengthPrimitiveDecoder<Int>(5, 0x0F, zigZag) {
+        override fun value(): Int = intValue()
+        override fun intValue(): Int = bits.toInt()
+        override fun longValue(): Long = bits.toInt().toLong()
+        override fun floatValue(): Float = bits.toInt().toFloat()
+        override fun doubleValue(): Double = bits.toInt().toDouble()
+    }
+
+    class OfLong(zigZag: Boolean) : VariableLengthPrimitiveDecoder<Long>(10, 0x01, zigZag) {
+        override fun value(): Long = bits
+        override fun intValue(): Int = bits.toInt()
+        override fun longValue(): Long = bits
+        override fun floatValue(): Float = bits.toFloat()
+        override fun doubleValue(): Double = bits.toDouble()
+    }
+
+}
@@ -7,8 +7,15 @@ import com.kamelia.sprinkler.transcoder.binary.common.ASCII_NULL
 import com.kamelia.sprinkler.transcoder.binary.common.LATIN1_NULL
 import com.kamelia.sprinkler.transcoder.binary.common.UTF16_NULL
 import com.kamelia.sprinkler.transcoder.binary.common.UTF8_NULL
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.CharsetStringEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
-import com.kamelia.sprinkler.util.byte
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.addRepeatedSizes
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.fixedSizeEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.sizedEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.varLongSize
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.writeVarLong
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.zigZag
 import java.nio.ByteOrder
 import java.nio.charset.Charset
 
@@ -20,7 +27,7 @@ import java.nio.charset.Charset
  * @return an [Encoder] that writes a single [Byte] to the output
  */
 fun ByteEncoder(): Encoder<Byte> =
-    Encoder { obj, output -> output.write(obj) }
+    fixedSizeEncoder(Byte.SIZE_BYTES.toLong()) { obj, output -> output.write(obj) }
 
 /**
  * Creates an [Encoder] that writes a [Short] to the output. The endianness of the short is specified by the
@@ -30,12 +37,8 @@ fun ByteEncoder(): Encoder<Byte> =
  * @return an [Encoder] that writes a [Short] to the output
  */
 @JvmOverloads
-fun ShortEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Short> = Encoder { obj, output ->
-    repeat(Short.SIZE_BYTES) {
-        val byte = obj.byte(Short.SIZE_BYTES - 1 - it, endianness)
-        output.write(byte)
-    }
-}
+fun ShortEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Short> =
+    fixedSizeEncoder(Short.SIZE_BYTES.toLong()) { obj, output -> output.writeShort(obj, endianness) }
 
 /**
  * Creates an [Encoder] that writes an [Int] to the output. The endianness of the int is specified by the
@@ -45,12 +48,8 @@ fun ShortEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Short> =
  * @return an [Encoder] that writes an [Int] to the output
  */
 @JvmOverloads
-fun IntEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Int> = Encoder { obj, output ->
-    repeat(Int.SIZE_BYTES) {
-        val byte = obj.byte(Int.SIZE_BYTES - 1 - it, endianness)
-        output.write(byte)
-    }
-}
+fun IntEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Int> =
+    fixedSizeEncoder(Int.SIZE_BYTES.toLong()) { obj, output -> output.writeInt(obj, endianness) }
 
 /**
  * Creates an [Encoder] that writes a [Long] to the output. The endianness of the long is specified by the
@@ -60,12 +59,8 @@ fun IntEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Int> = Enc
  * @return an [Encoder] that writes a [Long] to the output
  */
 @JvmOverloads
-fun LongEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Long> = Encoder { obj, output ->
-    repeat(Long.SIZE_BYTES) {
-        val byte = obj.byte(Long.SIZE_BYTES - 1 - it, endianness)
-        output.write(byte)
-    }
-}
+fun LongEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Long> =
+    fixedSizeEncoder(Long.SIZE_BYTES.toLong()) { obj, output -> output.writeLong(obj, endianness) }
 
 /**
  * Creates an [Encoder] that writes a [Float] to the output. The endianness of the float is specified by the
@@ -75,13 +70,8 @@ fun LongEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Long> = E
  * @return an [Encoder] that writes a [Float] to the output
  */
 @JvmOverloads
-fun FloatEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Float> = Encoder { obj, output ->
-    val asInt = obj.toRawBits()
-    repeat(Float.SIZE_BYTES) {
-        val byte = asInt.byte(Float.SIZE_BYTES - 1 - it, endianness)
-        output.write(byte)
-    }
-}
+fun FloatEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Float> =
+    fixedSizeEncoder(Float.SIZE_BYTES.toLong()) { obj, output -> output.writeFloat(obj, endianness) }
 
 /**
  * Creates an [Encoder] that writes a [Double] to the output. The endianness of the double is specified by the
@@ -91,13 +81,8 @@ fun FloatEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Float> =
  * @return an [Encoder] that writes a [Double] to the output
  */
 @JvmOverloads
-fun DoubleEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Double> = Encoder { obj, output ->
-    val asLong = obj.toRawBits()
-    repeat(Double.SIZE_BYTES) {
-        val byte = asLong.byte(Double.SIZE_BYTES - 1 - it, endianness)
-        output.write(byte)
-    }
-}
+fun DoubleEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Double> =
+    fixedSizeEncoder(Double.SIZE_BYTES.toLong()) { obj, output -> output.writeDouble(obj, endianness) }
 
 /**
  * Creates an [Encoder] that writes a [Boolean] to the output. The boolean is encoded as a single byte, where 0
@@ -105,10 +90,229 @@ fun DoubleEncoder(endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Encoder<Double>
  *
  * @return an [Encoder] that writes a [Boolean] to the output
  */
-fun BooleanEncoder(): Encoder<Boolean> = Encoder { obj, output ->
+fun BooleanEncoder(): Encoder<Boolean> = fixedSizeEncoder(1L) { obj, output ->
     output.write(if (obj) 1 else 0)
 }
 
+/**
+ * Creates an [Encoder] that writes a variable-length [Int] to the output.
+ *
+ * The int is encoded as an unsigned LEB128 value (also known as varint): each byte holds 7 bits of the value, the least
+ * significant group first, and its most significant bit is set if another byte follows. Values lower than 128 are
+ * therefore encoded on a single byte, and the encoding of an int never exceeds 5 bytes. Negative values are encoded as
+ * the unsigned representation of their 32 bits, and always use 5 bytes; [ZigZagVarIntEncoder] should be preferred for
+ * signed values.
+ *
+ * @return an [Encoder] that writes a variable-length [Int] to the output
+ */
+fun VarIntEncoder(): Encoder<Int> =
+    sizedEncoder({ varLongSize(it.toLong() and 0xFFFF_FFFFL) }) { obj, output ->
+        writeVarLong(obj.toLong() and 0xFFFF_FFFFL, output)
+    }
+
+/**
+ * Creates an [Encoder] that writes a variable-length [Long] to the output.
+ *
+ * The long is encoded as an unsigned LEB128 value (also known as varint): each byte holds 7 bits of the value, the least
+ * significant group first, and its most significant bit is set if another byte follows. The encoding of a long never
+ * exceeds 10 bytes. Negative values are encoded as the unsigned representation of their 64 bits, and always use 10
+ * bytes; [ZigZagVarLongEncoder] should be preferred for signed values.
+ *
+ * @return an [Encoder] that writes a variable-length [Long] to the output
+ */
+fun VarLongEncoder(): Encoder<Long> = sizedEncoder(::varLongSize) { obj, output -> writeVarLong(obj, output) }
+
+/**
+ * Creates an [Encoder] that writes a variable-length signed [Int] to the output.
+ *
+ * The int is mapped to an unsigned value using the ZigZag encoding (`0 -> 0`, `-1 -> 1`, `1 -> 2`, `-2 -> 3`, ...),
+ * and then encoded like in [VarIntEncoder], so that values of small magnitude use few bytes whatever their sign.
+ *
+ * @return an [Encoder] that writes a variable-length signed [Int] to the output
+ */
+fun ZigZagVarIntEncoder(): Encoder<Int> =
+    sizedEncoder({ varLongSize(zigZag(it)) }) { obj, output -> writeVarLong(zigZag(obj), output) }
+
+/**
+ * Creates an [Encoder] that writes a variable-length signed [Long] to the output.
+ *
+ * The long is mapped to an unsigned value using the ZigZag encoding (`0 -> 0`, `-1 -> 1`, `1 -> 2`, `-2 -> 3`, ...),
+ * and then encoded like in [VarLongEncoder], so that values of small magnitude use few bytes whatever their sign.
+ *
+ * @return an [Encoder] that writes a variable-length signed [Long] to the output
+ */
+fun ZigZagVarLongEncoder(): Encoder<Long> =
+    sizedEncoder({ varLongSize(zigZag(it)) }) { obj, output -> writeVarLong(zigZag(obj), output) }
+
+private fun zigZag(value: Int): Long = ((value shl 1) xor (value shr 31)).toLong() and 0xFFFF_FFFFL
+
+//endregion
+
+//region Primitive Array Encoders
+
+/**
+ * Creates an [Encoder] that writes a [ByteArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as a single byte.
+ *
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to the default [IntEncoder])
+ * @return an [Encoder] that writes a [ByteArray] to the output
+ */
+@JvmOverloads
+fun ByteArrayEncoder(sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<ByteArray> =
+    primitiveArrayEncoder(sizeEncoder, Byte.SIZE_BYTES, ByteArray::size) { obj, output -> output.write(obj) }
+
+/**
+ * Creates an [Encoder] that writes a [BooleanArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as a single byte, where 0 represents `false`
+ * and 1 represents `true`.
+ *
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to the default [IntEncoder])
+ * @return an [Encoder] that writes a [BooleanArray] to the output
+ */
+@JvmOverloads
+fun BooleanArrayEncoder(sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<BooleanArray> =
+    primitiveArrayEncoder(sizeEncoder, Byte.SIZE_BYTES, BooleanArray::size) { obj, output ->
+        obj.forEach { output.write(if (it) 1 else 0) }
+    }
+
+/**
+ * Creates an [Encoder] that writes a [ShortArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as 2 bytes, in the byte order specified by the
+ * [endianness] parameter.
+ *
+ * The elements are written in bulk with [EncoderOutput.writeShorts], which copies them by chunks to the built-in
+ * outputs instead of writing them one by one.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to an [IntEncoder] with the given
+ * [endianness])
+ * @return an [Encoder] that writes a [ShortArray] to the output
+ */
+@JvmOverloads
+fun ShortArrayEncoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeEncoder: Encoder<Int> = IntEncoder(endianness),
+): Encoder<ShortArray> = primitiveArrayEncoder(sizeEncoder, Short.SIZE_BYTES, ShortArray::size) { obj, output ->
+    output.writeShorts(obj, 0, obj.size, endianness)
+}
+
+/**
+ * Creates an [Encoder] that writes a [CharArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as the 2 bytes of its [code][Char.code], in
+ * the byte order specified by the [endianness] parameter.
+ *
+ * The elements are written in bulk with [EncoderOutput.writeChars], which copies them by chunks to the built-in outputs
+ * instead of writing them one by one.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to an [IntEncoder] with the given
+ * [endianness])
+ * @return an [Encoder] that writes a [CharArray] to the output
+ */
+@JvmOverloads
+fun CharArrayEncoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeEncoder: Encoder<Int> = IntEncoder(endianness),
+): Encoder<CharArray> = primitiveArrayEncoder(sizeEncoder, Char.SIZE_BYTES, CharArray::size) { obj, output ->
+    output.writeChars(obj, 0, obj.size, endianness)
+}
+
+/**
+ * Creates an [Encoder] that writes an [IntArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as 4 bytes, in the byte order specified by the
+ * [endianness] parameter.
+ *
+ * The elements are written in bulk with [EncoderOutput.writeInts], which copies them by chunks to the built-in outputs
+ * instead of writing them one by one.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to an [IntEncoder] with the given
+ * [endianness])
+ * @return an [Encoder] that writes an [IntArray] to the output
+ */
+@JvmOverloads
+fun IntArrayEncoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeEncoder: Encoder<Int> = IntEncoder(endianness),
+): Encoder<IntArray> = primitiveArrayEncoder(sizeEncoder, Int.SIZE_BYTES, IntArray::size) { obj, output ->
+    output.writeInts(obj, 0, obj.size, endianness)
+}
+
+/**
+ * Creates an [Encoder] that writes a [LongArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as 8 bytes, in the byte order specified by the
+ * [endianness] parameter.
+ *
+ * The elements are written in bulk with [EncoderOutput.writeLongs], which copies them by chunks to the built-in outputs
+ * instead of writing them one by one.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to an [IntEncoder] with the given
+ * [endianness])
+ * @return an [Encoder] that writes a [LongArray] to the output
+ */
+@JvmOverloads
+fun LongArrayEncoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeEncoder: Encoder<Int> = IntEncoder(endianness),
+): Encoder<LongArray> = primitiveArrayEncoder(sizeEncoder, Long.SIZE_BYTES, LongArray::size) { obj, output ->
+    output.writeLongs(obj, 0, obj.size, endianness)
+}
+
+/**
+ * Creates an [Encoder] that writes a [FloatArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as the 4 bytes of its [raw
+ * bits][Float.toRawBits], in the byte order specified by the [endianness] parameter.
+ *
+ * The elements are written in bulk with [EncoderOutput.writeFloats], which copies them by chunks to the built-in
+ * outputs instead of writing them one by one.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to an [IntEncoder] with the given
+ * [endianness])
+ * @return an [Encoder] that writes a [FloatArray] to the output
+ */
+@JvmOverloads
+fun FloatArrayEncoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeEncoder: Encoder<Int> = IntEncoder(endianness),
+): Encoder<FloatArray> = primitiveArrayEncoder(sizeEncoder, Float.SIZE_BYTES, FloatArray::size) { obj, output ->
+    output.writeFloats(obj, 0, obj.size, endianness)
+}
+
+/**
+ * Creates an [Encoder] that writes a [DoubleArray] to the output. The array is prefixed with its number of elements,
+ * encoded using the [sizeEncoder] parameter, and each element is encoded as the 8 bytes of its [raw
+ * bits][Double.toRawBits], in the byte order specified by the [endianness] parameter.
+ *
+ * The elements are written in bulk with [EncoderOutput.writeDoubles], which copies them by chunks to the built-in
+ * outputs instead of writing them one by one.
+ *
+ * @param endianness the endianness of the elements (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param sizeEncoder the encoder used to encode the number of elements (defaults to an [IntEncoder] with the given
+ * [endianness])
+ * @return an [Encoder] that writes a [DoubleArray] to the output
+ */
+@JvmOverloads
+fun DoubleArrayEncoder(
+    endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    sizeEncoder: Encoder<Int> = IntEncoder(endianness),
+): Encoder<DoubleArray> = primitiveArrayEncoder(sizeEncoder, Double.SIZE_BYTES, DoubleArray::size) { obj, output ->
+    output.writeDoubles(obj, 0, obj.size, endianness)
+}
+
+// encoder writing the size of the array followed by its elements of width bytes each
+private inline fun <T> primitiveArrayEncoder(
+    sizeEncoder: Encoder<Int>,
+    width: Int,
+    crossinline size: (T) -> Int,
+    crossinline writeElements: (T, EncoderOutput) -> Unit,
+): Encoder<T> =
+    sizedEncoder({ addRepeatedSizes(sizeEncoder.encodedSize(size(it)), width.toLong(), size(it)) }) { obj, output ->
+        sizeEncoder.encode(size(obj), output)
+        writeElements(obj, output)
+    }
+
 //endregion
 
 //region String Encoders
@@ -228,17 +432,17 @@ fun Latin1StringEncoderEM(endMarker: ByteArray = LATIN1_NULL): Encoder<String> =
  * The string is encoded using the [charset] parameter, and is prefixed with the number of bytes of the encoded string.
  * The size of the string is encoded using the [sizeEncoder] parameter.
  *
+ * The string is written directly to the output, without being converted to a new [ByteArray] beforehand. For the
+ * [US-ASCII][Charsets.US_ASCII], [ISO-8859-1][Charsets.ISO_8859_1] and [UTF-8][Charsets.UTF_8] charsets, the size is
+ * also computed from the characters of the string, without encoding it twice.
+ *
  * @param charset the charset to use for encoding the string
  * @param sizeEncoder the encoder to use for encoding the size of the string (defaults to the default [IntEncoder])
  * @return an [Encoder] that writes a [String] to the output
  */
 @JvmOverloads
 fun StringEncoder(charset: Charset, sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<String> =
-    Encoder { obj, output ->
-        val bytes = obj.toByteArray(charset)
-        sizeEncoder.encode(bytes.size, output)
-        output.write(bytes)
-    }
+    CharsetStringEncoder(charset, sizeEncoder)
 
 /**
  * Creates an [Encoder] that writes a [String] to the output.
@@ -261,12 +465,7 @@ fun StringEncoder(charset: Charset, sizeEncoder: Encoder<Int> = IntEncoder()): E
  */
 fun StringEncoder(charset: Charset, endMarker: ByteArray): Encoder<String> {
     require(endMarker.isNotEmpty()) { "End marker must be at least 1 byte long" }
-    val copy = endMarker.copyOf()
-    return Encoder { obj, output ->
-        val bytes = obj.toByteArray(charset)
-        output.write(bytes)
-        output.write(copy)
-    }
+    return CharsetStringEncoder(charset, endMarker.copyOf())
 }
 
 //endregion
@@ -285,7 +484,7 @@ fun StringEncoder(charset: Charset, endMarker: ByteArray): Encoder<String> {
  */
 @JvmOverloads
 fun <T : Enum<T>> EnumEncoder(intEncoder: Encoder<Int> = IntEncoder()): Encoder<T> =
-    Encoder { obj, output -> intEncoder.encode(obj.ordinal, output) }
+    intEncoder.withMappedInput { it.ordinal }
 
 /**
  * Creates an [Encoder] that writes an [Enum] to the output.
@@ -299,7 +498,7 @@ fun <T : Enum<T>> EnumEncoder(intEncoder: Encoder<Int> = IntEncoder()): Encoder<
  */
 @JvmOverloads
 fun <T : Enum<T>> EnumEncoderString(stringEncoder: Encoder<String> = UTF8StringEncoder()): Encoder<T> =
-    Encoder { obj, output -> stringEncoder.encode(obj.name, output) }
+    stringEncoder.withMappedInput { it.name }
 
 //endregion
 
@@ -311,6 +510,6 @@ fun <T : Enum<T>> EnumEncoderString(stringEncoder: Encoder<String> = UTF8StringE
  * @return an [Encoder] that doesn't write anything to the output
  * @param T the type of the object to encode
  */
-fun <T> NoOpEncoder(): Encoder<T> = Encoder { _, _ -> /* do nothing */ }
+fun <T> NoOpEncoder(): Encoder<T> = fixedSizeEncoder(0L) { _, _ -> /* do nothing */ }
 
 //endregion
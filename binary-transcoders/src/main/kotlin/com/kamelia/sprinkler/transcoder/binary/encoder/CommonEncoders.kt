@@ -4,6 +4,10 @@
 package com.kamelia.sprinkler.transcoder.binary.encoder
 
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.addRepeatedSizes
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.addSizes
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.fixedSize
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.sizedEncoder
 import java.time.Instant
 import java.time.LocalDate
 import java.time.LocalDateTime
@@ -22,7 +26,9 @@ import java.util.*
  */
 @JvmOverloads
 fun UUIDEncoder(longEncoder: Encoder<Long> = LongEncoder()): Encoder<UUID> =
-    Encoder { obj, output ->
+    sizedEncoder(addRepeatedSizes(0L, longEncoder.fixedSize, 2), { obj ->
+        addSizes(longEncoder.encodedSize(obj.mostSignificantBits), longEncoder.encodedSize(obj.leastSignificantBits))
+    }) { obj, output ->
         longEncoder.encode(obj.mostSignificantBits, output)
         longEncoder.encode(obj.leastSignificantBits, output)
     }
@@ -49,7 +55,9 @@ fun UUIDStringEncoder(stringEncoder: Encoder<String> = UTF8StringEncoder()): Enc
  * @param U the type of the second value
  */
 fun <T, U> PairEncoder(firstEncoder: Encoder<T>, secondEncoder: Encoder<U>): Encoder<Pair<T, U>> =
-    Encoder { obj, output ->
+    sizedEncoder(addSizes(firstEncoder.fixedSize, secondEncoder.fixedSize), { obj ->
+        addSizes(firstEncoder.encodedSize(obj.first), secondEncoder.encodedSize(obj.second))
+    }) { obj, output ->
         firstEncoder.encode(obj.first, output)
         secondEncoder.encode(obj.second, output)
     }
@@ -80,7 +88,9 @@ fun InstantEncoder(
     secondNanoEncoding: Boolean = false,
     longEncoder: Encoder<Long> = LongEncoder(),
 ): Encoder<Instant> = if (secondNanoEncoding) {
-    Encoder { obj, output ->
+    sizedEncoder(addRepeatedSizes(0L, longEncoder.fixedSize, 2), { obj ->
+        addSizes(longEncoder.encodedSize(obj.epochSecond), longEncoder.encodedSize(obj.nano.toLong()))
+    }) { obj, output ->
         longEncoder.encode(obj.epochSecond, output)
         longEncoder.encode(obj.nano.toLong(), output)
     }
@@ -109,7 +119,13 @@ fun InstantEncoder(
  */
 @JvmOverloads
 fun LocalTimeEncoder(encodeNanos: Boolean = false, intEncoder: Encoder<Int> = IntEncoder()): Encoder<LocalTime> =
-    Encoder { obj, output ->
+    sizedEncoder(addRepeatedSizes(0L, intEncoder.fixedSize, if (encodeNanos) 4 else 3), { obj ->
+        val size = addSizes(
+            addSizes(intEncoder.encodedSize(obj.hour), intEncoder.encodedSize(obj.minute)),
+            intEncoder.encodedSize(obj.second),
+        )
+        if (encodeNanos) addSizes(size, intEncoder.encodedSize(obj.nano)) else size
+    }) { obj, output ->
         intEncoder.encode(obj.hour, output)
         intEncoder.encode(obj.minute, output)
         intEncoder.encode(obj.second, output)
@@ -134,7 +150,12 @@ fun LocalTimeEncoder(encodeNanos: Boolean = false, intEncoder: Encoder<Int> = In
  */
 @JvmOverloads
 fun LocalDateEncoder(intEncoder: Encoder<Int> = IntEncoder()): Encoder<LocalDate> =
-    Encoder { obj, output ->
+    sizedEncoder(addRepeatedSizes(0L, intEncoder.fixedSize, 3), { obj ->
+        addSizes(
+            addSizes(intEncoder.encodedSize(obj.year), intEncoder.encodedSize(obj.monthValue)),
+            intEncoder.encodedSize(obj.dayOfMonth),
+        )
+    }) { obj, output ->
         intEncoder.encode(obj.year, output)
         intEncoder.encode(obj.monthValue, output)
         intEncoder.encode(obj.dayOfMonth, output)
@@ -153,7 +174,9 @@ fun LocalDateTimeEncoder(
     localDateEncoder: Encoder<LocalDate> = LocalDateEncoder(),
     localTimeEncoder: Encoder<LocalTime> = LocalTimeEncoder(),
 ): Encoder<LocalDateTime> =
-    Encoder { obj, output ->
+    sizedEncoder(addSizes(localDateEncoder.fixedSize, localTimeEncoder.fixedSize), { obj ->
+        addSizes(localDateEncoder.encodedSize(obj.toLocalDate()), localTimeEncoder.encodedSize(obj.toLocalTime()))
+    }) { obj, output ->
         localDateEncoder.encode(obj.toLocalDate(), output)
         localTimeEncoder.encode(obj.toLocalTime(), output)
     }
@@ -192,7 +215,9 @@ fun ZonedDateTimeEncoder(
     instantEncoder: Encoder<Instant> = InstantEncoder(),
     zoneIdEncoder: Encoder<ZoneId> = ZoneIdEncoder(),
 ): Encoder<ZonedDateTime> =
-    Encoder { obj, output ->
+    sizedEncoder(addSizes(instantEncoder.fixedSize, zoneIdEncoder.fixedSize), { obj ->
+        addSizes(instantEncoder.encodedSize(obj.toInstant()), zoneIdEncoder.encodedSize(obj.zone))
+    }) { obj, output ->
         instantEncoder.encode(obj.toInstant(), output)
         zoneIdEncoder.encode(obj.zone, output)
     }
@@ -3,6 +3,12 @@
 package com.kamelia.sprinkler.transcoder.binary.encoder
 
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.addRepeatedSizes
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.addSizes
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.fixedSize
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.sizedEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.sumEncodedSizes
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.sumSizes
 import com.zwendo.restrikt2.annotation.HideFromJava
 
 /**
@@ -25,7 +31,7 @@ import com.zwendo.restrikt2.annotation.HideFromJava
  * @return an encoder that encodes an object [R]
  */
 fun <T, R> Encoder<T>.withMappedInput(mapper: (R) -> T): Encoder<R> =
-    Encoder { obj, output -> encode(mapper(obj), output) }
+    sizedEncoder(fixedSize, { encodedSize(mapper(it)) }) { obj, output -> encode(mapper(obj), output) }
 
 /**
  * Creates an encoder that encodes an [Iterable] of objects of type [T]. The created encoder will encode each object
@@ -37,7 +43,10 @@ fun <T, R> Encoder<T>.withMappedInput(mapper: (R) -> T): Encoder<R> =
  * @return an encoder that encodes an [Iterable] of objects of type [T]
  */
 fun <T> Encoder<T>.toIterable(endMarker: T): Encoder<Iterable<T>> =
-    Encoder { obj, output ->
+    sizedEncoder({
+        val markerSize = encodedSize(endMarker)
+        if (it is Collection) sumEncodedSizes(markerSize, it) else sumSizes(markerSize, it, this::encodedSize)
+    }) { obj, output ->
         obj.forEach { encode(it, output) }
         encode(endMarker, output)
     }
@@ -54,7 +63,7 @@ fun <T> Encoder<T>.toIterable(endMarker: T): Encoder<Iterable<T>> =
  */
 @JvmOverloads
 fun <T> Encoder<T>.toCollection(sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<Collection<T>> =
-    Encoder { obj, output ->
+    sizedEncoder({ sumEncodedSizes(sizeEncoder.encodedSize(it.size), it) }) { obj, output ->
         sizeEncoder.encode(obj.size, output)
         obj.forEach { encode(it, output) }
     }
@@ -69,7 +78,14 @@ fun <T> Encoder<T>.toCollection(sizeEncoder: Encoder<Int> = IntEncoder()): Encod
  */
 @JvmOverloads
 fun <K, V> Encoder<Pair<K, V>>.toMap(sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<Map<K, V>> =
-    Encoder { obj, output ->
+    sizedEncoder({ map ->
+        val initial = sizeEncoder.encodedSize(map.size)
+        if (fixedSize >= 0) {
+            addRepeatedSizes(initial, fixedSize, map.size)
+        } else {
+            sumSizes(initial, map.entries) { (key, value) -> encodedSize(key to value) }
+        }
+    }) { obj, output ->
         sizeEncoder.encode(obj.size, output)
         obj.forEach { (key, value) -> encode(key to value, output) }
     }
@@ -84,7 +100,13 @@ fun <K, V> Encoder<Pair<K, V>>.toMap(sizeEncoder: Encoder<Int> = IntEncoder()):
  * @return an encoder that encodes a [Map] of objects of type [K] and [V]
  */
 fun <K, V> Encoder<Pair<K, V>>.toMap(endMarker: Pair<K, V>): Encoder<Map<K, V>> =
-    Encoder { obj, output ->
+    sizedEncoder({ map ->
+        if (fixedSize >= 0) {
+            addRepeatedSizes(fixedSize, fixedSize, map.size)
+        } else {
+            sumSizes(encodedSize(endMarker), map.entries) { (key, value) -> encodedSize(key to value) }
+        }
+    }) { obj, output ->
         obj.forEach { (key, value) ->
             encode(key to value, output)
         }
@@ -102,7 +124,17 @@ fun <K, V> Encoder<Pair<K, V>>.toMap(endMarker: Pair<K, V>): Encoder<Map<K, V>>
  * @return an encoder that encodes a [Map] of objects of type [K] and [V]
  */
 fun <K, V> Encoder<K>.toMap(valueEncoder: Encoder<V>, sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<Map<K, V>> =
-    Encoder { obj, output ->
+    sizedEncoder({ map ->
+        val initial = sizeEncoder.encodedSize(map.size)
+        val entrySize = addSizes(fixedSize, valueEncoder.fixedSize)
+        if (entrySize >= 0) {
+            addRepeatedSizes(initial, entrySize, map.size)
+        } else {
+            sumSizes(initial, map.entries) { (key, value) ->
+                addSizes(encodedSize(key), valueEncoder.encodedSize(value))
+            }
+        }
+    }) { obj, output ->
         sizeEncoder.encode(obj.size, output)
         obj.forEach { (key, value) ->
             encode(key, output)
@@ -121,7 +153,17 @@ fun <K, V> Encoder<K>.toMap(valueEncoder: Encoder<V>, sizeEncoder: Encoder<Int>
  * @return an encoder that encodes a [Map] of objects of type [K] and [V]
  */
 fun <K, V> Encoder<K>.toMap(valueEncoder: Encoder<V>, endMarker: Pair<K, V>): Encoder<Map<K, V>> =
-    Encoder { obj, output ->
+    sizedEncoder({ map ->
+        val markerSize = addSizes(encodedSize(endMarker.first), valueEncoder.encodedSize(endMarker.second))
+        val entrySize = addSizes(fixedSize, valueEncoder.fixedSize)
+        if (entrySize >= 0) {
+            addRepeatedSizes(markerSize, entrySize, map.size)
+        } else {
+            sumSizes(markerSize, map.entries) { (key, value) ->
+                addSizes(encodedSize(key), valueEncoder.encodedSize(value))
+            }
+        }
+    }) { obj, output ->
         obj.forEach { (key, value) ->
             encode(key, output)
             valueEncoder.encode(value, output)
@@ -140,7 +182,7 @@ fun <K, V> Encoder<K>.toMap(valueEncoder: Encoder<V>, endMarker: Pair<K, V>): En
  */
 @JvmOverloads
 fun <T> Encoder<T>.toArray(sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<Array<T>> =
-    Encoder { obj, output ->
+    sizedEncoder({ sumEncodedSizes(sizeEncoder.encodedSize(it.size), it.asList()) }) { obj, output ->
         sizeEncoder.encode(obj.size, output)
         obj.forEach { encode(it, output) }
     }
@@ -155,7 +197,7 @@ fun <T> Encoder<T>.toArray(sizeEncoder: Encoder<Int> = IntEncoder()): Encoder<Ar
  * @return an encoder that encodes an [Array] of objects of type [T]
  */
 fun <T> Encoder<T>.toArray(endMarker: T): Encoder<Array<T>> =
-    Encoder { obj, output ->
+    sizedEncoder({ sumEncodedSizes(encodedSize(endMarker), it.asList()) }) { obj, output ->
         obj.forEach { encode(it, output) }
         encode(endMarker, output)
     }
@@ -171,10 +213,16 @@ fun <T> Encoder<T>.toArray(endMarker: T): Encoder<Array<T>> =
  */
 @JvmOverloads
 fun <T : Any> Encoder<T>.toOptional(nullabilityEncoder: Encoder<Boolean> = BooleanEncoder()): Encoder<T?> =
-    Encoder { obj, output ->
+    sizedEncoder({
+        if (it == null) {
+            nullabilityEncoder.encodedSize(false)
+        } else {
+            addSizes(nullabilityEncoder.encodedSize(true), encodedSize(it))
+        }
+    }) { obj, output ->
         if (obj == null) {
             nullabilityEncoder.encode(false, output)
-            return@Encoder
+            return@sizedEncoder
         }
         nullabilityEncoder.encode(true, output)
         encode(obj, output)
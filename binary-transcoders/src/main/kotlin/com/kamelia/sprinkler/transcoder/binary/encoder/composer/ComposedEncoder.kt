@@ -4,6 +4,7 @@ package com.kamelia.sprinkler.transcoder.binary.encoder.composer
 
 import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.VarIntEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
 import java.nio.ByteOrder
@@ -15,73 +16,75 @@ import java.nio.ByteOrder
  * - All primitive objects will be encoded with the default encoders present in the `BaseEncoders` file, and with the
  *  given [endianness].
  * - For [String] objects encoding, the [stringEncoder] parameter will be used.
- * - Each created encoder will be cached and reused for the same type (except for encoders composed with the
- * [self][EncodingScope.self] property).
+ * - The encoders of the primitives are created once per scope and reused for every object it encodes, while the
+ * [sizeEncoder] and the [stringEncoder] are shared by all the scopes.
  * - Nullable objects encoding will be encoded assuming that the object is prefixed with a [Boolean] (represented as a
  * single byte) that indicates if the object is present or not (`true` if present, `false` if not).
- * - All collection encoding will be encoded assuming that the collection is prefixed with its size represented by an
- * [Int].
+ * - All collection encoding will be encoded assuming that the collection is prefixed with its size, encoded with the
+ * [sizeEncoder] parameter.
  * - All nullable collections encoding will be encoded assuming that the collection is prefixed with a [Boolean] that
  * indicates if the collection is present or not (`true` if present, `false` if not). Then, if the collection is
- * present, the size of the collection will be encoded as an [Int]. Finally, if the collection is present and its size
- * is greater than 0, the elements of the collection will be encoded.
+ * present, the size of the collection will be encoded with the [sizeEncoder]. Finally, if the collection is present
+ * and its size is greater than 0, the elements of the collection will be encoded.
+ *
+ * Using a variable-length encoder such as [VarIntEncoder] as [sizeEncoder] makes the size prefixes of small
+ * collections and strings take a single byte instead of four.
  *
  * **NOTE**: The [EncodingScope] used in the lambda [block] is not designed to be used outside the lambda. Any use of
  * the scope outside the lambda may lead to unexpected results and can change the behaviour of the scope encoding
  * process. The scope is designed to be used only inside the lambda. In the same way, the encoder returned by the
  * [self][EncodingScope.self] property should also only be used inside the lambda.
  *
- * **NOTE**: The returned encoder is not thread-safe. Unexpected behaviours may occur if the internal cache of the
- * decoder is modified concurrently.
+ * Recursive objects (encoded through the [self][EncodingScope.self] property) are encoded iteratively: once an object
+ * has been passed to [self][EncodingScope.self], the following encodings of the scope are recorded on a single
+ * array-backed stack and performed after the recursive object has been encoded. The depth of the recursion is bounded
+ * by [maxDepth], an [IllegalStateException] being thrown when an object is nested deeper than this limit.
+ *
+ * The scopes used by the returned encoder are reused across calls, each thread reusing its own scope, so that encoding a
+ * non-recursive object does not allocate anything once the scope of the thread has been created. The returned encoder
+ * can therefore be used concurrently, as long as the [sizeEncoder] and the [stringEncoder] are thread-safe (which is the
+ * case of the default ones). It can also be used recursively (e.g. inside its own [block]), a new scope being created
+ * for the nested call.
+ *
+ * The [encoded size][Encoder.encodedSize] of an object is computed by running the [block] once more, without writing
+ * anything, and summing the encoded sizes returned by the encoders it uses. It is therefore known as long as all these
+ * encoders return their encoded size (which is the case of the primitives, of the built-in encoders and of the
+ * recursive objects), and `-1` otherwise.
  *
  * @param endianness the endianness of the encoder (defaults to [ByteOrder.BIG_ENDIAN])
- * @param stringEncoder the encoder to use for [String] objects (defaults to [UTF8StringEncoder] with the same
- *                      endianness as the [endianness] parameter)
+ * @param sizeEncoder the encoder to use for the size prefixes of collections (defaults to [IntEncoder] with the same
+ *                    endianness as the [endianness] parameter)
+ * @param stringEncoder the encoder to use for [String] objects (defaults to [UTF8StringEncoder] using the
+ *                      [sizeEncoder] for the size of the strings)
+ * @param maxDepth the maximum depth of the recursive objects, the encoded object being at depth `0` (defaults to
+ *                 [Int.MAX_VALUE])
  * @param block the block that will encode the object
  * @return the created encoder of type [T]
+ * @throws IllegalArgumentException if [maxDepth] is negative
  * @see EncodingScope
  */
 @JvmOverloads
 fun <T> composedEncoder(
     endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
-    stringEncoder: Encoder<String> = UTF8StringEncoder(IntEncoder(endianness)),
+    sizeEncoder: Encoder<Int> = IntEncoder(endianness),
+    stringEncoder: Encoder<String> = UTF8StringEncoder(sizeEncoder),
+    maxDepth: Int = Int.MAX_VALUE,
     block: EncodingScope<T>.(T) -> Unit,
 ): Encoder<T> {
-    val encodersCache = HashMap<Class<*>, Encoder<*>>().apply {
-        put(String::class.java, stringEncoder)
-    }
-
-    return Encoder { obj, output ->
-        var encoder: Encoder<T>? = null
-        var top = true
-
-        val recursionQueue = ArrayDeque<() -> Unit>()
-        val globalStack = ArrayList<() -> Unit>()
+    require(maxDepth >= 0) { "Maximum depth must be positive (was $maxDepth)" }
+    val newScope = { EncodingScopeImpl(endianness, sizeEncoder, stringEncoder, maxDepth, block) }
+    val scopes = ThreadLocal.withInitial(newScope)
 
-        encoder = Encoder self@{ t: T, o: EncoderOutput ->
-            // base case
-            val scope = EncodingScopeImpl(o, globalStack, recursionQueue, encodersCache, endianness, encoder!!)
-            scope.block(t)
+    return object : Encoder<T> {
 
-            if (!top) return@self // true only for the first call in the recursion stack
-            top = false
+        override fun encode(obj: T, output: EncoderOutput) = scope().encodeRoot(obj, output)
 
-            while (recursionQueue.isNotEmpty()) { // while there are encodings to be done
-                // while there are recursive encodings (we must loop because new recursive encodings may be added when a
-                // lambda is executed).
-                while (recursionQueue.isNotEmpty()) {
-                    recursionQueue.removeFirst()()
-                }
+        override fun encodedSize(obj: T): Long = scope().sizeOf(obj)
 
-                // while there are non-recursive encodings (we must loop because new encoding may be added when a lambda is
-                // executed). We must also check that the recursion queue is empty because we want to execute all recursive
-                // as soon as a new one is added.
-                while (recursionQueue.isEmpty() && globalStack.isNotEmpty()) {
-                    globalStack.removeLast()()
-                }
-            }
+        private fun scope(): EncodingScopeImpl<T> {
+            val scope = scopes.get()
+            return if (scope.isBusy) newScope() else scope // nested call on the same thread
         }
 
-        encoder.encode(obj, output)
     }
 }
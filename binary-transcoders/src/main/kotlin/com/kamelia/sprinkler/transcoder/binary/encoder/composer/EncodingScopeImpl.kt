@@ -9,75 +9,230 @@ import com.kamelia.sprinkler.transcoder.binary.encoder.LongEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.ShortEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.addSizes
 import com.kamelia.sprinkler.util.unsafeCast
 import com.zwendo.restrikt2.annotation.PackagePrivate
 import java.nio.ByteOrder
 
-
+/**
+ * [EncodingScope] encoding an object and its recursive objects iteratively.
+ *
+ * As long as no object has been passed to [self], the encodings of a scope are performed directly. Once an object has
+ * been passed to [self], the scope records the following encodings as `(object, encoder, output)` entries, recursive
+ * objects being recorded with [self] as their encoder. These entries are stored on a single array-backed stack, divided
+ * into frames. Once the block returns, the recorded entries of the top frame are performed in order, each recursive
+ * object being encoded in a new frame (whose entries are thus performed before the next entries of the current frame).
+ *
+ * A scope is reusable: once [encodeRoot] returns, the scope can encode another object, its stacks being kept so that
+ * encoding a non-recursive object does not allocate anything. Primitives are written directly to the output when they
+ * are not recorded, without boxing them.
+ *
+ * The [encoded size][Encoder.encodedSize] of an object is computed by [sizeOf], which runs the block without any output
+ * and sums the encoded sizes of the encodings instead of performing them, the recursive objects being stacked and sized
+ * once the block returns.
+ */
 @PackagePrivate
 @Suppress("INAPPLICABLE_JVM_NAME")
 internal class EncodingScopeImpl<E>(
-    private val output: EncoderOutput,
-    private val globalStack: ArrayList<() -> Unit>,
-    private val recursionQueue: ArrayDeque<() -> Unit>,
-    private val encoderMap: HashMap<Class<*>, Encoder<*>>,
     private val endianness: ByteOrder,
-    inner: Encoder<E>,
+    private val sizeEncoder: Encoder<Int>,
+    private val stringEncoder: Encoder<String>,
+    private val maxDepth: Int,
+    private val block: EncodingScope<E>.(E) -> Unit,
 ) : EncodingScope<E> {
 
-    private var selfQueue = ArrayList<() -> Unit>()
+    private val byteEncoder = ByteEncoder()
+
+    private val shortEncoder = ShortEncoder(endianness)
+
+    private val intEncoder = IntEncoder(endianness)
+
+    private val longEncoder = LongEncoder(endianness)
+
+    private val floatEncoder = FloatEncoder(endianness)
+
+    private val doubleEncoder = DoubleEncoder(endianness)
+
+    private val booleanEncoder = BooleanEncoder()
+
+    private var entries: Array<Any?> = EMPTY_ENTRIES
+
+    private var entryCount = 0
+
+    private var frameStarts: IntArray = EMPTY_FRAMES
+
+    private var frameCursors: IntArray = EMPTY_FRAMES
+
+    private var frameDepths: IntArray = EMPTY_FRAMES
+
+    private var frameRecording: BooleanArray = EMPTY_FLAGS
+
+    private var frameOutputs: Array<EncoderOutput?> = EMPTY_OUTPUTS
+
+    private var top = -1
+
+    private var sizing = false
+
+    // the size of the encodings of the object being sized, -1 if one of them is unknown
+    private var size = 0L
+
+    private val output: EncoderOutput
+        get() = frameOutputs[top]!!
+
+    private val recording: Boolean
+        get() = frameRecording[top]
 
-    private var recurse = false
+    /**
+     * Whether this scope is currently encoding or sizing an object.
+     */
+    val isBusy: Boolean
+        get() = top >= 0 || sizing
 
     @get:JvmName("self")
-    override val self: Encoder<E> = Encoder { obj, output ->
-        recursionQueue.add { inner.encode(obj, output) } // add to recursion queue
+    override val self: Encoder<E> = SelfEncoder()
 
-        // after this point, recursion fields cannot be null
-        if (recurse) return@Encoder
+    fun encodeRoot(obj: E, rootOutput: EncoderOutput) {
+        check(!isBusy) { "The scope is already encoding an object" }
+        try {
+            pushFrame(0, rootOutput)
+            block(obj)
+            while (top >= 0) {
+                val cursor = frameCursors[top]
+                if (cursor == entryCount) { // all the entries of the frame have been performed
+                    popFrame()
+                    continue
+                }
 
-        recurse = true // set recursion flag to queue next encodings
-        globalStack.add {
-            for (i in selfQueue.size - 1 downTo 0) {
-                globalStack += selfQueue[i]
+                val element = entries[cursor]
+                val encoder = entries[cursor + 1]
+                val output = entries[cursor + 2] as EncoderOutput
+                entries.fill(null, cursor, cursor + 3)
+                frameCursors[top] = cursor + 3
+                if (encoder === self) {
+                    val depth = frameDepths[top] + 1
+                    if (cursor + 3 == entryCount) { // last entry of the frame, the frame can be replaced
+                        popFrame()
+                    }
+                    pushFrame(depth, output)
+                    block(element.unsafeCast())
+                } else { // the encoder may pass objects to self, which must be encoded right after it
+                    pushFrame(frameDepths[top], output)
+                    encoder.unsafeCast<Encoder<Any?>>().encode(element, output)
+                }
             }
+        } finally {
+            clear()
+        }
+    }
+
+    fun sizeOf(obj: E): Long {
+        check(!isBusy) { "The scope is already encoding an object" }
+        sizing = true
+        try {
+            block(obj)
+            while (size >= 0 && entryCount > 0) { // the recursive objects are stacked by SelfEncoder.encodedSize
+                val element = entries[--entryCount]
+                entries[entryCount] = null
+                block(element.unsafeCast())
+            }
+            return size
+        } finally {
+            sizing = false
+            size = 0L
+            clear()
         }
     }
 
     @JvmName("encodeWith")
     override fun <T> encode(obj: T, encoder: Encoder<T>): EncodingScope<E> = apply {
-        if (recurse) {
-            selfQueue += { encoder.encode(obj, output) }
+        if (sizing) {
+            addSize(encoder.encodedSize(obj))
+        } else if (recording) {
+            record(obj, encoder, output)
         } else {
             encoder.encode(obj, output)
         }
     }
 
-    override fun encode(obj: Byte): EncodingScope<E> = encodeWithComputed(obj) { ByteEncoder() }
-
-    override fun encode(obj: Short): EncodingScope<E> = encodeWithComputed(obj) { ShortEncoder(endianness) }
+    override fun encode(obj: Byte): EncodingScope<E> = apply {
+        if (sizing) {
+            addSize(Byte.SIZE_BYTES)
+        } else if (recording) {
+            record(obj, byteEncoder, output)
+        } else {
+            output.write(obj)
+        }
+    }
 
-    override fun encode(obj: Int): EncodingScope<E> = encodeWithComputed(obj) { IntEncoder(endianness) }
+    override fun encode(obj: Short): EncodingScope<E> = apply {
+        if (sizing) {
+            addSize(Short.SIZE_BYTES)
+        } else if (recording) {
+            record(obj, shortEncoder, output)
+        } else {
+            output.writeShort(obj, endianness)
+        }
+    }
 
-    override fun encode(obj: Long): EncodingScope<E> = encodeWithComputed(obj) { LongEncoder(endianness) }
+    override fun encode(obj: Int): EncodingScope<E> = apply {
+        if (sizing) {
+            addSize(Int.SIZE_BYTES)
+        } else if (recording) {
+            record(obj, intEncoder, output)
+        } else {
+            output.writeInt(obj, endianness)
+        }
+    }
 
-    override fun encode(obj: Float): EncodingScope<E> = encodeWithComputed(obj) { FloatEncoder(endianness) }
+    override fun encode(obj: Long): EncodingScope<E> = apply {
+        if (sizing) {
+            addSize(Long.SIZE_BYTES)
+        } else if (recording) {
+            record(obj, longEncoder, output)
+        } else {
+            output.writeLong(obj, endianness)
+        }
+    }
 
-    override fun encode(obj: Double): EncodingScope<E> = encodeWithComputed(obj) { DoubleEncoder(endianness) }
+    override fun encode(obj: Float): EncodingScope<E> = apply {
+        if (sizing) {
+            addSize(Float.SIZE_BYTES)
+        } else if (recording) {
+            record(obj, floatEncoder, output)
+        } else {
+            output.writeFloat(obj, endianness)
+        }
+    }
 
-    override fun encode(obj: Boolean): EncodingScope<E> = encodeWithComputed(obj) { BooleanEncoder() }
+    override fun encode(obj: Double): EncodingScope<E> = apply {
+        if (sizing) {
+            addSize(Double.SIZE_BYTES)
+        } else if (recording) {
+            record(obj, doubleEncoder, output)
+        } else {
+            output.writeDouble(obj, endianness)
+        }
+    }
 
-    override fun encode(obj: String): EncodingScope<E> = encodeWithComputed(obj) {
-        throw AssertionError("A String encoder should always be present")
+    override fun encode(obj: Boolean): EncodingScope<E> = apply {
+        if (sizing) {
+            addSize(1)
+        } else if (recording) {
+            record(obj, booleanEncoder, output)
+        } else {
+            output.write(if (obj) 1 else 0)
+        }
     }
 
+    override fun encode(obj: String): EncodingScope<E> = encode(obj, stringEncoder)
+
     override fun encode(obj: Array<E>): EncodingScope<E> = apply {
-        encode(obj.size)
+        encode(obj.size, sizeEncoder)
         obj.forEach { encode(it, self) }
     }
 
     override fun encode(obj: Collection<E>): EncodingScope<E> = apply {
-        encode(obj.size)
+        encode(obj.size, sizeEncoder)
         obj.forEach { encode(it, self) }
     }
 
@@ -88,9 +243,95 @@ internal class EncodingScopeImpl<E>(
         }
     }
 
-    private inline fun <reified T> encodeWithComputed(obj: T, noinline block: () -> Encoder<T>): EncodingScope<E> {
-        val encoder = encoderMap.computeIfAbsent(T::class.java) { block() }.unsafeCast<Encoder<T>>()
-        return encode(obj, encoder)
+    private fun addSize(encodedSize: Int) = addSize(encodedSize.toLong())
+
+    private fun addSize(encodedSize: Long) {
+        size = addSizes(size, encodedSize)
+    }
+
+    private fun record(element: Any?, encoder: Encoder<*>, output: EncoderOutput) {
+        reserveEntries(3)
+        entries[entryCount] = element
+        entries[entryCount + 1] = encoder
+        entries[entryCount + 2] = output
+        entryCount += 3
+    }
+
+    private fun reserveEntries(count: Int) {
+        if (entries.size - entryCount < count) {
+            entries = entries.copyOf(maxOf(3 * INITIAL_CAPACITY, entryCount * 2))
+        }
+    }
+
+    private fun pushFrame(depth: Int, output: EncoderOutput) {
+        check(depth <= maxDepth) { "Maximum recursion depth ($maxDepth) exceeded" }
+        if (++top == frameStarts.size) {
+            val size = maxOf(INITIAL_CAPACITY, top * 2)
+            frameStarts = frameStarts.copyOf(size)
+            frameCursors = frameCursors.copyOf(size)
+            frameDepths = frameDepths.copyOf(size)
+            frameRecording = frameRecording.copyOf(size)
+            frameOutputs = frameOutputs.copyOf(size)
+        }
+        frameStarts[top] = entryCount
+        frameCursors[top] = entryCount
+        frameDepths[top] = depth
+        frameRecording[top] = false
+        frameOutputs[top] = output
+    }
+
+    private fun popFrame() {
+        entryCount = frameStarts[top]
+        frameOutputs[top--] = null
+    }
+
+    private fun clear() {
+        if (entries.size > MAX_RETAINED_CAPACITY || frameStarts.size > MAX_RETAINED_CAPACITY) {
+            // do not retain the memory used by a deep recursion
+            entries = EMPTY_ENTRIES
+            frameStarts = EMPTY_FRAMES
+            frameCursors = EMPTY_FRAMES
+            frameDepths = EMPTY_FRAMES
+            frameRecording = EMPTY_FLAGS
+            frameOutputs = EMPTY_OUTPUTS
+        } else { // only needed when an exception has been thrown, the stacks being empty otherwise
+            entries.fill(null, 0, entryCount)
+            frameOutputs.fill(null, 0, top + 1)
+        }
+        entryCount = 0
+        top = -1
+    }
+
+    private inner class SelfEncoder : Encoder<E> {
+
+        override fun encode(obj: E, output: EncoderOutput) {
+            record(obj, this, output)
+            frameRecording[top] = true // the following encodings must be performed after the recursive object
+        }
+
+        override fun encodedSize(obj: E): Long {
+            if (!sizing) return -1L
+            reserveEntries(1)
+            entries[entryCount++] = obj // sized by sizeOf once the block returns
+            return 0L
+        }
+
+    }
+
+    private companion object {
+
+        const val INITIAL_CAPACITY = 8
+
+        const val MAX_RETAINED_CAPACITY = 1024
+
+        val EMPTY_ENTRIES = arrayOfNulls<Any?>(0)
+
+        val EMPTY_FRAMES = IntArray(0)
+
+        val EMPTY_FLAGS = BooleanArray(0)
+
+        val EMPTY_OUTPUTS = arrayOfNulls<EncoderOutput>(0)
+
     }
 
 }
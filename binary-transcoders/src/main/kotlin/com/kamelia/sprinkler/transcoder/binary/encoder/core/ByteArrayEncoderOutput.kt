@@ -0,0 +1,60 @@
+package com.kamelia.sprinkler.transcoder.binary.encoder.core
+
+/**
+ * [EncoderOutput] writing to an in-memory [ByteArray], which is grown as bytes are written. Instances are created with
+ * [EncoderOutput.toByteArray].
+ *
+ * Unlike an [EncoderOutput] writing to a [ByteArrayOutputStream][java.io.ByteArrayOutputStream], the written bytes can
+ * be accessed without being copied through [array], which returns the internal array of the output. This array may be
+ * larger than the number of written bytes, only its [size] first bytes being meaningful.
+ *
+ * As for any [EncoderOutput], the last byte is only written once it is full or once [flush] has been called, meaning
+ * that [size] does not count the pending bits.
+ *
+ * The arrays of the output are acquired from the [BufferPool][com.kamelia.sprinkler.transcoder.binary.common.BufferPool]
+ * given to [EncoderOutput.toByteArray], and the last one is released by [close]. The output can still be used once
+ * closed, a new array being acquired on the next write.
+ *
+ * **NOTE**: This output is not thread-safe.
+ *
+ * @see EncoderOutput.toByteArray
+ */
+interface ByteArrayEncoderOutput : EncoderOutput, AutoCloseable {
+
+    /**
+     * The number of bytes written to this output.
+     */
+    val size: Int
+
+    /**
+     * Returns the internal array of this output, without copying it. Only the [size] first bytes of the array are the
+     * bytes written to this output.
+     *
+     * The returned array is the one written by this output until it has to be grown or the output is closed, meaning
+     * that it is only valid until the next write. Once replaced, it is released to the pool of the output, and may thus
+     * be reused by another user of the pool.
+     *
+     * @return the internal array of this output
+     */
+    fun array(): ByteArray
+
+    /**
+     * Returns a copy of the bytes written to this output, whose size is [size].
+     *
+     * @return the written bytes
+     */
+    fun toByteArray(): ByteArray
+
+    /**
+     * Discards all the bytes and pending bits written to this output, so that it can be reused. The internal array is
+     * kept, and is overwritten by the next writes.
+     */
+    fun reset()
+
+    /**
+     * Discards all the bytes and pending bits written to this output, like [reset], and releases the internal array to
+     * the pool of the output. The arrays previously returned by [array] must not be used anymore.
+     */
+    override fun close()
+
+}
@@ -0,0 +1,221 @@
+package com.kamelia.sprinkler.transcoder.binary.encoder.core
+
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.Charset
+import java.nio.charset.CharsetEncoder
+import java.nio.charset.CodingErrorAction
+import kotlin.math.min
+
+/**
+ * Built-in [Encoder] of [String]s, prefixed with their size in bytes or followed by an end marker. The produced bytes
+ * are the same as the ones returned by [String.toByteArray], but the string is never materialized as a new array.
+ *
+ * The [US-ASCII][Charsets.US_ASCII], [ISO-8859-1][Charsets.ISO_8859_1] and [UTF-8][Charsets.UTF_8] charsets are
+ * handled by dedicated paths, which compute the encoded size from the characters directly and write the bytes through a
+ * small reused chunk. The other charsets go through a [CharsetEncoder] and a [ByteBuffer] which are reused between two
+ * calls. The reused objects are bound to the calling thread, so that the encoder can still be shared.
+ *
+ * The [encoded size][encodedSize] is computed from the characters for the charsets handled by the dedicated paths, and
+ * by encoding the string in the reused buffer for the other ones, for which the [size hint][sizeHint] is thus unknown.
+ */
+internal class CharsetStringEncoder private constructor(
+    private val charset: Charset,
+    private val sizeEncoder: Encoder<Int>?,
+    private val endMarker: ByteArray?,
+) : Encoder<String> {
+
+    constructor(charset: Charset, sizeEncoder: Encoder<Int>) : this(charset, sizeEncoder, null)
+
+    constructor(charset: Charset, endMarker: ByteArray) : this(charset, null, endMarker)
+
+    private val singleByteMax = when (charset) {
+        Charsets.US_ASCII -> 0x7F
+        Charsets.ISO_8859_1 -> 0xFF
+        else -> -1
+    }
+
+    private val utf8 = charset == Charsets.UTF_8
+
+    private val scratch = ThreadLocal.withInitial { Scratch() }
+
+    override fun encode(obj: String, output: EncoderOutput) {
+        val scratch = scratch.get()
+        if (singleByteMax >= 0) {
+            sizeEncoder?.encode(singleByteLength(obj), output)
+            writeSingleByte(obj, output, scratch.chunk)
+        } else if (utf8) {
+            sizeEncoder?.encode(utf8Length(obj), output)
+            writeUtf8(obj, output, scratch.chunk)
+        } else {
+            val buffer = scratch.encode(obj)
+            sizeEncoder?.encode(buffer.position(), output)
+            output.write(buffer.array(), 0, buffer.position())
+        }
+        endMarker?.let(output::write)
+    }
+
+    override fun encodedSize(obj: String): Long {
+        val length = when {
+            singleByteMax >= 0 -> singleByteLength(obj)
+            utf8 -> utf8Length(obj)
+            else -> scratch.get().encode(obj).position()
+        }
+        val framing = if (sizeEncoder != null) sizeEncoder.encodedSize(length) else endMarker!!.size.toLong()
+        return addSizes(length.toLong(), framing)
+    }
+
+    // the size of the other charsets is only known once the string has been encoded
+    override fun sizeHint(obj: String): Int = if (singleByteMax >= 0 || utf8) super.sizeHint(obj) else -1
+
+    private fun writeSingleByte(obj: String, output: EncoderOutput, chunk: ByteArray) {
+        val max = singleByteMax
+        val length = obj.length
+        var i = 0
+        while (i < length) {
+            val end = min(length, i + chunk.size)
+            var j = 0
+            while (i < end) {
+                val c = obj[i++]
+                val code = c.code
+                if (code <= max) {
+                    chunk[j++] = code.toByte()
+                    continue
+                }
+                if (c.isHighSurrogate() && i < length && obj[i].isLowSurrogate()) {
+                    i++ // a surrogate pair is replaced by a single byte
+                }
+                chunk[j++] = REPLACEMENT.toByte()
+            }
+            output.write(chunk, 0, j)
+        }
+    }
+
+    private fun writeUtf8(obj: String, output: EncoderOutput, chunk: ByteArray) {
+        val length = obj.length
+        val limit = chunk.size - 4 // the longest sequence is 4 bytes long
+        var i = 0
+        var j = 0
+        while (i < length) {
+            if (j > limit) {
+                output.write(chunk, 0, j)
+                j = 0
+            }
+            val c = obj[i++]
+            val code = c.code
+            when {
+                code < 0x80 -> chunk[j++] = code.toByte()
+                code < 0x800 -> {
+                    chunk[j++] = (0xC0 or (code shr 6)).toByte()
+                    chunk[j++] = (0x80 or (code and 0x3F)).toByte()
+                }
+                c.isHighSurrogate() && i < length && obj[i].isLowSurrogate() -> {
+                    val codePoint = Character.toCodePoint(c, obj[i++])
+                    chunk[j++] = (0xF0 or (codePoint shr 18)).toByte()
+                    chunk[j++] = (0x80 or ((codePoint shr 12) and 0x3F)).toByte()
+                    chunk[j++] = (0x80 or ((codePoint shr 6) and 0x3F)).toByte()
+                    chunk[j++] = (0x80 or (codePoint and 0x3F)).toByte()
+                }
+                c.isSurrogate() -> chunk[j++] = REPLACEMENT.toByte() // unpaired surrogate
+                else -> {
+                    chunk[j++] = (0xE0 or (code shr 12)).toByte()
+                    chunk[j++] = (0x80 or ((code shr 6) and 0x3F)).toByte()
+                    chunk[j++] = (0x80 or (code and 0x3F)).toByte()
+                }
+            }
+        }
+        if (j > 0) {
+            output.write(chunk, 0, j)
+        }
+    }
+
+    private inner class Scratch {
+
+        val chunk = ByteArray(CHUNK_SIZE)
+
+        private var encoder: CharsetEncoder? = null
+
+        private var buffer: ByteBuffer? = null
+
+        fun encode(obj: String): ByteBuffer {
+            val encoder = encoder ?: charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .also { encoder = it }
+            val chars = CharBuffer.wrap(obj)
+            var buffer = buffer ?: ByteBuffer.allocate(CHUNK_SIZE)
+            buffer.clear()
+            encoder.reset()
+
+            var flushing = false
+            while (true) {
+                val result = if (flushing) encoder.flush(buffer) else encoder.encode(chars, buffer, true)
+                if (result.isOverflow) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip())
+                    continue
+                }
+                if (result.isError) result.throwException() // cannot happen, errors are replaced
+                if (flushing) break
+                flushing = true
+            }
+
+            this.buffer = buffer
+            return buffer
+        }
+
+    }
+
+    companion object {
+
+        private const val CHUNK_SIZE = 1024
+
+        private const val REPLACEMENT = '?'.code
+
+        /**
+         * Returns the number of bytes of the encoding of the given [string] in a single-byte charset, where each
+         * character is encoded on one byte, except surrogate pairs which are replaced by a single byte.
+         */
+        @JvmStatic
+        fun singleByteLength(string: String): Int {
+            val last = string.length - 1
+            var count = string.length
+            var i = 0
+            while (i < last) {
+                if (string[i].isHighSurrogate() && string[i + 1].isLowSurrogate()) {
+                    count--
+                    i++
+                }
+                i++
+            }
+            return count
+        }
+
+        /**
+         * Returns the number of bytes of the [UTF-8][Charsets.UTF_8] encoding of the given [string], as returned by
+         * [String.toByteArray], without encoding it.
+         */
+        @JvmStatic
+        fun utf8Length(string: String): Int {
+            val length = string.length
+            var count = length
+            var i = 0
+            while (i < length) {
+                val c = string[i++]
+                val code = c.code
+                if (code < 0x80) continue
+                count += when {
+                    code < 0x800 -> 1
+                    c.isHighSurrogate() && i < length && string[i].isLowSurrogate() -> {
+                        i++
+                        2 // 4 bytes for 2 chars
+                    }
+                    c.isSurrogate() -> 0 // unpaired surrogate, replaced by a single byte
+                    else -> 2
+                }
+            }
+            return count
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.kamelia.sprinkler.transcoder.binary.encoder.core
+
+import java.util.zip.Checksum
+
+/**
+ * [EncoderOutput] forwarding the written bytes to another [EncoderOutput], while updating a [Checksum] with them and
+ * counting them. Instances are created with [ChecksumEncoderOutput].
+ *
+ * The bits are packed in [MSB_FIRST][com.kamelia.sprinkler.transcoder.binary.common.BitOrder.MSB_FIRST] order, and
+ * [flush] only pads the pending bits with zeros, without flushing the underlying output.
+ */
+internal interface ChecksumEncoderOutput : EncoderOutput {
+
+    /**
+     * The number of bytes written so far.
+     */
+    val size: Long
+
+}
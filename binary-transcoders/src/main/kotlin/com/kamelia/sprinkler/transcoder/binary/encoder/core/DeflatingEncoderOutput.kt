@@ -0,0 +1,47 @@
+package com.kamelia.sprinkler.transcoder.binary.encoder.core
+
+/**
+ * [EncoderOutput] compressing the written bytes with the DEFLATE algorithm, in the zlib format, before writing them to
+ * an underlying [EncoderOutput]. Instances are created with [EncoderOutput.deflating].
+ *
+ * The compressed bytes are made of consecutive frames, each frame being a complete zlib stream which can be compressed
+ * with its own [level]. A frame is ended by [finishFrame], which also sets the level of the next frame, and the last
+ * frame is ended by [close]. The frames can be decompressed one after the other by
+ * [DecoderInput.inflating][com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput.inflating], and the
+ * first one by any zlib decompressor (e.g. an [InflaterInputStream][java.util.zip.InflaterInputStream]).
+ *
+ * A call to [flush] compresses all the bytes written so far and flushes them to the underlying output without ending
+ * the frame, so that the receiver can decompress everything written before the flush, at the cost of a few bytes and of
+ * a slightly lower compression ratio. Flushing too often should thus be avoided.
+ *
+ * **NOTE**: This output is not thread-safe, and must not be used once closed.
+ *
+ * @see EncoderOutput.deflating
+ */
+interface DeflatingEncoderOutput : EncoderOutput, AutoCloseable {
+
+    /**
+     * The compression level of the current frame, between [Deflater.NO_COMPRESSION][java.util.zip.Deflater] (`0`) and
+     * [Deflater.BEST_COMPRESSION][java.util.zip.Deflater] (`9`), or
+     * [Deflater.DEFAULT_COMPRESSION][java.util.zip.Deflater] (`-1`).
+     */
+    val level: Int
+
+    /**
+     * Ends the current frame, and starts a new one compressed with the given [nextLevel]. The pending bits are padded
+     * with zeros, as for [flush], and all the compressed bytes of the frame are written to the underlying output, which
+     * is not flushed.
+     *
+     * @param nextLevel the compression level of the next frame (defaults to the current [level])
+     * @throws IllegalArgumentException if [nextLevel] is not a valid compression level
+     * @throws IllegalStateException if the output is closed
+     */
+    fun finishFrame(nextLevel: Int = level)
+
+    /**
+     * Ends the current frame, flushes the underlying output, and releases the compressor and the buffers of this
+     * output. The underlying output is not closed. Calling this method on a closed output has no effect.
+     */
+    override fun close()
+
+}
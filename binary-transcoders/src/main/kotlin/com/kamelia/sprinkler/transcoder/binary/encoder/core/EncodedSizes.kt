@@ -0,0 +1,96 @@
+package com.kamelia.sprinkler.transcoder.binary.encoder.core
+
+/**
+ * Creates an [Encoder] delegating [Encoder.encode] to the given [encode] function and [Encoder.encodedSize] to the
+ * given [encodedSize] function.
+ */
+internal inline fun <T> sizedEncoder(
+    crossinline encodedSize: (T) -> Long,
+    crossinline encode: (T, EncoderOutput) -> Unit,
+): Encoder<T> = object : Encoder<T> {
+
+    override fun encode(obj: T, output: EncoderOutput) = encode(obj, output)
+
+    override fun encodedSize(obj: T): Long = encodedSize(obj)
+
+}
+
+/**
+ * Creates an [Encoder] delegating [Encoder.encode] to the given [encode] function and always writing [size] bytes.
+ */
+internal inline fun <T> fixedSizeEncoder(
+    size: Long,
+    crossinline encode: (T, EncoderOutput) -> Unit,
+): Encoder<T> = object : FixedSizeEncoder<T>(size) {
+
+    override fun encode(obj: T, output: EncoderOutput) = encode(obj, output)
+
+}
+
+/**
+ * Creates an [Encoder] delegating [Encoder.encode] to the given [encode] function. The encoder always writes
+ * [fixedSize] bytes if it is not negative, otherwise its [Encoder.encodedSize] is delegated to the given [encodedSize]
+ * function.
+ */
+internal inline fun <T> sizedEncoder(
+    fixedSize: Long,
+    crossinline encodedSize: (T) -> Long,
+    crossinline encode: (T, EncoderOutput) -> Unit,
+): Encoder<T> = if (fixedSize >= 0) fixedSizeEncoder(fixedSize, encode) else sizedEncoder(encodedSize, encode)
+
+/**
+ * [Encoder] always writing [size] bytes, whatever the encoded object. The encoders built on top of it use this size to
+ * compute their own size without looking at the objects (e.g. a collection of fixed-size elements).
+ */
+internal abstract class FixedSizeEncoder<T>(val size: Long) : Encoder<T> {
+
+    final override fun encodedSize(obj: T): Long = size
+
+}
+
+/**
+ * The number of bytes written by this encoder for any object, or `-1` if it depends on the object.
+ */
+internal val Encoder<*>.fixedSize: Long
+    get() = if (this is FixedSizeEncoder<*>) size else -1L
+
+/**
+ * Returns the sum of the given sizes, or `-1` if one of them is unknown or if the sum overflows.
+ */
+internal fun addSizes(first: Long, second: Long): Long {
+    if (first < 0 || second < 0) return -1L
+    val sum = first + second
+    return if (sum < 0) -1L else sum
+}
+
+/**
+ * Returns the sum of the sizes returned by [encodedSize] for the elements of the given [elements], starting from
+ * [initial], or `-1` if one of them is unknown or if the sum overflows.
+ */
+internal inline fun <T> sumSizes(initial: Long, elements: Iterable<T>, encodedSize: (T) -> Long): Long {
+    var sum = initial
+    for (element in elements) {
+        sum = addSizes(sum, encodedSize(element))
+        if (sum < 0) return -1L
+    }
+    return sum
+}
+
+/**
+ * Returns the sum of the encoded sizes of the given [elements], starting from [initial], or `-1` if one of them is
+ * unknown or if the sum overflows. The elements are not iterated if this encoder has a [fixed size][fixedSize].
+ */
+internal fun <T> Encoder<T>.sumEncodedSizes(initial: Long, elements: Collection<T>): Long {
+    val fixed = fixedSize
+    if (fixed < 0) return sumSizes(initial, elements, ::encodedSize)
+    return addRepeatedSizes(initial, fixed, elements.size)
+}
+
+/**
+ * Returns [initial] plus [count] times [size], or `-1` if one of the sizes is unknown or if the sum overflows.
+ */
+internal fun addRepeatedSizes(initial: Long, size: Long, count: Int): Long {
+    if (initial < 0 || size < 0) return -1L
+    if (size > 0 && count > (Long.MAX_VALUE - initial) / size) return -1L
+    return initial + size * count
+}
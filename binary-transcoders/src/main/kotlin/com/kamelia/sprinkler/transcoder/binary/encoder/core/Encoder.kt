@@ -42,18 +42,53 @@ fun interface Encoder<in T> {
      */
     fun encode(obj: T, output: EncoderOutput)
 
+    /**
+     * Returns the exact number of bytes written by this encoder to encode the given [obj], or `-1` if it cannot be
+     * computed without encoding the object. It allows to write a size prefix before an object, or to allocate a buffer
+     * of the exact size, in a single encoding pass.
+     *
+     * All the built-in encoders return the exact size of the encoded object, the fixed-size ones (e.g. the primitive
+     * encoders) returning a constant without looking at the object. Encoders built on top of other encoders return `-1`
+     * as soon as one of them returns `-1`. The default implementation returns `-1`.
+     *
+     * @param obj the object whose encoded size is requested
+     * @return the number of bytes written to encode [obj], or `-1` if it is unknown
+     */
+    fun encodedSize(obj: T): Long = -1L
+
+    /**
+     * Returns the number of bytes written by this encoder to encode the given [obj], or `-1` if it is unknown. This
+     * size is only a hint, used to pre-size in-memory outputs (e.g. in [encode]), and should be cheaper to compute than
+     * the encoding itself.
+     *
+     * The default implementation returns the [encoded size][encodedSize] of the object, or `-1` if it does not fit in
+     * an [Int]. It can be overridden to return an estimate when the exact size is unknown, or `-1` when the exact size
+     * is as expensive to compute as the encoding itself.
+     *
+     * @param obj the object whose encoded size is requested
+     * @return the number of bytes written to encode [obj], or `-1` if it is unknown
+     */
+    fun sizeHint(obj: T): Int {
+        val size = encodedSize(obj)
+        return if (size > Int.MAX_VALUE) -1 else size.toInt()
+    }
+
     /**
      * Encodes the given [obj] to a [ByteArray].
      *
+     * The bytes are written to a [ByteArrayEncoderOutput] pre-sized with the [size hint][sizeHint] of the object, whose
+     * array is returned without being copied if the hint is exact.
+     *
      * @param obj the object to encode
      * @return the encoded bytes
      */
     fun encode(obj: T): ByteArray {
-        val list = ArrayList<Byte>()
-        val output = EncoderOutput.from { list.add(it.toByte()) }
+        val hint = sizeHint(obj)
+        val output = if (hint >= 0) EncoderOutput.toByteArray(hint) else EncoderOutput.toByteArray()
         encode(obj, output)
         output.flush()
-        return list.toByteArray()
+        val array = output.array()
+        return if (output.size == array.size) array else output.toByteArray()
     }
 
     /**
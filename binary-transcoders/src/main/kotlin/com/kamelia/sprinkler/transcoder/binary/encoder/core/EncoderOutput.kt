@@ -1,11 +1,19 @@
 package com.kamelia.sprinkler.transcoder.binary.encoder.core
 
 import com.kamelia.sprinkler.transcoder.binary.common.BitOrder
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
 import com.kamelia.sprinkler.util.bit
 import java.io.IOException
 import java.io.OutputStream
+import java.lang.invoke.MethodHandles
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ReadOnlyBufferException
+import java.nio.channels.WritableByteChannel
 import java.util.*
-import kotlin.experimental.or
+import java.util.zip.Checksum
+import java.util.zip.Deflater
 import kotlin.math.min
 
 /**
@@ -22,6 +30,8 @@ import kotlin.math.min
  * val myOutput = EncoderOutput.from { byte -> println(byte) } // myOutput.write(byte) will print the byte
  * ```
  *
+ * Bytes can also be written in memory with the [ByteArrayEncoderOutput] created by [EncoderOutput.toByteArray].
+ *
  * @see Encoder
  */
 interface EncoderOutput {
@@ -62,10 +72,34 @@ interface EncoderOutput {
      */
     fun writeBit(bit: Boolean) = writeBit(if (bit) 1 else 0)
 
+    /**
+     * Writes the [n] lowest bits of the given [value] to the output at once. With [BitOrder.MSB_FIRST], the first bit
+     * written is the most significant of the [n] bits, and with [BitOrder.LSB_FIRST], it is the least significant one,
+     * meaning that the value can be read back using [DecoderInput.readBitsAsLong][com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput.readBitsAsLong]
+     * with the same [BitOrder].
+     *
+     * The default implementation writes the bits one by one using [writeBit] in the [BitOrder.MSB_FIRST] order.
+     *
+     * @param value the value containing the bits to write
+     * @param n the number of bits to write, between 0 and 64
+     * @throws IllegalArgumentException if [n] is not between 0 and 64
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeBitsFromLong(value: Long, n: Int) {
+        require(n in 0..64) { "Number of bits must be between 0 and 64 (was $n)" }
+        for (i in n - 1 downTo 0) {
+            writeBit((value ushr i).toInt() and 1)
+        }
+    }
+
     /**
      * Write up to 8 bits from the given [Int] to the output. The [start] and [length] parameters specify the range of
      * bits in the [Int] to write. The [start] parameter is inclusive, and the [length] parameter is exclusive.
      *
+     * The bit indices are counted in the [BitOrder] of the output, meaning that the bit `0` is the most significant bit
+     * of the byte with [BitOrder.MSB_FIRST], and its least significant bit with [BitOrder.LSB_FIRST]. The default
+     * implementation uses the [BitOrder.MSB_FIRST] order.
+     *
      * @param byte the [Int] to write
      * @param start the inclusive start index in the [Int] to write
      * @param length the exclusive end index in the [Int] to write
@@ -217,6 +251,216 @@ interface EncoderOutput {
      */
     fun write(bytes: Iterable<Byte>): Unit = bytes.forEach(::write)
 
+    /**
+     * Writes the 2 bytes of the given [Short] to the output, in the given byte [order].
+     *
+     * The default implementation writes the bytes one by one using [write].
+     *
+     * @param value the [Short] to write
+     * @param order the byte order in which the bytes are written
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeShort(value: Short, order: ByteOrder) {
+        val bits = value.toInt()
+        if (order == ByteOrder.BIG_ENDIAN) {
+            write(bits ushr 8)
+            write(bits)
+        } else {
+            write(bits)
+            write(bits ushr 8)
+        }
+    }
+
+    /**
+     * Writes the 4 bytes of the given [Int] to the output, in the given byte [order].
+     *
+     * The default implementation writes the bytes one by one using [write].
+     *
+     * @param value the [Int] to write
+     * @param order the byte order in which the bytes are written
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeInt(value: Int, order: ByteOrder) {
+        val bits = if (order == ByteOrder.BIG_ENDIAN) value else Integer.reverseBytes(value)
+        write(bits ushr 24)
+        write(bits ushr 16)
+        write(bits ushr 8)
+        write(bits)
+    }
+
+    /**
+     * Writes the 8 bytes of the given [Long] to the output, in the given byte [order].
+     *
+     * The default implementation writes the bytes one by one using [write].
+     *
+     * @param value the [Long] to write
+     * @param order the byte order in which the bytes are written
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeLong(value: Long, order: ByteOrder) {
+        val bits = if (order == ByteOrder.BIG_ENDIAN) value else java.lang.Long.reverseBytes(value)
+        for (shift in 56 downTo 0 step 8) {
+            write((bits ushr shift).toInt())
+        }
+    }
+
+    /**
+     * Writes the 4 bytes of the [raw bits][Float.toRawBits] of the given [Float] to the output, in the given byte
+     * [order].
+     *
+     * The default implementation delegates to [writeInt].
+     *
+     * @param value the [Float] to write
+     * @param order the byte order in which the bytes are written
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeFloat(value: Float, order: ByteOrder): Unit = writeInt(value.toRawBits(), order)
+
+    /**
+     * Writes the 8 bytes of the [raw bits][Double.toRawBits] of the given [Double] to the output, in the given byte
+     * [order].
+     *
+     * The default implementation delegates to [writeLong].
+     *
+     * @param value the [Double] to write
+     * @param order the byte order in which the bytes are written
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeDouble(value: Double, order: ByteOrder): Unit = writeLong(value.toRawBits(), order)
+
+    /**
+     * Writes the [length] elements of the given [values] starting at index [start] to the output, each of them being
+     * written on 2 bytes in the given byte [order], as with [writeShort].
+     *
+     * The default implementation writes the elements one by one. The built-in outputs copy them in bulk when no bit is
+     * pending.
+     *
+     * @param values the array containing the elements to write
+     * @param start the index of the first element to write
+     * @param length the number of elements to write
+     * @param order the byte order in which the bytes of each element are written
+     * @throws IndexOutOfBoundsException if [start] or [length] is negative, or if `start + length` is greater than the
+     * size of [values]
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeShorts(values: ShortArray, start: Int, length: Int, order: ByteOrder) {
+        Objects.checkFromIndexSize(start, length, values.size)
+        for (i in start until start + length) {
+            writeShort(values[i], order)
+        }
+    }
+
+    /**
+     * Writes the [length] elements of the given [values] starting at index [start] to the output, each of them being
+     * written on 2 bytes in the given byte [order], as with [writeShort]. Each [Char] is written as
+     * its [code][Char.code].
+     *
+     * The default implementation writes the elements one by one. The built-in outputs copy them in bulk when no bit is
+     * pending.
+     *
+     * @param values the array containing the elements to write
+     * @param start the index of the first element to write
+     * @param length the number of elements to write
+     * @param order the byte order in which the bytes of each element are written
+     * @throws IndexOutOfBoundsException if [start] or [length] is negative, or if `start + length` is greater than the
+     * size of [values]
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeChars(values: CharArray, start: Int, length: Int, order: ByteOrder) {
+        Objects.checkFromIndexSize(start, length, values.size)
+        for (i in start until start + length) {
+            writeShort(values[i].code.toShort(), order)
+        }
+    }
+
+    /**
+     * Writes the [length] elements of the given [values] starting at index [start] to the output, each of them being
+     * written on 4 bytes in the given byte [order], as with [writeInt].
+     *
+     * The default implementation writes the elements one by one. The built-in outputs copy them in bulk when no bit is
+     * pending.
+     *
+     * @param values the array containing the elements to write
+     * @param start the index of the first element to write
+     * @param length the number of elements to write
+     * @param order the byte order in which the bytes of each element are written
+     * @throws IndexOutOfBoundsException if [start] or [length] is negative, or if `start + length` is greater than the
+     * size of [values]
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeInts(values: IntArray, start: Int, length: Int, order: ByteOrder) {
+        Objects.checkFromIndexSize(start, length, values.size)
+        for (i in start until start + length) {
+            writeInt(values[i], order)
+        }
+    }
+
+    /**
+     * Writes the [length] elements of the given [values] starting at index [start] to the output, each of them being
+     * written on 8 bytes in the given byte [order], as with [writeLong].
+     *
+     * The default implementation writes the elements one by one. The built-in outputs copy them in bulk when no bit is
+     * pending.
+     *
+     * @param values the array containing the elements to write
+     * @param start the index of the first element to write
+     * @param length the number of elements to write
+     * @param order the byte order in which the bytes of each element are written
+     * @throws IndexOutOfBoundsException if [start] or [length] is negative, or if `start + length` is greater than the
+     * size of [values]
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeLongs(values: LongArray, start: Int, length: Int, order: ByteOrder) {
+        Objects.checkFromIndexSize(start, length, values.size)
+        for (i in start until start + length) {
+            writeLong(values[i], order)
+        }
+    }
+
+    /**
+     * Writes the [length] elements of the given [values] starting at index [start] to the output, each of them being
+     * written on 4 bytes in the given byte [order], as with [writeFloat].
+     *
+     * The default implementation writes the elements one by one. The built-in outputs copy them in bulk when no bit is
+     * pending.
+     *
+     * @param values the array containing the elements to write
+     * @param start the index of the first element to write
+     * @param length the number of elements to write
+     * @param order the byte order in which the bytes of each element are written
+     * @throws IndexOutOfBoundsException if [start] or [length] is negative, or if `start + length` is greater than the
+     * size of [values]
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeFloats(values: FloatArray, start: Int, length: Int, order: ByteOrder) {
+        Objects.checkFromIndexSize(start, length, values.size)
+        for (i in start until start + length) {
+            writeFloat(values[i], order)
+        }
+    }
+
+    /**
+     * Writes the [length] elements of the given [values] starting at index [start] to the output, each of them being
+     * written on 8 bytes in the given byte [order], as with [writeDouble].
+     *
+     * The default implementation writes the elements one by one. The built-in outputs copy them in bulk when no bit is
+     * pending.
+     *
+     * @param values the array containing the elements to write
+     * @param start the index of the first element to write
+     * @param length the number of elements to write
+     * @param order the byte order in which the bytes of each element are written
+     * @throws IndexOutOfBoundsException if [start] or [length] is negative, or if `start + length` is greater than the
+     * size of [values]
+     * @throws IOException if an I/O error occurs
+     */
+    fun writeDoubles(values: DoubleArray, start: Int, length: Int, order: ByteOrder) {
+        Objects.checkFromIndexSize(start, length, values.size)
+        for (i in start until start + length) {
+            writeDouble(values[i], order)
+        }
+    }
+
     companion object {
 
         /**
@@ -236,6 +480,10 @@ interface EncoderOutput {
                 Objects.checkFromIndexSize(start, length, bytes.size * 8)
             }
 
+            override fun writeBitsFromLong(value: Long, n: Int) {
+                require(n in 0..64) { "Number of bits must be between 0 and 64 (was $n)" }
+            }
+
             override fun write(bytes: ByteArray, start: Int, length: Int) {
                 Objects.checkFromIndexSize(start, length, bytes.size)
             }
@@ -256,49 +504,138 @@ interface EncoderOutput {
          */
         @JvmStatic
         @JvmOverloads
-        fun from(output: OutputStream, order: BitOrder = BitOrder.MSB_FIRST): EncoderOutput = object : EncoderOutput {
-
-            private var currentByte = 0.toByte()
-            private var currentBitIndex = 0
-
-            override fun writeBit(bit: Int) {
-                currentByte = currentByte or (bit shl 7 - currentBitIndex).toByte()
-                currentBitIndex++
-
-                tryFlush()
+        fun from(output: OutputStream, order: BitOrder = BitOrder.MSB_FIRST): EncoderOutput =
+            object : AbstractEncoderOutput(order) {
+                override fun writeByte(byte: Int) = output.write(byte)
+                override fun writeBytes(bytes: ByteArray, start: Int, length: Int) = output.write(bytes, start, length)
+                override fun flushBytes() = output.flush()
             }
 
-            override fun flush() {
-                if (currentBitIndex == 0) {
-                    output.flush()
-                    return
-                }
-                output.write(currentByte.toInt())
-                output.flush()
-                currentByte = 0.toByte()
-                currentBitIndex = 0
-            }
+        /**
+         * Creates an [EncoderOutput] that writes to the given [ByteBuffer], heap or direct, starting at its position and
+         * advancing it. The [order] parameter specifies the order in which bits are written to the bytes of the buffer,
+         * the byte order of the multibyte values being given to each write (e.g. [writeInt]) regardless of the
+         * [order][ByteBuffer.order] of the buffer.
+         *
+         * When the buffer is full, [onOverflow] is called with it and must return the buffer to which the following
+         * bytes are written, with at least one remaining byte. It can for instance drain the buffer to another output
+         * and clear it, or return a larger buffer containing the written bytes. By default, a [BufferOverflowException]
+         * is thrown, the bytes written before the overflow being kept in the buffer.
+         *
+         * Multibyte values are written to the buffer at once when it has enough remaining bytes, and byte by byte
+         * otherwise.
+         *
+         * @param buffer the [ByteBuffer] to write to
+         * @param order the [BitOrder] to use
+         * @param onOverflow the function called when the buffer is full, returning the buffer to write to (throws a
+         * [BufferOverflowException] by default)
+         * @return the [EncoderOutput] that writes to the given [ByteBuffer]
+         * @throws ReadOnlyBufferException if the buffer is read-only
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun from(
+            buffer: ByteBuffer,
+            order: BitOrder = BitOrder.MSB_FIRST,
+            onOverflow: (ByteBuffer) -> ByteBuffer = { throw BufferOverflowException() },
+        ): EncoderOutput {
+            if (buffer.isReadOnly) throw ReadOnlyBufferException()
+            return ByteBufferEncoderOutput(buffer, order, onOverflow)
+        }
 
-            override fun write(byte: Int) =
-                if (currentBitIndex == 0) {
-                    output.write(byte)
-                } else {
-                    super.write(byte)
-                }
-
-            private fun tryFlush() {
-                if (currentBitIndex == 8) {
-                    flush()
-                }
-            }
+        /**
+         * Creates an [EncoderOutput] that writes to the given [WritableByteChannel]. The bytes are accumulated in an
+         * internal direct buffer of [bufferSize] bytes, which is written to the channel when it is full and on each
+         * call to [flush]. Arrays larger than this buffer are written to the channel directly. The [order] parameter
+         * specifies the order in which bits are written to the channel.
+         *
+         * The internal buffer is acquired from the given [pool]. Unless the pool is [BufferPool.noOp], the buffer is
+         * released to the pool on each call to [flush], and acquired again on the next write, so that an output which
+         * has been flushed does not hold any buffer.
+         *
+         * **NOTE**: The channel should be in blocking mode, as a non-blocking channel would be repeatedly written until
+         * it accepts all the bytes. The channel is never closed by the output.
+         *
+         * @param channel the [WritableByteChannel] to write to
+         * @param bufferSize the size of the internal buffer, in bytes (defaults to 8 KiB)
+         * @param order the [BitOrder] to use
+         * @param pool the [BufferPool] from which the internal buffer is acquired (defaults to [BufferPool.noOp])
+         * @return the [EncoderOutput] that writes to the given [WritableByteChannel]
+         * @throws IllegalArgumentException if [bufferSize] is lower than 8
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun from(
+            channel: WritableByteChannel,
+            bufferSize: Int = DEFAULT_CHANNEL_BUFFER_SIZE,
+            order: BitOrder = BitOrder.MSB_FIRST,
+            pool: BufferPool = BufferPool.noOp(),
+        ): EncoderOutput {
+            require(bufferSize >= Long.SIZE_BYTES) { "Buffer size must be at least 8 bytes (was $bufferSize)" }
+            return ChannelEncoderOutput(channel, bufferSize, order, pool)
+        }
 
-            override fun write(bytes: ByteArray, start: Int, length: Int) =
-                if (currentBitIndex == 0) {
-                    output.write(bytes, start, length)
-                } else {
-                    super.write(bytes, start, length)
-                }
+        /**
+         * Creates a [ByteArrayEncoderOutput], writing to an in-memory [ByteArray] which grows as bytes are written. The
+         * [initialCapacity] should be the number of bytes expected to be written (e.g. the [size hint][Encoder.sizeHint]
+         * of the encoded object), so that the array never has to be grown. The [order] parameter specifies the order in
+         * which bits are written to the bytes of the array.
+         *
+         * The arrays of the output are acquired from the given [pool], the replaced ones being released to it when the
+         * array is grown, and the last one when the output is [closed][ByteArrayEncoderOutput.close].
+         *
+         * @param initialCapacity the initial size of the array (defaults to 32)
+         * @param order the [BitOrder] to use
+         * @param pool the [BufferPool] from which the arrays are acquired (defaults to [BufferPool.noOp])
+         * @return the [ByteArrayEncoderOutput]
+         * @throws IllegalArgumentException if [initialCapacity] is negative
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun toByteArray(
+            initialCapacity: Int = DEFAULT_BYTE_ARRAY_CAPACITY,
+            order: BitOrder = BitOrder.MSB_FIRST,
+            pool: BufferPool = BufferPool.noOp(),
+        ): ByteArrayEncoderOutput {
+            require(initialCapacity >= 0) { "Initial capacity must be positive (was $initialCapacity)" }
+            return GrowableByteArrayEncoderOutput(initialCapacity, order, pool)
+        }
 
+        /**
+         * Creates a [DeflatingEncoderOutput], compressing the written bytes with the DEFLATE algorithm in the zlib
+         * format, and writing the compressed bytes to the given [output]. The [order] parameter specifies the order in
+         * which bits are written to the uncompressed bytes.
+         *
+         * The written bytes are accumulated in a direct buffer of [bufferSize] bytes, compressed at once when it is
+         * full and on each call to [flush][EncoderOutput.flush], the multibyte values and primitive arrays being
+         * written to it in bulk, and arrays larger than this buffer being compressed directly. The compressed bytes
+         * are written to [output] by chunks of at most [bufferSize] bytes. The same
+         * [Deflater][java.util.zip.Deflater] is reused for all the frames of the output, and both buffers are acquired
+         * from the given [pool] and released to it when the output is [closed][DeflatingEncoderOutput.close].
+         *
+         * @param output the [EncoderOutput] to which the compressed bytes are written
+         * @param level the compression level of the first frame, between `0` and `9`, or `-1` for the default level
+         * (defaults to [Deflater.DEFAULT_COMPRESSION][java.util.zip.Deflater.DEFAULT_COMPRESSION])
+         * @param bufferSize the size of the internal buffers, in bytes (defaults to 8 KiB)
+         * @param order the [BitOrder] to use
+         * @param pool the [BufferPool] from which the internal buffers are acquired (defaults to [BufferPool.noOp])
+         * @return the [DeflatingEncoderOutput] writing to [output]
+         * @throws IllegalArgumentException if [level] is not a valid compression level, or if [bufferSize] is lower
+         * than 8
+         * @see DeflatingEncoderOutput
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun deflating(
+            output: EncoderOutput,
+            level: Int = Deflater.DEFAULT_COMPRESSION,
+            bufferSize: Int = DEFAULT_CHANNEL_BUFFER_SIZE,
+            order: BitOrder = BitOrder.MSB_FIRST,
+            pool: BufferPool = BufferPool.noOp(),
+        ): DeflatingEncoderOutput {
+            checkCompressionLevel(level)
+            require(bufferSize >= Long.SIZE_BYTES) { "Buffer size must be at least 8 bytes (was $bufferSize)" }
+            return DeflatingEncoderOutputImpl(output, level, bufferSize, order, pool)
         }
 
         /**
@@ -321,3 +658,623 @@ interface EncoderOutput {
     }
 
 }
+
+private const val DEFAULT_BYTE_ARRAY_CAPACITY = 32
+
+private const val DEFAULT_CHANNEL_BUFFER_SIZE = 8 * 1024
+
+private val EMPTY_ARRAY = ByteArray(0)
+
+// never written, its position and limit always being 0
+private val EMPTY_BUFFER = ByteBuffer.allocate(0)
+
+private val SHORT_BE = MethodHandles.byteArrayViewVarHandle(ShortArray::class.java, ByteOrder.BIG_ENDIAN)
+
+private val SHORT_LE = MethodHandles.byteArrayViewVarHandle(ShortArray::class.java, ByteOrder.LITTLE_ENDIAN)
+
+private val INT_BE = MethodHandles.byteArrayViewVarHandle(IntArray::class.java, ByteOrder.BIG_ENDIAN)
+
+private val INT_LE = MethodHandles.byteArrayViewVarHandle(IntArray::class.java, ByteOrder.LITTLE_ENDIAN)
+
+private val LONG_BE = MethodHandles.byteArrayViewVarHandle(LongArray::class.java, ByteOrder.BIG_ENDIAN)
+
+private val LONG_LE = MethodHandles.byteArrayViewVarHandle(LongArray::class.java, ByteOrder.LITTLE_ENDIAN)
+
+// size of the array in which the elements of primitive arrays are converted by the outputs without a backing array
+private const val SCRATCH_SIZE = 1024
+
+// the maximum size of an array, some VMs reserving a few header words in arrays
+private const val MAX_ARRAY_SIZE = Int.MAX_VALUE - 8
+
+/**
+ * Base of the [EncoderOutputs][EncoderOutput] writing whole bytes to an underlying output, accumulating the written bits
+ * until they form a full byte.
+ */
+private abstract class AbstractEncoderOutput(order: BitOrder) : EncoderOutput {
+
+    private val msbFirst = order.isMsbFirst
+
+    // the pending bits are stored in the lowest bits of the accumulator, the first written being the highest of them
+    // with MSB_FIRST and the lowest of them with LSB_FIRST. There are always less than 8 pending bits between two calls.
+    private var accumulator = 0L
+
+    protected var pendingBits = 0
+        private set
+
+    private var scratch: ByteArray? = null
+
+    /**
+     * Writes the 8 lowest bits of the given [byte] to the underlying output.
+     */
+    protected abstract fun writeByte(byte: Int)
+
+    /**
+     * Writes the given range of [bytes] to the underlying output.
+     */
+    protected abstract fun writeBytes(bytes: ByteArray, start: Int, length: Int)
+
+    /**
+     * Flushes the underlying output, once the last byte has been padded and written.
+     */
+    protected open fun flushBytes() = Unit
+
+    override fun writeBit(bit: Int) = append(bit.toLong(), 1)
+
+    override fun writeBits(byte: Int, start: Int, length: Int) {
+        Objects.checkFromIndexSize(start, length, 8)
+        val shift = if (msbFirst) 8 - start - length else start
+        append((byte ushr shift).toLong(), length)
+    }
+
+    override fun writeBitsFromLong(value: Long, n: Int) {
+        require(n in 0..64) { "Number of bits must be between 0 and 64 (was $n)" }
+        if (n <= 32) {
+            append(value, n)
+        } else if (msbFirst) { // split the value to keep room in the accumulator
+            append(value ushr 32, n - 32)
+            append(value, 32)
+        } else {
+            append(value, 32)
+            append(value ushr 32, n - 32)
+        }
+    }
+
+    override fun flush() {
+        padPendingBits()
+        flushBytes()
+    }
+
+    override fun write(byte: Int) =
+        if (pendingBits == 0) {
+            writeByte(byte)
+        } else {
+            append(byte.toLong(), 8)
+        }
+
+    override fun write(bytes: ByteArray, start: Int, length: Int) =
+        if (pendingBits == 0) {
+            Objects.checkFromIndexSize(start, length, bytes.size)
+            writeBytes(bytes, start, length)
+        } else {
+            super.write(bytes, start, length)
+        }
+
+    override fun writeShort(value: Short, order: ByteOrder) =
+        if (pendingBits == 0) {
+            putShort(value, order)
+        } else {
+            super.writeShort(value, order)
+        }
+
+    override fun writeInt(value: Int, order: ByteOrder) =
+        if (pendingBits == 0) {
+            putInt(value, order)
+        } else {
+            super.writeInt(value, order)
+        }
+
+    override fun writeLong(value: Long, order: ByteOrder) =
+        if (pendingBits == 0) {
+            putLong(value, order)
+        } else {
+            super.writeLong(value, order)
+        }
+
+    override fun writeShorts(values: ShortArray, start: Int, length: Int, order: ByteOrder) {
+        if (pendingBits != 0) return super.writeShorts(values, start, length, order)
+        Objects.checkFromIndexSize(start, length, values.size)
+        putArray(length, Short.SIZE_BYTES, order) { view, offset, count ->
+            view.asShortBuffer().put(values, start + offset, count)
+        }
+    }
+
+    override fun writeChars(values: CharArray, start: Int, length: Int, order: ByteOrder) {
+        if (pendingBits != 0) return super.writeChars(values, start, length, order)
+        Objects.checkFromIndexSize(start, length, values.size)
+        putArray(length, Char.SIZE_BYTES, order) { view, offset, count ->
+            view.asCharBuffer().put(values, start + offset, count)
+        }
+    }
+
+    override fun writeInts(values: IntArray, start: Int, length: Int, order: ByteOrder) {
+        if (pendingBits != 0) return super.writeInts(values, start, length, order)
+        Objects.checkFromIndexSize(start, length, values.size)
+        putArray(length, Int.SIZE_BYTES, order) { view, offset, count ->
+            view.asIntBuffer().put(values, start + offset, count)
+        }
+    }
+
+    override fun writeLongs(values: LongArray, start: Int, length: Int, order: ByteOrder) {
+        if (pendingBits != 0) return super.writeLongs(values, start, length, order)
+        Objects.checkFromIndexSize(start, length, values.size)
+        putArray(length, Long.SIZE_BYTES, order) { view, offset, count ->
+            view.asLongBuffer().put(values, start + offset, count)
+        }
+    }
+
+    override fun writeFloats(values: FloatArray, start: Int, length: Int, order: ByteOrder) {
+        if (pendingBits != 0) return super.writeFloats(values, start, length, order)
+        Objects.checkFromIndexSize(start, length, values.size)
+        putArray(length, Float.SIZE_BYTES, order) { view, offset, count ->
+            view.asFloatBuffer().put(values, start + offset, count)
+        }
+    }
+
+    override fun writeDoubles(values: DoubleArray, start: Int, length: Int, order: ByteOrder) {
+        if (pendingBits != 0) return super.writeDoubles(values, start, length, order)
+        Objects.checkFromIndexSize(start, length, values.size)
+        putArray(length, Double.SIZE_BYTES, order) { view, offset, count ->
+            view.asDoubleBuffer().put(values, start + offset, count)
+        }
+    }
+
+    /**
+     * Writes the given [value] to the underlying output, when no bit is pending.
+     */
+    protected open fun putShort(value: Short, order: ByteOrder) {
+        val bits = if (order == ByteOrder.BIG_ENDIAN) value.toInt() else java.lang.Short.reverseBytes(value).toInt()
+        writeByte((bits ushr 8) and 0xFF)
+        writeByte(bits and 0xFF)
+    }
+
+    /**
+     * Writes the given [value] to the underlying output, when no bit is pending.
+     */
+    protected open fun putInt(value: Int, order: ByteOrder) {
+        val bits = if (order == ByteOrder.BIG_ENDIAN) value else Integer.reverseBytes(value)
+        writeByte(bits ushr 24)
+        writeByte((bits ushr 16) and 0xFF)
+        writeByte((bits ushr 8) and 0xFF)
+        writeByte(bits and 0xFF)
+    }
+
+    /**
+     * Writes the given [value] to the underlying output, when no bit is pending.
+     */
+    protected open fun putLong(value: Long, order: ByteOrder) {
+        val bits = if (order == ByteOrder.BIG_ENDIAN) value else java.lang.Long.reverseBytes(value)
+        for (shift in 56 downTo 0 step 8) {
+            writeByte((bits ushr shift).toInt() and 0xFF)
+        }
+    }
+
+    /**
+     * Writes [length] elements of [width] bytes to the underlying output, when no bit is pending. The elements are
+     * written by [copy], which is given a [ByteBuffer] in the byte [order] of the elements, starting where they must be
+     * written, along with the offset of the first element to write and the number of elements to write.
+     *
+     * The default implementation converts the elements in chunks in a scratch array, written with [writeBytes].
+     */
+    protected open fun putArray(length: Int, width: Int, order: ByteOrder, copy: (ByteBuffer, Int, Int) -> Unit) {
+        val scratch = scratch ?: ByteArray(SCRATCH_SIZE).also { scratch = it }
+        var offset = 0
+        while (offset < length) {
+            val count = min(length - offset, SCRATCH_SIZE / width)
+            copy(ByteBuffer.wrap(scratch).order(order), offset, count)
+            writeBytes(scratch, 0, count * width)
+            offset += count
+        }
+    }
+
+    /**
+     * Writes the pending bits, if any, as a last byte padded with zeros.
+     */
+    protected fun padPendingBits() {
+        if (pendingBits == 0) return
+        val last = if (msbFirst) accumulator shl (8 - pendingBits) else accumulator
+        writeByte(last.toInt() and 0xFF)
+        accumulator = 0L
+        pendingBits = 0
+    }
+
+    /**
+     * Discards the pending bits.
+     */
+    protected fun clearPendingBits() {
+        accumulator = 0L
+        pendingBits = 0
+    }
+
+    // appends the n (at most 32) lowest bits of value and writes all the full bytes
+    private fun append(value: Long, n: Int) {
+        val bits = value and ((1L shl n) - 1)
+        var pending = pendingBits + n
+        if (msbFirst) {
+            var acc = (accumulator shl n) or bits
+            while (pending >= 8) {
+                pending -= 8
+                writeByte((acc ushr pending).toInt() and 0xFF)
+            }
+            acc = acc and ((1L shl pending) - 1)
+            accumulator = acc
+        } else {
+            var acc = accumulator or (bits shl pendingBits)
+            while (pending >= 8) {
+                writeByte(acc.toInt() and 0xFF)
+                acc = acc ushr 8
+                pending -= 8
+            }
+            accumulator = acc
+        }
+        pendingBits = pending
+    }
+
+}
+
+private class GrowableByteArrayEncoderOutput(
+    initialCapacity: Int,
+    order: BitOrder,
+    private val pool: BufferPool,
+) : AbstractEncoderOutput(order), ByteArrayEncoderOutput {
+
+    private var array = pool.acquire(initialCapacity)
+
+    override var size = 0
+        private set
+
+    override fun writeByte(byte: Int) {
+        if (size == array.size) {
+            grow(1)
+        }
+        array[size++] = byte.toByte()
+    }
+
+    override fun writeBytes(bytes: ByteArray, start: Int, length: Int) {
+        if (array.size - size < length) {
+            grow(length)
+        }
+        System.arraycopy(bytes, start, array, size, length)
+        size += length
+    }
+
+    override fun putShort(value: Short, order: ByteOrder) {
+        if (array.size - size < Short.SIZE_BYTES) {
+            grow(Short.SIZE_BYTES)
+        }
+        (if (order == ByteOrder.BIG_ENDIAN) SHORT_BE else SHORT_LE).set(array, size, value)
+        size += Short.SIZE_BYTES
+    }
+
+    override fun putInt(value: Int, order: ByteOrder) {
+        if (array.size - size < Int.SIZE_BYTES) {
+            grow(Int.SIZE_BYTES)
+        }
+        (if (order == ByteOrder.BIG_ENDIAN) INT_BE else INT_LE).set(array, size, value)
+        size += Int.SIZE_BYTES
+    }
+
+    override fun putLong(value: Long, order: ByteOrder) {
+        if (array.size - size < Long.SIZE_BYTES) {
+            grow(Long.SIZE_BYTES)
+        }
+        (if (order == ByteOrder.BIG_ENDIAN) LONG_BE else LONG_LE).set(array, size, value)
+        size += Long.SIZE_BYTES
+    }
+
+    override fun putArray(length: Int, width: Int, order: ByteOrder, copy: (ByteBuffer, Int, Int) -> Unit) {
+        val bytes = length.toLong() * width
+        if (bytes > MAX_ARRAY_SIZE) {
+            throw OutOfMemoryError("Required array size too large ($size + $bytes bytes)")
+        }
+        if (array.size - size < bytes) {
+            grow(bytes.toInt())
+        }
+        copy(ByteBuffer.wrap(array, size, bytes.toInt()).order(order), 0, length)
+        size += bytes.toInt()
+    }
+
+    override fun array(): ByteArray = array
+
+    override fun toByteArray(): ByteArray = array.copyOf(size)
+
+    override fun reset() {
+        size = 0
+        clearPendingBits()
+    }
+
+    override fun close() {
+        val array = array
+        this.array = EMPTY_ARRAY
+        reset()
+        pool.release(array)
+    }
+
+    private fun grow(needed: Int) {
+        val required = size + needed
+        if (required < 0 || required > MAX_ARRAY_SIZE) {
+            throw OutOfMemoryError("Required array size too large ($size + $needed bytes)")
+        }
+        val doubled = if (array.size >= MAX_ARRAY_SIZE / 2) MAX_ARRAY_SIZE else array.size * 2
+        val larger = pool.acquire(maxOf(required, doubled, DEFAULT_BYTE_ARRAY_CAPACITY))
+        System.arraycopy(array, 0, larger, 0, size)
+        pool.release(array)
+        array = larger
+    }
+
+}
+
+private open class ByteBufferEncoderOutput(
+    buffer: ByteBuffer,
+    order: BitOrder,
+    private val onOverflow: (ByteBuffer) -> ByteBuffer,
+) : AbstractEncoderOutput(order) {
+
+    protected var buffer = buffer
+
+    override fun writeByte(byte: Int) {
+        if (!buffer.hasRemaining()) {
+            overflow()
+        }
+        buffer.put(byte.toByte())
+    }
+
+    override fun writeBytes(bytes: ByteArray, start: Int, length: Int) {
+        var offset = start
+        var remaining = length
+        while (true) {
+            val count = min(remaining, buffer.remaining())
+            buffer.put(bytes, offset, count)
+            offset += count
+            remaining -= count
+            if (remaining == 0) break
+            overflow()
+        }
+    }
+
+    override fun putShort(value: Short, order: ByteOrder) {
+        val buffer = buffer
+        if (buffer.remaining() < Short.SIZE_BYTES) return super.putShort(value, order)
+        buffer.putShort(if (buffer.order() == order) value else java.lang.Short.reverseBytes(value))
+    }
+
+    override fun putInt(value: Int, order: ByteOrder) {
+        val buffer = buffer
+        if (buffer.remaining() < Int.SIZE_BYTES) return super.putInt(value, order)
+        buffer.putInt(if (buffer.order() == order) value else Integer.reverseBytes(value))
+    }
+
+    override fun putLong(value: Long, order: ByteOrder) {
+        val buffer = buffer
+        if (buffer.remaining() < Long.SIZE_BYTES) return super.putLong(value, order)
+        buffer.putLong(if (buffer.order() == order) value else java.lang.Long.reverseBytes(value))
+    }
+
+    override fun putArray(length: Int, width: Int, order: ByteOrder, copy: (ByteBuffer, Int, Int) -> Unit) {
+        var offset = 0
+        while (offset < length) {
+            val buffer = buffer
+            val count = min(length - offset, buffer.remaining() / width)
+            if (count == 0) { // the element does not fit, it is written byte by byte across the overflow
+                val first = offset
+                super.putArray(1, width, order) { view, _, _ -> copy(view, first, 1) }
+                offset++
+                continue
+            }
+            copy(buffer.slice().order(order), offset, count)
+            buffer.position(buffer.position() + count * width)
+            offset += count
+        }
+    }
+
+    /**
+     * Called when the [buffer] is full, returns the buffer to which the following bytes are written.
+     */
+    protected open fun overflow(buffer: ByteBuffer): ByteBuffer = onOverflow(buffer)
+
+    private fun overflow() {
+        val next = overflow(buffer)
+        check(next.hasRemaining()) { "The buffer returned on overflow has no remaining byte" }
+        buffer = next
+    }
+
+}
+
+private class ChannelEncoderOutput(
+    private val channel: WritableByteChannel,
+    private val bufferSize: Int,
+    order: BitOrder,
+    private val pool: BufferPool,
+) : ByteBufferEncoderOutput(
+    pool.acquireDirect(bufferSize),
+    order,
+    { if (it.capacity() == 0) pool.acquireDirect(bufferSize) else it.drainTo(channel) }, // empty once released
+) {
+
+    private val releasedOnFlush = pool !== BufferPool.noOp()
+
+    override fun writeBytes(bytes: ByteArray, start: Int, length: Int) {
+        if (length < bufferSize) return super.writeBytes(bytes, start, length)
+        buffer.drainTo(channel) // keeps the bytes in order
+        val wrapper = ByteBuffer.wrap(bytes, start, length)
+        while (wrapper.hasRemaining()) {
+            channel.write(wrapper)
+        }
+    }
+
+    override fun flushBytes() {
+        val buffer = buffer
+        buffer.drainTo(channel)
+        if (releasedOnFlush && buffer.capacity() > 0) {
+            this.buffer = EMPTY_BUFFER
+            pool.releaseDirect(buffer)
+        }
+    }
+
+}
+
+private class DeflatingEncoderOutputImpl(
+    private val output: EncoderOutput,
+    level: Int,
+    bufferSize: Int,
+    order: BitOrder,
+    private val pool: BufferPool,
+) : ByteBufferEncoderOutput(pool.acquireDirect(bufferSize), order, { it }), DeflatingEncoderOutput {
+
+    private val deflater = Deflater(level)
+
+    private var compressed = pool.acquire(bufferSize)
+
+    private var closed = false
+
+    override var level: Int = level
+        private set
+
+    override fun overflow(buffer: ByteBuffer): ByteBuffer {
+        check(!closed) { "The output is closed" }
+        deflateBuffer(Deflater.NO_FLUSH)
+        return buffer
+    }
+
+    override fun writeBytes(bytes: ByteArray, start: Int, length: Int) {
+        if (length < buffer.capacity()) return super.writeBytes(bytes, start, length)
+        check(!closed) { "The output is closed" }
+        deflateBuffer(Deflater.NO_FLUSH) // keeps the bytes in order
+        deflater.setInput(bytes, start, length)
+        deflate(Deflater.NO_FLUSH)
+    }
+
+    override fun flushBytes() {
+        if (closed) return
+        deflateBuffer(Deflater.SYNC_FLUSH)
+        output.flush()
+    }
+
+    override fun finishFrame(nextLevel: Int) {
+        checkCompressionLevel(nextLevel)
+        check(!closed) { "The output is closed" }
+        padPendingBits()
+        finish()
+        deflater.setLevel(nextLevel)
+        level = nextLevel
+    }
+
+    override fun close() {
+        if (closed) return
+        padPendingBits()
+        finish()
+        output.flush()
+        closed = true
+        deflater.end()
+        pool.releaseDirect(buffer)
+        buffer = EMPTY_BUFFER
+        pool.release(compressed)
+        compressed = EMPTY_ARRAY
+    }
+
+    // compresses the remaining bytes of the buffer and writes the end of the frame, the deflater being reset for the
+    // next frame
+    private fun finish() {
+        deflater.setInput(buffer.flip())
+        deflater.finish()
+        while (!deflater.finished()) {
+            val count = deflater.deflate(compressed)
+            output.write(compressed, 0, count)
+        }
+        buffer.clear()
+        deflater.reset()
+    }
+
+    private fun deflateBuffer(mode: Int) {
+        deflater.setInput(buffer.flip())
+        deflate(mode)
+        buffer.clear()
+    }
+
+    private fun deflate(mode: Int) {
+        while (true) {
+            val count = deflater.deflate(compressed, 0, compressed.size, mode)
+            output.write(compressed, 0, count)
+            // without flush, the deflater is done once it consumed its input, and with a flush, once it produced less
+            // bytes than it could
+            val done = if (mode == Deflater.NO_FLUSH) deflater.needsInput() else count < compressed.size
+            if (done) return
+        }
+    }
+
+}
+
+/**
+ * Creates a [ChecksumEncoderOutput], forwarding the written bytes to the given [output] and updating the given
+ * [checksum] with them.
+ */
+internal fun ChecksumEncoderOutput(output: EncoderOutput, checksum: Checksum): ChecksumEncoderOutput =
+    ChecksumEncoderOutputImpl(output, checksum)
+
+private class ChecksumEncoderOutputImpl(
+    private val output: EncoderOutput,
+    private val checksum: Checksum,
+) : AbstractEncoderOutput(BitOrder.MSB_FIRST), ChecksumEncoderOutput {
+
+    // the primitives are converted in this array, to update the checksum with their bytes
+    private val primitive = ByteArray(Long.SIZE_BYTES)
+
+    override var size = 0L
+        private set
+
+    override fun writeByte(byte: Int) {
+        output.write(byte)
+        checksum.update(byte)
+        size++
+    }
+
+    override fun writeBytes(bytes: ByteArray, start: Int, length: Int) {
+        output.write(bytes, start, length)
+        checksum.update(bytes, start, length)
+        size += length
+    }
+
+    override fun putShort(value: Short, order: ByteOrder) {
+        output.writeShort(value, order)
+        (if (order == ByteOrder.BIG_ENDIAN) SHORT_BE else SHORT_LE).set(primitive, 0, value)
+        checksum.update(primitive, 0, Short.SIZE_BYTES)
+        size += Short.SIZE_BYTES
+    }
+
+    override fun putInt(value: Int, order: ByteOrder) {
+        output.writeInt(value, order)
+        (if (order == ByteOrder.BIG_ENDIAN) INT_BE else INT_LE).set(primitive, 0, value)
+        checksum.update(primitive, 0, Int.SIZE_BYTES)
+        size += Int.SIZE_BYTES
+    }
+
+    override fun putLong(value: Long, order: ByteOrder) {
+        output.writeLong(value, order)
+        (if (order == ByteOrder.BIG_ENDIAN) LONG_BE else LONG_LE).set(primitive, 0, value)
+        checksum.update(primitive, 0, Long.SIZE_BYTES)
+        size += Long.SIZE_BYTES
+    }
+
+}
+
+private fun checkCompressionLevel(level: Int) = require(
+    level == Deflater.DEFAULT_COMPRESSION || level in Deflater.NO_COMPRESSION..Deflater.BEST_COMPRESSION
+) { "Compression level must be between 0 and 9, or -1 (was $level)" }
+
+// writes all the bytes of the buffer to the channel, and returns the cleared buffer
+private fun ByteBuffer.drainTo(channel: WritableByteChannel): ByteBuffer {
+    flip()
+    while (hasRemaining()) {
+        channel.write(this)
+    }
+    return clear()
+}
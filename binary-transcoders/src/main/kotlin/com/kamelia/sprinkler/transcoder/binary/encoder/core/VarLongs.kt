@@ -0,0 +1,25 @@
+package com.kamelia.sprinkler.transcoder.binary.encoder.core
+
+/**
+ * Maps the given signed [value] to an unsigned value using the ZigZag encoding (`0 -> 0`, `-1 -> 1`, `1 -> 2`, ...).
+ */
+internal fun zigZag(value: Long): Long = (value shl 1) xor (value shr 63)
+
+/**
+ * Writes the given [value] as a variable-length unsigned [Long], 7 bits per byte starting with the least significant
+ * ones, the most significant bit of each byte indicating whether another byte follows.
+ */
+internal fun writeVarLong(value: Long, output: EncoderOutput) {
+    var remaining = value
+    while (remaining and 0x7FL.inv() != 0L) {
+        output.write(((remaining and 0x7F) or 0x80).toInt())
+        remaining = remaining ushr 7
+    }
+    output.write(remaining.toInt())
+}
+
+/**
+ * Returns the number of bytes written by [writeVarLong] for the given [value], which is one byte per group of 7
+ * significant bits, and at least one byte for `0`.
+ */
+internal fun varLongSize(value: Long): Long = maxOf(1L, (Long.SIZE_BITS - value.countLeadingZeroBits() + 6) / 7L)
@@ -0,0 +1,239 @@
+package com.kamelia.sprinkler.transcoder.binary.flow
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Flow
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Base of the [Flow.Processor]s of this package, handling the subscriptions on both sides.
+ *
+ * The signals received from the upstream publisher and the downstream subscriber only record their effect, and then
+ * call [drain], which runs [drainStep] on a single thread at a time. [drainStep] is therefore never called concurrently
+ * and is the only place where the items are transformed and emitted, while [emit] guarantees that no more items than
+ * requested are sent downstream.
+ *
+ * @param I the type of the received items
+ * @param O the type of the emitted items
+ */
+internal abstract class AbstractTranscodingProcessor<I, O> : Flow.Processor<I, O> {
+
+    private val incoming = ConcurrentLinkedQueue<I>()
+
+    private val wip = AtomicInteger()
+
+    private val demand = AtomicLong()
+
+    private val subscribed = AtomicBoolean()
+
+    // number of items requested to the upstream publisher and not received yet
+    private val outstanding = AtomicInteger()
+
+    // number of items received and not polled yet
+    private val queued = AtomicInteger()
+
+    @Volatile
+    private var upstream: Flow.Subscription? = null
+
+    @Volatile
+    private var downstream: Flow.Subscriber<in O>? = null
+
+    @Volatile
+    private var done = false
+
+    // written before done, read after it
+    private var error: Throwable? = null
+
+    @Volatile
+    private var cancelled = false
+
+    private var terminated = false
+
+    /**
+     * Whether the upstream publisher completed and all the received items have been [polled][poll].
+     */
+    protected val upstreamDone: Boolean
+        get() = done && incoming.isEmpty()
+
+    /**
+     * Whether the processor has been terminated, either by [complete], [fail] or a cancellation.
+     */
+    protected val isTerminated: Boolean
+        get() = terminated
+
+    /**
+     * The number of items requested to the upstream publisher and not received yet.
+     */
+    protected val outstandingRequests: Int
+        get() = outstanding.get()
+
+    /**
+     * The number of items received and not [polled][poll] yet.
+     */
+    protected val queuedItems: Int
+        get() = queued.get()
+
+    override fun subscribe(subscriber: Flow.Subscriber<in O>) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(NoOpSubscription)
+            subscriber.onError(IllegalStateException("This processor only supports a single subscriber"))
+            return
+        }
+        subscriber.onSubscribe(object : Flow.Subscription {
+
+            override fun request(n: Long) {
+                if (n <= 0L) {
+                    upstream?.cancel()
+                    error = IllegalArgumentException("Requested items must be strictly positive (was $n)")
+                    done = true
+                } else {
+                    demand.getAndUpdate { if (it + n < 0L) Long.MAX_VALUE else it + n }
+                }
+                drain()
+            }
+
+            override fun cancel() {
+                cancelled = true
+                upstream?.cancel()
+                drain()
+            }
+
+        })
+        downstream = subscriber
+        drain()
+    }
+
+    override fun onSubscribe(subscription: Flow.Subscription) {
+        if (upstream != null) {
+            subscription.cancel()
+            return
+        }
+        upstream = subscription
+        if (cancelled) {
+            subscription.cancel()
+        }
+        drain()
+    }
+
+    override fun onNext(item: I) {
+        outstanding.decrementAndGet()
+        queued.incrementAndGet()
+        incoming.add(item)
+        drain()
+    }
+
+    override fun onError(throwable: Throwable) {
+        error = throwable
+        done = true
+        drain()
+    }
+
+    override fun onComplete() {
+        done = true
+        drain()
+    }
+
+    /**
+     * Transforms the received items and emits the results, as long as it is possible. This method is never called
+     * concurrently, and is not called anymore once the processor is terminated.
+     */
+    protected abstract fun drainStep()
+
+    /**
+     * Releases the resources held by the processor once it is terminated.
+     */
+    protected open fun discard() = Unit
+
+    /**
+     * Returns the next received item, or `null` if there is none.
+     */
+    protected fun poll(): I? = incoming.poll()?.also { queued.decrementAndGet() }
+
+    /**
+     * Returns the number of items which can still be emitted, which is 0 once the downstream subscriber cancelled its
+     * subscription.
+     */
+    protected fun requested(): Long = if (cancelled) 0L else demand.get()
+
+    /**
+     * Emits the given [item] to the downstream subscriber. Must only be called from [drainStep] when [requested] is
+     * strictly positive.
+     */
+    protected fun emit(item: O) {
+        demand.decrementAndGet()
+        downstream!!.onNext(item)
+    }
+
+    /**
+     * Requests [n] more items to the upstream publisher.
+     */
+    protected fun requestUpstream(n: Int) {
+        outstanding.addAndGet(n)
+        upstream!!.request(n.toLong())
+    }
+
+    /**
+     * Terminates the processor and completes the downstream subscriber.
+     */
+    protected fun complete() {
+        terminated = true
+        discard()
+        downstream!!.onComplete()
+    }
+
+    /**
+     * Terminates the processor, cancels the upstream subscription and signals the given [cause] to the downstream
+     * subscriber.
+     */
+    protected fun fail(cause: Throwable) {
+        terminated = true
+        upstream?.cancel()
+        discard()
+        downstream!!.onError(cause)
+    }
+
+    private fun drain() {
+        if (wip.getAndIncrement() != 0) return
+        var missed = 1
+        while (true) {
+            drainOnce()
+            missed = wip.addAndGet(-missed)
+            if (missed == 0) return
+        }
+    }
+
+    private fun drainOnce() {
+        if (terminated || downstream == null || upstream == null && !done) return
+        if (cancelled) {
+            terminated = true
+            incoming.clear()
+            discard()
+            return
+        }
+        if (done) {
+            val cause = error
+            if (cause != null) {
+                incoming.clear()
+                fail(cause)
+                return
+            }
+        }
+        try {
+            drainStep()
+        } catch (e: Exception) {
+            if (!terminated) {
+                fail(e)
+            }
+        }
+    }
+
+    private object NoOpSubscription : Flow.Subscription {
+
+        override fun request(n: Long) = Unit
+
+        override fun cancel() = Unit
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.kamelia.sprinkler.transcoder.binary.flow
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import java.nio.ByteBuffer
+
+/**
+ * [java.util.concurrent.Flow.Processor] decoding the received [ByteBuffer]s into objects of type [T].
+ *
+ * The buffers are read through a [composite input][DecoderInput.composite], and an object is only decoded when the
+ * downstream subscriber requested it. At most [prefetch] buffers are requested to the upstream publisher or held by the
+ * processor at the same time, new ones being requested once half of them have been fully consumed.
+ */
+internal class ByteBufferDecodingProcessor<T>(
+    private val decoder: Decoder<T>,
+    private val prefetch: Int,
+) : AbstractTranscodingProcessor<ByteBuffer, T>() {
+
+    private val input = DecoderInput.composite()
+
+    private var appended = 0L
+
+    // number of bytes consumed from the input when the last object was decoded
+    private var consumedAtLastObject = 0L
+
+    override fun drainStep() {
+        while (true) {
+            val buffer = poll() ?: break
+            appended += buffer.remaining()
+            input.append(buffer)
+        }
+
+        var stuck = false
+        while (requested() > 0L) {
+            when (val state = decoder.decode(input)) {
+                is Decoder.State.Done -> {
+                    consumedAtLastObject = appended - input.remaining()
+                    emit(state.value)
+                }
+                is Decoder.State.Processing -> {
+                    stuck = true
+                    break
+                }
+                is Decoder.State.Error -> {
+                    decoder.reset()
+                    fail(state.error)
+                    return
+                }
+            }
+        }
+        if (isTerminated) return
+
+        if (upstreamDone) {
+            val partial = appended - input.remaining() > consumedAtLastObject
+            if (input.remaining() == 0L && !partial) {
+                complete()
+            } else if (input.remaining() == 0L || stuck) { // no more bytes will be received to finish the object
+                decoder.reset()
+                fail(MissingBytesException())
+            }
+            return
+        }
+
+        val held = input.segmentCount() + queuedItems + outstandingRequests
+        if (held <= prefetch / 2) {
+            requestUpstream(prefetch - held)
+        }
+    }
+
+    override fun discard() {
+        input.skip(input.remaining())
+    }
+
+}
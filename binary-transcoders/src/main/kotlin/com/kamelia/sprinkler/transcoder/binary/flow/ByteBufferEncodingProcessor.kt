@@ -0,0 +1,112 @@
+package com.kamelia.sprinkler.transcoder.binary.flow
+
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import kotlin.math.min
+
+/**
+ * [java.util.concurrent.Flow.Processor] encoding the received objects of type [T] into [ByteBuffer]s.
+ *
+ * The objects are encoded into buffers of [bufferSize] bytes, several small objects being batched in the same buffer.
+ * A buffer is emitted once it is full, or when no received object is waiting to be encoded, so that the last objects
+ * are not delayed. The received objects are only encoded while less than [maxBufferedBytes] encoded bytes are waiting
+ * to be emitted, and at most [prefetch] objects are requested to the upstream publisher or held by the processor at the
+ * same time.
+ */
+internal class ByteBufferEncodingProcessor<T>(
+    private val encoder: Encoder<T>,
+    private val bufferSize: Int,
+    private val maxBufferedBytes: Int,
+    private val prefetch: Int,
+) : AbstractTranscodingProcessor<T, ByteBuffer>() {
+
+    // full buffers waiting to be emitted, in read mode
+    private val ready = ArrayDeque<ByteBuffer>()
+
+    // buffer currently filled by the encoder, in write mode
+    private var current: ByteBuffer? = null
+
+    private var bufferedBytes = 0L
+
+    private val output = EncoderOutput.from(object : OutputStream() {
+
+        override fun write(b: Int) {
+            currentWithRemaining().put(b.toByte())
+            bufferedBytes++
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            var written = 0
+            while (written < len) {
+                val buffer = currentWithRemaining()
+                val count = min(len - written, buffer.remaining())
+                buffer.put(b, off + written, count)
+                written += count
+            }
+            bufferedBytes += len
+        }
+
+    })
+
+    override fun drainStep() {
+        while (!isTerminated) {
+            emitReady()
+            if (bufferedBytes < maxBufferedBytes) {
+                val obj = poll()
+                if (obj != null) {
+                    encoder.encode(obj, output)
+                    output.flush()
+                    continue
+                }
+            }
+            // nothing more can be encoded for now, the buffer being filled is emitted if it would wait otherwise
+            val last = current
+            val blocked = queuedItems == 0 || bufferedBytes >= maxBufferedBytes
+            if (blocked && ready.isEmpty() && last != null && last.position() > 0 && requested() > 0L) {
+                current = null
+                bufferedBytes -= last.position()
+                emit(last.flip())
+                continue
+            }
+            break
+        }
+        if (isTerminated) return
+
+        if (upstreamDone) {
+            if (bufferedBytes == 0L) {
+                complete()
+            }
+            return
+        }
+
+        val held = queuedItems + outstandingRequests
+        if (bufferedBytes < maxBufferedBytes && held <= prefetch / 2) {
+            requestUpstream(prefetch - held)
+        }
+    }
+
+    override fun discard() {
+        ready.clear()
+        current = null
+    }
+
+    private fun emitReady() {
+        while (ready.isNotEmpty() && requested() > 0L) {
+            val buffer = ready.removeFirst()
+            bufferedBytes -= buffer.remaining()
+            emit(buffer)
+        }
+    }
+
+    private fun currentWithRemaining(): ByteBuffer {
+        val buffer = current
+        if (buffer != null && buffer.hasRemaining()) return buffer
+        if (buffer != null) {
+            ready.addLast(buffer.flip())
+        }
+        return ByteBuffer.allocate(bufferSize).also { current = it }
+    }
+
+}
@@ -0,0 +1,69 @@
+@file:JvmName("FlowProcessors")
+
+package com.kamelia.sprinkler.transcoder.binary.flow
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import java.nio.ByteBuffer
+import java.util.concurrent.Flow
+
+/**
+ * Creates a [Flow.Processor] decoding the [ByteBuffer]s it receives into objects of type [T], using the given
+ * [decoder].
+ *
+ * The received buffers must be in read mode, and must not be modified once they have been published. An object is only
+ * decoded when the downstream subscriber requested it, objects spanning several buffers being completed as the buffers
+ * are received. The processor never requests more buffers than needed to hold [prefetch] buffers at once, bounding the
+ * memory it uses regardless of the downstream demand.
+ *
+ * If the upstream publisher completes in the middle of an object, the subscriber receives a [MissingBytesException],
+ * and if the decoding fails, it receives the [error][Decoder.State.Error.error] returned by the decoder. The processor
+ * supports a single subscriber, and the decoder must not be used by anything else while the processor is subscribed.
+ *
+ * @param decoder the decoder to use
+ * @param prefetch the maximum number of buffers requested or held at once (defaults to 16)
+ * @return a [Flow.Processor] decoding [ByteBuffer]s into objects of type [T]
+ * @throws IllegalArgumentException if [prefetch] is not strictly positive
+ * @param T the type of the decoded objects
+ */
+@JvmOverloads
+fun <T> DecodingProcessor(decoder: Decoder<T>, prefetch: Int = 16): Flow.Processor<ByteBuffer, T> {
+    require(prefetch > 0) { "Prefetch must be strictly positive (was $prefetch)" }
+    return ByteBufferDecodingProcessor(decoder, prefetch)
+}
+
+/**
+ * Creates a [Flow.Processor] encoding the objects of type [T] it receives into [ByteBuffer]s, using the given
+ * [encoder].
+ *
+ * The objects are encoded into buffers of [bufferSize] bytes, several small objects being batched in the same buffer,
+ * and an object larger than a buffer being split across several of them. A buffer is emitted once it is full, or as
+ * soon as no received object is waiting to be encoded, so that the last objects are not delayed. The emitted buffers
+ * are in read mode and are never reused by the processor.
+ *
+ * The received objects are only encoded while less than [maxBufferedBytes] encoded bytes are waiting for the demand of
+ * the downstream subscriber, and the processor never requests more objects than needed to hold [prefetch] objects at
+ * once, bounding the memory it uses. If the encoding fails, the subscriber receives the thrown exception. The processor
+ * supports a single subscriber.
+ *
+ * @param encoder the encoder to use
+ * @param bufferSize the size of the emitted buffers, in bytes (defaults to 8 KiB)
+ * @param maxBufferedBytes the number of encoded bytes from which the encoding is paused (defaults to 64 KiB)
+ * @param prefetch the maximum number of objects requested or held at once (defaults to 32)
+ * @return a [Flow.Processor] encoding objects of type [T] into [ByteBuffer]s
+ * @throws IllegalArgumentException if [bufferSize], [maxBufferedBytes] or [prefetch] is not strictly positive
+ * @param T the type of the encoded objects
+ */
+@JvmOverloads
+fun <T> EncodingProcessor(
+    encoder: Encoder<T>,
+    bufferSize: Int = 8 * 1024,
+    maxBufferedBytes: Int = 64 * 1024,
+    prefetch: Int = 32,
+): Flow.Processor<T, ByteBuffer> {
+    require(bufferSize > 0) { "Buffer size must be strictly positive (was $bufferSize)" }
+    require(maxBufferedBytes > 0) { "Max buffered bytes must be strictly positive (was $maxBufferedBytes)" }
+    require(prefetch > 0) { "Prefetch must be strictly positive (was $prefetch)" }
+    return ByteBufferEncodingProcessor(encoder, bufferSize, maxBufferedBytes, prefetch)
+}
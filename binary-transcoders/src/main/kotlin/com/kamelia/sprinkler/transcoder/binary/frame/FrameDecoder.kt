@@ -0,0 +1,210 @@
+package com.kamelia.sprinkler.transcoder.binary.frame
+
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.zip.CRC32C
+import kotlin.math.max
+
+/**
+ * A [Decoder] that reads the frames written by a [FrameEncoder] with the same [endianness], and decodes their payload
+ * with an [inner] decoder.
+ *
+ * Before decoding a frame, the decoder checks that its size is not greater than [maxFrameSize], so that a malicious or
+ * corrupted size cannot make it accumulate an arbitrary amount of bytes, and then that the [CRC32C] checksum of its
+ * payload matches the one of the frame. The payload is handed to the [inner] decoder only once the whole frame has been
+ * received, as a read-only [ByteBuffer] slice, so that the [inner] decoder never returns [Decoder.State.Processing]. A
+ * frame whose payload is not entirely consumed by the [inner] decoder, or which ends before the [inner] decoder could
+ * decode an object, is also considered invalid.
+ *
+ * Frames can be decoded in two ways:
+ * - with [decode], one frame at a time from any [DecoderInput]. The bytes of the frame are accumulated in an array
+ * acquired from the [pool], kept across [Decoder.State.Processing] until the frame is complete;
+ * - with [decodeFrames], all the frames of a [ByteBuffer] at once. The frames entirely contained in the buffer are
+ * sliced from it without being copied, and only the bytes of the last frame, if it is incomplete, are copied in the
+ * array to be completed by the next buffers.
+ *
+ * The slices given to the [inner] decoder share the content of the array or of the decoded buffer, and are only valid
+ * during the decoding: the decoded objects must not keep a reference to them.
+ *
+ * An invalid frame makes the decoder return a [Decoder.State.Error], and the decoder is then reset. As the frame
+ * boundaries cannot be trusted anymore, the decoding of the stream should not be resumed after an error.
+ *
+ * @param T the type of the decoded object
+ * @param inner the [Decoder] of the payloads
+ * @param maxFrameSize the maximum size of a payload, in bytes (defaults to 16 MiB)
+ * @param endianness the endianness of the size and of the checksum (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param pool the [BufferPool] from which the array of the incomplete frames is acquired (defaults to
+ * [BufferPool.noOp])
+ * @constructor Creates a new [FrameDecoder].
+ * @throws IllegalArgumentException if [maxFrameSize] is negative
+ * @see FrameEncoder
+ */
+class FrameDecoder<T> @JvmOverloads constructor(
+    private val inner: Decoder<T>,
+    private val maxFrameSize: Int = DEFAULT_MAX_FRAME_SIZE,
+    private val endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    private val pool: BufferPool = BufferPool.noOp(),
+) : Decoder<T> {
+
+    init {
+        checkMaxFrameSize(maxFrameSize)
+    }
+
+    private val crc = CRC32C()
+
+    // bytes of the incomplete frame: its header while the size is unknown, then its payload followed by its trailer
+    private var array: ByteArray? = null
+    private var view: ByteBuffer = EMPTY_BUFFER
+    private var index = 0
+    private var frameSize = -1
+
+    override fun decode(input: DecoderInput): Decoder.State<T> {
+        if (frameSize == -1) {
+            val header = ensureCapacity(FRAME_HEADER_SIZE)
+            index += max(0, input.read(header, index, FRAME_HEADER_SIZE - index))
+            if (index < FRAME_HEADER_SIZE) return Decoder.State.Processing
+
+            val size = view.getInt(0, endianness)
+            index = 0
+            checkFrameSize(size)?.let { return it }
+            frameSize = size
+        }
+
+        val total = frameSize + FRAME_TRAILER_SIZE
+        val array = ensureCapacity(total)
+        if (index < total) {
+            index += max(0, input.read(array, index, total - index))
+        }
+        if (index < total) return Decoder.State.Processing
+
+        val size = frameSize
+        softReset()
+        return decodeFrame(view, 0, size)
+    }
+
+    /**
+     * Decodes all the frames of the given [buffer], in read mode, passing each decoded object to the given [block].
+     *
+     * The frame carried over from the previous calls (or from [decode]), if any, is first completed with the bytes of
+     * the buffer. Then, each frame entirely contained in the buffer is decoded directly from a read-only slice of the
+     * buffer, without copying its payload. Finally, the bytes of the last frame, if it is incomplete, are copied to be
+     * completed by the next call. Unless an invalid frame is encountered, the buffer is thus fully consumed, and can be
+     * reused as soon as this method returns.
+     *
+     * @param buffer the buffer to decode, in read mode
+     * @param block the function to which each decoded object is passed
+     * @return a [Decoder.State.Done] holding the number of decoded objects, or a [Decoder.State.Error] if a frame is
+     * invalid, in which case the position of the buffer is unspecified
+     */
+    fun decodeFrames(buffer: ByteBuffer, block: (T) -> Unit): Decoder.State<Int> {
+        var count = 0
+        if (frameSize != -1 || index != 0) { // complete the frame carried over
+            when (val state = decode(DecoderInput.fromReadMode(buffer))) {
+                is Decoder.State.Done -> {
+                    block(state.value)
+                    count++
+                }
+                is Decoder.State.Processing -> return Decoder.State.Done(0) // the buffer has been entirely consumed
+                is Decoder.State.Error -> return state
+            }
+        }
+
+        while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+            val start = buffer.position()
+            val size = buffer.getInt(start, endianness)
+            checkFrameSize(size)?.let { return it }
+            if (buffer.remaining() - FRAME_OVERHEAD < size) break
+
+            val state = decodeFrame(buffer, start + FRAME_HEADER_SIZE, size)
+            if (state !is Decoder.State.Done) return state.mapEmptyState()
+            buffer.position(start + FRAME_OVERHEAD + size)
+            block(state.value)
+            count++
+        }
+
+        if (buffer.hasRemaining()) { // carry the incomplete frame over
+            decode(DecoderInput.fromReadMode(buffer))
+        }
+        return Decoder.State.Done(count)
+    }
+
+    override fun reset() {
+        softReset()
+        inner.reset()
+        array?.let(pool::release)
+        array = null
+        view = EMPTY_BUFFER
+    }
+
+    // checks the payload of the given size starting at the given index of the buffer, and decodes it
+    private fun decodeFrame(buffer: ByteBuffer, start: Int, size: Int): Decoder.State<T> {
+        val slice = buffer.slice(start, size)
+        crc.reset()
+        crc.update(slice) // on the writable slice, as the checksum of read-only heap buffers is computed on a copy
+        val expected = buffer.getInt(start + size, endianness)
+        if (crc.value.toInt() != expected) {
+            reset()
+            return Decoder.State.Error("Invalid frame checksum (expected $expected, was ${crc.value.toInt()})")
+        }
+
+        val payload = slice.rewind().asReadOnlyBuffer()
+        return when (val state = inner.decode(DecoderInput.fromReadMode(payload))) {
+            is Decoder.State.Done -> if (payload.hasRemaining()) {
+                reset()
+                Decoder.State.Error("Frame has ${payload.remaining()} trailing bytes")
+            } else {
+                state
+            }
+            is Decoder.State.Processing -> {
+                reset()
+                Decoder.State.Error(MissingBytesException())
+            }
+            is Decoder.State.Error -> {
+                reset()
+                state
+            }
+        }
+    }
+
+    private fun checkFrameSize(size: Int): Decoder.State<Nothing>? {
+        if (size in 0..maxFrameSize) return null
+        reset()
+        return Decoder.State.Error("Frame size must be between 0 and $maxFrameSize (was $size)")
+    }
+
+    // returns an array of at least the given size, keeping the bytes already read
+    private fun ensureCapacity(size: Int): ByteArray {
+        val current = array
+        if (current != null && current.size >= size) return current
+        this.array = null // not released twice if the acquisition fails
+        val next = pool.acquire(size)
+        if (current != null) {
+            System.arraycopy(current, 0, next, 0, index)
+            pool.release(current)
+        }
+        array = next
+        view = ByteBuffer.wrap(next)
+        return next
+    }
+
+    private fun softReset() {
+        index = 0
+        frameSize = -1
+    }
+
+    private fun ByteBuffer.getInt(index: Int, order: ByteOrder): Int {
+        val value = getInt(index)
+        return if (order() == order) value else Integer.reverseBytes(value)
+    }
+
+    private companion object {
+
+        val EMPTY_BUFFER: ByteBuffer = ByteBuffer.allocate(0)
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.kamelia.sprinkler.transcoder.binary.frame
+
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.ChecksumEncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.nio.ByteOrder
+import java.util.zip.CRC32C
+
+/**
+ * An [Encoder] that wraps the bytes written by an [inner] encoder in a frame, made of:
+ * - the size of the payload, encoded as an [Int];
+ * - the payload, i.e. the bytes written by the [inner] encoder;
+ * - the [CRC32C] checksum of the payload, encoded as an [Int].
+ *
+ * The frames are read back by a [FrameDecoder] with the same [endianness], which checks the size and the checksum of
+ * each frame before decoding its payload.
+ *
+ * When the [inner] encoder knows the [exact size][Encoder.encodedSize] of the object, as all the built-in encoders do,
+ * the frame is written in a single pass: the size is written first, and the payload is then encoded directly to the
+ * output, the checksum being computed on the bytes as they are written. Otherwise, the payload is first encoded in an
+ * array acquired from the given [pool], over which the checksum is computed, before the whole frame is written to the
+ * output, the array being released as soon as the frame has been written. In both cases, the encoder is stateless and
+ * can be used concurrently.
+ *
+ * **NOTE**: The payloads larger than [maxFrameSize] make the encoder throw an [IllegalStateException], as they would
+ * be rejected by the decoders.
+ *
+ * @param T the type of the encoded object
+ * @param inner the [Encoder] of the payloads
+ * @param maxFrameSize the maximum size of a payload, in bytes (defaults to 16 MiB)
+ * @param endianness the endianness of the size and of the checksum (defaults to [ByteOrder.BIG_ENDIAN])
+ * @param pool the [BufferPool] from which the arrays of the payloads of unknown size are acquired (defaults to
+ * [BufferPool.noOp])
+ * @constructor Creates a new [FrameEncoder].
+ * @throws IllegalArgumentException if [maxFrameSize] is negative
+ * @see FrameDecoder
+ */
+class FrameEncoder<T> @JvmOverloads constructor(
+    private val inner: Encoder<T>,
+    private val maxFrameSize: Int = DEFAULT_MAX_FRAME_SIZE,
+    private val endianness: ByteOrder = ByteOrder.BIG_ENDIAN,
+    private val pool: BufferPool = BufferPool.noOp(),
+) : Encoder<T> {
+
+    init {
+        checkMaxFrameSize(maxFrameSize)
+    }
+
+    override fun encode(obj: T, output: EncoderOutput) {
+        val size = inner.encodedSize(obj)
+        if (size < 0) return encodeBuffered(obj, output)
+
+        checkFrameSize(size)
+        val crc = CRC32C()
+        output.writeInt(size.toInt(), endianness)
+        val payload = ChecksumEncoderOutput(output, crc)
+        inner.encode(obj, payload)
+        payload.flush()
+        check(payload.size == size) { "Encoded size (${payload.size}) differs from the announced size ($size)" }
+        output.writeInt(crc.value.toInt(), endianness)
+    }
+
+    override fun encodedSize(obj: T): Long {
+        val size = inner.encodedSize(obj)
+        return if (size < 0) -1L else size + FRAME_OVERHEAD
+    }
+
+    // encodes the payload in an array to know its size before writing it, for the encoders which cannot compute it
+    private fun encodeBuffered(obj: T, output: EncoderOutput) {
+        val hint = inner.sizeHint(obj)
+        val payload = if (hint >= 0) {
+            EncoderOutput.toByteArray(hint, pool = pool)
+        } else {
+            EncoderOutput.toByteArray(pool = pool)
+        }
+        payload.use {
+            inner.encode(obj, it)
+            it.flush()
+            val size = it.size
+            checkFrameSize(size.toLong())
+
+            val crc = CRC32C()
+            crc.update(it.array(), 0, size)
+            output.writeInt(size, endianness)
+            output.write(it.array(), 0, size)
+            output.writeInt(crc.value.toInt(), endianness)
+        }
+    }
+
+    private fun checkFrameSize(size: Long) =
+        check(size <= maxFrameSize) { "Frame size ($size) exceeds the maximum frame size ($maxFrameSize)" }
+
+}
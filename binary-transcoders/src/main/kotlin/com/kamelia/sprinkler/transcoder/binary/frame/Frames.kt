@@ -0,0 +1,18 @@
+package com.kamelia.sprinkler.transcoder.binary.frame
+
+/**
+ * Size of the header of a frame, holding the size of its payload.
+ */
+internal const val FRAME_HEADER_SIZE = Int.SIZE_BYTES
+
+/**
+ * Size of the trailer of a frame, holding the CRC32C checksum of its payload.
+ */
+internal const val FRAME_TRAILER_SIZE = Int.SIZE_BYTES
+
+internal const val FRAME_OVERHEAD = FRAME_HEADER_SIZE + FRAME_TRAILER_SIZE
+
+internal const val DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024
+
+internal fun checkMaxFrameSize(maxFrameSize: Int) =
+    require(maxFrameSize >= 0) { "Maximum frame size must be positive (was $maxFrameSize)" }
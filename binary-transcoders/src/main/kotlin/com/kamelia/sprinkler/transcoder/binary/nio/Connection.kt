@@ -0,0 +1,44 @@
+package com.kamelia.sprinkler.transcoder.binary.nio
+
+import java.net.SocketAddress
+
+/**
+ * A connection managed by an [EventLoop], to which messages of type [O] can be sent.
+ *
+ * The methods of this interface can be called from any thread. When they are called from another thread than the one
+ * running the [EventLoop], the operation is submitted to the loop and performed asynchronously.
+ *
+ * @param O the type of the messages sent through the connection
+ * @see EventLoop
+ * @see ConnectionHandler
+ */
+interface Connection<in O> {
+
+    /**
+     * The address of the remote peer of the connection, or `null` if it is not known.
+     */
+    val remoteAddress: SocketAddress?
+
+    /**
+     * Whether the connection is still open.
+     */
+    val isOpen: Boolean
+
+    /**
+     * Encodes the given [message] and queues the encoded bytes to be written to the connection. The bytes queued
+     * during an iteration of the loop are written together at the end of the iteration, with a single gathering write
+     * when possible.
+     *
+     * Messages sent to a closed connection are silently discarded.
+     *
+     * @param message the message to send
+     */
+    fun send(message: O)
+
+    /**
+     * Closes the connection, after having tried to write the queued bytes. The bytes which cannot be written
+     * immediately are discarded.
+     */
+    fun close()
+
+}
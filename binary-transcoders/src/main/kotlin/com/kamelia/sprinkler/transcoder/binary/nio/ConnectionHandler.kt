@@ -0,0 +1,44 @@
+package com.kamelia.sprinkler.transcoder.binary.nio
+
+/**
+ * Handler of the events of the [connections][Connection] managed by an [EventLoop].
+ *
+ * All the methods of this interface are called on the thread running the [EventLoop], and must therefore never block.
+ * An exception thrown by one of them closes the connection concerned, with the exception as cause.
+ *
+ * @param I the type of the messages received through the connections
+ * @param O the type of the messages sent through the connections
+ * @see EventLoop
+ */
+fun interface ConnectionHandler<in I, out O> {
+
+    /**
+     * Called each time a message has been fully decoded from the given [connection].
+     *
+     * @param connection the connection from which the message has been received
+     * @param message the decoded message
+     */
+    fun onMessage(connection: Connection<O>, message: I)
+
+    /**
+     * Called when the given [connection] is registered in the loop, before any message is received from it.
+     *
+     * @param connection the opened connection
+     */
+    fun onOpen(connection: Connection<O>) = Unit
+
+    /**
+     * Called when the given [connection] has been closed.
+     *
+     * The [cause] is `null` when the connection has been closed normally, either by the remote peer, by a call to
+     * [Connection.close] or by the closing of the loop. Otherwise, it is the exception which caused the closing, such
+     * as an [IOException][java.io.IOException], the [error][com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder.State.Error.error]
+     * returned by a decoder, or a [MissingBytesException][com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException]
+     * if the remote peer closed the connection in the middle of a message.
+     *
+     * @param connection the closed connection
+     * @param cause the exception which caused the closing, or `null`
+     */
+    fun onClose(connection: Connection<O>, cause: Throwable?) = Unit
+
+}
@@ -0,0 +1,112 @@
+package com.kamelia.sprinkler.transcoder.binary.nio
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import java.io.Closeable
+import java.net.SocketAddress
+import java.nio.channels.SocketChannel
+import java.util.concurrent.Executor
+
+/**
+ * A non-blocking event loop, driving many [SocketChannel]s from a single thread using a
+ * [Selector][java.nio.channels.Selector].
+ *
+ * Each [connection][Connection] registered in the loop has its own [Decoder] and [Encoder], created by the factories
+ * given to [EventLoop.create]. The bytes received from a connection are read into pooled direct buffers and fed to its
+ * decoder, each fully decoded message being passed to the [ConnectionHandler]. As decoders are resumable, a message
+ * split across several reads is simply completed by the following ones. The messages sent to a connection are encoded
+ * into pooled direct buffers, which are written with gathering writes at the end of each iteration of the loop.
+ *
+ * A connection without any pending byte does not hold any buffer, so that the memory used by idle connections is
+ * limited to their decoder, their encoder and the channel itself.
+ *
+ * The loop is started by calling [run], usually on a dedicated thread, and runs until [close] is called:
+ *
+ * ```
+ * val loop = EventLoop.create({ IntDecoder() }, { IntEncoder() }) { connection, value -> connection.send(value + 1) }
+ * loop.bind(InetSocketAddress(8080))
+ * Thread(loop).start()
+ * // ...
+ * loop.close()
+ * ```
+ *
+ * @param I the type of the messages received through the connections
+ * @param O the type of the messages sent through the connections
+ * @see Connection
+ * @see ConnectionHandler
+ */
+interface EventLoop<I, O> : Runnable, Executor, Closeable {
+
+    /**
+     * Opens a server socket bound to the given [address], and registers in the loop each connection it accepts.
+     *
+     * @param address the address to bind the server socket to
+     * @return the actual address of the server socket (e.g. with the port chosen by the system if the given port is 0)
+     * @throws java.io.IOException if an I/O error occurs
+     * @throws IllegalStateException if the loop is closed
+     */
+    fun bind(address: SocketAddress): SocketAddress
+
+    /**
+     * Registers the given connected [channel] in the loop. The channel is configured in non-blocking mode.
+     *
+     * @param channel the channel to register
+     * @throws java.io.IOException if an I/O error occurs
+     * @throws IllegalStateException if the loop is closed
+     */
+    fun register(channel: SocketChannel)
+
+    /**
+     * Submits the given [task] to be run on the thread running the loop, during its next iteration. An exception thrown
+     * by the task stops the loop.
+     *
+     * @param task the task to run
+     * @throws IllegalStateException if the loop is closed
+     */
+    override fun execute(task: Runnable)
+
+    /**
+     * Runs the loop on the calling thread until [close] is called. When the loop stops, all the connections and server
+     * sockets are closed.
+     *
+     * @throws IllegalStateException if the loop is already running or is closed
+     */
+    override fun run()
+
+    /**
+     * Stops the loop. If the loop is running, it stops at the end of its current iteration, otherwise the connections
+     * and server sockets are closed immediately. Calling this method on a closed loop has no effect.
+     */
+    override fun close()
+
+    companion object {
+
+        /**
+         * Creates an [EventLoop] which creates a decoder and an encoder for each connection using the given
+         * [decoderFactory] and [encoderFactory], and passes the events of the connections to the given [handler].
+         *
+         * @param decoderFactory the factory of the decoders of the connections
+         * @param encoderFactory the factory of the encoders of the connections
+         * @param bufferSize the size of the pooled direct buffers, in bytes (defaults to 16 KiB)
+         * @param handler the handler of the events of the connections
+         * @return the created [EventLoop]
+         * @throws IllegalArgumentException if [bufferSize] is not strictly positive
+         * @throws java.io.IOException if the selector cannot be opened
+         * @param I the type of the messages received through the connections
+         * @param O the type of the messages sent through the connections
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun <I, O> create(
+            decoderFactory: () -> Decoder<I>,
+            encoderFactory: () -> Encoder<O>,
+            bufferSize: Int = 16 * 1024,
+            handler: ConnectionHandler<I, O>,
+        ): EventLoop<I, O> {
+            require(bufferSize > 0) { "Buffer size must be strictly positive (was $bufferSize)" }
+            return SelectorEventLoop(decoderFactory, encoderFactory, bufferSize, handler)
+        }
+
+    }
+
+}
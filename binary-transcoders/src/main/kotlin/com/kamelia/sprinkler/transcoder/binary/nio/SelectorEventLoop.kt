@@ -0,0 +1,394 @@
+package com.kamelia.sprinkler.transcoder.binary.nio
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.io.IOException
+import java.io.OutputStream
+import java.net.SocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.math.min
+
+/**
+ * [EventLoop] implementation based on a [Selector].
+ *
+ * Everything but the task queue is only accessed by the thread running the loop (or by the thread closing a loop which
+ * has never been run).
+ */
+internal class SelectorEventLoop<I, O>(
+    private val decoderFactory: () -> Decoder<I>,
+    private val encoderFactory: () -> Encoder<O>,
+    bufferSize: Int,
+    private val handler: ConnectionHandler<I, O>,
+) : EventLoop<I, O> {
+
+    private val selector = Selector.open()
+
+    private val pool = DirectBufferPool(bufferSize)
+
+    private val tasks = ConcurrentLinkedQueue<Runnable>()
+
+    private val lock = Any()
+
+    @Volatile
+    private var thread: Thread? = null
+
+    @Volatile
+    private var closed = false
+
+    // connections with bytes queued during the current iteration
+    private val pendingFlushes = ArrayList<ConnectionImpl>()
+
+    private val gathering = arrayOfNulls<ByteBuffer>(MAX_GATHERED_BUFFERS)
+
+    override fun bind(address: SocketAddress): SocketAddress {
+        check(!closed) { "Event loop is closed" }
+        val server = ServerSocketChannel.open()
+        try {
+            server.configureBlocking(false)
+            server.bind(address)
+            execute { server.register(selector, SelectionKey.OP_ACCEPT) }
+        } catch (e: Exception) {
+            server.close()
+            throw e
+        }
+        return server.localAddress
+    }
+
+    override fun register(channel: SocketChannel) {
+        check(!closed) { "Event loop is closed" }
+        channel.configureBlocking(false)
+        execute { open(channel) }
+    }
+
+    override fun execute(task: Runnable) {
+        check(!closed) { "Event loop is closed" }
+        tasks.add(task)
+        selector.wakeup()
+    }
+
+    override fun run() {
+        synchronized(lock) {
+            check(!closed) { "Event loop is closed" }
+            check(thread == null) { "Event loop is already running" }
+            thread = Thread.currentThread()
+        }
+        try {
+            while (!closed) {
+                selector.select(::process)
+                runTasks()
+                flushPending()
+            }
+        } finally {
+            shutdown()
+        }
+    }
+
+    override fun close() {
+        synchronized(lock) {
+            if (closed) return
+            closed = true
+            if (thread != null) {
+                selector.wakeup()
+                return
+            }
+        }
+        shutdown()
+    }
+
+    private fun runTasks() {
+        while (true) {
+            val task = tasks.poll() ?: return
+            task.run()
+        }
+    }
+
+    private fun process(key: SelectionKey) {
+        val attachment = key.attachment()
+        if (attachment == null) { // server socket
+            accept(key.channel() as ServerSocketChannel)
+            return
+        }
+        @Suppress("UNCHECKED_CAST")
+        val connection = attachment as SelectorEventLoop<I, O>.ConnectionImpl
+        if (key.isValid && key.isWritable) {
+            connection.flush()
+        }
+        if (key.isValid && key.isReadable) {
+            connection.read()
+        }
+    }
+
+    private fun accept(server: ServerSocketChannel) {
+        while (true) {
+            val channel = try {
+                server.accept() ?: return
+            } catch (e: IOException) {
+                return
+            }
+            channel.configureBlocking(false)
+            open(channel)
+        }
+    }
+
+    private fun open(channel: SocketChannel) {
+        val connection = ConnectionImpl(channel)
+        connection.key = try {
+            channel.register(selector, SelectionKey.OP_READ, connection)
+        } catch (e: IOException) { // the channel has been closed in the meantime
+            closeQuietly(channel)
+            return
+        }
+        connection.guarded { handler.onOpen(connection) }
+    }
+
+    private fun flushPending() {
+        for (i in pendingFlushes.indices) {
+            val connection = pendingFlushes[i]
+            connection.flushPending = false
+            connection.flush()
+        }
+        pendingFlushes.clear()
+    }
+
+    private fun shutdown() {
+        runTasks() // registers the channels which are still waiting, so that they are closed below
+        selector.keys().toList().forEach {
+            val attachment = it.attachment()
+            if (attachment == null) {
+                closeQuietly(it.channel())
+            } else {
+                @Suppress("UNCHECKED_CAST")
+                (attachment as SelectorEventLoop<I, O>.ConnectionImpl).close(null)
+            }
+        }
+        pendingFlushes.clear()
+        closeQuietly(selector)
+    }
+
+    private inner class ConnectionImpl(private val channel: SocketChannel) : Connection<O> {
+
+        lateinit var key: SelectionKey
+
+        @JvmField
+        var flushPending = false
+
+        private val decoder = decoderFactory()
+
+        private val encoder = encoderFactory()
+
+        private val input = DecoderInput.composite(onRelease = pool::release)
+
+        // buffers waiting to be written, in read mode
+        private val outgoing = ArrayDeque<ByteBuffer>()
+
+        // buffer currently filled by the encoder, in write mode
+        private var tail: ByteBuffer? = null
+
+        private val output = EncoderOutput.from(object : OutputStream() {
+
+            override fun write(b: Int) {
+                tailWithRemaining().put(b.toByte())
+            }
+
+            override fun write(b: ByteArray, off: Int, len: Int) {
+                var written = 0
+                while (written < len) {
+                    val buffer = tailWithRemaining()
+                    val count = min(len - written, buffer.remaining())
+                    buffer.put(b, off + written, count)
+                    written += count
+                }
+            }
+
+        })
+
+        private var open = true
+
+        // whether bytes have been received since the last decoded message
+        private var partial = false
+
+        override val remoteAddress: SocketAddress? = try {
+            channel.remoteAddress
+        } catch (e: IOException) {
+            null
+        }
+
+        override val isOpen: Boolean
+            get() = open
+
+        override fun send(message: O) {
+            if (Thread.currentThread() !== thread) {
+                execute { send(message) }
+                return
+            }
+            if (!open) return
+            encoder.encode(message, output)
+            output.flush()
+            if (!flushPending) {
+                flushPending = true
+                pendingFlushes.add(this)
+            }
+        }
+
+        override fun close() {
+            if (Thread.currentThread() !== thread) {
+                execute { close() }
+                return
+            }
+            flush()
+            close(null)
+        }
+
+        fun read() {
+            val buffer = pool.acquire()
+            val read = try {
+                channel.read(buffer)
+            } catch (e: IOException) {
+                pool.release(buffer)
+                close(e)
+                return
+            }
+            if (read == -1) {
+                pool.release(buffer)
+                close(if (partial) MissingBytesException() else null)
+                return
+            }
+            input.append(buffer.flip())
+
+            var mark = input.remaining()
+            while (open) {
+                when (val state = decoder.decode(input)) {
+                    is Decoder.State.Done -> {
+                        partial = false
+                        mark = input.remaining()
+                        guarded { handler.onMessage(this, state.value) }
+                    }
+                    is Decoder.State.Processing -> {
+                        val remaining = input.remaining()
+                        if (remaining < mark || remaining > 0L) { // bytes of the next message have been received
+                            partial = true
+                        }
+                        return
+                    }
+                    is Decoder.State.Error -> {
+                        decoder.reset()
+                        close(state.error)
+                    }
+                }
+            }
+        }
+
+        fun flush() {
+            if (!open) return
+            tail?.let {
+                if (it.position() > 0) {
+                    outgoing.addLast(it.flip())
+                } else {
+                    pool.release(it)
+                }
+                tail = null
+            }
+            try {
+                while (outgoing.isNotEmpty()) {
+                    val count = min(outgoing.size, gathering.size)
+                    for (i in 0 until count) {
+                        gathering[i] = outgoing[i]
+                    }
+                    channel.write(gathering, 0, count)
+                    gathering.fill(null, 0, count)
+                    var released = 0
+                    while (outgoing.isNotEmpty() && !outgoing.first().hasRemaining()) {
+                        pool.release(outgoing.removeFirst())
+                        released++
+                    }
+                    if (released < count) break // the socket buffer is full
+                }
+            } catch (e: IOException) {
+                close(e)
+                return
+            }
+            val interest = if (outgoing.isEmpty()) SelectionKey.OP_READ else SelectionKey.OP_READ or SelectionKey.OP_WRITE
+            if (key.interestOps() != interest) {
+                key.interestOps(interest)
+            }
+        }
+
+        fun close(cause: Throwable?) {
+            if (!open) return
+            open = false
+            key.cancel()
+            closeQuietly(channel)
+            input.skip(input.remaining()) // releases the buffers to the pool
+            outgoing.forEach(pool::release)
+            outgoing.clear()
+            tail?.let(pool::release)
+            tail = null
+            decoder.reset()
+            try {
+                handler.onClose(this, cause)
+            } catch (e: Exception) {
+                // the connection is already closed, nothing more can be done
+            }
+        }
+
+        inline fun guarded(block: () -> Unit) {
+            try {
+                block()
+            } catch (e: Exception) {
+                close(e)
+            }
+        }
+
+        private fun tailWithRemaining(): ByteBuffer {
+            val current = tail
+            if (current != null && current.hasRemaining()) return current
+            if (current != null) {
+                outgoing.addLast(current.flip())
+            }
+            return pool.acquire().also { tail = it }
+        }
+
+    }
+
+    /**
+     * Pool of direct buffers of the same size, only accessed by the thread running the loop.
+     */
+    private class DirectBufferPool(private val bufferSize: Int) {
+
+        private val buffers = ArrayDeque<ByteBuffer>()
+
+        fun acquire(): ByteBuffer = buffers.removeLastOrNull() ?: ByteBuffer.allocateDirect(bufferSize)
+
+        fun release(buffer: ByteBuffer) {
+            if (buffers.size < MAX_POOLED_BUFFERS) {
+                buffers.addLast(buffer.clear())
+            }
+        }
+
+    }
+
+    private companion object {
+
+        const val MAX_GATHERED_BUFFERS = 64
+
+        const val MAX_POOLED_BUFFERS = 1024
+
+        fun closeQuietly(closeable: AutoCloseable) {
+            try {
+                closeable.close()
+            } catch (e: Exception) {
+                // ignored, the resource is discarded anyway
+            }
+        }
+
+    }
+
+}
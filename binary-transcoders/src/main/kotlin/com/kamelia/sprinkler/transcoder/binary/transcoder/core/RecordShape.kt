@@ -0,0 +1,159 @@
+package com.kamelia.sprinkler.transcoder.binary.transcoder.core
+
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+
+/**
+ * Shape of a Java record or of a Kotlin data class, made of its components (in declaration order) and of the
+ * [MethodHandle]s reading and creating them.
+ *
+ * The components of a record are the ones of its canonical constructor, and the ones of a data class are the parameters
+ * of its primary constructor, found through its `componentN` methods. Each [accessor][accessors] takes the object as an
+ * [Any] and returns the component with its exact type, so that the primitive components are read without being boxed.
+ *
+ * The [constructor] takes a [LongArray] holding the primitive components and an [Array] holding the other ones, both
+ * indexed by the index of the component, and returns the created object. The primitive components are stored in the
+ * [LongArray] as their [Long] value, except for the [Float] and [Double] ones which are stored as their raw bits, so
+ * that they are passed to the actual constructor without being boxed.
+ *
+ * The shapes are computed once per class, on their first use, and cached along the class.
+ */
+internal class RecordShape private constructor(
+    val type: Class<*>,
+    val names: Array<String>,
+    val componentTypes: Array<Class<*>>,
+    val accessors: Array<MethodHandle>,
+    val constructor: MethodHandle,
+) {
+
+    companion object {
+
+        private val SHAPES = object : ClassValue<RecordShape>() {
+            override fun computeValue(type: Class<*>): RecordShape = analyze(type)
+        }
+
+        private val LONG_ARRAY = LongArray::class.java
+
+        private val INT_FROM_SLOT = MethodType.methodType(Int::class.java, LONG_ARRAY)
+
+        private val SLOTS_CONSTRUCTOR = MethodType.methodType(Any::class.java, LONG_ARRAY, Array<Any?>::class.java)
+
+        private val LONG_SLOT = MethodHandles.arrayElementGetter(LONG_ARRAY)
+
+        private val REFERENCE_SLOT = MethodHandles.arrayElementGetter(Array<Any?>::class.java)
+
+        private val INT_BITS_TO_FLOAT = MethodHandles.lookup().findStatic(
+            java.lang.Float::class.java,
+            "intBitsToFloat",
+            MethodType.methodType(Float::class.java, Int::class.java),
+        )
+
+        private val LONG_BITS_TO_DOUBLE = MethodHandles.lookup().findStatic(
+            java.lang.Double::class.java,
+            "longBitsToDouble",
+            MethodType.methodType(Double::class.java, Long::class.java),
+        )
+
+        /**
+         * Returns the shape of the given [type].
+         *
+         * @throws IllegalArgumentException if [type] is neither a record nor a data class, or if its members cannot
+         * be accessed
+         */
+        fun of(type: Class<*>): RecordShape = SHAPES.get(type)
+
+        /**
+         * Returns whether the given [type] is a Java record or a Kotlin data class, without computing its shape.
+         */
+        fun isRecord(type: Class<*>): Boolean =
+            type.isRecord || type.isAnnotationPresent(Metadata::class.java) && componentMethods(type).isNotEmpty()
+
+        private fun analyze(type: Class<*>): RecordShape {
+            val lookup = try {
+                MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+            } catch (e: IllegalAccessException) {
+                throw IllegalArgumentException("Cannot access the members of ${type.name}", e)
+            }
+
+            val names: Array<String>
+            val accessors: List<MethodHandle>
+            val componentTypes: Array<Class<*>>
+            if (type.isRecord) {
+                val components = type.recordComponents
+                names = Array(components.size) { components[it].name }
+                componentTypes = Array(components.size) { components[it].type }
+                accessors = components.map { lookup.unreflect(it.accessor) }
+            } else {
+                val methods = componentMethods(type)
+                require(type.isAnnotationPresent(Metadata::class.java) && methods.isNotEmpty()) {
+                    "${type.name} is neither a record nor a data class"
+                }
+                names = Array(methods.size) { methods[it].name }
+                componentTypes = Array(methods.size) { methods[it].returnType }
+                accessors = methods.map(lookup::unreflect)
+            }
+
+            val constructor = try {
+                lookup.unreflectConstructor(type.getDeclaredConstructor(*componentTypes))
+            } catch (e: NoSuchMethodException) {
+                throw IllegalArgumentException("${type.name} has no constructor taking all its components", e)
+            }
+
+            return RecordShape(
+                type,
+                names,
+                componentTypes,
+                Array(accessors.size) {
+                    val componentType = componentTypes[it]
+                    val returnType = if (componentType.isPrimitive) componentType else Any::class.java
+                    accessors[it].asType(MethodType.methodType(returnType, Any::class.java))
+                },
+                slotsConstructor(constructor, componentTypes),
+            )
+        }
+
+        // componentN methods of a data class, in the order of the parameters of its primary constructor
+        private fun componentMethods(type: Class<*>) = generateSequence(1) { it + 1 }
+            .map { index ->
+                try {
+                    type.getDeclaredMethod("component$index")
+                } catch (e: NoSuchMethodException) {
+                    null
+                }
+            }
+            .takeWhile { it != null }
+            .filterNotNull()
+            .toList()
+
+        // adapts the (C0, C1, ...)T constructor to a (long[], Object[])Object handle reading each component in its slot
+        private fun slotsConstructor(constructor: MethodHandle, componentTypes: Array<Class<*>>): MethodHandle {
+            val filters = arrayOfNulls<MethodHandle>(componentTypes.size)
+            val reorder = IntArray(componentTypes.size)
+            componentTypes.forEachIndexed { index, componentType ->
+                if (!componentType.isPrimitive) {
+                    val slot = MethodHandles.insertArguments(REFERENCE_SLOT, 1, index)
+                    filters[index] = slot.asType(MethodType.methodType(componentType, Array<Any?>::class.java))
+                    reorder[index] = 1
+                    return@forEachIndexed
+                }
+                val slot = MethodHandles.insertArguments(LONG_SLOT, 1, index)
+                filters[index] = when (componentType) {
+                    Float::class.java -> {
+                        val bits = MethodHandles.explicitCastArguments(slot, INT_FROM_SLOT)
+                        MethodHandles.filterReturnValue(bits, INT_BITS_TO_FLOAT)
+                    }
+                    Double::class.java -> MethodHandles.filterReturnValue(slot, LONG_BITS_TO_DOUBLE)
+                    else -> { // narrowed, the booleans being stored as 0 or 1
+                        MethodHandles.explicitCastArguments(slot, MethodType.methodType(componentType, LONG_ARRAY))
+                    }
+                }
+            }
+            val filtered = MethodHandles.filterArguments(constructor, 0, *filters)
+            val slotsType = MethodType.methodType(constructor.type().returnType(), LONG_ARRAY, Array<Any?>::class.java)
+            return MethodHandles.permuteArguments(filtered, slotsType, *reorder).asType(SLOTS_CONSTRUCTOR)
+        }
+
+    }
+
+}
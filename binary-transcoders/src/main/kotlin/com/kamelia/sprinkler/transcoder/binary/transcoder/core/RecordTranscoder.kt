@@ -0,0 +1,337 @@
+package com.kamelia.sprinkler.transcoder.binary.transcoder.core
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.ByteDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.DoubleDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.EnumDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.FloatDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.LongDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.ShortDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.PrefixedSizeItemDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.PrimitiveDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.mapResult
+import com.kamelia.sprinkler.transcoder.binary.encoder.BooleanEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.ByteEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.DoubleEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.EnumEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.FloatEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.LongEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.ShortEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.addSizes
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.sizedEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.withMappedInput
+import com.kamelia.sprinkler.util.unsafeCast
+import java.lang.invoke.MethodHandle
+import java.nio.ByteOrder
+
+/**
+ * [Transcoder] of a Java record or of a Kotlin data class, encoding its components one after the other, in declaration
+ * order, using the [MethodHandle]s of its [RecordShape].
+ *
+ * Each component is handled by a [Component] specialized for its type, created once with the transcoder. The primitive
+ * components are read through accessors returning their exact type and written with the primitive methods of the
+ * [EncoderOutput], and decoded with [PrimitiveDecoder.decodePrimitive] into a [LongArray] slot, so that they are never
+ * boxed. The other components are prefixed with a byte indicating whether they are present (`1`) or `null` (`0`), and
+ * decoded into an [Array] slot. Once all the components have been decoded, the object is created by the constructor of
+ * the shape, reading the components from their slots.
+ *
+ * The decoder is a state machine resuming at the component where the previous call stopped, the components (and the
+ * nested records) keeping their own progress.
+ *
+ * @param visiting the record types being analyzed, used to reject recursive types
+ */
+internal class RecordTranscoder<T : Any>(
+    type: Class<T>,
+    endianness: ByteOrder,
+    visiting: Set<Class<*>>,
+) : Transcoder<T> {
+
+    private val shape = RecordShape.of(type)
+
+    private val components = Array(shape.componentTypes.size) {
+        createComponent(it, shape, endianness, visiting + type)
+    }
+
+    // sum of the sizes of the primitive components, the other ones being sized on each call
+    private val fixedSize = components.sumOf { if (it is PrimitiveComponent) it.size else 0L }
+
+    private val sizedComponents = components.filterIsInstance<ReferenceComponent>().toTypedArray()
+
+    private val primitives = LongArray(components.size)
+
+    private val references = arrayOfNulls<Any?>(components.size)
+
+    private var index = 0
+
+    override fun encode(obj: T, output: EncoderOutput) {
+        for (component in components) {
+            component.encode(obj, output)
+        }
+    }
+
+    override fun encodedSize(obj: T): Long {
+        var size = fixedSize
+        for (component in sizedComponents) {
+            size = addSizes(size, component.encodedSize(obj))
+            if (size < 0) return -1L
+        }
+        return size
+    }
+
+    override fun decode(input: DecoderInput): Decoder.State<T> {
+        while (index < components.size) {
+            val state = components[index].decode(input, primitives, references)
+            if (state != null) return state.mapEmptyState()
+            index++
+        }
+        try {
+            val result = shape.constructor.invokeExact(primitives, references) as Any
+            return Decoder.State.Done(result.unsafeCast())
+        } finally { // also when the constructor throws, so that the next call decodes a new object
+            index = 0
+            references.fill(null)
+        }
+    }
+
+    override fun reset() {
+        index = 0
+        references.fill(null)
+        components.forEach(Component::reset)
+    }
+
+    override fun toString(): String = "Transcoder.forRecord(${shape.type.name})"
+
+    private sealed class Component(protected val index: Int) {
+
+        abstract fun encode(obj: Any, output: EncoderOutput)
+
+        /**
+         * Decodes the component into its slot, returning `null` once it is decoded, or the state to return otherwise.
+         */
+        abstract fun decode(input: DecoderInput, primitives: LongArray, references: Array<Any?>): Decoder.State<*>?
+
+        abstract fun reset()
+
+    }
+
+    private abstract class PrimitiveComponent(
+        index: Int,
+        protected val accessor: MethodHandle,
+        private val decoder: PrimitiveDecoder<*>,
+        val size: Long,
+    ) : Component(index) {
+
+        abstract fun slotValue(decoder: PrimitiveDecoder<*>): Long
+
+        final override fun decode(
+            input: DecoderInput,
+            primitives: LongArray,
+            references: Array<Any?>,
+        ): Decoder.State<*>? {
+            if (!decoder.decodePrimitive(input)) return Decoder.State.Processing
+            primitives[index] = slotValue(decoder)
+            return null
+        }
+
+        final override fun reset() = decoder.reset()
+
+    }
+
+    private class ReferenceComponent(
+        index: Int,
+        private val accessor: MethodHandle,
+        private val encoder: Encoder<Any>,
+        private val decoder: Decoder<Any>,
+    ) : Component(index) {
+
+        private var present = false
+
+        override fun encode(obj: Any, output: EncoderOutput) {
+            val value = accessor.invokeExact(obj) as Any?
+            if (value == null) {
+                output.write(0)
+            } else {
+                output.write(1)
+                encoder.encode(value, output)
+            }
+        }
+
+        fun encodedSize(obj: Any): Long {
+            val value = accessor.invokeExact(obj) as Any? ?: return 1L
+            return addSizes(1L, encoder.encodedSize(value))
+        }
+
+        override fun decode(input: DecoderInput, primitives: LongArray, references: Array<Any?>): Decoder.State<*>? {
+            if (!present) {
+                val flag = input.read()
+                if (flag < 0) return Decoder.State.Processing
+                if (flag == 0) {
+                    references[index] = null
+                    return null
+                }
+                present = true
+            }
+            val state = decoder.decode(input)
+            if (state !is Decoder.State.Done) return state
+            references[index] = state.value
+            present = false
+            return null
+        }
+
+        override fun reset() {
+            present = false
+            decoder.reset()
+        }
+
+    }
+
+    private companion object {
+
+        fun createComponent(
+            index: Int,
+            shape: RecordShape,
+            endianness: ByteOrder,
+            visiting: Set<Class<*>>,
+        ): Component {
+            val type = shape.componentTypes[index]
+            val accessor = shape.accessors[index]
+            if (type.isPrimitive) return primitiveComponent(index, type, accessor, endianness)
+
+            val encoder: Encoder<*>
+            val decoder: Decoder<*>
+            when {
+                type == String::class.java -> {
+                    encoder = UTF8StringEncoder(IntEncoder(endianness))
+                    decoder = UTF8StringDecoder(IntDecoder(endianness))
+                }
+                type.isEnum -> {
+                    encoder = EnumEncoder<Nothing>(IntEncoder(endianness))
+                    decoder = EnumDecoder(type.unsafeCast<Class<Nothing>>(), IntDecoder(endianness))
+                }
+                type == ByteArray::class.java -> {
+                    val sizeEncoder = IntEncoder(endianness)
+                    encoder = sizedEncoder<ByteArray>({
+                        addSizes(sizeEncoder.encodedSize(it.size), it.size.toLong())
+                    }) { obj, output ->
+                        sizeEncoder.encode(obj.size, output)
+                        output.write(obj)
+                    }
+                    decoder = PrefixedSizeItemDecoder(IntDecoder(endianness)) { copyOf(it) }
+                }
+                type in BOXED_TYPES -> {
+                    encoder = boxedEncoder(type, endianness)
+                    decoder = boxedDecoder(type, endianness)
+                }
+                RecordShape.isRecord(type) -> {
+                    require(type !in visiting) {
+                        "Recursive component ${shape.names[index]} of ${shape.type.name} is not supported"
+                    }
+                    val nested = RecordTranscoder(type.unsafeCast<Class<Any>>(), endianness, visiting)
+                    encoder = nested
+                    decoder = nested
+                }
+                else -> throw IllegalArgumentException(
+                    "Unsupported type ${type.name} of component ${shape.names[index]} of ${shape.type.name}"
+                )
+            }
+            return ReferenceComponent(index, accessor, encoder.unsafeCast(), decoder.unsafeCast())
+        }
+
+        private fun primitiveComponent(
+            index: Int,
+            type: Class<*>,
+            accessor: MethodHandle,
+            order: ByteOrder,
+        ): Component = when (type) {
+            Byte::class.java -> object : PrimitiveComponent(index, accessor, ByteDecoder(), 1L) {
+                override fun encode(obj: Any, output: EncoderOutput) = output.write(accessor.invokeExact(obj) as Byte)
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = decoder.longValue()
+            }
+            Boolean::class.java -> object : PrimitiveComponent(index, accessor, ByteDecoder(), 1L) {
+                override fun encode(obj: Any, output: EncoderOutput) =
+                    output.write(if (accessor.invokeExact(obj) as Boolean) 1 else 0)
+
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = if (decoder.intValue() == 0) 0L else 1L
+            }
+            Short::class.java -> object : PrimitiveComponent(index, accessor, ShortDecoder(order), 2L) {
+                override fun encode(obj: Any, output: EncoderOutput) =
+                    output.writeShort(accessor.invokeExact(obj) as Short, order)
+
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = decoder.longValue()
+            }
+            Char::class.java -> object : PrimitiveComponent(index, accessor, ShortDecoder(order), 2L) {
+                override fun encode(obj: Any, output: EncoderOutput) =
+                    output.writeShort((accessor.invokeExact(obj) as Char).code.toShort(), order)
+
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = decoder.longValue() and 0xFFFF
+            }
+            Int::class.java -> object : PrimitiveComponent(index, accessor, IntDecoder(order), 4L) {
+                override fun encode(obj: Any, output: EncoderOutput) =
+                    output.writeInt(accessor.invokeExact(obj) as Int, order)
+
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = decoder.longValue()
+            }
+            Long::class.java -> object : PrimitiveComponent(index, accessor, LongDecoder(order), 8L) {
+                override fun encode(obj: Any, output: EncoderOutput) =
+                    output.writeLong(accessor.invokeExact(obj) as Long, order)
+
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = decoder.longValue()
+            }
+            Float::class.java -> object : PrimitiveComponent(index, accessor, FloatDecoder(order), 4L) {
+                override fun encode(obj: Any, output: EncoderOutput) =
+                    output.writeFloat(accessor.invokeExact(obj) as Float, order)
+
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = decoder.floatValue().toRawBits().toLong()
+            }
+            Double::class.java -> object : PrimitiveComponent(index, accessor, DoubleDecoder(order), 8L) {
+                override fun encode(obj: Any, output: EncoderOutput) =
+                    output.writeDouble(accessor.invokeExact(obj) as Double, order)
+
+                override fun slotValue(decoder: PrimitiveDecoder<*>): Long = decoder.doubleValue().toRawBits()
+            }
+            else -> throw AssertionError("Unexpected primitive type $type")
+        }
+
+        private val BOXED_TYPES = setOf(
+            java.lang.Byte::class.java,
+            java.lang.Boolean::class.java,
+            java.lang.Short::class.java,
+            java.lang.Character::class.java,
+            java.lang.Integer::class.java,
+            java.lang.Long::class.java,
+            java.lang.Float::class.java,
+            java.lang.Double::class.java,
+        )
+
+        private fun boxedEncoder(type: Class<*>, order: ByteOrder): Encoder<*> = when (type) {
+            java.lang.Byte::class.java -> ByteEncoder()
+            java.lang.Boolean::class.java -> BooleanEncoder()
+            java.lang.Short::class.java -> ShortEncoder(order)
+            java.lang.Character::class.java -> ShortEncoder(order).withMappedInput<Short, Char> { it.code.toShort() }
+            java.lang.Integer::class.java -> IntEncoder(order)
+            java.lang.Long::class.java -> LongEncoder(order)
+            java.lang.Float::class.java -> FloatEncoder(order)
+            else -> DoubleEncoder(order)
+        }
+
+        private fun boxedDecoder(type: Class<*>, order: ByteOrder): Decoder<*> = when (type) {
+            java.lang.Byte::class.java -> ByteDecoder()
+            java.lang.Boolean::class.java -> ByteDecoder().mapResult { it != 0.toByte() }
+            java.lang.Short::class.java -> ShortDecoder(order)
+            java.lang.Character::class.java -> ShortDecoder(order).mapResult { Char(it.toUShort()) }
+            java.lang.Integer::class.java -> IntDecoder(order)
+            java.lang.Long::class.java -> LongDecoder(order)
+            java.lang.Float::class.java -> FloatDecoder(order)
+            else -> DoubleDecoder(order)
+        }
+
+    }
+
+}
@@ -2,6 +2,7 @@ package com.kamelia.sprinkler.transcoder.binary.transcoder.core
 
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import java.nio.ByteOrder
 
 /**
  * Represents an object that can both encode and decode values of type [T].
@@ -25,6 +26,47 @@ interface Transcoder<T> : Encoder<T>, Decoder<T> {
         fun <T> create(encoder: Encoder<T>, decoder: Decoder<T>): Transcoder<T> =
             object : Transcoder<T>, Encoder<T> by encoder, Decoder<T> by decoder {}
 
+        /**
+         * Creates a [Transcoder] of the given [type], which must be a Java record or a Kotlin data class.
+         *
+         * The object is encoded as the sequence of its components (the components of the record, or the parameters of
+         * the primary constructor of the data class), in declaration order, each component being encoded according to
+         * its type:
+         * - the primitive types are encoded with the given [endianness], like the primitive encoders (e.g.
+         * [IntEncoder][com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder]), [Chars][Char] being encoded as
+         * [Shorts][Short] and [Booleans][Boolean] as a single byte;
+         * - the other types are prefixed with a byte indicating whether the component is present (`1`) or `null`
+         * (`0`), followed, if present, by the component encoded as follows:
+         *     - the boxed primitive types are encoded like the primitive types;
+         *     - [Strings][String] are encoded in [UTF-8][Charsets.UTF_8], prefixed with their size in bytes encoded as
+         *     an [Int];
+         *     - [Enums][Enum] are encoded as the [ordinal][Enum.ordinal] of the constant, encoded as an [Int];
+         *     - [ByteArrays][ByteArray] are encoded as their bytes, prefixed with their size encoded as an [Int];
+         *     - nested records and data classes are encoded as described here.
+         *
+         * The transcoder does not interpret anything at each call. On the first use of a type, its accessors and
+         * constructor are resolved once as [MethodHandles][java.lang.invoke.MethodHandle] and cached along the type,
+         * and the returned transcoder is made of a codec specialized for each component. The primitive components are
+         * thus read, written and passed to the constructor without being boxed. The decoder is resumable: a call to
+         * [decode] returning [Decoder.State.Processing] stores the components decoded so far, and the next call resumes
+         * at the component where it stopped.
+         *
+         * Like any [Decoder], the returned transcoder is stateful when decoding, and should not be used concurrently
+         * for decoding. Encoding is stateless.
+         *
+         * @param type the class of the record or data class
+         * @param endianness the endianness of the encoded components (defaults to [ByteOrder.BIG_ENDIAN])
+         * @return the [Transcoder] of [type]
+         * @throws IllegalArgumentException if [type] is neither a record nor a data class, if its members cannot be
+         * accessed, or if one of its components has an unsupported type (including [type] itself, directly or through
+         * nested records)
+         * @param T the type of the record or data class
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun <T : Any> forRecord(type: Class<T>, endianness: ByteOrder = ByteOrder.BIG_ENDIAN): Transcoder<T> =
+            RecordTranscoder(type, endianness, emptySet())
+
     }
 
 }
@@ -0,0 +1,239 @@
+package com.kamelia.sprinkler.transcoder.binary.columnar
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.random.Random
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.EnumSource
+
+class ColumnarSchemaTest {
+
+    @ParameterizedTest
+    @EnumSource(ColumnEncoding::class)
+    fun `batch is transcoded with every integral encoding`(encoding: ColumnEncoding) {
+        val transcoder = pointSchema(encoding).transcoder(reader = ::readPoint)
+        val random = Random(42)
+        // more than two blocks, the last one being incomplete
+        val points = List(300) {
+            Point(1_000L * it + random.nextInt(10), random.nextInt(), random.nextFloat(), -it.toDouble())
+        }
+
+        assertEquals(points, transcoder.decode(transcoder.encode(points)).assertDoneAndGet())
+    }
+
+    @ParameterizedTest
+    @EnumSource(ColumnEncoding::class)
+    fun `extreme values are transcoded with every integral encoding`(encoding: ColumnEncoding) {
+        val transcoder = pointSchema(encoding).transcoder(reader = ::readPoint)
+        val longs = listOf(Long.MIN_VALUE, Long.MAX_VALUE, 0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 1L)
+        val ints = listOf(Int.MAX_VALUE, Int.MIN_VALUE, -1, 0, Int.MIN_VALUE, Int.MAX_VALUE, 1)
+        val points = List(longs.size) { Point(longs[it], ints[it], Float.NaN, Double.NEGATIVE_INFINITY) }
+
+        assertEquals(points, transcoder.decode(transcoder.encode(points)).assertDoneAndGet())
+    }
+
+    @ParameterizedTest
+    @EnumSource(ColumnEncoding::class)
+    fun `encoded size is exact and size hint is an upper bound`(encoding: ColumnEncoding) {
+        val encoder = pointSchema(encoding).encoder()
+        val points = List(1_000) { Point(it * 7L, it % 13, it.toFloat(), it / 3.0) }
+        val encoded = encoder.encode(points)
+
+        assertEquals(encoded.size.toLong(), encoder.encodedSize(points))
+        assertTrue(encoder.sizeHint(points) >= encoded.size)
+    }
+
+    @Test
+    fun `empty batch is transcoded`() {
+        val transcoder = pointSchema(ColumnEncoding.DELTA_BIT_PACKED).transcoder(reader = ::readPoint)
+
+        assertArrayEquals(byteArrayOf(1, 0), transcoder.encode(emptyList()))
+        assertEquals(emptyList<Point>(), transcoder.decode(byteArrayOf(1, 0)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `plain columns are written contiguously with the schema endianness`() {
+        val encoder = ColumnarSchema.builder<Point>()
+            .intColumn { it.count }
+            .build(ByteOrder.LITTLE_ENDIAN)
+            .encoder()
+
+        val expected = byteArrayOf(9, 2, 1, 0, 0, 0, 2, 0, 0, 0)
+        assertArrayEquals(expected, encoder.encode(listOf(Point(0, 1, 0f, 0.0), Point(0, 2, 0f, 0.0))))
+    }
+
+    @Test
+    fun `bit packed block of equal values has a zero width`() {
+        val encoder = ColumnarSchema.builder<Point>()
+            .longColumn(ColumnEncoding.BIT_PACKED) { it.timestamp }
+            .build()
+            .encoder()
+        val points = List(128) { Point(5, 0, 0f, 0.0) }
+
+        // size, rows (128 as two bytes), ZigZag minimum, width
+        assertArrayEquals(byteArrayOf(4, -128, 1, 10, 0), encoder.encode(points))
+    }
+
+    @Test
+    fun `bit packed values are packed on the width of the block`() {
+        val encoder = ColumnarSchema.builder<Point>()
+            .intColumn(ColumnEncoding.BIT_PACKED) { it.count }
+            .build()
+            .encoder()
+        val points = listOf(10, 13, 11, 12).map { Point(0, it, 0f, 0.0) }
+
+        // differences 0, 3, 1, 2 on 2 bits, LSB-first: 0b10_01_11_00
+        assertArrayEquals(byteArrayOf(4, 4, 20, 2, 0b10_01_11_00.toByte()), encoder.encode(points))
+    }
+
+    @Test
+    fun `delta encodings shrink regular series`() {
+        val points = List(1_000) { Point(1_700_000_000_000L + it * 1_000L, 0, 0f, 0.0) }
+        val sizes = ColumnEncoding.entries.associateWith {
+            ColumnarSchema.builder<Point>()
+                .longColumn(it) { point -> point.timestamp }
+                .build()
+                .encoder()
+                .encode(points)
+                .size
+        }
+
+        assertTrue(sizes.getValue(ColumnEncoding.DELTA) < sizes.getValue(ColumnEncoding.PLAIN) / 3)
+        // constant deltas are packed on zero bits
+        assertTrue(sizes.getValue(ColumnEncoding.DELTA_BIT_PACKED) < 40)
+    }
+
+    @Test
+    fun `columns decoder returns the primitive columns`() {
+        val schema = pointSchema(ColumnEncoding.DELTA)
+        val points = List(3) { Point(it.toLong(), it * 2, it * 0.5f, it * 0.25) }
+
+        val batch = schema.columnsDecoder().decode(schema.encoder().encode(points)).assertDoneAndGet()
+        assertEquals(3, batch.size)
+        assertEquals(4, batch.columnCount)
+        assertArrayEquals(longArrayOf(0, 1, 2), batch.longs(0))
+        assertArrayEquals(intArrayOf(0, 2, 4), batch.ints(1))
+        assertArrayEquals(floatArrayOf(0f, 0.5f, 1f), batch.floats(2))
+        assertArrayEquals(doubleArrayOf(0.0, 0.25, 0.5), batch.doubles(3))
+    }
+
+    @Test
+    fun `reading a column with the wrong type throws`() {
+        val schema = pointSchema(ColumnEncoding.PLAIN)
+        val batch = schema.columnsDecoder().decode(schema.encoder().encode(emptyList())).assertDoneAndGet()
+
+        assertThrows<IllegalArgumentException> { batch.ints(0) }
+        assertThrows<IllegalArgumentException> { batch.doubles(2) }
+        assertThrows<IndexOutOfBoundsException> { batch.longs(4) }
+    }
+
+    @Test
+    fun `decoding can be resumed at any byte`() {
+        val transcoder = pointSchema(ColumnEncoding.DELTA_BIT_PACKED).transcoder(reader = ::readPoint)
+        val points = List(200) { Point(it * 3L, -it, it.toFloat(), it.toDouble()) }
+        val encoded = transcoder.encode(points)
+        val buffer = ByteBuffer.allocate(1)
+
+        for (i in 0 until encoded.size - 1) {
+            buffer.put(encoded[i])
+            assertInstanceOf(Decoder.State.Processing::class.java, transcoder.decode(buffer))
+        }
+        buffer.put(encoded.last())
+        assertEquals(points, transcoder.decode(buffer).assertDoneAndGet())
+    }
+
+    @Test
+    fun `consecutive batches are decoded by the same decoder`() {
+        val transcoder = pointSchema(ColumnEncoding.BIT_PACKED).transcoder(reader = ::readPoint)
+        val first = List(5) { Point(it.toLong(), it, 0f, 0.0) }
+        val second = List(2) { Point(-it.toLong(), -it, 1f, 1.0) }
+        val input = DecoderInput.from(transcoder.encode(first) + transcoder.encode(second))
+
+        assertEquals(first, transcoder.decode(input).assertDoneAndGet())
+        assertEquals(second, transcoder.decode(input).assertDoneAndGet())
+    }
+
+    @Test
+    fun `invalid bit width is an error`() {
+        val decoder = ColumnarSchema.builder<Point>()
+            .intColumn(ColumnEncoding.BIT_PACKED) { it.count }
+            .build()
+            .columnsDecoder()
+
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(byteArrayOf(3, 1, 0, 65)))
+    }
+
+    @Test
+    fun `truncated column is an error`() {
+        val decoder = ColumnarSchema.builder<Point>()
+            .intColumn { it.count }
+            .build()
+            .columnsDecoder()
+
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(byteArrayOf(3, 1, 0, 0)))
+    }
+
+    @Test
+    fun `trailing bytes are an error`() {
+        val decoder = ColumnarSchema.builder<Point>()
+            .intColumn { it.count }
+            .build()
+            .columnsDecoder()
+
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(byteArrayOf(6, 1, 0, 0, 0, 1, 9)))
+    }
+
+    @Test
+    fun `forged batch size is an error before the batch is received`() {
+        val decoder = ColumnarSchema.builder<Point>()
+            .intColumn { it.count }
+            .build()
+            .columnsDecoder()
+
+        val prefix = byteArrayOf(-1, -1, -1, -1, 0x07) // Int.MAX_VALUE
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(prefix))
+    }
+
+    @Test
+    fun `batch larger than the maximum batch size is an error`() {
+        val schema = pointSchema(ColumnEncoding.PLAIN)
+        val points = List(4) { Point(it.toLong(), it, it.toFloat(), it.toDouble()) }
+        val encoded = schema.encoder().encode(points)
+        val bodySize = encoded.size - 1 // the size prefix of a small batch is a single byte
+
+        assertEquals(points, schema.decoder(bodySize, ::readPoint).decode(encoded).assertDoneAndGet())
+        assertInstanceOf(Decoder.State.Error::class.java, schema.decoder(bodySize - 1, ::readPoint).decode(encoded))
+    }
+
+    @Test
+    fun `negative maximum batch size throws`() {
+        assertThrows<IllegalArgumentException> { pointSchema(ColumnEncoding.PLAIN).columnsDecoder(-1) }
+    }
+
+    @Test
+    fun `building a schema without columns throws`() {
+        assertThrows<IllegalStateException> { ColumnarSchema.builder<Point>().build() }
+    }
+
+    private data class Point(val timestamp: Long, val count: Int, val x: Float, val y: Double)
+
+    private fun pointSchema(encoding: ColumnEncoding): ColumnarSchema<Point> = ColumnarSchema.builder<Point>()
+        .longColumn(encoding) { it.timestamp }
+        .intColumn(encoding) { it.count }
+        .floatColumn { it.x }
+        .doubleColumn { it.y }
+        .build()
+
+    private fun readPoint(batch: ColumnBatch, row: Int): Point =
+        Point(batch.longs(0)[row], batch.ints(1)[row], batch.floats(2)[row], batch.doubles(3)[row])
+
+}
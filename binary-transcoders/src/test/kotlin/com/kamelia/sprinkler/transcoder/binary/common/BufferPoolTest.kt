@@ -0,0 +1,137 @@
+package com.kamelia.sprinkler.transcoder.binary.common
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class BufferPoolTest {
+
+    @Test
+    fun `no op pool allocates buffers of the exact requested size`() {
+        val pool = BufferPool.noOp()
+        assertEquals(13, pool.acquire(13).size)
+        assertEquals(13, pool.acquireDirect(13).capacity())
+        assertTrue(pool.acquireDirect(13).isDirect)
+    }
+
+    @Test
+    fun `no op pool never reuses released buffers`() {
+        val pool = BufferPool.noOp()
+        val array = pool.acquire(64)
+        pool.release(array)
+        assertNotSame(array, pool.acquire(64))
+    }
+
+    @Test
+    fun `pool rounds sizes up to the next size class`() {
+        val pool = BufferPool.create()
+        assertEquals(64, pool.acquire(0).size)
+        assertEquals(64, pool.acquire(64).size)
+        assertEquals(128, pool.acquire(65).size)
+        assertEquals(1024, pool.acquireDirect(1000).capacity())
+    }
+
+    @Test
+    fun `pool reuses released arrays`() {
+        val pool = BufferPool.create()
+        val array = pool.acquire(100)
+        pool.release(array)
+        assertSame(array, pool.acquire(128))
+    }
+
+    @Test
+    fun `pool reuses released arrays from the shared store`() {
+        val pool = BufferPool.create(threadCacheSize = 0)
+        val array = pool.acquire(100)
+        pool.release(array)
+        assertSame(array, pool.acquire(100))
+    }
+
+    @Test
+    fun `pool reuses released arrays across threads`() {
+        val pool = BufferPool.create(threadCacheSize = 0)
+        val array = pool.acquire(100)
+        val thread = Thread { pool.release(array) }
+        thread.start()
+        thread.join()
+        assertSame(array, pool.acquire(100))
+    }
+
+    @Test
+    fun `pool does not retain more than the maximum retained bytes`() {
+        val pool = BufferPool.create(maxRetainedBytes = 128, threadCacheSize = 0)
+        val first = pool.acquire(128)
+        val second = pool.acquire(128)
+        pool.release(first)
+        pool.release(second)
+        assertSame(first, pool.acquire(128))
+        assertNotSame(second, pool.acquire(128))
+    }
+
+    @Test
+    fun `pool does not retain more buffers than the thread cache size`() {
+        val pool = BufferPool.create(maxRetainedBytes = 0, threadCacheSize = 1)
+        val first = pool.acquire(64)
+        val second = pool.acquire(64)
+        pool.release(first)
+        pool.release(second)
+        assertSame(first, pool.acquire(64))
+        assertNotSame(second, pool.acquire(64))
+    }
+
+    @Test
+    fun `pool does not pool buffers larger than the maximum buffer size`() {
+        val pool = BufferPool.create(maxBufferSize = 1000)
+        assertEquals(1024, pool.acquire(1024).size)
+        val large = pool.acquire(1025)
+        assertEquals(1025, large.size)
+        pool.release(large)
+        assertNotSame(large, pool.acquire(1025))
+    }
+
+    @Test
+    fun `pool drops buffers which were not acquired from it`() {
+        val pool = BufferPool.create()
+        val array = ByteArray(100)
+        pool.release(array)
+        assertNotSame(array, pool.acquire(100))
+    }
+
+    @Test
+    fun `pool reuses released direct buffers cleared`() {
+        val pool = BufferPool.create()
+        val buffer = pool.acquireDirect(64)
+        buffer.putInt(5).limit(10)
+        pool.releaseDirect(buffer)
+        val acquired = pool.acquireDirect(64)
+        assertSame(buffer, acquired)
+        assertEquals(0, acquired.position())
+        assertEquals(64, acquired.limit())
+    }
+
+    @Test
+    fun `pool keeps arrays and direct buffers apart`() {
+        val pool = BufferPool.create()
+        pool.release(pool.acquire(64))
+        assertTrue(pool.acquireDirect(64).isDirect)
+    }
+
+    @Test
+    fun `acquire throws on negative size`() {
+        assertThrows<IllegalArgumentException> { BufferPool.noOp().acquire(-1) }
+        assertThrows<IllegalArgumentException> { BufferPool.create().acquire(-1) }
+        assertThrows<IllegalArgumentException> { BufferPool.create().acquireDirect(-1) }
+    }
+
+    @Test
+    fun `create throws on invalid arguments`() {
+        assertThrows<IllegalArgumentException> { BufferPool.create(maxBufferSize = 63) }
+        assertThrows<IllegalArgumentException> { BufferPool.create(maxBufferSize = (1 shl 30) + 1) }
+        assertThrows<IllegalArgumentException> { BufferPool.create(maxRetainedBytes = -1) }
+        assertThrows<IllegalArgumentException> { BufferPool.create(threadCacheSize = -1) }
+    }
+
+}
@@ -6,8 +6,17 @@ import com.kamelia.sprinkler.transcoder.binary.common.UTF16_NULL
 import com.kamelia.sprinkler.transcoder.binary.common.UTF8_NULL
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import com.kamelia.sprinkler.transcoder.binary.encoder.FloatArrayEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.LongArrayEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.VarIntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.VarLongEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.ZigZagVarIntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.ZigZagVarLongEncoder
 import com.kamelia.sprinkler.util.byte
+import java.nio.ByteBuffer
 import java.nio.ByteOrder
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertInstanceOf
 import org.junit.jupiter.api.Assertions.assertNull
@@ -223,6 +232,80 @@ class BaseDecodersTest {
         assertEquals(value, result)
     }
 
+    @Test
+    fun `var int decoder works correctly`() {
+        val decoder = VarIntDecoder()
+        assertEquals(0, decoder.decode(byteArrayOf(0)).assertDoneAndGet())
+        assertEquals(300, decoder.decode(byteArrayOf(0xAC.toByte(), 0x02)).assertDoneAndGet())
+        val data = byteArrayOf(0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0x0F)
+        assertEquals(-1, decoder.decode(data).assertDoneAndGet())
+    }
+
+    @Test
+    fun `var int decoder resumes decoding byte by byte`() {
+        val decoder = VarIntDecoder()
+        val value = 0x1234_5678
+        val data = VarIntEncoder().encode(value)
+        data.dropLast(1).forEach {
+            assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(byteArrayOf(it)))
+        }
+        assertEquals(value, decoder.decode(byteArrayOf(data.last())).assertDoneAndGet())
+    }
+
+    @Test
+    fun `var int decoder returns an error on too large value`() {
+        val decoder = VarIntDecoder()
+        val data = byteArrayOf(0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0x10)
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(data))
+        assertEquals(5, decoder.decode(byteArrayOf(5)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `var int decoder returns an error on too long value`() {
+        val decoder = VarIntDecoder()
+        val data = byteArrayOf(0x80.toByte(), 0x80.toByte(), 0x80.toByte(), 0x80.toByte(), 0x80.toByte(), 0)
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(data))
+    }
+
+    @Test
+    fun `var long decoder works correctly`() {
+        val decoder = VarLongDecoder()
+        listOf(0L, 1L, 300L, Long.MAX_VALUE, Long.MIN_VALUE, -1L).forEach {
+            assertEquals(it, decoder.decode(VarLongEncoder().encode(it)).assertDoneAndGet())
+        }
+    }
+
+    @Test
+    fun `var long decoder returns an error on too large value`() {
+        val decoder = VarLongDecoder()
+        val data = ByteArray(10) { 0xFF.toByte() }.also { it[9] = 0x02 }
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(data))
+    }
+
+    @Test
+    fun `zigzag var int decoder works correctly`() {
+        val decoder = ZigZagVarIntDecoder()
+        listOf(0, -1, 1, -64, 64, Int.MAX_VALUE, Int.MIN_VALUE).forEach {
+            assertEquals(it, decoder.decode(ZigZagVarIntEncoder().encode(it)).assertDoneAndGet())
+        }
+    }
+
+    @Test
+    fun `zigzag var long decoder works correctly`() {
+        val decoder = ZigZagVarLongDecoder()
+        listOf(0L, -1L, 1L, -300L, Long.MAX_VALUE, Long.MIN_VALUE).forEach {
+            assertEquals(it, decoder.decode(ZigZagVarLongEncoder().encode(it)).assertDoneAndGet())
+        }
+    }
+
+    @Test
+    fun `var int decoder can be used as a size decoder`() {
+        val decoder = UTF8StringDecoder(VarIntDecoder())
+        val data = UTF8StringEncoder(VarIntEncoder()).encode("Hello, world!")
+        assertEquals(14, data.size)
+        assertEquals("Hello, world!", decoder.decode(data).assertDoneAndGet())
+    }
+
     @Test
     fun `utf8 string decoder throws on invalid end marker`() {
         assertThrows<IllegalArgumentException> {
@@ -474,6 +557,140 @@ class BaseDecodersTest {
         assertEquals(inputValue, data.read().toByte())
     }
 
+    @Test
+    fun `primitive array decoders read the size followed by the elements`() {
+        assertArrayEquals(
+            byteArrayOf(1, 2),
+            ByteArrayDecoder().decode(byteArrayOf(0, 0, 0, 2, 1, 2)).assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            booleanArrayOf(true, false, true),
+            BooleanArrayDecoder().decode(byteArrayOf(0, 0, 0, 3, 1, 0, 5)).assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            shortArrayOf(0x0102),
+            ShortArrayDecoder().decode(byteArrayOf(0, 0, 0, 1, 0x01, 0x02)).assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            charArrayOf('\u20AC'),
+            CharArrayDecoder().decode(byteArrayOf(0, 0, 0, 1, 0x20, 0xAC.toByte())).assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            intArrayOf(1, -2),
+            IntArrayDecoder().decode(byteArrayOf(0, 0, 0, 2, 0, 0, 0, 1, -1, -1, -1, -2)).assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            longArrayOf(3L),
+            LongArrayDecoder().decode(byteArrayOf(0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 3)).assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            floatArrayOf(1f),
+            FloatArrayDecoder().decode(byteArrayOf(0, 0, 0, 1, 0x3F, 0x80.toByte(), 0, 0)).assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            doubleArrayOf(1.0),
+            DoubleArrayDecoder().decode(byteArrayOf(0, 0, 0, 1, 0x3F, 0xF0.toByte(), 0, 0, 0, 0, 0, 0))
+                .assertDoneAndGet(),
+        )
+    }
+
+    @Test
+    fun `little endian primitive array decoders read the size and the elements in little endian`() {
+        assertArrayEquals(
+            intArrayOf(1, -2),
+            IntArrayDecoder(ByteOrder.LITTLE_ENDIAN)
+                .decode(byteArrayOf(2, 0, 0, 0, 1, 0, 0, 0, -2, -1, -1, -1))
+                .assertDoneAndGet(),
+        )
+        assertArrayEquals(
+            shortArrayOf(0x0102),
+            ShortArrayDecoder(ByteOrder.LITTLE_ENDIAN, VarIntDecoder()).decode(byteArrayOf(1, 0x02, 0x01))
+                .assertDoneAndGet(),
+        )
+    }
+
+    @Test
+    fun `primitive array decoders read empty arrays`() {
+        assertEquals(0, LongArrayDecoder().decode(byteArrayOf(0, 0, 0, 0)).assertDoneAndGet().size)
+        assertEquals(0, ByteArrayDecoder().decode(byteArrayOf(0, 0, 0, 0)).assertDoneAndGet().size)
+    }
+
+    @Test
+    fun `primitive array decoders read large arrays`() {
+        val array = FloatArray(10_000) { it * 0.5f }
+        val decoded = FloatArrayDecoder().decode(FloatArrayEncoder().encode(array)).assertDoneAndGet()
+        assertArrayEquals(array, decoded)
+    }
+
+    @Test
+    fun `primitive array decoders can be resumed at any byte`() {
+        val array = LongArray(1_500) { it * 0x0101_0101_0101L - 7 }
+        val encoded = LongArrayEncoder(ByteOrder.LITTLE_ENDIAN).encode(array)
+        val decoder = LongArrayDecoder(ByteOrder.LITTLE_ENDIAN)
+        val buffer = ByteBuffer.allocate(3)
+
+        var offset = 0
+        while (encoded.size - offset > 3) {
+            buffer.put(encoded, offset, 3)
+            offset += 3
+            assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(buffer))
+        }
+        buffer.put(encoded, offset, encoded.size - offset)
+        assertArrayEquals(array, decoder.decode(buffer).assertDoneAndGet())
+
+        // the decoder can be reused for another array
+        val single = LongArrayEncoder(ByteOrder.LITTLE_ENDIAN).encode(longArrayOf(5L))
+        assertArrayEquals(longArrayOf(5L), decoder.decode(single).assertDoneAndGet())
+    }
+
+    @Test
+    fun `primitive array decoders reset discards the partially decoded array`() {
+        val decoder = IntArrayDecoder()
+        assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(byteArrayOf(0, 0, 0, 2, 0, 0)))
+        decoder.reset()
+        assertArrayEquals(intArrayOf(7), decoder.decode(byteArrayOf(0, 0, 0, 1, 0, 0, 0, 7)).assertDoneAndGet())
+
+        val byteDecoder = ByteArrayDecoder()
+        assertInstanceOf(Decoder.State.Processing::class.java, byteDecoder.decode(byteArrayOf(0, 0, 0, 2, 1)))
+        byteDecoder.reset()
+        assertArrayEquals(byteArrayOf(3), byteDecoder.decode(byteArrayOf(0, 0, 0, 1, 3)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `primitive array decoders do not allocate the announced size before receiving the elements`() {
+        val prefix = byteArrayOf(0x7F, -1, -1, -1) // Int.MAX_VALUE elements
+        val tail = byteArrayOf(1, 2, 3)
+        assertInstanceOf(Decoder.State.Processing::class.java, LongArrayDecoder().decode(prefix + tail))
+        assertInstanceOf(Decoder.State.Processing::class.java, DoubleArrayDecoder().decode(prefix + tail))
+        assertInstanceOf(Decoder.State.Processing::class.java, ByteArrayDecoder().decode(prefix + tail))
+        assertInstanceOf(Decoder.State.Processing::class.java, BooleanArrayDecoder().decode(prefix + tail))
+    }
+
+    @Test
+    fun `primitive array decoders grow the array as the elements are received`() {
+        val array = ByteArray(50_000) { it.toByte() }
+        val encoded = ByteBuffer.allocate(4 + array.size).putInt(array.size).put(array).array()
+        val decoder = ByteArrayDecoder()
+        val buffer = ByteBuffer.allocate(1000)
+
+        var offset = 0
+        while (encoded.size - offset > buffer.capacity()) {
+            buffer.put(encoded, offset, buffer.capacity())
+            offset += buffer.capacity()
+            assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(buffer))
+        }
+        buffer.put(encoded, offset, encoded.size - offset)
+        val decoded = decoder.decode(buffer).assertDoneAndGet()
+        assertEquals(array.size, decoded.size)
+        assertArrayEquals(array, decoded)
+    }
+
+    @Test
+    fun `primitive array decoders return an error on negative size`() {
+        assertInstanceOf(Decoder.State.Error::class.java, DoubleArrayDecoder().decode(byteArrayOf(-1, -1, -1, -1)))
+        assertInstanceOf(Decoder.State.Error::class.java, ByteArrayDecoder().decode(byteArrayOf(-1, -1, -1, -1)))
+    }
+
 }
 
 private enum class DummyEnum {
@@ -0,0 +1,136 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.VarIntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import java.io.ByteArrayOutputStream
+import java.nio.file.Path
+import java.util.concurrent.Executors
+import kotlin.io.path.createTempFile
+import kotlin.io.path.deleteIfExists
+import kotlin.io.path.writeBytes
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class RecordFilesTest {
+
+    @Test
+    fun `records are decoded in the order of the file`() = withRecords(List(10_000) { "record-$it" }) { path, records ->
+        val decoded = ArrayList<String>()
+        decodeRecordsInParallel(path, { UTF8StringDecoder() }, chunkSize = 256) { decoded += it }
+        assertEquals(records, decoded)
+    }
+
+    @Test
+    fun `unordered decoding passes all the records`() = withRecords(List(10_000) { "record-$it" }) { path, records ->
+        val decoded = ArrayList<String>()
+        decodeRecordsInParallel(path, { UTF8StringDecoder() }, ordered = false, chunkSize = 256) { decoded += it }
+        assertEquals(records.toSet(), decoded.toSet())
+        assertEquals(records.size, decoded.size)
+    }
+
+    @Test
+    fun `records are decoded on the given executor with the given size prefix`() {
+        val records = List(1000) { "é".repeat(it % 50) }
+        withRecords(records, VarIntEncoder()) { path, _ ->
+            val executor = Executors.newFixedThreadPool(3)
+            try {
+                val decoded = ArrayList<String>()
+                decodeRecordsInParallel(
+                    path,
+                    { UTF8StringDecoder() },
+                    { VarIntDecoder() },
+                    executor = executor,
+                    chunkSize = 100,
+                ) { decoded += it }
+                assertEquals(records, decoded)
+            } finally {
+                executor.shutdown()
+            }
+        }
+    }
+
+    @Test
+    fun `empty file has no record`() = withRecords(emptyList()) { path, _ ->
+        var count = 0
+        decodeRecordsInParallel(path, { UTF8StringDecoder() }) { count++ }
+        assertEquals(0, count)
+    }
+
+    @Test
+    fun `truncated file throws`() {
+        val path = createTempFile()
+        try {
+            val record = UTF8StringEncoder().encode("hello")
+            path.writeBytes(IntEncoder().encode(record.size) + record.copyOf(record.size - 1))
+            assertThrows(MissingBytesException::class.java) {
+                decodeRecordsInParallel(path, { UTF8StringDecoder() }) { }
+            }
+        } finally {
+            path.deleteIfExists()
+        }
+    }
+
+    @Test
+    fun `record not fully decoded from its bytes throws`() {
+        val path = createTempFile()
+        try {
+            val record = UTF8StringEncoder().encode("hello") + byteArrayOf(1)
+            path.writeBytes(IntEncoder().encode(record.size) + record)
+            assertThrows(IllegalStateException::class.java) {
+                decodeRecordsInParallel(path, { UTF8StringDecoder() }) { }
+            }
+        } finally {
+            path.deleteIfExists()
+        }
+    }
+
+    @Test
+    fun `record too large to be mapped throws with its offset`() {
+        val path = createTempFile()
+        try {
+            val record = UTF8StringEncoder().encode("hello")
+            // the bytes of the second record are not needed, as it is rejected from its size prefix
+            path.writeBytes(IntEncoder().encode(record.size) + record + IntEncoder().encode(Int.MAX_VALUE))
+            val exception = assertThrows(IllegalStateException::class.java) {
+                decodeRecordsInParallel(path, { UTF8StringDecoder() }) { }
+            }
+            assertTrue("offset ${4 + record.size}" in exception.message!!, exception.message)
+        } finally {
+            path.deleteIfExists()
+        }
+    }
+
+    @Test
+    fun `decodeRecordsInParallel throws on non positive chunk size`() {
+        assertThrows(IllegalArgumentException::class.java) {
+            decodeRecordsInParallel(Path.of("unused"), { UTF8StringDecoder() }, chunkSize = 0) { }
+        }
+    }
+
+    private fun withRecords(
+        records: List<String>,
+        sizeEncoder: Encoder<Int> = IntEncoder(),
+        block: (Path, List<String>) -> Unit,
+    ) {
+        val path = createTempFile()
+        try {
+            val encoder = UTF8StringEncoder()
+            val bytes = ByteArrayOutputStream()
+            records.forEach {
+                val encoded = encoder.encode(it)
+                sizeEncoder.encode(encoded.size, bytes)
+                bytes.write(encoded)
+            }
+            path.writeBytes(bytes.toByteArray())
+            block(path, records)
+        } finally {
+            path.deleteIfExists()
+        }
+    }
+
+}
@@ -1,9 +1,13 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.composer
 
+import com.kamelia.sprinkler.transcoder.binary.decoder.VarIntDecoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertThrows
 import org.junit.jupiter.api.Test
+import java.util.stream.Collectors
 
 class ComposedDecoderTest {
 
@@ -21,4 +25,87 @@ class ComposedDecoderTest {
         assertEquals(1, result2)
     }
 
+    data class Node(val name: String, val children: List<Node>)
+
+    @Test
+    fun `size decoder is used for collections and strings`() {
+        val decoder = composedDecoder<Node>(sizeDecoder = VarIntDecoder()) {
+            val name = string()
+            val children = selfCollection(Collectors.toList())
+            Node(name, children)
+        }
+        val a = 'a'.code.toByte()
+        val b = 'b'.code.toByte()
+        val bytes = byteArrayOf(1, a, 1, 1, b, 0)
+        val result = decoder.decode(bytes).assertDoneAndGet()
+        assertEquals(Node("a", listOf(Node("b", listOf()))), result)
+    }
+
+    @Test
+    fun `reset resets the size decoder`() {
+        val decoder = composedDecoder<Node>(sizeDecoder = VarIntDecoder()) {
+            Node("", selfCollection(Collectors.toList()))
+        }
+        assertEquals(Decoder.State.Processing, decoder.decode(byteArrayOf(0x80.toByte())))
+        decoder.reset()
+        assertEquals(Node("", listOf()), decoder.decode(byteArrayOf(0)).assertDoneAndGet())
+    }
+
+    data class Link(val value: Int, val next: Link?)
+
+    @Test
+    fun `deep recursive objects are decoded`() {
+        val decoder = composedDecoder {
+            val value = int()
+            val next = if (boolean()) self() else null
+            Link(value, next)
+        }
+        val depth = 10_000
+        val bytes = ByteArray(5 * (depth + 1))
+        for (i in 0 until depth) {
+            bytes[5 * i + 3] = (i % 100).toByte()
+            bytes[5 * i + 4] = 1
+        }
+        var link: Link? = decoder.decode(bytes).assertDoneAndGet()
+        var count = 0
+        while (link != null) {
+            assertEquals(count % 100, link.value)
+            count++
+            link = link.next
+        }
+        assertEquals(depth + 1, count)
+    }
+
+    @Test
+    fun `maximum depth exceeded returns an error`() {
+        val decoder = composedDecoder(maxDepth = 1) {
+            val value = int()
+            val next = if (boolean()) self() else null
+            Link(value, next)
+        }
+        val bytes = byteArrayOf(0, 0, 0, 1, 1, 0, 0, 0, 2, 0)
+        assertEquals(Link(1, Link(2, null)), decoder.decode(bytes).assertDoneAndGet())
+        val tooDeep = byteArrayOf(0, 0, 0, 1, 1, 0, 0, 0, 2, 1, 0, 0, 0, 3, 0)
+        val state = decoder.decode(tooDeep)
+        assertInstanceOf(Decoder.State.Error::class.java, state)
+        assertInstanceOf(IllegalStateException::class.java, (state as Decoder.State.Error).error)
+    }
+
+    @Test
+    fun `skip works after a recursion in the same call`() {
+        val decoder = composedDecoder {
+            val value = int()
+            val next = if (boolean()) self() else null
+            skip(1)
+            Link(value, next)
+        }
+        val bytes = byteArrayOf(0, 0, 0, 1, 1, 0, 0, 0, 2, 0, 9, 9)
+        assertEquals(Link(1, Link(2, null)), decoder.decode(bytes).assertDoneAndGet())
+    }
+
+    @Test
+    fun `composed decoder throws on negative maximum depth`() {
+        assertThrows(IllegalArgumentException::class.java) { composedDecoder<Int>(maxDepth = -1) { int() } }
+    }
+
 }
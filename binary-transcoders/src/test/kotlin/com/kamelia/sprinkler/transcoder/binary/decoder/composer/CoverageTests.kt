@@ -1,5 +1,6 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.composer
 
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
 import java.nio.ByteOrder
 import org.junit.jupiter.api.Test
@@ -24,13 +25,13 @@ class CoverageTests {
 
     @Test
     fun `DecodingScope self decoder reset`() {
-        DecodingScopeImpl<Any>(::ElementsAccumulator, HashMap(), ByteOrder.BIG_ENDIAN).self.reset()
+        DecodingScopeImpl<Any>(::ElementsAccumulator, HashMap(), ByteOrder.BIG_ENDIAN, IntDecoder()).self.reset()
     }
 
     @Test
     fun `DecodingScope string throws when missing`() {
         assertThrows<AssertionError> {
-            DecodingScopeImpl<Any>(::ElementsAccumulator, HashMap(), ByteOrder.BIG_ENDIAN).string()
+            DecodingScopeImpl<Any>(::ElementsAccumulator, HashMap(), ByteOrder.BIG_ENDIAN, IntDecoder()).string()
         }
     }
 
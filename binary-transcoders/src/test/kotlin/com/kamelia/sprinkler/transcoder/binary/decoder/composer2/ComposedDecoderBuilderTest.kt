@@ -0,0 +1,185 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.composer2
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.VarIntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.composer2.ComposedDecoderBuilder.Key
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import com.kamelia.sprinkler.transcoder.binary.encoder.composer.composedEncoder
+import java.nio.ByteOrder
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class ComposedDecoderBuilderTest {
+
+    data class Person(val name: String, val age: Int, val height: Double, val nickname: String?)
+
+    data class Node(val value: Int, val next: Node?)
+
+    @Test
+    fun `steps are decoded in order`() {
+        val person = Person("John", 42, 1.8, null)
+        val decoder = personDecoder()
+        assertEquals(person, decoder.decode(personEncoder.encode(person)).assertDoneAndGet())
+        val other = Person("Jane", 31, 1.7, "JJ")
+        assertEquals(other, decoder.decode(personEncoder.encode(other)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `decoding resumes at the step where it stopped`() {
+        var created = 0
+        val decoder = ComposedDecoderBuilder.create {
+            created++
+            ListContext { Person(it[0] as String, it[1] as Int, it[2] as Double, it[3] as String?) }
+        }
+            .decodeString()
+            .decodeInt()
+            .decodeDouble()
+            .decodeNullable(Key.Simple(String::class.java))
+            .build()
+        val person = Person("John", 42, 1.8, "Johnny")
+        val bytes = personEncoder.encode(person)
+
+        val input = DecoderInput.from(bytes)
+        var even = false
+        val proxy = DecoderInput.from {
+            even = !even
+            if (even) -1 else input.read()
+        }
+        var state: Decoder.State<Person>
+        var calls = 0
+        do {
+            state = decoder.decode(proxy)
+            calls++
+        } while (state.isNotDone())
+        assertEquals(person, state.assertDoneAndGet())
+        assertEquals(bytes.size + 1, calls)
+        assertEquals(1, created)
+    }
+
+    @Test
+    fun `recursive objects are decoded with self`() {
+        val decoder = nodeDecoder()
+        val bytes = composedEncoder<Node> {
+            encode(it.value)
+            encode(it.next)
+        }.let { encoder ->
+            val node = generateSequence(0) { it + 1 }.take(100).fold(null as Node?) { acc, i -> Node(i, acc) }
+            encoder.encode(node!!)
+        }
+        var node: Node? = decoder.decode(bytes).assertDoneAndGet()
+        for (i in 99 downTo 0) {
+            assertEquals(i, node!!.value)
+            node = node.next
+        }
+        assertEquals(null, node)
+    }
+
+    @Test
+    fun `recursive objects are decoded in several steps`() {
+        val decoder = nodeDecoder()
+        val bytes = byteArrayOf(0, 0, 0, 1, 1, 0, 0, 0, 2, 0)
+        for (i in 1 until bytes.size) {
+            assertEquals(Decoder.State.Processing, decoder.decode(bytes.copyOfRange(i - 1, i)))
+        }
+        val result = decoder.decode(bytes.copyOfRange(bytes.size - 1, bytes.size)).assertDoneAndGet()
+        assertEquals(Node(1, Node(2, null)), result)
+    }
+
+    @Test
+    fun `reset discards the current object`() {
+        val decoder = nodeDecoder()
+        assertEquals(Decoder.State.Processing, decoder.decode(byteArrayOf(0, 0, 0, 1, 1, 0, 0)))
+        decoder.reset()
+        assertEquals(Node(3, null), decoder.decode(byteArrayOf(0, 0, 0, 3, 0)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `errors of the step decoders are returned`() {
+        val decoder = ComposedDecoderBuilder.create { ListContext { it[0] as String } }
+            .decodeString()
+            .build()
+        val state = decoder.decode(byteArrayOf(-1, -1, -1, -1))
+        assertInstanceOf(Decoder.State.Error::class.java, state)
+    }
+
+    @Test
+    fun `custom keys are resolved by the cache`() {
+        val key = Key.Custom<Int>("varint")
+        val decoder = ComposedDecoderBuilder.create(
+            {
+                val default = ComposedDecoderBuilder.defaultCache(ByteOrder.LITTLE_ENDIAN)
+                val cache: (Key<*>) -> Decoder<*> = { if (it == key) VarIntDecoder() else default(it) }
+                cache
+            }
+        ) { ListContext { (it[0] as Int) to (it[1] as Short) } }
+            .decode(key)
+            .decodeShort()
+            .build()
+        assertEquals(300 to 1.toShort(), decoder.decode(byteArrayOf(0xAC.toByte(), 0x02, 1, 0)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `decoders given directly are used as is`() {
+        val decoder = ComposedDecoderBuilder.create { ListContext { it[0] as Int } }
+            .decode(VarIntDecoder())
+            .build()
+        assertEquals(300, decoder.decode(byteArrayOf(0xAC.toByte(), 0x02)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `unknown keys throw when building`() {
+        val builder = ComposedDecoderBuilder.create { ListContext { it } }.decode(Key.Custom<Int>())
+        assertThrows(IllegalArgumentException::class.java) { builder.build() }
+    }
+
+    @Test
+    fun `self key throws when not nullable`() {
+        val builder = ComposedDecoderBuilder.create { ListContext { it } }
+        assertThrows(IllegalArgumentException::class.java) { builder.decode(Key.Self) }
+        val nested = builder.decodeNullable(Key.Nullable(Key.Self, Key.Simple(Boolean::class.java)))
+        assertThrows(IllegalArgumentException::class.java) { nested.build() }
+    }
+
+    private fun personDecoder(): Decoder<Person> = ComposedDecoderBuilder
+        .create { ListContext { Person(it[0] as String, it[1] as Int, it[2] as Double, it[3] as String?) } }
+        .decodeString()
+        .decodeInt()
+        .decodeDouble()
+        .decodeNullable(Key.Simple(String::class.java))
+        .build()
+
+    private fun nodeDecoder(): Decoder<Node> = ComposedDecoderBuilder
+        .create { ListContext { Node(it[0] as Int, it[1] as Node?) } }
+        .decodeInt()
+        .decodeSelfOrNull()
+        .build()
+
+    private val personEncoder = composedEncoder<Person> {
+        encode(it.name)
+        encode(it.age)
+        encode(it.height)
+        val nickname = it.nickname
+        if (nickname != null) {
+            encode(true)
+            encode(nickname)
+        } else {
+            encode(false)
+        }
+    }
+
+    private class ListContext<T>(private val block: (List<Any?>) -> T) : ComposedDecoderContext<T> {
+
+        private val elements = ArrayList<Any?>()
+
+        override fun accept(element: Any?) {
+            elements += element
+        }
+
+        override fun build(): T = block(elements)
+
+    }
+
+}
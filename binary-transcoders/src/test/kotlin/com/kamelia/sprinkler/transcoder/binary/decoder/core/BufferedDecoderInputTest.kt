@@ -0,0 +1,120 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class BufferedDecoderInputTest {
+
+    @Test
+    fun `bytes are read from the stream by chunks`() {
+        val stream = CountingInputStream(ByteArray(100) { it.toByte() })
+        val input = DecoderInput.buffered(stream, bufferSize = 16)
+        repeat(100) { assertEquals(it, input.read()) }
+        assertEquals(-1, input.read())
+        assertEquals(0, stream.singleReads)
+        assertTrue(stream.bulkReads <= 8)
+    }
+
+    @Test
+    fun `reads larger than the buffer bypass it`() {
+        val stream = CountingInputStream(ByteArray(100) { it.toByte() })
+        val input = DecoderInput.buffered(stream, bufferSize = 8)
+        val receiver = ByteArray(100)
+        assertEquals(2, input.read(receiver, 0, 2))
+        assertEquals(98, input.read(receiver, 2, 98))
+        assertArrayEquals(ByteArray(100) { it.toByte() }, receiver)
+        assertEquals(2, stream.bulkReads) // one to fill the buffer, one for the remaining bytes
+    }
+
+    @Test
+    fun `skip consumes the buffer before the stream`() {
+        val input = DecoderInput.buffered(ByteArrayInputStream(ByteArray(100) { it.toByte() }), bufferSize = 8)
+        assertEquals(0, input.read())
+        assertEquals(7, input.bufferedBytes())
+        assertEquals(50, input.skip(50))
+        assertEquals(0, input.bufferedBytes())
+        assertEquals(51, input.read())
+        assertEquals(48, input.skip(100))
+        assertEquals(-1, input.read())
+    }
+
+    @Test
+    fun `bufferedBytes returns the number of bytes read ahead`() {
+        val input = DecoderInput.buffered(ByteArrayInputStream(IntEncoder().encode(5) + byteArrayOf(1, 2)))
+        assertEquals(0, input.bufferedBytes())
+        assertEquals(5, IntDecoder().decode(input).assertDoneAndGet())
+        assertEquals(2, input.bufferedBytes())
+    }
+
+    @Test
+    fun `remainder returns the bytes following the decoded object`() {
+        val bytes = IntEncoder().encode(42) + UTF8StringEncoder().encode("hello") + byteArrayOf(1, 2, 3)
+        val input = DecoderInput.buffered(ByteArrayInputStream(bytes), bufferSize = 6)
+        assertEquals(42, IntDecoder().decode(input).assertDoneAndGet())
+
+        val remainder = input.remainder()
+        assertEquals(0, input.bufferedBytes())
+        assertEquals("hello", UTF8StringDecoder().decode(remainder).assertDoneAndGet())
+        assertArrayEquals(byteArrayOf(1, 2, 3), remainder.readAllBytes())
+    }
+
+    @Test
+    fun `several objects can be decoded from the same input`() {
+        val encoder = UTF8StringEncoder()
+        val strings = List(50) { "string-$it" }
+        val bytes = strings.map(encoder::encode).reduce(ByteArray::plus)
+        val input = DecoderInput.buffered(ByteArrayInputStream(bytes), bufferSize = 7)
+        val decoder = UTF8StringDecoder()
+        strings.forEach { assertEquals(it, decoder.decode(input).assertDoneAndGet()) }
+        assertEquals(-1, input.read())
+    }
+
+    @Test
+    fun `buffered throws on non positive buffer size`() {
+        assertThrows(IllegalArgumentException::class.java) {
+            DecoderInput.buffered(ByteArrayInputStream(ByteArray(0)), bufferSize = 0)
+        }
+    }
+
+    @Test
+    fun `unbuffered input does not read ahead`() {
+        val stream = ByteArrayInputStream(IntEncoder().encode(5) + byteArrayOf(1, 2))
+        assertEquals(5, IntDecoder().decode(stream).assertDoneAndGet())
+        assertEquals(2, stream.available())
+        assertEquals(1, DecoderInput.from(stream).skip(1))
+        assertEquals(1, stream.available())
+    }
+
+    private class CountingInputStream(bytes: ByteArray) : InputStream() {
+
+        private val inner = ByteArrayInputStream(bytes)
+
+        var singleReads = 0
+            private set
+
+        var bulkReads = 0
+            private set
+
+        override fun read(): Int {
+            singleReads++
+            return inner.read()
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            bulkReads++
+            return inner.read(b, off, len)
+        }
+
+    }
+
+}
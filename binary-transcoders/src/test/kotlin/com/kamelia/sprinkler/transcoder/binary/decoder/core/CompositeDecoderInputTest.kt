@@ -0,0 +1,109 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import java.nio.ByteBuffer
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+
+class CompositeDecoderInputTest {
+
+    @Test
+    fun `decoder resumes when new segments are appended`() {
+        val input = DecoderInput.composite()
+        val decoder = IntDecoder()
+
+        input.append(ByteBuffer.wrap(byteArrayOf(0, 0)))
+        assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(input))
+        input.append(ByteBuffer.wrap(byteArrayOf(0)))
+        assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(input))
+        input.append(ByteBuffer.wrap(byteArrayOf(5)))
+        assertEquals(5, decoder.decode(input).assertDoneAndGet())
+    }
+
+    @Test
+    fun `bulk read spans several segments`() {
+        val input = DecoderInput.composite()
+        input.append(ByteBuffer.wrap(byteArrayOf(1, 2)))
+        input.append(ByteBuffer.allocateDirect(3).put(byteArrayOf(3, 4, 5)).flip())
+        input.append(ByteBuffer.wrap(byteArrayOf(6)))
+
+        val bytes = ByteArray(5)
+        assertEquals(5, input.read(bytes))
+        assertArrayEquals(byteArrayOf(1, 2, 3, 4, 5), bytes)
+        assertEquals(1, input.remaining())
+        assertEquals(1, input.segmentCount())
+    }
+
+    @Test
+    fun `string spanning several segments is decoded`() {
+        val input = DecoderInput.composite()
+        val decoder = UTF8StringDecoder()
+        val data = ByteBuffer.allocate(9).putInt(5).put("hello".toByteArray()).array()
+
+        input.append(ByteBuffer.wrap(data, 0, 3))
+        input.append(ByteBuffer.wrap(data, 3, 4))
+        input.append(ByteBuffer.wrap(data, 7, 2))
+        assertEquals("hello", decoder.decode(input).assertDoneAndGet())
+    }
+
+    @Test
+    fun `skip spans several segments`() {
+        val input = DecoderInput.composite()
+        input.append(ByteBuffer.wrap(byteArrayOf(1, 2)))
+        input.append(ByteBuffer.wrap(byteArrayOf(3, 4)))
+        input.append(ByteBuffer.wrap(byteArrayOf(5, 6)))
+
+        assertEquals(3, input.skip(3))
+        assertEquals(4, input.read())
+        assertEquals(2, input.skip(10))
+        assertEquals(-1, input.read())
+    }
+
+    @Test
+    fun `consumed segments are released in order`() {
+        val released = ArrayList<ByteBuffer>()
+        val input = DecoderInput.composite { released += it }
+        val first = ByteBuffer.wrap(byteArrayOf(1, 2))
+        val second = ByteBuffer.wrap(byteArrayOf(3, 4))
+        input.append(first)
+        input.append(second)
+
+        input.read()
+        assertEquals(0, released.size)
+        input.read()
+        assertEquals(1, released.size)
+        assertSame(first, released[0])
+        input.read(ByteArray(2))
+        assertEquals(2, released.size)
+        assertSame(second, released[1])
+        assertEquals(0, input.segmentCount())
+    }
+
+    @Test
+    fun `empty segment is released immediately`() {
+        val released = ArrayList<ByteBuffer>()
+        val input = DecoderInput.composite { released += it }
+        val empty = ByteBuffer.allocate(0)
+
+        input.append(empty)
+        assertSame(empty, released.single())
+        assertEquals(0, input.segmentCount())
+    }
+
+    @Test
+    fun `bits are read across segments`() {
+        val input = DecoderInput.composite()
+        input.append(ByteBuffer.wrap(byteArrayOf(0b1010_1010.toByte())))
+        input.append(ByteBuffer.wrap(byteArrayOf(0b0101_0101)))
+
+        repeat(4) { input.readBit() }
+        assertEquals(0b1010_0101, input.read())
+        assertEquals(0, input.readBit())
+    }
+
+}
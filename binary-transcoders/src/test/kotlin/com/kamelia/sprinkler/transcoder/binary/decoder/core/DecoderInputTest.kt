@@ -1,5 +1,8 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.core
 
+import com.kamelia.sprinkler.transcoder.binary.common.BitOrder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Named
 import org.junit.jupiter.api.Test
@@ -8,8 +11,14 @@ import org.junit.jupiter.params.ParameterizedTest
 import org.junit.jupiter.params.provider.Arguments
 import org.junit.jupiter.params.provider.MethodSource
 import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
 import java.util.stream.Stream
+import java.util.zip.DeflaterOutputStream
+import kotlin.io.path.createTempFile
+import kotlin.io.path.writeBytes
 
 class DecoderInputTest {
 
@@ -42,6 +51,51 @@ class DecoderInputTest {
         assertEquals(-1, input.read(receiver))
     }
 
+    @ParameterizedTest
+    @MethodSource("decoderDataInputImplementations")
+    fun `readUntil stops right after the delimiter`(factory: (ByteArray) -> DecoderInput) {
+        val data = ByteArray(40) { (it + 1).toByte() }.also { it[21] = 0 }
+        val tail = data.copyOfRange(23, 40)
+        val input = factory(data)
+        val receiver = ByteArray(40)
+        assertEquals(5, input.readUntil(0, receiver, 0, 5)) // length reached before the delimiter
+        assertEquals(17, input.readUntil(0, receiver, 5, 35))
+        assertEquals(0, receiver[21])
+        assertEquals(23, input.read())
+        assertEquals(17, input.readUntil(0, receiver, 0, 40)) // end of input reached before the delimiter
+        assertEquals(-1, input.readUntil(0, receiver, 0, 40))
+        assertArrayEquals(tail, receiver.copyOfRange(0, 17))
+    }
+
+    @ParameterizedTest
+    @MethodSource("decoderDataInputImplementations")
+    fun `readUntil finds the delimiter at any offset`(factory: (ByteArray) -> DecoderInput) {
+        repeat(20) { position ->
+            val data = ByteArray(20) { 7 }.also { it[position] = 42 }
+            val input = factory(data)
+            val receiver = ByteArray(20)
+            assertEquals(position + 1, input.readUntil(42, receiver, 0, 20))
+            assertEquals(42, receiver[position])
+        }
+    }
+
+    @Test
+    fun `readUntil finds the delimiter in little endian buffers`() {
+        repeat(20) { position ->
+            val data = ByteArray(20) { 7 }.also { it[position] = 42 }
+            val input = DecoderInput.fromReadMode(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN))
+            assertEquals(position + 1, input.readUntil(42, ByteArray(20), 0, 20))
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("decoderDataInputImplementations")
+    fun `readUntil returns -2 with less than a byte left`(factory: (ByteArray) -> DecoderInput) {
+        val input = factory(byteArrayOf(0))
+        input.readBit()
+        assertEquals(-2, input.readUntil(0, ByteArray(1), 0, 1))
+    }
+
     @ParameterizedTest
     @MethodSource("decoderDataInputImplementations")
     fun `read to byte array throws IllegalArgumentException with invalid parameters`(
@@ -411,6 +465,99 @@ class DecoderInputTest {
         assertEquals(0b0010_0000.toByte(), receiver[2])
     }
 
+    @ParameterizedTest
+    @MethodSource("decoderDataInputImplementations")
+    fun `read bits as long works correctly`(factory: (ByteArray) -> DecoderInput) {
+        val input = factory(byteArrayOf(0b1011_0011.toByte(), -1, 0x0F, 0x12, 0x34, 0x56, 0x78, 0x9A.toByte()))
+
+        assertEquals(0b101, input.readBitsAsLong(3))
+        assertEquals(0b1_0011, input.readBitsAsLong(5))
+        assertEquals(0xFF_0F12_3456L, input.readBitsAsLong(40))
+        assertEquals(0x789A, input.readBitsAsLong(16))
+        assertEquals(0, input.readBitsAsLong(0))
+        assertEquals(-1, input.readBitsAsLong(1))
+    }
+
+    @ParameterizedTest
+    @MethodSource("decoderDataInputImplementations")
+    fun `read bits as long returns -1 when there is not enough bits`(factory: (ByteArray) -> DecoderInput) {
+        val input = factory(byteArrayOf(0x12, 0x34))
+
+        assertEquals(-1, input.readBitsAsLong(17))
+    }
+
+    @ParameterizedTest
+    @MethodSource("decoderDataInputImplementations")
+    fun `read bits as long throws on invalid number of bits`(factory: (ByteArray) -> DecoderInput) {
+        val input = factory(byteArrayOf(0x12))
+
+        assertThrows<IllegalArgumentException> { input.readBitsAsLong(-1) }
+        assertThrows<IllegalArgumentException> { input.readBitsAsLong(64) }
+    }
+
+    @Test
+    fun `read bits as long does not consume bits when there is not enough bits`() {
+        val input = DecoderInput.composite()
+        input.append(ByteBuffer.wrap(byteArrayOf(0x12, 0x34)))
+
+        assertEquals(0x1, input.readBitsAsLong(4))
+        assertEquals(-1, input.readBitsAsLong(20))
+        input.append(ByteBuffer.wrap(byteArrayOf(0x56)))
+        assertEquals(0x23456, input.readBitsAsLong(20))
+    }
+
+    @Test
+    fun `read bits as long reads 63 bits across the accumulator boundary`() {
+        val data = byteArrayOf(-1, 0x01, 0x23, 0x45, 0x67, 0x89.toByte(), 0xAB.toByte(), 0xCD.toByte(), 0xEF.toByte())
+        val msb = DecoderInput.from(data)
+        val lsb = DecoderInput.from(data, BitOrder.LSB_FIRST)
+
+        assertEquals(0x7F, msb.readBitsAsLong(7))
+        assertEquals(0x4048_D159_E26A_F37BL, msb.readBitsAsLong(63))
+        assertEquals(0b11, msb.readBitsAsLong(2))
+        assertEquals(0x7F, lsb.readBitsAsLong(7))
+        assertEquals(0x5F9B_5712_CE8A_4603L, lsb.readBitsAsLong(63))
+        assertEquals(0b11, lsb.readBitsAsLong(2))
+    }
+
+    @Test
+    fun `lsb first input reads bits starting from the least significant bit`() {
+        val input = DecoderInput.from(byteArrayOf(0b1011_0011.toByte(), 0x0F), BitOrder.LSB_FIRST)
+
+        assertEquals(1, input.readBit())
+        assertEquals(1, input.readBit())
+        assertEquals(0b0_1100, input.readBitsAsLong(5))
+        assertEquals(0b0001_1111, input.read()) // the 8 next bits, the first read being the lowest one
+        assertEquals(-1, input.readBitsAsLong(2))
+        assertEquals(0, input.readBit())
+        assertEquals(-1, input.readBit())
+    }
+
+    @Test
+    fun `lsb first input reads bits into byte array using the lsb first numbering`() {
+        val input = DecoderInput.from(byteArrayOf(0b1011_0011.toByte(), 0x5A), BitOrder.LSB_FIRST)
+        val bytes = ByteArray(2)
+
+        assertEquals(3, input.readBits(bytes, 2, 3)) // bits 0, 1 and 2 of the first byte, at bits 2 to 4
+        assertEquals(0b0000_1100, bytes[0].toInt())
+        assertEquals(13, input.readBits(bytes, 3, 13))
+        assertEquals(0b1011_0100.toByte(), bytes[0]) // bits 3 to 7 of the first byte, at bits 3 to 7
+        assertEquals(0x5A.toByte(), bytes[1])
+    }
+
+    @Test
+    fun `lsb first input and output round trip`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream, BitOrder.LSB_FIRST)
+        val values = longArrayOf(5, 1023, 0, 123_456_789_012L, 1, 77, Long.MIN_VALUE ushr 1)
+        val sizes = intArrayOf(3, 10, 1, 40, 1, 7, 63)
+        values.indices.forEach { output.writeBitsFromLong(values[it], sizes[it]) }
+        output.flush()
+
+        val input = DecoderInput.from(stream.toByteArray(), BitOrder.LSB_FIRST)
+        values.indices.forEach { assertEquals(values[it], input.readBitsAsLong(sizes[it])) }
+    }
+
     private companion object {
 
         @JvmStatic
@@ -419,9 +566,41 @@ class DecoderInputTest {
             Arguments.of(Named.of<(ByteArray) -> DecoderInput>("InputStream") {
                 DecoderInput.from(ByteArrayInputStream(it))
             }),
+            Arguments.of(Named.of<(ByteArray) -> DecoderInput>("BufferedInputStream") {
+                DecoderInput.buffered(ByteArrayInputStream(it), bufferSize = 3) // small buffer to cross buffer bounds
+            }),
             Arguments.of(Named.of<(ByteArray) -> DecoderInput>("ByteBuffer") {
                 DecoderInput.from(ByteBuffer.wrap(it).apply { position(limit()) })
             }),
+            Arguments.of(Named.of<(ByteArray) -> DecoderInput>("ByteBufferReadMode") {
+                DecoderInput.fromReadMode(ByteBuffer.wrap(it))
+            }),
+            Arguments.of(Named.of<(ByteArray) -> DecoderInput>("DirectByteBufferReadMode") {
+                DecoderInput.fromReadMode(ByteBuffer.allocateDirect(it.size).put(it).flip())
+            }),
+            Arguments.of(Named.of<(ByteArray) -> DecoderInput>("FileChannel") {
+                val path = createTempFile()
+                path.toFile().deleteOnExit()
+                path.writeBytes(it)
+                DecoderInput.from(FileChannel.open(path), windowSize = 3) // small window to cross window bounds
+            }),
+            Arguments.of(Named.of<(ByteArray) -> DecoderInput>("Composite") {
+                val input = DecoderInput.composite()
+                // segments of 1 and 2 bytes to cross segment bounds
+                var index = 0
+                while (index < it.size) {
+                    val length = minOf(1 + index % 2, it.size - index)
+                    input.append(ByteBuffer.wrap(it, index, length))
+                    index += length
+                }
+                input
+            }),
+            Arguments.of(Named.of<(ByteArray) -> DecoderInput>("Inflating") {
+                val compressed = ByteArrayOutputStream()
+                DeflaterOutputStream(compressed).use { stream -> stream.write(it) }
+                // small buffer to cross buffer bounds
+                DecoderInput.inflating(DecoderInput.from(compressed.toByteArray()), bufferSize = 3)
+            }),
             Arguments.of(Named.of<(ByteArray) -> DecoderInput>("CustomLambda") {
                 var index = 0
                 DecoderInput.from { if (index < it.size) (it[index++].toInt() and 0xFF) else -1 }
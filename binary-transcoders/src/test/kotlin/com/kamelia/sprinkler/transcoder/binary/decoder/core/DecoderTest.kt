@@ -1,11 +1,24 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.core
 
 import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
 import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
 import com.kamelia.sprinkler.util.byte
 import java.io.ByteArrayInputStream
 import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import kotlin.io.path.createTempFile
+import kotlin.io.path.deleteIfExists
+import kotlin.io.path.writeBytes
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 
 
@@ -27,4 +40,117 @@ class DecoderTest {
         assertEquals(value, bufferResult)
     }
 
+    @Test
+    fun `decode from ByteBuffer leaves the unread bytes at the start of the buffer in write mode`() {
+        val buffer = ByteBuffer.allocate(16).put(byteArrayOf(0, 0, 0, 5, 1, 2))
+
+        val result = IntDecoder().decode(buffer).assertDoneAndGet()
+        assertEquals(5, result)
+        assertEquals(2, buffer.position())
+        assertEquals(buffer.capacity(), buffer.limit())
+        assertEquals(1, buffer.get(0))
+        assertEquals(2, buffer.get(1))
+    }
+
+    @Test
+    fun `decode from ByteBuffer keeps the buffer in write mode when more bytes are needed`() {
+        val buffer = ByteBuffer.allocateDirect(16).put(byteArrayOf(0, 0))
+        val decoder = IntDecoder()
+
+        assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(buffer))
+        assertEquals(0, buffer.position())
+
+        buffer.put(byteArrayOf(0, 7))
+        assertEquals(7, decoder.decode(buffer).assertDoneAndGet())
+        assertEquals(0, buffer.position())
+    }
+
+    @Test
+    fun `decode from Path reads the file`() {
+        val path = createTempFile()
+        try {
+            path.writeBytes(byteArrayOf(0, 0, 0, 9, 1))
+            assertEquals(9, IntDecoder().decode(path).assertDoneAndGet())
+            assertEquals(9, IntDecoder().decode(path.toFile()).assertDoneAndGet())
+        } finally {
+            path.deleteIfExists()
+        }
+    }
+
+    @Test
+    fun `decode from Path returns processing on truncated file`() {
+        val path = createTempFile()
+        try {
+            path.writeBytes(byteArrayOf(0, 0))
+            assertInstanceOf(Decoder.State.Processing::class.java, IntDecoder().decode(path))
+        } finally {
+            path.deleteIfExists()
+        }
+    }
+
+    @Test
+    fun `decode from FileChannel input starts at the position of the channel and slides across windows`() {
+        val path = createTempFile()
+        try {
+            val data = ByteArray(100) { it.toByte() }
+            path.writeBytes(data)
+            FileChannel.open(path).use { channel ->
+                channel.position(10)
+                val input = DecoderInput.from(channel, windowSize = 7)
+                val read = ByteArray(20)
+                assertEquals(20, input.read(read))
+                assertArrayEquals(data.copyOfRange(10, 30), read)
+                assertEquals(50, input.skip(50))
+                assertEquals(80, input.read())
+                assertEquals(19, input.skip(50))
+                assertEquals(-1, input.read())
+            }
+        } finally {
+            path.deleteIfExists()
+        }
+    }
+
+    @Test
+    fun `decodeIterator decodes all the consecutive objects of a stream`() {
+        val values = List(10_000) { it * 31 }
+        val bytes = values.map(IntEncoder()::encode).reduce(ByteArray::plus)
+        val decoded = IntDecoder().decodeIterator(ByteArrayInputStream(bytes)).asSequence().toList()
+        assertEquals(values, decoded)
+    }
+
+    @Test
+    fun `decodeIterator hasNext does not decode twice`() {
+        val iterator = IntDecoder().decodeIterator(DecoderInput.from(byteArrayOf(0, 0, 0, 1, 0, 0, 0, 2)))
+        assertTrue(iterator.hasNext())
+        assertTrue(iterator.hasNext())
+        assertEquals(1, iterator.next())
+        assertEquals(2, iterator.next())
+        assertFalse(iterator.hasNext())
+        assertThrows(NoSuchElementException::class.java) { iterator.next() }
+    }
+
+    @Test
+    fun `decodeIterator throws on trailing partial object`() {
+        val iterator = IntDecoder().decodeIterator(ByteArrayInputStream(byteArrayOf(0, 0, 0, 1, 0, 0)))
+        assertEquals(1, iterator.next())
+        assertThrows(MissingBytesException::class.java) { iterator.hasNext() }
+        assertFalse(iterator.hasNext())
+    }
+
+    @Test
+    fun `decodeIterator propagates decoding errors`() {
+        val bytes = UTF8StringEncoder().encode("a") + IntEncoder().encode(-1)
+        val iterator = UTF8StringDecoder().decodeIterator(ByteArrayInputStream(bytes))
+        assertEquals("a", iterator.next())
+        assertThrows(IllegalStateException::class.java) { iterator.next() }
+    }
+
+    @Test
+    fun `decodeSequence reads from a channel and can be iterated only once`() {
+        val bytes = List(5) { IntEncoder().encode(it) }.reduce(ByteArray::plus)
+        val sequence = IntDecoder().decodeSequence(Channels.newChannel(ByteArrayInputStream(bytes)))
+        assertEquals(listOf(0, 1, 2, 3, 4), sequence.toList())
+        assertThrows(IllegalStateException::class.java) { sequence.toList() }
+    }
+
 }
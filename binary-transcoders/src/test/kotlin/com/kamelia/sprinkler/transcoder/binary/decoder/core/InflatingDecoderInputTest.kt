@@ -0,0 +1,129 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class InflatingDecoderInputTest {
+
+    @Test
+    fun `bytes compressed by a deflater stream are decompressed`() {
+        val bytes = ByteArray(1000) { (it % 7).toByte() }
+        val input = DecoderInput.inflating(DecoderInput.from(deflate(bytes)), bufferSize = 16)
+        val receiver = ByteArray(1000)
+        var read = 0
+        while (read < receiver.size) {
+            val count = input.read(receiver, read, minOf(10, receiver.size - read))
+            if (count < 0) break
+            read += count
+        }
+        assertArrayEquals(bytes, receiver)
+        assertEquals(-1, input.read())
+    }
+
+    @Test
+    fun `decoding resumes when more compressed bytes are received`() {
+        val compressed = deflate(IntEncoder().encode(123_456) + UTF8StringEncoder().encode("hello"))
+        val composite = DecoderInput.composite()
+        val input = DecoderInput.inflating(composite, bufferSize = 4)
+        val intDecoder = IntDecoder()
+        val stringDecoder = UTF8StringDecoder()
+
+        var index = 0
+        var state = intDecoder.decode(input)
+        while (state is Decoder.State.Processing) {
+            composite.append(ByteBuffer.wrap(compressed, index++, 1))
+            state = intDecoder.decode(input)
+        }
+        assertEquals(123_456, state.assertDoneAndGet())
+
+        var string = stringDecoder.decode(input)
+        while (string is Decoder.State.Processing) {
+            composite.append(ByteBuffer.wrap(compressed, index++, 1))
+            string = stringDecoder.decode(input)
+        }
+        assertEquals("hello", string.assertDoneAndGet())
+    }
+
+    @Test
+    fun `consecutive frames are decompressed as a single sequence of bytes`() {
+        val stream = ByteArrayOutputStream()
+        EncoderOutput.deflating(EncoderOutput.from(stream), level = Deflater.NO_COMPRESSION).use {
+            it.write(ByteArray(50) { 1 })
+            it.finishFrame(Deflater.BEST_COMPRESSION)
+            it.write(ByteArray(50) { 2 })
+            it.finishFrame()
+            it.write(ByteArray(50) { 3 })
+        }
+        val input = DecoderInput.inflating(DecoderInput.from(stream.toByteArray()), bufferSize = 8)
+        val receiver = ByteArray(150)
+        assertEquals(150, input.read(receiver))
+        assertArrayEquals(ByteArray(150) { (it / 50 + 1).toByte() }, receiver)
+        assertEquals(-1, input.read())
+    }
+
+    @Test
+    fun `reads larger than the buffer are decompressed directly`() {
+        val bytes = ByteArray(500) { it.toByte() }
+        val input = DecoderInput.inflating(DecoderInput.from(deflate(bytes)), bufferSize = 8)
+        val receiver = ByteArray(500)
+        assertEquals(3, input.read(receiver, 0, 3))
+        assertEquals(497, input.read(receiver, 3, 497))
+        assertArrayEquals(bytes, receiver)
+    }
+
+    @Test
+    fun `bits are read from the decompressed bytes`() {
+        val input = DecoderInput.inflating(DecoderInput.from(deflate(byteArrayOf(0b1010_0000.toByte(), 7))))
+        assertEquals(1, input.readBit())
+        assertEquals(0, input.readBit())
+        assertEquals(1, input.readBit())
+        assertEquals(0L, input.readBitsAsLong(5))
+        assertEquals(7, input.read())
+    }
+
+    @Test
+    fun `malformed compressed bytes throw`() {
+        val input = DecoderInput.inflating(DecoderInput.from(byteArrayOf(1, 2, 3, 4, 5)))
+        assertThrows(IllegalStateException::class.java) { input.read() }
+    }
+
+    @Test
+    fun `reading a closed input throws`() {
+        val input = DecoderInput.inflating(DecoderInput.from(deflate(byteArrayOf(1, 2))))
+        input.close()
+        assertThrows(IllegalStateException::class.java) { input.read() }
+    }
+
+    @Test
+    fun `inflating throws on non positive buffer size`() {
+        assertThrows(IllegalArgumentException::class.java) {
+            DecoderInput.inflating(DecoderInput.from(ByteArray(0)), bufferSize = 0)
+        }
+    }
+
+    @Test
+    fun `empty underlying input makes the decoder process`() {
+        val input = DecoderInput.inflating(DecoderInput.composite())
+        assertInstanceOf(Decoder.State.Processing::class.java, IntDecoder().decode(input))
+    }
+
+    private fun deflate(bytes: ByteArray): ByteArray {
+        val stream = ByteArrayOutputStream()
+        DeflaterOutputStream(stream).use { it.write(bytes) }
+        return stream.toByteArray()
+    }
+
+}
@@ -1,8 +1,10 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.core
 
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
 import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertSame
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertThrows
 
@@ -59,4 +61,51 @@ class MarkerEndedItemDecoderTest {
         assertEquals("", result)
     }
 
+    @Test
+    fun `multi byte marker split across several calls is found`() {
+        val endMarker = byteArrayOf(0, 0)
+        val decoder = MarkerEndedItemDecoder(endMarker) { copyOf(it) }
+
+        assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(byteArrayOf(1, 0, 2, 0)))
+        val result = decoder.decode(byteArrayOf(0, 3)).assertDoneAndGet()
+        assertEquals(listOf<Byte>(1, 0, 2), result.toList())
+    }
+
+    @Test
+    fun `bytes following the marker are not consumed`() {
+        val decoder = MarkerEndedItemDecoder(byteArrayOf(0, 0)) { copyOf(it) }
+        val input = DecoderInput.from(byteArrayOf(5, 0, 0, 6, 0, 0, 0, 7))
+
+        assertEquals(listOf<Byte>(5), decoder.decode(input).assertDoneAndGet().toList())
+        assertEquals(listOf<Byte>(6), decoder.decode(input).assertDoneAndGet().toList())
+        assertEquals(0, input.read())
+        assertEquals(7, input.read())
+    }
+
+    @Test
+    fun `long content is decoded correctly`() {
+        val decoder = MarkerEndedItemDecoder(byteArrayOf(0)) { String(this, 0, it, Charsets.US_ASCII) }
+        val value = "a".repeat(1000)
+
+        val result = decoder.decode(value.toByteArray(Charsets.US_ASCII) + 0).assertDoneAndGet()
+        assertEquals(value, result)
+        assertEquals("b", decoder.decode(byteArrayOf('b'.code.toByte(), 0)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `decodes long content with a pool and releases the accumulator on reset`() {
+        val pool = BufferPool.create()
+        var converted: ByteArray? = null
+        val decoder = MarkerEndedItemDecoder(byteArrayOf(0), pool) {
+            converted = this
+            String(this, 0, it, Charsets.US_ASCII)
+        }
+        val value = "a".repeat(1000)
+
+        assertEquals(value, decoder.decode(value.toByteArray(Charsets.US_ASCII) + 0).assertDoneAndGet())
+        assertEquals(1024, converted!!.size)
+        decoder.reset()
+        assertSame(converted, pool.acquire(1000))
+    }
+
 }
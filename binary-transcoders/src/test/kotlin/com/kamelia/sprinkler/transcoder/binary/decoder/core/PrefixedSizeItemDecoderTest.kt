@@ -1,8 +1,10 @@
 package com.kamelia.sprinkler.transcoder.binary.decoder.core
 
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
 import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertSame
 import org.junit.jupiter.api.Test
 
 class PrefixedSizeItemDecoderTest {
@@ -120,4 +122,35 @@ class PrefixedSizeItemDecoderTest {
         assertEquals(fourth, fourthResult)
     }
 
+    @Test
+    fun `decodes with a pool and releases the array on reset`() {
+        val pool = BufferPool.create()
+        var converted: ByteArray? = null
+        val decoder = PrefixedSizeItemDecoder(ConstantSizedItemDecoder(1) { get(0) }, pool) {
+            converted = this
+            String(this, 0, it, Charsets.US_ASCII)
+        }
+
+        assertEquals("abc", decoder.decode(byteArrayOf(3) + "abc".toByteArray()).assertDoneAndGet())
+        assertEquals(64, converted!!.size)
+        decoder.reset()
+        assertSame(converted, pool.acquire(64))
+    }
+
+    @Test
+    fun `releases the smaller array when a larger one is acquired`() {
+        val pool = BufferPool.create()
+        var converted: ByteArray? = null
+        val decoder = PrefixedSizeItemDecoder(ConstantSizedItemDecoder(1) { get(0) }, pool) {
+            converted = this
+            String(this, 0, it, Charsets.US_ASCII)
+        }
+
+        decoder.decode(byteArrayOf(1, 'a'.code.toByte())).assertDoneAndGet()
+        val small = converted
+        val large = "b".repeat(100)
+        assertEquals(large, decoder.decode(byteArrayOf(100) + large.toByteArray()).assertDoneAndGet())
+        assertSame(small, pool.acquire(64))
+    }
+
 }
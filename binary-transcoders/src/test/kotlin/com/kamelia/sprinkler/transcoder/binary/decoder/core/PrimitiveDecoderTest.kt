@@ -0,0 +1,153 @@
+package com.kamelia.sprinkler.transcoder.binary.decoder.core
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.ByteDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.DoubleDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.FloatDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.LongDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.ShortDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class PrimitiveDecoderTest {
+
+    @Test
+    fun `byte decoder decodes primitive correctly`() {
+        val decoder = ByteDecoder()
+        val input = DecoderInput.from(byteArrayOf(-7))
+
+        assertTrue(decoder.decodePrimitive(input))
+        assertEquals(-7, decoder.intValue())
+        assertEquals(-7L, decoder.longValue())
+    }
+
+    @Test
+    fun `short decoder decodes primitive correctly`() {
+        val decoder = ShortDecoder(ByteOrder.LITTLE_ENDIAN)
+        val data = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN).putShort(-1234).array()
+
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data)))
+        assertEquals(-1234, decoder.intValue())
+    }
+
+    @Test
+    fun `int decoder decodes primitive correctly`() {
+        val decoder = IntDecoder()
+        val data = ByteBuffer.allocate(4).putInt(-123_456_789).array()
+
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data)))
+        assertEquals(-123_456_789, decoder.intValue())
+        assertEquals(-123_456_789L, decoder.longValue())
+        assertEquals(-123_456_789.0, decoder.doubleValue())
+    }
+
+    @Test
+    fun `little endian int decoder decodes primitive correctly`() {
+        val decoder = IntDecoder(ByteOrder.LITTLE_ENDIAN)
+        val data = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0x12345678).array()
+
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data)))
+        assertEquals(0x12345678, decoder.intValue())
+    }
+
+    @Test
+    fun `long decoder decodes primitive correctly`() {
+        val decoder = LongDecoder()
+        val data = ByteBuffer.allocate(8).putLong(Long.MIN_VALUE + 42).array()
+
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data)))
+        assertEquals(Long.MIN_VALUE + 42, decoder.longValue())
+        assertEquals(42, decoder.intValue())
+    }
+
+    @Test
+    fun `float decoder decodes primitive correctly`() {
+        val decoder = FloatDecoder(ByteOrder.LITTLE_ENDIAN)
+        val data = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putFloat(-3.5f).array()
+
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data)))
+        assertEquals(-3.5f, decoder.floatValue())
+        assertEquals(-3, decoder.intValue())
+    }
+
+    @Test
+    fun `double decoder decodes primitive correctly`() {
+        val decoder = DoubleDecoder()
+        val data = ByteBuffer.allocate(8).putDouble(Math.PI).array()
+
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data)))
+        assertEquals(Math.PI, decoder.doubleValue())
+        assertEquals(3L, decoder.longValue())
+    }
+
+    @Test
+    fun `can decode primitive in several times`() {
+        val decoder = IntDecoder()
+        val data = ByteBuffer.allocate(4).putInt(987_654_321).array()
+
+        assertFalse(decoder.decodePrimitive(DecoderInput.from(data.copyOfRange(0, 1))))
+        assertFalse(decoder.decodePrimitive(DecoderInput.from(data.copyOfRange(1, 3))))
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data.copyOfRange(3, 4))))
+        assertEquals(987_654_321, decoder.intValue())
+    }
+
+    @Test
+    fun `decoding started with decodePrimitive can be continued with decode`() {
+        val decoder = LongDecoder()
+        val data = ByteBuffer.allocate(8).putLong(123_456_789_012L).array()
+
+        assertFalse(decoder.decodePrimitive(DecoderInput.from(data.copyOfRange(0, 5))))
+        val result = decoder.decode(data.copyOfRange(5, 8)).assertDoneAndGet()
+        assertEquals(123_456_789_012L, result)
+    }
+
+    @Test
+    fun `reset discards the partially decoded value`() {
+        val decoder = IntDecoder()
+        val data = ByteBuffer.allocate(4).putInt(42).array()
+
+        assertFalse(decoder.decodePrimitive(DecoderInput.from(byteArrayOf(1, 2))))
+        decoder.reset()
+        assertTrue(decoder.decodePrimitive(DecoderInput.from(data)))
+        assertEquals(42, decoder.intValue())
+    }
+
+    @Test
+    fun `consecutive values are decoded from the same input`() {
+        val decoder = ShortDecoder()
+        val data = ByteBuffer.allocate(6).putShort(1).putShort(2).putShort(3).array()
+        val input = DecoderInput.from(data)
+
+        var sum = 0
+        while (decoder.decodePrimitive(input)) {
+            sum += decoder.intValue()
+        }
+        assertEquals(6, sum)
+    }
+
+    @Test
+    fun `prefixed size item decoder works with a primitive size decoder in several times`() {
+        val decoder = PrefixedSizeItemDecoder(IntDecoder()) { String(this, 0, it, Charsets.US_ASCII) }
+        val data = ByteBuffer.allocate(7).putInt(3).put("abc".toByteArray(Charsets.US_ASCII)).array()
+
+        assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(data.copyOfRange(0, 2)))
+        assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(data.copyOfRange(2, 5)))
+        val result = decoder.decode(data.copyOfRange(5, 7)).assertDoneAndGet()
+        assertEquals("abc", result)
+    }
+
+    @Test
+    fun `prefixed size item decoder returns an error on negative primitive size`() {
+        val decoder = PrefixedSizeItemDecoder(IntDecoder()) { String(this, 0, it, Charsets.US_ASCII) }
+        val data = ByteBuffer.allocate(4).putInt(-1).array()
+
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(data))
+    }
+
+}
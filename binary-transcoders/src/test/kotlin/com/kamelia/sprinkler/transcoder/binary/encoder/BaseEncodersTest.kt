@@ -10,6 +10,7 @@ import com.kamelia.sprinkler.util.readInt
 import com.kamelia.sprinkler.util.readLong
 import com.kamelia.sprinkler.util.readShort
 import java.nio.ByteOrder
+import java.nio.charset.Charset
 import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
@@ -134,6 +135,47 @@ class BaseEncodersTest {
         assertEquals(boolean, bytes[0] != 0.toByte())
     }
 
+    @Test
+    fun `var int encoder works correctly`() {
+        val encoder = VarIntEncoder()
+        assertArrayEquals(byteArrayOf(0), encoder.encode(0))
+        assertArrayEquals(byteArrayOf(127), encoder.encode(127))
+        assertArrayEquals(byteArrayOf(0xAC.toByte(), 0x02), encoder.encode(300))
+        assertArrayEquals(
+            byteArrayOf(0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0x0F),
+            encoder.encode(-1),
+        )
+    }
+
+    @Test
+    fun `var long encoder works correctly`() {
+        val encoder = VarLongEncoder()
+        assertArrayEquals(byteArrayOf(0xAC.toByte(), 0x02), encoder.encode(300L))
+        val bytes = encoder.encode(-1L)
+        assertEquals(10, bytes.size)
+        assertEquals(0x01.toByte(), bytes.last())
+    }
+
+    @Test
+    fun `zigzag var int encoder works correctly`() {
+        val encoder = ZigZagVarIntEncoder()
+        assertArrayEquals(byteArrayOf(0), encoder.encode(0))
+        assertArrayEquals(byteArrayOf(1), encoder.encode(-1))
+        assertArrayEquals(byteArrayOf(2), encoder.encode(1))
+        assertArrayEquals(byteArrayOf(0x7F), encoder.encode(-64))
+        assertArrayEquals(
+            byteArrayOf(0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0x0F),
+            encoder.encode(Int.MIN_VALUE),
+        )
+    }
+
+    @Test
+    fun `zigzag var long encoder works correctly`() {
+        val encoder = ZigZagVarLongEncoder()
+        assertArrayEquals(byteArrayOf(3), encoder.encode(-2L))
+        assertEquals(10, encoder.encode(Long.MIN_VALUE).size)
+    }
+
     @Test
     fun `size prefixed utf8 string encoder works correctly`() {
         val encoder = UTF8StringEncoder()
@@ -293,4 +335,148 @@ class BaseEncodersTest {
         assertEquals(0, bytes.size)
     }
 
+    @Test
+    fun `primitive encoders size hints are exact`() {
+        assertEquals(1, ByteEncoder().sizeHint(5))
+        assertEquals(2, ShortEncoder().sizeHint(5))
+        assertEquals(4, IntEncoder(ByteOrder.LITTLE_ENDIAN).sizeHint(5))
+        assertEquals(8, LongEncoder().sizeHint(5))
+        assertEquals(4, FloatEncoder().sizeHint(5f))
+        assertEquals(8, DoubleEncoder().sizeHint(5.0))
+        assertEquals(1, BooleanEncoder().sizeHint(true))
+        assertEquals(0, NoOpEncoder<Int>().sizeHint(5))
+    }
+
+    @Test
+    fun `variable length encoders size hints are exact`() {
+        val ints = listOf(0, 1, 127, 128, 16_383, 16_384, Int.MAX_VALUE, -1, Int.MIN_VALUE)
+        ints.forEach {
+            assertEquals(VarIntEncoder().encode(it).size, VarIntEncoder().sizeHint(it))
+            assertEquals(ZigZagVarIntEncoder().encode(it).size, ZigZagVarIntEncoder().sizeHint(it))
+        }
+        val longs = listOf(0L, 127L, 128L, Long.MAX_VALUE, -1L, Long.MIN_VALUE, -64L, 64L)
+        longs.forEach {
+            assertEquals(VarLongEncoder().encode(it).size, VarLongEncoder().sizeHint(it))
+            assertEquals(ZigZagVarLongEncoder().encode(it).size, ZigZagVarLongEncoder().sizeHint(it))
+        }
+    }
+
+    @Test
+    fun `string encoders size hints are exact`() {
+        val strings = listOf("", "hello", "h\u00E9llo", "\u20AC\uD83D\uDE00", "\uD83D")
+        strings.forEach {
+            assertEquals(UTF8StringEncoder().encode(it).size, UTF8StringEncoder().sizeHint(it))
+            assertEquals(UTF8StringEncoderEM().encode(it).size, UTF8StringEncoderEM().sizeHint(it))
+            val ascii = ASCIIStringEncoder(VarIntEncoder())
+            assertEquals(ascii.encode(it).size, ascii.sizeHint(it))
+            assertEquals(Latin1StringEncoderEM().encode(it).size, Latin1StringEncoderEM().sizeHint(it))
+        }
+    }
+
+    @Test
+    fun `string encoders size hints are unknown for other charsets`() {
+        assertEquals(-1, UTF16StringEncoder().sizeHint("hello"))
+    }
+
+    @Test
+    fun `enum encoders size hints are exact`() {
+        assertEquals(4, EnumEncoder<ByteOrderEnum>().sizeHint(ByteOrderEnum.BIG))
+        assertEquals(7, EnumEncoderString<ByteOrderEnum>().sizeHint(ByteOrderEnum.BIG))
+    }
+
+    private enum class ByteOrderEnum { BIG }
+
+    @Test
+    fun `fixed size encoders return a constant encoded size`() {
+        assertEquals(1L, ByteEncoder().encodedSize(5))
+        assertEquals(2L, ShortEncoder().encodedSize(5))
+        assertEquals(4L, IntEncoder().encodedSize(5))
+        assertEquals(8L, LongEncoder(ByteOrder.LITTLE_ENDIAN).encodedSize(5))
+        assertEquals(4L, FloatEncoder().encodedSize(5f))
+        assertEquals(8L, DoubleEncoder().encodedSize(5.0))
+        assertEquals(1L, BooleanEncoder().encodedSize(false))
+        assertEquals(0L, NoOpEncoder<Int>().encodedSize(5))
+        assertEquals(4L, EnumEncoder<ByteOrderEnum>().encodedSize(ByteOrderEnum.BIG))
+    }
+
+    @Test
+    fun `string encoders encoded sizes are exact for all charsets`() {
+        val encoders = listOf(
+            UTF16StringEncoder(),
+            UTF16StringEncoderEM(),
+            StringEncoder(Charsets.UTF_16LE, VarIntEncoder()),
+            StringEncoder(Charset.forName("UTF-32"), byteArrayOf(0, 0, 0, 0)),
+            UTF8StringEncoder(),
+            Latin1StringEncoderEM(),
+        )
+        val strings = listOf("", "hello", "h\u00E9llo", "\u20AC\uD83D\uDE00", "\uD83D")
+        encoders.forEach { encoder ->
+            strings.forEach { assertEquals(encoder.encode(it).size.toLong(), encoder.encodedSize(it)) }
+        }
+    }
+
+    @Test
+    fun `primitive array encoders write the size followed by the elements`() {
+        assertArrayEquals(byteArrayOf(0, 0, 0, 2, 1, 2), ByteArrayEncoder().encode(byteArrayOf(1, 2)))
+        assertArrayEquals(byteArrayOf(0, 0, 0, 2, 1, 0), BooleanArrayEncoder().encode(booleanArrayOf(true, false)))
+        assertArrayEquals(
+            byteArrayOf(0, 0, 0, 1, 0x01, 0x02),
+            ShortArrayEncoder().encode(shortArrayOf(0x0102)),
+        )
+        assertArrayEquals(
+            byteArrayOf(0, 0, 0, 1, 0x20, 0xAC.toByte()),
+            CharArrayEncoder().encode(charArrayOf('\u20AC')),
+        )
+        assertArrayEquals(
+            byteArrayOf(0, 0, 0, 2, 0, 0, 0, 1, -1, -1, -1, -2),
+            IntArrayEncoder().encode(intArrayOf(1, -2)),
+        )
+        assertArrayEquals(
+            byteArrayOf(0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 3),
+            LongArrayEncoder().encode(longArrayOf(3L)),
+        )
+        assertArrayEquals(
+            byteArrayOf(0, 0, 0, 1, 0x3F, 0x80.toByte(), 0, 0),
+            FloatArrayEncoder().encode(floatArrayOf(1f)),
+        )
+        assertArrayEquals(
+            byteArrayOf(0, 0, 0, 1, 0x3F, 0xF0.toByte(), 0, 0, 0, 0, 0, 0),
+            DoubleArrayEncoder().encode(doubleArrayOf(1.0)),
+        )
+    }
+
+    @Test
+    fun `little endian primitive array encoders write the size and the elements in little endian`() {
+        assertArrayEquals(
+            byteArrayOf(2, 0, 0, 0, 1, 0, 0, 0, -2, -1, -1, -1),
+            IntArrayEncoder(ByteOrder.LITTLE_ENDIAN).encode(intArrayOf(1, -2)),
+        )
+        assertArrayEquals(
+            byteArrayOf(1, 0, 0, 0, 0, 0, 0x80.toByte(), 0x3F),
+            FloatArrayEncoder(ByteOrder.LITTLE_ENDIAN).encode(floatArrayOf(1f)),
+        )
+        assertArrayEquals(
+            byteArrayOf(1, 0x02, 0x01),
+            ShortArrayEncoder(ByteOrder.LITTLE_ENDIAN, VarIntEncoder()).encode(shortArrayOf(0x0102)),
+        )
+    }
+
+    @Test
+    fun `primitive array encoders write large arrays`() {
+        val array = FloatArray(10_000) { it * 0.5f }
+        val bytes = FloatArrayEncoder().encode(array)
+        assertEquals(4 + 4 * array.size, bytes.size)
+        array.forEachIndexed { index, value -> assertEquals(value, bytes.readFloat(start = 4 + 4 * index)) }
+    }
+
+    @Test
+    fun `primitive array encoders encoded sizes are exact`() {
+        assertEquals(4L, IntArrayEncoder().encodedSize(IntArray(0)))
+        assertEquals(1L + 8 * 100, LongArrayEncoder(sizeEncoder = VarIntEncoder()).encodedSize(LongArray(100)))
+        val doubles = DoubleArray(33)
+        assertEquals(DoubleArrayEncoder().encode(doubles).size.toLong(), DoubleArrayEncoder().encodedSize(doubles))
+        val booleans = BooleanArray(3)
+        assertEquals(BooleanArrayEncoder().encode(booleans).size.toLong(), BooleanArrayEncoder().encodedSize(booleans))
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.kamelia.sprinkler.transcoder.binary.encoder
 
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
 import com.kamelia.sprinkler.util.readInt
 import com.kamelia.sprinkler.util.readLong
 import com.kamelia.sprinkler.util.readString
@@ -208,4 +209,35 @@ class CommonEncodersTest {
         )
     }
 
+    @Test
+    fun `common encoders encoded sizes are exact`() {
+        val dateTime = LocalDateTime.of(2024, 2, 29, 13, 37, 42, 123)
+        val zoned = ZonedDateTime.of(dateTime, ZoneId.of("Europe/Paris"))
+        assertEncodedSize(UUIDEncoder(VarLongEncoder()), UUID.randomUUID())
+        assertEncodedSize(UUIDStringEncoder(), UUID.randomUUID())
+        assertEncodedSize(PairEncoder(IntEncoder(), UTF8StringEncoder()), 1 to "one")
+        assertEncodedSize(InstantEncoder(), zoned.toInstant())
+        assertEncodedSize(InstantEncoder(true, VarLongEncoder()), zoned.toInstant())
+        assertEncodedSize(LocalTimeEncoder(true, VarIntEncoder()), dateTime.toLocalTime())
+        assertEncodedSize(LocalDateEncoder(ZigZagVarIntEncoder()), dateTime.toLocalDate())
+        assertEncodedSize(LocalDateTimeEncoder(), dateTime)
+        assertEncodedSize(DateEncoder(), Date())
+        assertEncodedSize(ZoneIdEncoder(), zoned.zone)
+        assertEncodedSize(ZonedDateTimeEncoder(), zoned)
+    }
+
+    @Test
+    fun `common encoders of fixed size encoders return a constant encoded size`() {
+        assertEquals(16L, UUIDEncoder().encodedSize(UUID.randomUUID()))
+        assertEquals(12L, PairEncoder(IntEncoder(), LongEncoder()).encodedSize(1 to 2L))
+        assertEquals(16L, InstantEncoder(true).encodedSize(Instant.now()))
+        assertEquals(12L, LocalTimeEncoder().encodedSize(LocalTime.NOON))
+        assertEquals(16L, LocalTimeEncoder(true).encodedSize(LocalTime.NOON))
+        assertEquals(24L, LocalDateTimeEncoder().encodedSize(LocalDateTime.MIN))
+    }
+
+    private fun <T> assertEncodedSize(encoder: Encoder<T>, obj: T) {
+        assertEquals(encoder.encode(obj).size.toLong(), encoder.encodedSize(obj))
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.kamelia.sprinkler.transcoder.binary.encoder
 
 import com.kamelia.sprinkler.util.readInt
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
 import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
@@ -146,4 +147,61 @@ class EncoderUtilsTest {
         assertEquals(0, array[0])
     }
 
+    @Test
+    fun `collection encoders size hints are exact`() {
+        val list = listOf("a", "bc", "d\u00E9f")
+        val collection = UTF8StringEncoder().toCollection()
+        assertEquals(collection.encode(list).size, collection.sizeHint(list))
+        val iterable = IntEncoder().toIterable(-1)
+        assertEquals(16, iterable.sizeHint(listOf(1, 2, 3)))
+        val array = IntEncoder().toArray(VarIntEncoder())
+        assertEquals(9, array.sizeHint(arrayOf(1, 2)))
+        val map = UTF8StringEncoder().toMap(IntEncoder())
+        val mapValue = mapOf("a" to 1, "bb" to 2)
+        assertEquals(map.encode(mapValue).size, map.sizeHint(mapValue))
+        val optional = IntEncoder().toOptional()
+        assertEquals(1, optional.sizeHint(null))
+        assertEquals(5, optional.sizeHint(1))
+    }
+
+    @Test
+    fun `collection encoders size hints are unknown when an element size is unknown`() {
+        val unknown = Encoder<Int> { obj, output -> output.write(obj) }
+        assertEquals(-1, unknown.toCollection().sizeHint(listOf(1, 2)))
+        assertEquals(4, unknown.toCollection().sizeHint(emptyList()))
+        assertEquals(-1, IntEncoder().toCollection(unknown).sizeHint(listOf(1)))
+        assertEquals(-1, unknown.withMappedInput<Int, String>(String::length).sizeHint("a"))
+    }
+
+    @Test
+    fun `collection encoders encoded sizes are exact`() {
+        val strings = listOf("a", "bc", "d\u00E9f")
+        val collection = UTF16StringEncoder().toCollection(VarIntEncoder())
+        assertEquals(collection.encode(strings).size.toLong(), collection.encodedSize(strings))
+        val iterable = UTF16StringEncoder().toIterable("")
+        assertEquals(iterable.encode(strings.asSequence().asIterable()).size.toLong(), iterable.encodedSize(strings))
+        val map = IntEncoder().toMap(UTF8StringEncoder(), -1 to "")
+        val mapValue = mapOf(1 to "one", 2 to "two")
+        assertEquals(map.encode(mapValue).size.toLong(), map.encodedSize(mapValue))
+        val pairMap = (VarIntEncoder() and IntEncoder()).toMap()
+        assertEquals(pairMap.encode(mapOf(300 to 1)).size.toLong(), pairMap.encodedSize(mapOf(300 to 1)))
+    }
+
+    @Test
+    fun `collection encoders of fixed size elements do not iterate the elements`() {
+        val huge = object : AbstractList<Long>() {
+            override val size: Int = Int.MAX_VALUE
+            override fun get(index: Int): Long = throw AssertionError("the elements should not be accessed")
+            override fun iterator(): Iterator<Long> = throw AssertionError("the elements should not be iterated")
+        }
+        assertEquals(4L + 8L * Int.MAX_VALUE, LongEncoder().toCollection().encodedSize(huge))
+        assertEquals(8L * Int.MAX_VALUE + 8L, LongEncoder().toIterable(0L).encodedSize(huge))
+
+        val map = mapOf(1 to 2L, 3 to 4L)
+        assertEquals(28L, (IntEncoder() and LongEncoder()).toMap().encodedSize(map))
+        assertEquals(36L, IntEncoder().toMap(LongEncoder(), 0 to 0L).encodedSize(map))
+        val lengths = IntEncoder().withMappedInput<Int, String>(String::length).toArray(VarIntEncoder())
+        assertEquals(5L, lengths.encodedSize(arrayOf("abc")))
+    }
+
 }
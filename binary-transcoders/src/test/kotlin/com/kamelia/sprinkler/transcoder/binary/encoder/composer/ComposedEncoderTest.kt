@@ -7,11 +7,15 @@ import com.kamelia.sprinkler.transcoder.binary.encoder.FloatEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.LongEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.ShortEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF16StringEncoder
 import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.VarIntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.toCollection
 import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
-import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
 import java.nio.ByteOrder
+import java.util.concurrent.Executors
 import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertThrows
 
@@ -176,6 +180,26 @@ class ComposedEncoderTest {
         assertArrayEquals(expected, array)
     }
 
+    @Test
+    fun `size encoder is used for collections and strings`() {
+        val node = RecurseWithCollection(1, listOf(RecurseWithCollection(2, listOf())))
+
+        val encoder = composedEncoder<RecurseWithCollection>(sizeEncoder = VarIntEncoder()) {
+            encode(it.value)
+            encode(it.collection)
+            encode("a")
+        }
+
+        val array = encoder.encode(node)
+
+        val expected = byteArrayOf(
+            1, 1,
+            2, 0, 1, 'a'.code.toByte(),
+            1, 'a'.code.toByte(),
+        )
+        assertArrayEquals(expected, array)
+    }
+
     @Test
     fun `encoding using encodeSelf works correctly`() {
         val encoder = composedEncoder<CustomNode> {
@@ -211,19 +235,216 @@ class ComposedEncoderTest {
     }
 
     @Test
-    fun `test impossible case for coverage`() {
-        val impl = EncodingScopeImpl<Any>(
-            EncoderOutput.Companion.from { },
-            ArrayList(),
-            ArrayDeque(),
-            HashMap(),
-            ByteOrder.BIG_ENDIAN,
-            { _, _ -> }
+    fun `nested recursive collections are encoded depth first`() {
+        val node = RecurseWithCollection(
+            1,
+            listOf(
+                RecurseWithCollection(2, listOf(RecurseWithCollection(3, listOf()))),
+                RecurseWithCollection(4, listOf()),
+            )
         )
 
-        assertThrows<AssertionError> {
-            impl.encode("Hello World!")
+        val encoder = composedEncoder<RecurseWithCollection>(sizeEncoder = VarIntEncoder()) {
+            encode(it.value)
+            encode(it.collection)
+            encode(9.toByte())
+        }
+
+        val expected = byteArrayOf(
+            1, 2,
+              2, 1,
+                3, 0, 9,
+              9,
+              4, 0, 9,
+            9,
+        )
+        assertArrayEquals(expected, encoder.encode(node))
+    }
+
+    @Test
+    fun `deep recursive objects are encoded without exhausting the stack`() {
+        var node = Node(0)
+        repeat(100_000) { node = Node(((it + 1) % 100).toByte(), node) }
+
+        val encoder = composedEncoder<Node> {
+            encode(it.value)
+            encode(it.next)
+        }
+
+        val array = encoder.encode(node)
+        assertEquals(2 * 100_001, array.size)
+        assertEquals(0.toByte(), array.last())
+    }
+
+    @Test
+    fun `encoding throws when the maximum depth is exceeded`() {
+        val encoder = composedEncoder<Node>(maxDepth = 2) {
+            encode(it.value)
+            encode(it.next)
         }
+
+        assertArrayEquals(byteArrayOf(1, 1, 2, 1, 3, 0), encoder.encode(Node(1, Node(2, Node(3)))))
+        assertThrows<IllegalStateException> { encoder.encode(Node(1, Node(2, Node(3, Node(4))))) }
+    }
+
+    @Test
+    fun `composed encoder throws on negative maximum depth`() {
+        assertThrows<IllegalArgumentException> { composedEncoder<Node>(maxDepth = -1) { } }
+    }
+
+    @Test
+    fun `primitives are encoded with the given endianness`() {
+        val numbers = BasicTypes(1, 2, 3, 4, 5.0f, 6.0, true, "a")
+
+        val baseEncoder = Encoder<BasicTypes> { obj, output ->
+            ByteEncoder().encode(obj.byte, output)
+            ShortEncoder(ByteOrder.LITTLE_ENDIAN).encode(obj.short, output)
+            IntEncoder(ByteOrder.LITTLE_ENDIAN).encode(obj.int, output)
+            LongEncoder(ByteOrder.LITTLE_ENDIAN).encode(obj.long, output)
+            FloatEncoder(ByteOrder.LITTLE_ENDIAN).encode(obj.float, output)
+            DoubleEncoder(ByteOrder.LITTLE_ENDIAN).encode(obj.double, output)
+            BooleanEncoder().encode(obj.boolean, output)
+            UTF8StringEncoder(IntEncoder(ByteOrder.LITTLE_ENDIAN)).encode(obj.string, output)
+        }
+
+        val composedEncoder = composedEncoder<BasicTypes>(ByteOrder.LITTLE_ENDIAN) {
+            encode(it.byte)
+            encode(it.short)
+            encode(it.int)
+            encode(it.long)
+            encode(it.float)
+            encode(it.double)
+            encode(it.boolean)
+            encode(it.string)
+        }
+
+        assertArrayEquals(baseEncoder.encode(numbers), composedEncoder.encode(numbers))
+    }
+
+    @Test
+    fun `primitives recorded after a recursion are encoded with the given endianness`() {
+        class Link(val next: Link?, val short: Short, val long: Long, val double: Double)
+
+        val encoder = composedEncoder<Link>(ByteOrder.LITTLE_ENDIAN) {
+            encode(it.next)
+            encode(it.short)
+            encode(it.long)
+            encode(it.double)
+        }
+
+        val expected = byteArrayOf(1, 0) +
+            ShortEncoder(ByteOrder.LITTLE_ENDIAN).encode(2) +
+            LongEncoder(ByteOrder.LITTLE_ENDIAN).encode(3L) +
+            DoubleEncoder(ByteOrder.LITTLE_ENDIAN).encode(4.0) +
+            ShortEncoder(ByteOrder.LITTLE_ENDIAN).encode(1) +
+            LongEncoder(ByteOrder.LITTLE_ENDIAN).encode(1L) +
+            DoubleEncoder(ByteOrder.LITTLE_ENDIAN).encode(1.0)
+        assertArrayEquals(expected, encoder.encode(Link(Link(null, 2, 3L, 4.0), 1, 1L, 1.0)))
+    }
+
+    @Test
+    fun `encoder can be used recursively inside its own block`() {
+        lateinit var encoder: Encoder<Node>
+        encoder = composedEncoder {
+            encode(it.value)
+            val next = it.next
+            if (next != null) {
+                encode(next, encoder)
+            }
+        }
+
+        assertArrayEquals(byteArrayOf(1, 2, 3), encoder.encode(Node(1, Node(2, Node(3)))))
+    }
+
+    @Test
+    fun `encoder is reusable after an exception`() {
+        val encoder = composedEncoder<Node> {
+            encode(it.value)
+            encode(it.next)
+            check(it.value >= 0)
+        }
+
+        assertThrows<IllegalStateException> { encoder.encode(Node(1, Node(-1))) }
+        assertArrayEquals(byteArrayOf(1, 1, 2, 0), encoder.encode(Node(1, Node(2))))
+    }
+
+    @Test
+    fun `encoder can be used concurrently`() {
+        val encoder = composedEncoder<RecurseWithCollection> {
+            encode(it.value)
+            encode(it.collection)
+        }
+        val node = RecurseWithCollection(1, List(10) { RecurseWithCollection(it.toByte(), listOf()) })
+        val expected = encoder.encode(node)
+
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val results = List(8) { executor.submit<List<ByteArray>> { List(500) { encoder.encode(node) } } }
+            results.forEach { future -> future.get().forEach { assertArrayEquals(expected, it) } }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun `size hint is exact for recursive objects`() {
+        val encoder = composedEncoder<RecurseWithCollection> {
+            encode(it.value)
+            encode(it.collection)
+            encode("é")
+        }
+        val node = RecurseWithCollection(1, List(3) { RecurseWithCollection(it.toByte(), listOf()) })
+
+        assertEquals(encoder.encode(node).size, encoder.sizeHint(node))
+    }
+
+    @Test
+    fun `size hint is exact for deep recursive objects`() {
+        val encoder = composedEncoder<TreeNode> {
+            encode(it.value)
+            encode(it.left)
+            encode(it.right)
+        }
+        var node = TreeNode(0)
+        repeat(10_000) { node = TreeNode(it.toByte(), node, TreeNode(1)) }
+
+        assertEquals(encoder.encode(node).size, encoder.sizeHint(node))
+    }
+
+    @Test
+    fun `size hint is unknown when an encoder has no size hint`() {
+        val unknown = Encoder<Int> { obj, output -> output.write(obj) }
+        val encoder = composedEncoder<Node> {
+            encode(it.value)
+            encode(it.value.toInt(), unknown)
+            encode(it.next)
+        }
+
+        assertEquals(-1, encoder.sizeHint(Node(1, Node(2))))
+        assertArrayEquals(byteArrayOf(1, 1, 1, 2, 2, 0), encoder.encode(Node(1, Node(2))))
+    }
+
+    @Test
+    fun `size hint uses the size hints of the nested encoders`() {
+        val encoder = composedEncoder<Node>(sizeEncoder = VarIntEncoder()) {
+            encode(it.value, ByteEncoder())
+            encode(listOf(1, 2), IntEncoder().toCollection(VarIntEncoder()))
+        }
+
+        assertEquals(10, encoder.sizeHint(Node(1)))
+    }
+
+    @Test
+    fun `encoded size is exact with encoders of other charsets`() {
+        val encoder = composedEncoder<Node>(stringEncoder = UTF16StringEncoder()) {
+            encode(it.value)
+            encode("n\u00F6de")
+            encode(it.next)
+        }
+        val node = Node(1, Node(2))
+
+        assertEquals(encoder.encode(node).size.toLong(), encoder.encodedSize(node))
+        assertEquals(encoder.encode(node).size, encoder.sizeHint(node))
     }
 
 }
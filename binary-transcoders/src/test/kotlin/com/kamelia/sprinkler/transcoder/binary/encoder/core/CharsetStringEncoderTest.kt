@@ -0,0 +1,74 @@
+package com.kamelia.sprinkler.transcoder.binary.encoder.core
+
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.util.readInt
+import java.nio.charset.Charset
+import java.util.stream.Stream
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.Arguments
+import org.junit.jupiter.params.provider.MethodSource
+
+class CharsetStringEncoderTest {
+
+    @ParameterizedTest
+    @MethodSource("charsetsAndStrings")
+    fun `size prefixed encoding produces the same bytes as toByteArray`(charset: Charset, string: String) {
+        val bytes = CharsetStringEncoder(charset, IntEncoder()).encode(string)
+        val expected = string.toByteArray(charset)
+        assertEquals(expected.size, bytes.readInt())
+        assertArrayEquals(expected, bytes.copyOfRange(Int.SIZE_BYTES, bytes.size))
+    }
+
+    @ParameterizedTest
+    @MethodSource("charsetsAndStrings")
+    fun `end marker encoding produces the same bytes as toByteArray`(charset: Charset, string: String) {
+        val marker = byteArrayOf(0, 0)
+        val bytes = CharsetStringEncoder(charset, marker).encode(string)
+        assertArrayEquals(string.toByteArray(charset) + marker, bytes)
+    }
+
+    @Test
+    fun `utf8Length returns the size of the utf8 encoding`() {
+        strings().forEach {
+            assertEquals(it.toByteArray(Charsets.UTF_8).size, CharsetStringEncoder.utf8Length(it), it)
+        }
+    }
+
+    @Test
+    fun `encoder can be reused for strings of different sizes`() {
+        val encoder = CharsetStringEncoder(Charsets.UTF_16LE, IntEncoder())
+        listOf("a".repeat(5000), "b", "c".repeat(3000)).forEach {
+            val bytes = encoder.encode(it)
+            assertArrayEquals(it.toByteArray(Charsets.UTF_16LE), bytes.copyOfRange(Int.SIZE_BYTES, bytes.size))
+        }
+    }
+
+    private companion object {
+
+        @JvmStatic
+        fun strings(): List<String> = listOf(
+            "",
+            "Hello, world!",
+            "café crème brûlée",
+            "ЖИВОЙ 世界 €",
+            "emoji 😀 and 🎉",
+            "unpaired \ud83d high and \ude00 low surrogates\ud83d",
+            "é".repeat(700) + "x".repeat(1500) + "😀".repeat(300),
+        )
+
+        @JvmStatic
+        fun charsetsAndStrings(): Stream<Arguments> = listOf(
+            Charsets.UTF_8,
+            Charsets.US_ASCII,
+            Charsets.ISO_8859_1,
+            Charsets.UTF_16,
+            Charsets.UTF_16LE,
+            Charset.forName("windows-1252"),
+        ).flatMap { charset -> strings().map { Arguments.of(charset, it) } }.stream()
+
+    }
+
+}
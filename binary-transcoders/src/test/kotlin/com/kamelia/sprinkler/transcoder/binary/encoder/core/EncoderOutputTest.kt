@@ -1,8 +1,22 @@
 package com.kamelia.sprinkler.transcoder.binary.encoder.core
 
+import com.kamelia.sprinkler.transcoder.binary.common.BitOrder
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
+import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.ReadOnlyBufferException
+import java.nio.channels.Channels
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+import org.junit.jupiter.api.Assertions.assertSame
 import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.assertDoesNotThrow
 import org.junit.jupiter.api.assertThrows
@@ -409,4 +423,509 @@ class EncoderOutputTest {
         assertEquals(mutableListOf(0b1011_0111.toByte(), 0b1111_1001.toByte(), 0b1000_0000.toByte()), list)
     }
 
+    @Test
+    fun `write bits from long works correctly`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream)
+        output.writeBitsFromLong(0b101, 3)
+        output.writeBitsFromLong(0x1F_FFFF_FFFFL, 37)
+        output.flush()
+        assertArrayEquals(byteArrayOf(-65, -1, -1, -1, -1), stream.toByteArray())
+    }
+
+    @Test
+    fun `write bits from long writes 64 bits`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream)
+        output.writeBit(1)
+        output.writeBitsFromLong(0x0123_4567_89AB_CDEFL, 64)
+        output.flush()
+        val expected = byteArrayOf(0x80.toByte(), 0x91.toByte(), 0xA2.toByte(), 0xB3.toByte(), 0xC4.toByte(), 0xD5.toByte(), 0xE6.toByte(), 0xF7.toByte(), 0x80.toByte())
+        assertArrayEquals(expected, stream.toByteArray())
+    }
+
+    @Test
+    fun `write bits from long throws on invalid number of bits`() {
+        val output = EncoderOutput.from(ByteArrayOutputStream())
+        assertThrows<IllegalArgumentException> { output.writeBitsFromLong(0, -1) }
+        assertThrows<IllegalArgumentException> { output.writeBitsFromLong(0, 65) }
+    }
+
+    @Test
+    fun `lsb first output writes bits starting from the least significant bit`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream, BitOrder.LSB_FIRST)
+        output.writeBit(1)
+        output.writeBit(0)
+        output.writeBit(1)
+        output.flush()
+        assertArrayEquals(byteArrayOf(0b101), stream.toByteArray())
+    }
+
+    @Test
+    fun `lsb first output writes bits from long starting from the least significant bit`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream, BitOrder.LSB_FIRST)
+        output.writeBitsFromLong(0b011, 3)
+        output.writeBitsFromLong(0b1_0110, 5)
+        output.writeBitsFromLong(0x3FF, 10)
+        output.flush()
+        assertArrayEquals(byteArrayOf(0b1011_0011.toByte(), -1, 0b11), stream.toByteArray())
+    }
+
+    @Test
+    fun `lsb first output keeps aligned bytes unchanged`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream, BitOrder.LSB_FIRST)
+        output.write(0x5A)
+        output.writeBits(0x0F, 0, 4) // bits 0 to 3, i.e. the lowest nibble
+        output.write(0xC3)
+        output.writeBits(0xF0, 4, 4) // bits 4 to 7, i.e. the highest nibble
+        assertArrayEquals(byteArrayOf(0x5A, 0x3F, 0xFC.toByte()), stream.toByteArray())
+    }
+
+    @Test
+    fun `byte array output grows and keeps the written bytes`() {
+        val output = EncoderOutput.toByteArray(2)
+        output.write(1)
+        output.write(byteArrayOf(2, 3, 4, 5))
+        output.write(6)
+        assertEquals(6, output.size)
+        assertArrayEquals(byteArrayOf(1, 2, 3, 4, 5, 6), output.toByteArray())
+        assertArrayEquals(byteArrayOf(1, 2, 3, 4, 5, 6), output.array().copyOf(output.size))
+    }
+
+    @Test
+    fun `byte array output exposes its internal array without copy`() {
+        val output = EncoderOutput.toByteArray(4)
+        output.write(byteArrayOf(1, 2, 3, 4))
+        val array = output.array()
+        assertSame(array, output.array())
+        assertArrayEquals(byteArrayOf(1, 2, 3, 4), array)
+    }
+
+    @Test
+    fun `byte array output writes bits`() {
+        val output = EncoderOutput.toByteArray(0)
+        output.writeBit(1)
+        output.write(0xFF)
+        assertEquals(1, output.size)
+        output.flush()
+        assertArrayEquals(byteArrayOf(0xFF.toByte(), 0x80.toByte()), output.toByteArray())
+    }
+
+    @Test
+    fun `lsb first byte array output writes bits starting from the least significant bit`() {
+        val output = EncoderOutput.toByteArray(order = BitOrder.LSB_FIRST)
+        output.writeBitsFromLong(0b011, 3)
+        output.writeBitsFromLong(0b1_0110, 5)
+        output.flush()
+        assertArrayEquals(byteArrayOf(0b1011_0011.toByte()), output.toByteArray())
+    }
+
+    @Test
+    fun `byte array output reset discards the written bytes and bits`() {
+        val output = EncoderOutput.toByteArray()
+        output.write(byteArrayOf(1, 2, 3))
+        output.writeBit(1)
+        output.reset()
+        output.write(4)
+        output.flush()
+        assertArrayEquals(byteArrayOf(4), output.toByteArray())
+    }
+
+    @Test
+    fun `byte array output throws on negative initial capacity`() {
+        assertThrows<IllegalArgumentException> { EncoderOutput.toByteArray(-1) }
+    }
+
+    @Test
+    fun `default primitive writes use the given byte order`() {
+        val stream = ByteArrayOutputStream()
+        val output = object : EncoderOutput {
+            val delegate = EncoderOutput.from(stream)
+            override fun writeBit(bit: Int) = delegate.writeBit(bit)
+            override fun flush() = delegate.flush()
+        }
+        output.writeShort(0x0102, ByteOrder.BIG_ENDIAN)
+        output.writeInt(0x0304_0506, ByteOrder.LITTLE_ENDIAN)
+        output.writeLong(0x0708_090A_0B0C_0D0EL, ByteOrder.BIG_ENDIAN)
+        output.writeFloat(Float.fromBits(0x0F10_1112), ByteOrder.LITTLE_ENDIAN)
+        output.writeDouble(Double.fromBits(0x1314_1516_1718_191AL), ByteOrder.BIG_ENDIAN)
+        output.flush()
+        assertArrayEquals(primitivesBytes(), stream.toByteArray())
+    }
+
+    @Test
+    fun `stream output writes primitives`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream)
+        writePrimitives(output)
+        output.flush()
+        assertArrayEquals(primitivesBytes(), stream.toByteArray())
+    }
+
+    @Test
+    fun `byte array output writes primitives`() {
+        val output = EncoderOutput.toByteArray(0)
+        writePrimitives(output)
+        assertArrayEquals(primitivesBytes(), output.toByteArray())
+    }
+
+    @Test
+    fun `byte array output writes primitives after pending bits`() {
+        val output = EncoderOutput.toByteArray()
+        output.writeBitsFromLong(0b1010, 4)
+        output.writeInt(0x1234_5678, ByteOrder.BIG_ENDIAN)
+        output.writeBitsFromLong(0b0101, 4)
+        val bytes = byteArrayOf(0xA1.toByte(), 0x23, 0x45, 0x67, 0x85.toByte())
+        assertArrayEquals(bytes, output.toByteArray())
+    }
+
+    @Test
+    fun `heap byte buffer output writes primitives and advances the buffer`() {
+        val buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN)
+        buffer.put(42)
+        writePrimitives(EncoderOutput.from(buffer))
+        assertEquals(1 + primitivesBytes().size, buffer.position())
+        assertArrayEquals(byteArrayOf(42) + primitivesBytes(), buffer.array().copyOf(buffer.position()))
+    }
+
+    @Test
+    fun `direct byte buffer output writes bytes and bits`() {
+        val buffer = ByteBuffer.allocateDirect(64)
+        val output = EncoderOutput.from(buffer)
+        writePrimitives(output)
+        output.write(byteArrayOf(1, 2, 3))
+        output.writeBit(1)
+        output.flush()
+        val expected = primitivesBytes() + byteArrayOf(1, 2, 3, 0x80.toByte())
+        assertArrayEquals(expected, ByteArray(buffer.position()).also { buffer.flip().get(it) })
+    }
+
+    @Test
+    fun `byte buffer output throws on overflow by default`() {
+        val buffer = ByteBuffer.allocate(6)
+        val output = EncoderOutput.from(buffer)
+        output.writeShort(0x0102, ByteOrder.BIG_ENDIAN)
+        assertThrows<BufferOverflowException> { output.writeLong(0L, ByteOrder.BIG_ENDIAN) }
+        assertEquals(6, buffer.position())
+    }
+
+    @Test
+    fun `byte buffer output passes the full buffer to the overflow handler`() {
+        val drained = ByteArrayOutputStream()
+        val output = EncoderOutput.from(ByteBuffer.allocate(5)) {
+            it.flip()
+            while (it.hasRemaining()) drained.write(it.get().toInt())
+            it.clear()
+        }
+        writePrimitives(output)
+        output.write(ByteArray(12) { it.toByte() })
+        val expected = primitivesBytes() + ByteArray(12) { it.toByte() }
+        val tail = expected.size % 5
+        assertArrayEquals(expected.copyOf(expected.size - tail), drained.toByteArray())
+    }
+
+    @Test
+    fun `byte buffer output can grow the buffer on overflow`() {
+        var buffer = ByteBuffer.allocate(1)
+        val output = EncoderOutput.from(buffer) {
+            buffer = ByteBuffer.allocate(it.capacity() * 2).put(it.flip())
+            buffer
+        }
+        writePrimitives(output)
+        assertArrayEquals(primitivesBytes(), buffer.array().copyOf(buffer.position()))
+    }
+
+    @Test
+    fun `byte buffer output throws on read only buffer`() {
+        assertThrows<ReadOnlyBufferException> { EncoderOutput.from(ByteBuffer.allocate(1).asReadOnlyBuffer()) }
+    }
+
+    @Test
+    fun `channel output writes its buffer when full and on flush`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(Channels.newChannel(stream), bufferSize = 8)
+        writePrimitives(output)
+        assertEquals(24, stream.size()) // 3 full buffers
+        output.flush()
+        assertArrayEquals(primitivesBytes(), stream.toByteArray())
+    }
+
+    @Test
+    fun `channel output writes large arrays directly after its buffer`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(Channels.newChannel(stream), bufferSize = 8)
+        val large = ByteArray(100) { it.toByte() }
+        output.write(1)
+        output.write(large)
+        output.write(2)
+        assertEquals(101, stream.size())
+        output.flush()
+        assertArrayEquals(byteArrayOf(1) + large + byteArrayOf(2), stream.toByteArray())
+    }
+
+    @Test
+    fun `channel output throws on too small buffer`() {
+        assertThrows<IllegalArgumentException> {
+            EncoderOutput.from(Channels.newChannel(ByteArrayOutputStream()), bufferSize = 7)
+        }
+    }
+
+    @Test
+    fun `byte array output acquires its arrays from the pool and releases them`() {
+        val pool = BufferPool.create()
+        val output = EncoderOutput.toByteArray(10, pool = pool)
+        val first = output.array()
+        assertEquals(64, first.size)
+        output.write(ByteArray(100) { it.toByte() })
+        val second = output.array()
+        assertEquals(128, second.size)
+        assertSame(first, pool.acquire(64))
+        assertArrayEquals(ByteArray(100) { it.toByte() }, output.toByteArray())
+        output.close()
+        assertSame(second, pool.acquire(128))
+    }
+
+    @Test
+    fun `byte array output can be used after being closed`() {
+        val output = EncoderOutput.toByteArray(pool = BufferPool.create())
+        output.write(1)
+        output.writeBits(1, 1)
+        output.close()
+        assertEquals(0, output.size)
+        output.write(2)
+        output.flush()
+        assertArrayEquals(byteArrayOf(2), output.toByteArray())
+    }
+
+    @Test
+    fun `channel output releases its buffer on flush`() {
+        val pool = BufferPool.create()
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(Channels.newChannel(stream), bufferSize = 8, pool = pool)
+        writePrimitives(output)
+        output.flush()
+        assertArrayEquals(primitivesBytes(), stream.toByteArray())
+        val buffer = pool.acquireDirect(8)
+        assertEquals(64, buffer.capacity())
+        pool.releaseDirect(buffer)
+        output.write(1)
+        output.flush()
+        assertArrayEquals(primitivesBytes() + 1, stream.toByteArray())
+        assertSame(buffer, pool.acquireDirect(8))
+    }
+
+    @Test
+    fun `default array writes write the elements one by one`() {
+        val output = EncoderOutput.toByteArray()
+        val reference = elementsOutput(output)
+        reference.writeInts(intArrayOf(0, 0x0102_0304, 0x0506_0708), 1, 2, ByteOrder.LITTLE_ENDIAN)
+        reference.writeChars(charArrayOf('a', '\u20AC'), 0, 2, ByteOrder.BIG_ENDIAN)
+        val expected = byteArrayOf(0x04, 0x03, 0x02, 0x01, 0x08, 0x07, 0x06, 0x05, 0x00, 0x61, 0x20, 0xAC.toByte())
+        assertArrayEquals(expected, output.toByteArray())
+    }
+
+    @Test
+    fun `array writes throw on invalid range`() {
+        val output = EncoderOutput.toByteArray()
+        assertThrows<IndexOutOfBoundsException> { output.writeInts(IntArray(2), 1, 2, ByteOrder.BIG_ENDIAN) }
+        assertThrows<IndexOutOfBoundsException> { output.writeDoubles(DoubleArray(2), -1, 1, ByteOrder.BIG_ENDIAN) }
+        assertThrows<IndexOutOfBoundsException> {
+            elementsOutput(output).writeShorts(ShortArray(2), 0, 3, ByteOrder.BIG_ENDIAN)
+        }
+        assertEquals(0, output.size)
+    }
+
+    @Test
+    fun `stream output writes arrays larger than its scratch array`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(stream)
+        writeArrays(output)
+        output.flush()
+        assertArrayEquals(arraysBytes(), stream.toByteArray())
+    }
+
+    @Test
+    fun `byte array output writes arrays`() {
+        val output = EncoderOutput.toByteArray(0)
+        writeArrays(output)
+        assertArrayEquals(arraysBytes(), output.toByteArray())
+    }
+
+    @Test
+    fun `byte array output writes arrays after pending bits`() {
+        val output = EncoderOutput.toByteArray()
+        output.writeBitsFromLong(0b1010, 4)
+        output.writeShorts(shortArrayOf(0x1234, 0x5678), 0, 2, ByteOrder.BIG_ENDIAN)
+        output.writeBitsFromLong(0b0101, 4)
+        val bytes = byteArrayOf(0xA1.toByte(), 0x23, 0x45, 0x67, 0x85.toByte())
+        assertArrayEquals(bytes, output.toByteArray())
+    }
+
+    @Test
+    fun `heap and direct byte buffer outputs write arrays`() {
+        val expected = arraysBytes()
+        listOf(ByteBuffer.allocate(expected.size), ByteBuffer.allocateDirect(expected.size)).forEach { buffer ->
+            writeArrays(EncoderOutput.from(buffer))
+            assertEquals(expected.size, buffer.position())
+            assertArrayEquals(expected, ByteArray(buffer.position()).also { buffer.flip().get(it) })
+        }
+    }
+
+    @Test
+    fun `byte buffer output writes arrays whose elements are split across overflows`() {
+        val drained = ByteArrayOutputStream()
+        val buffer = ByteBuffer.allocate(7)
+        val output = EncoderOutput.from(buffer) {
+            it.flip()
+            while (it.hasRemaining()) drained.write(it.get().toInt())
+            it.clear()
+        }
+        writeArrays(output)
+        buffer.flip()
+        while (buffer.hasRemaining()) drained.write(buffer.get().toInt())
+        assertArrayEquals(arraysBytes(), drained.toByteArray())
+    }
+
+    @Test
+    fun `channel output writes arrays`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.from(Channels.newChannel(stream), 16)
+        writeArrays(output)
+        output.flush()
+        assertArrayEquals(arraysBytes(), stream.toByteArray())
+    }
+
+    @Test
+    fun `deflating output is readable by an inflater stream`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.deflating(EncoderOutput.from(stream), bufferSize = 16)
+        writePrimitives(output)
+        writeArrays(output)
+        output.close()
+
+        val inflated = InflaterInputStream(ByteArrayInputStream(stream.toByteArray())).readAllBytes()
+        assertArrayEquals(primitivesBytes() + arraysBytes(), inflated)
+    }
+
+    @Test
+    fun `deflating output compresses large arrays directly`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.deflating(EncoderOutput.from(stream), bufferSize = 16)
+        val bytes = ByteArray(10_000) { (it % 7).toByte() }
+        output.write(1)
+        output.write(bytes)
+        output.close()
+
+        val inflated = InflaterInputStream(ByteArrayInputStream(stream.toByteArray())).readAllBytes()
+        assertArrayEquals(byteArrayOf(1) + bytes, inflated)
+        assertTrue(stream.size() < 200)
+    }
+
+    @Test
+    fun `deflating output flush makes the written bytes decompressible`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.deflating(EncoderOutput.from(stream))
+        output.write(byteArrayOf(1, 2, 3))
+        output.writeBits(0b1010_0000, 3)
+        output.flush()
+
+        val inflater = Inflater()
+        inflater.setInput(stream.toByteArray())
+        val inflated = ByteArray(8)
+        assertEquals(4, inflater.inflate(inflated))
+        assertFalse(inflater.finished())
+        assertArrayEquals(byteArrayOf(1, 2, 3, 0b1010_0000.toByte()), inflated.copyOf(4))
+        inflater.end()
+    }
+
+    @Test
+    fun `deflating output compresses each frame with its own level`() {
+        val stream = ByteArrayOutputStream()
+        val output = EncoderOutput.deflating(EncoderOutput.from(stream), level = Deflater.NO_COMPRESSION)
+        val bytes = ByteArray(10_000)
+        output.write(bytes)
+        output.finishFrame(Deflater.BEST_COMPRESSION)
+        val firstFrameSize = stream.size()
+        assertEquals(Deflater.BEST_COMPRESSION, output.level)
+        output.write(bytes)
+        output.close()
+
+        assertTrue(firstFrameSize > bytes.size)
+        assertTrue(stream.size() - firstFrameSize < 100)
+        val first = InflaterInputStream(ByteArrayInputStream(stream.toByteArray(), 0, firstFrameSize)).readAllBytes()
+        assertArrayEquals(bytes, first)
+    }
+
+    @Test
+    fun `deflating output throws on invalid level`() {
+        assertThrows<IllegalArgumentException> { EncoderOutput.deflating(EncoderOutput.nullOutput(), level = 10) }
+        val output = EncoderOutput.deflating(EncoderOutput.nullOutput())
+        assertThrows<IllegalArgumentException> { output.finishFrame(-2) }
+    }
+
+    @Test
+    fun `closed deflating output throws on write`() {
+        val output = EncoderOutput.deflating(EncoderOutput.nullOutput())
+        output.close()
+        assertDoesNotThrow { output.close() }
+        assertThrows<IllegalStateException> { output.write(1) }
+        assertThrows<IllegalStateException> { output.finishFrame() }
+    }
+
+    @Test
+    fun `deflating output releases its buffers on close`() {
+        val pool = BufferPool.create()
+        val buffer = pool.acquireDirect(64)
+        val array = pool.acquire(64)
+        pool.releaseDirect(buffer)
+        pool.release(array)
+
+        val output = EncoderOutput.deflating(EncoderOutput.nullOutput(), bufferSize = 64, pool = pool)
+        output.write(1)
+        output.close()
+        assertSame(buffer, pool.acquireDirect(64))
+        assertSame(array, pool.acquire(64))
+    }
+
+    private fun writePrimitives(output: EncoderOutput) {
+        output.writeShort(0x0102, ByteOrder.BIG_ENDIAN)
+        output.writeInt(0x0304_0506, ByteOrder.LITTLE_ENDIAN)
+        output.writeLong(0x0708_090A_0B0C_0D0EL, ByteOrder.BIG_ENDIAN)
+        output.writeFloat(Float.fromBits(0x0F10_1112), ByteOrder.LITTLE_ENDIAN)
+        output.writeDouble(Double.fromBits(0x1314_1516_1718_191AL), ByteOrder.BIG_ENDIAN)
+    }
+
+    private fun primitivesBytes(): ByteArray = byteArrayOf(
+        0x01, 0x02,
+        0x06, 0x05, 0x04, 0x03,
+        0x07, 0x08, 0x09, 0x0A, 0x0B, 0x0C, 0x0D, 0x0E,
+        0x12, 0x11, 0x10, 0x0F,
+        0x13, 0x14, 0x15, 0x16, 0x17, 0x18, 0x19, 0x1A,
+    )
+
+    // output relying on the default implementations of the interface
+    private fun elementsOutput(delegate: EncoderOutput): EncoderOutput = object : EncoderOutput {
+        override fun writeBit(bit: Int) = delegate.writeBit(bit)
+        override fun flush() = delegate.flush()
+    }
+
+    private fun writeArrays(output: EncoderOutput) {
+        output.writeShorts(ShortArray(5) { (it * 1000).toShort() }, 1, 3, ByteOrder.BIG_ENDIAN)
+        output.writeChars(CharArray(3) { 'a' + it }, 0, 3, ByteOrder.LITTLE_ENDIAN)
+        output.writeInts(IntArray(700) { it * 0x0101_0101 }, 0, 700, ByteOrder.LITTLE_ENDIAN)
+        output.writeLongs(LongArray(3) { -it.toLong() }, 0, 3, ByteOrder.BIG_ENDIAN)
+        output.writeFloats(FloatArray(300) { it / 3f }, 0, 300, ByteOrder.BIG_ENDIAN)
+        output.writeDoubles(doubleArrayOf(Double.NaN, -0.0, 1e300), 0, 3, ByteOrder.LITTLE_ENDIAN)
+        output.writeInts(IntArray(0), 0, 0, ByteOrder.BIG_ENDIAN)
+    }
+
+    private fun arraysBytes(): ByteArray {
+        val output = EncoderOutput.toByteArray()
+        writeArrays(elementsOutput(output))
+        return output.toByteArray()
+    }
+
 }
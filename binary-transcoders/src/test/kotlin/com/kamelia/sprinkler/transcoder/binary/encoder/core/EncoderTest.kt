@@ -1,5 +1,6 @@
 package com.kamelia.sprinkler.transcoder.binary.encoder.core
 
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
 import kotlin.io.path.createTempFile
@@ -42,4 +43,46 @@ class EncoderTest {
         file.delete()
     }
 
+    @Test
+    fun `default size hint is unknown`() {
+        val encoder = Encoder<Byte> { obj, o -> o.write(obj) }
+        assertEquals(-1, encoder.sizeHint(5))
+    }
+
+    @Test
+    fun `encode to byte array works with a wrong size hint`() {
+        val encoder = object : Encoder<ByteArray> {
+            override fun encode(obj: ByteArray, output: EncoderOutput) = output.write(obj)
+            override fun sizeHint(obj: ByteArray): Int = 1
+        }
+        val value = ByteArray(100) { it.toByte() }
+        assertArrayEquals(value, encoder.encode(value))
+    }
+
+    @Test
+    fun `encode to byte array returns the internal array when the size hint is exact`() {
+        val encoder = object : Encoder<ByteArray> {
+            override fun encode(obj: ByteArray, output: EncoderOutput) = output.write(obj)
+            override fun sizeHint(obj: ByteArray): Int = obj.size
+        }
+        val value = ByteArray(100) { it.toByte() }
+        assertArrayEquals(value, encoder.encode(value))
+    }
+
+    @Test
+    fun `default encoded size is unknown`() {
+        val encoder = Encoder<Byte> { obj, o -> o.write(obj) }
+        assertEquals(-1L, encoder.encodedSize(5))
+    }
+
+    @Test
+    fun `default size hint is the encoded size`() {
+        val encoder = object : Encoder<Long> {
+            override fun encode(obj: Long, output: EncoderOutput) = Unit
+            override fun encodedSize(obj: Long): Long = obj
+        }
+        assertEquals(12, encoder.sizeHint(12L))
+        assertEquals(-1, encoder.sizeHint(Int.MAX_VALUE + 1L))
+    }
+
 }
@@ -0,0 +1,214 @@
+package com.kamelia.sprinkler.transcoder.binary.flow
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import java.nio.ByteBuffer
+import java.util.Collections
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Flow
+import java.util.concurrent.SubmissionPublisher
+import java.util.concurrent.TimeUnit
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class FlowProcessorsTest {
+
+    @Test
+    fun `encoded objects are decoded back through asynchronous stages`() {
+        val publisher = SubmissionPublisher<Int>()
+        val encoding = EncodingProcessor(IntEncoder(), bufferSize = 10)
+        val decoding = DecodingProcessor(IntDecoder())
+        val subscriber = RecordingSubscriber<Int>(Long.MAX_VALUE)
+        publisher.subscribe(encoding)
+        encoding.subscribe(decoding)
+        decoding.subscribe(subscriber)
+
+        repeat(1000) { publisher.submit(it) }
+        publisher.close()
+
+        assertTrue(subscriber.completion.get(5, TimeUnit.SECONDS))
+        assertEquals(List(1000) { it }, subscriber.items)
+    }
+
+    @Test
+    fun `small objects are batched in the same buffer`() {
+        val publisher = ListPublisher(List(10) { it })
+        val encoding = EncodingProcessor(IntEncoder(), bufferSize = 16)
+        val subscriber = RecordingSubscriber<ByteBuffer>(Long.MAX_VALUE)
+        publisher.subscribe(encoding)
+        encoding.subscribe(subscriber)
+
+        assertTrue(subscriber.completion.get(5, TimeUnit.SECONDS))
+        assertEquals(listOf(16, 16, 8), subscriber.items.map { it.remaining() })
+        val decoded = DecodingProcessor(IntDecoder()).also { ListPublisher(subscriber.items).subscribe(it) }
+        val values = RecordingSubscriber<Int>(Long.MAX_VALUE).also { decoded.subscribe(it) }
+        assertTrue(values.completion.get(5, TimeUnit.SECONDS))
+        assertEquals(List(10) { it }, values.items)
+    }
+
+    @Test
+    fun `objects larger than a buffer are split across several buffers`() {
+        val string = "a".repeat(100)
+        val publisher = ListPublisher(listOf(string))
+        val encoding = EncodingProcessor(UTF8StringEncoder(), bufferSize = 32)
+        val subscriber = RecordingSubscriber<ByteBuffer>(Long.MAX_VALUE)
+        publisher.subscribe(encoding)
+        encoding.subscribe(subscriber)
+
+        assertTrue(subscriber.completion.get(5, TimeUnit.SECONDS))
+        assertEquals(listOf(32, 32, 32, 8), subscriber.items.map { it.remaining() })
+    }
+
+    @Test
+    fun `decoding respects the downstream demand and the prefetch`() {
+        val buffers = List(100) { ByteBuffer.wrap(IntEncoder().encode(it)) }
+        val publisher = ListPublisher(buffers)
+        val decoding = DecodingProcessor(IntDecoder(), prefetch = 4)
+        val subscriber = RecordingSubscriber<Int>(2)
+        publisher.subscribe(decoding)
+        decoding.subscribe(subscriber)
+
+        assertEquals(listOf(0, 1), subscriber.items)
+        assertTrue(publisher.requested <= 6, "requested ${publisher.requested}")
+        subscriber.subscription.request(3)
+        assertEquals(listOf(0, 1, 2, 3, 4), subscriber.items)
+        assertFalse(subscriber.completion.isDone)
+    }
+
+    @Test
+    fun `encoding respects the memory budget`() {
+        val publisher = ListPublisher(List(1000) { it })
+        val encoding = EncodingProcessor(IntEncoder(), bufferSize = 8, maxBufferedBytes = 32, prefetch = 4)
+        val subscriber = RecordingSubscriber<ByteBuffer>(1)
+        publisher.subscribe(encoding)
+        encoding.subscribe(subscriber)
+
+        assertEquals(1, subscriber.items.size)
+        assertTrue(publisher.requested <= 16, "requested ${publisher.requested}")
+        subscriber.subscription.request(Long.MAX_VALUE)
+        assertTrue(subscriber.completion.get(5, TimeUnit.SECONDS))
+        assertEquals(4000, subscriber.items.sumOf { it.remaining() })
+    }
+
+    @Test
+    fun `trailing partial object is signaled as an error`() {
+        val publisher = ListPublisher(listOf(ByteBuffer.wrap(byteArrayOf(0, 0, 0, 1, 0, 0))))
+        val decoding = DecodingProcessor(IntDecoder())
+        val subscriber = RecordingSubscriber<Int>(Long.MAX_VALUE)
+        publisher.subscribe(decoding)
+        decoding.subscribe(subscriber)
+
+        val exception = assertThrows(Exception::class.java) { subscriber.completion.get(5, TimeUnit.SECONDS) }
+        assertInstanceOf(MissingBytesException::class.java, exception.cause)
+        assertEquals(listOf(1), subscriber.items)
+    }
+
+    @Test
+    fun `decoding errors are signaled and cancel the upstream subscription`() {
+        val publisher = ListPublisher(listOf(ByteBuffer.wrap(IntEncoder().encode(-1))))
+        val decoding = DecodingProcessor(UTF8StringDecoder())
+        val subscriber = RecordingSubscriber<String>(Long.MAX_VALUE)
+        publisher.subscribe(decoding)
+        decoding.subscribe(subscriber)
+
+        val exception = assertThrows(Exception::class.java) { subscriber.completion.get(5, TimeUnit.SECONDS) }
+        assertInstanceOf(IllegalStateException::class.java, exception.cause)
+        assertTrue(publisher.cancelled)
+    }
+
+    @Test
+    fun `only one subscriber is accepted`() {
+        val decoding = DecodingProcessor(IntDecoder())
+        decoding.subscribe(RecordingSubscriber(1))
+        val second = RecordingSubscriber<Int>(1)
+        decoding.subscribe(second)
+        val exception = assertThrows(Exception::class.java) { second.completion.get(5, TimeUnit.SECONDS) }
+        assertInstanceOf(IllegalStateException::class.java, exception.cause)
+    }
+
+    @Test
+    fun `factories throw on invalid sizes`() {
+        assertThrows(IllegalArgumentException::class.java) { DecodingProcessor(IntDecoder(), 0) }
+        assertThrows(IllegalArgumentException::class.java) { EncodingProcessor(IntEncoder(), bufferSize = 0) }
+        assertThrows(IllegalArgumentException::class.java) { EncodingProcessor(IntEncoder(), maxBufferedBytes = 0) }
+        assertThrows(IllegalArgumentException::class.java) { EncodingProcessor(IntEncoder(), prefetch = 0) }
+    }
+
+    /**
+     * Synchronous publisher emitting the given items on the thread requesting them.
+     */
+    private class ListPublisher<T>(private val items: List<T>) : Flow.Publisher<T> {
+
+        var requested = 0L
+            private set
+
+        var cancelled = false
+            private set
+
+        override fun subscribe(subscriber: Flow.Subscriber<in T>) {
+            subscriber.onSubscribe(object : Flow.Subscription {
+
+                private var index = 0
+                private var demand = 0L
+                private var emitting = false
+
+                override fun request(n: Long) {
+                    requested += n
+                    demand += n
+                    if (emitting) return
+                    emitting = true
+                    while (demand > 0 && index < items.size && !cancelled) {
+                        demand--
+                        subscriber.onNext(items[index++])
+                    }
+                    emitting = false
+                    if (index == items.size && !cancelled) {
+                        index++
+                        subscriber.onComplete()
+                    }
+                }
+
+                override fun cancel() {
+                    cancelled = true
+                }
+
+            })
+        }
+
+    }
+
+    private class RecordingSubscriber<T>(private val initialRequest: Long) : Flow.Subscriber<T> {
+
+        val items: MutableList<T> = Collections.synchronizedList(ArrayList())
+
+        val completion = CompletableFuture<Boolean>()
+
+        lateinit var subscription: Flow.Subscription
+
+        override fun onSubscribe(subscription: Flow.Subscription) {
+            this.subscription = subscription
+            subscription.request(initialRequest)
+        }
+
+        override fun onNext(item: T) {
+            items += item
+        }
+
+        override fun onError(throwable: Throwable) {
+            completion.completeExceptionally(throwable)
+        }
+
+        override fun onComplete() {
+            completion.complete(true)
+        }
+
+    }
+
+}
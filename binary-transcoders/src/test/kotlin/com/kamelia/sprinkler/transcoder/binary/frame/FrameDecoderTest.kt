@@ -0,0 +1,173 @@
+package com.kamelia.sprinkler.transcoder.binary.frame
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.DecoderInput
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class FrameDecoderTest {
+
+    @Test
+    fun `frame is decoded from a byte array`() {
+        val frame = FrameEncoder(UTF8StringEncoder()).encode("hello")
+        assertEquals("hello", FrameDecoder(UTF8StringDecoder()).decode(frame).assertDoneAndGet())
+    }
+
+    @Test
+    fun `frame is decoded with the given endianness`() {
+        val frame = FrameEncoder(IntEncoder(), endianness = ByteOrder.LITTLE_ENDIAN).encode(42)
+        val decoder = FrameDecoder(IntDecoder(), endianness = ByteOrder.LITTLE_ENDIAN)
+        assertEquals(42, decoder.decode(frame).assertDoneAndGet())
+    }
+
+    @Test
+    fun `partial frames are carried over across processing`() {
+        val frame = FrameEncoder(UTF8StringEncoder()).encode("hello, world")
+        val decoder = FrameDecoder(UTF8StringDecoder())
+        val input = DecoderInput.composite()
+        for (index in 0 until frame.size - 1) {
+            input.append(ByteBuffer.wrap(frame, index, 1))
+            assertInstanceOf(Decoder.State.Processing::class.java, decoder.decode(input))
+        }
+        input.append(ByteBuffer.wrap(frame, frame.size - 1, 1))
+        assertEquals("hello, world", decoder.decode(input).assertDoneAndGet())
+    }
+
+    @Test
+    fun `several frames are decoded from the same buffer in one pass`() {
+        val encoder = FrameEncoder(UTF8StringEncoder())
+        val strings = List(10) { "string-$it" }
+        val buffer = ByteBuffer.wrap(strings.map(encoder::encode).reduce(ByteArray::plus))
+
+        val decoded = ArrayList<String>()
+        assertEquals(10, FrameDecoder(UTF8StringDecoder()).decodeFrames(buffer, decoded::add).assertDoneAndGet())
+        assertEquals(strings, decoded)
+        assertFalse(buffer.hasRemaining())
+    }
+
+    @Test
+    fun `frames split across buffers are decoded`() {
+        val encoder = FrameEncoder(UTF8StringEncoder())
+        val strings = List(20) { "string-$it" }
+        val bytes = strings.map(encoder::encode).reduce(ByteArray::plus)
+        val decoder = FrameDecoder(UTF8StringDecoder())
+
+        // chunk sizes splitting the frames at every possible offset, headers included
+        for (chunkSize in 1..bytes.size) {
+            val decoded = ArrayList<String>()
+            var index = 0
+            while (index < bytes.size) {
+                val length = minOf(chunkSize, bytes.size - index)
+                val buffer = ByteBuffer.wrap(bytes.copyOfRange(index, index + length))
+                decoder.decodeFrames(buffer, decoded::add).assertDoneAndGet()
+                assertFalse(buffer.hasRemaining())
+                index += length
+            }
+            assertEquals(strings, decoded)
+        }
+    }
+
+    @Test
+    fun `frames are decoded from a direct buffer`() {
+        val buffer = ByteBuffer.allocateDirect(64)
+        buffer.put(FrameEncoder(IntEncoder()).encode(1)).put(FrameEncoder(IntEncoder()).encode(2)).flip()
+        val decoded = ArrayList<Int>()
+        assertEquals(2, FrameDecoder(IntDecoder()).decodeFrames(buffer, decoded::add).assertDoneAndGet())
+        assertEquals(listOf(1, 2), decoded)
+    }
+
+    @Test
+    fun `buffer can be reused once its frames are decoded`() {
+        val encoder = FrameEncoder(UTF8StringEncoder())
+        val bytes = encoder.encode("hello") + encoder.encode("world")
+        val decoder = FrameDecoder(UTF8StringDecoder())
+        val buffer = ByteBuffer.allocate(7)
+        val decoded = ArrayList<String>()
+        var index = 0
+        while (index < bytes.size) {
+            val length = minOf(buffer.capacity(), bytes.size - index)
+            buffer.clear().put(bytes, index, length).flip()
+            decoder.decodeFrames(buffer, decoded::add).assertDoneAndGet()
+            buffer.clear().put(ByteArray(buffer.capacity())) // overwrite the bytes carried over
+            index += length
+        }
+        assertEquals(listOf("hello", "world"), decoded)
+    }
+
+    @Test
+    fun `frame larger than the maximum frame size is an error`() {
+        val frame = FrameEncoder(UTF8StringEncoder()).encode("hello")
+        val decoder = FrameDecoder(UTF8StringDecoder(), maxFrameSize = 8)
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(frame))
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decodeFrames(ByteBuffer.wrap(frame)) {})
+    }
+
+    @Test
+    fun `negative frame size is an error`() {
+        val frame = ByteBuffer.allocate(12).putInt(-1).putInt(0).putInt(0).array()
+        assertInstanceOf(Decoder.State.Error::class.java, FrameDecoder(IntDecoder()).decode(frame))
+    }
+
+    @Test
+    fun `corrupted payload is an error`() {
+        val frame = FrameEncoder(IntEncoder()).encode(42)
+        frame[5] = (frame[5] + 1).toByte()
+        val decoder = FrameDecoder(IntDecoder())
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(frame))
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decodeFrames(ByteBuffer.wrap(frame)) {})
+    }
+
+    @Test
+    fun `payload with trailing bytes is an error`() {
+        val frame = FrameEncoder(IntEncoder()).encode(42)
+        val byteDecoder = object : Decoder<Int> {
+
+            override fun decode(input: DecoderInput): Decoder.State<Int> = Decoder.State.Done(input.read())
+
+            override fun reset() = Unit
+
+        }
+        assertInstanceOf(Decoder.State.Error::class.java, FrameDecoder(byteDecoder).decode(frame))
+    }
+
+    @Test
+    fun `truncated payload is an error`() {
+        val frame = FrameEncoder(IntEncoder()).encode(42)
+        val state = FrameDecoder(UTF8StringDecoder()).decode(frame)
+        assertInstanceOf(Decoder.State.Error::class.java, state)
+        assertInstanceOf(MissingBytesException::class.java, (state as Decoder.State.Error).error)
+    }
+
+    @Test
+    fun `decoder can be reused after an error once reset`() {
+        val decoder = FrameDecoder(IntDecoder(), maxFrameSize = 4)
+        val tooLarge = FrameEncoder(UTF8StringEncoder()).encode("a")
+        assertInstanceOf(Decoder.State.Error::class.java, decoder.decode(tooLarge))
+        assertEquals(7, decoder.decode(FrameEncoder(IntEncoder()).encode(7)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `negative maximum frame size throws`() {
+        assertThrows<IllegalArgumentException> { FrameDecoder(IntDecoder(), maxFrameSize = -1) }
+    }
+
+    @Test
+    fun `empty buffer decodes no frame`() {
+        val state = FrameDecoder(IntDecoder()).decodeFrames(ByteBuffer.allocate(0)) { }
+        assertTrue(state.isDone())
+        assertEquals(0, state.assertDoneAndGet())
+    }
+
+}
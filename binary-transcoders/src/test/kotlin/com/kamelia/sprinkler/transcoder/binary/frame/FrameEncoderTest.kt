@@ -0,0 +1,168 @@
+package com.kamelia.sprinkler.transcoder.binary.frame
+
+import com.kamelia.sprinkler.transcoder.binary.common.BufferPool
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.Encoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.core.EncoderOutput
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.zip.CRC32C
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class FrameEncoderTest {
+
+    @Test
+    fun `frame is made of the size, the payload and its checksum`() {
+        val payload = IntEncoder().encode(0x0A0B0C0D)
+        val crc = CRC32C().apply { update(payload) }.value.toInt()
+
+        val frame = ByteBuffer.wrap(FrameEncoder(IntEncoder()).encode(0x0A0B0C0D))
+        assertEquals(12, frame.capacity())
+        assertEquals(4, frame.getInt())
+        assertEquals(0x0A0B0C0D, frame.getInt())
+        assertEquals(crc, frame.getInt())
+    }
+
+    @Test
+    fun `size and checksum are written with the given endianness`() {
+        val payload = UTF8StringEncoder().encode("hello")
+        val crc = CRC32C().apply { update(payload) }.value.toInt()
+
+        val encoder = FrameEncoder(UTF8StringEncoder(), endianness = ByteOrder.LITTLE_ENDIAN)
+        val frame = ByteBuffer.wrap(encoder.encode("hello")).order(ByteOrder.LITTLE_ENDIAN)
+        assertEquals(payload.size, frame.getInt())
+        val bytes = ByteArray(payload.size).also(frame::get)
+        assertArrayEquals(payload, bytes)
+        assertEquals(crc, frame.getInt())
+    }
+
+    @Test
+    fun `encodedSize adds the size of the header and of the trailer`() {
+        assertEquals(12L, FrameEncoder(IntEncoder()).encodedSize(1))
+        assertEquals(17L, FrameEncoder(UTF8StringEncoder()).encodedSize("hello"))
+        assertEquals(-1L, FrameEncoder(Encoder<Int> { obj, output -> output.write(obj) }).encodedSize(1))
+    }
+
+    @Test
+    fun `payload with an unknown size is encoded`() {
+        val frame = FrameEncoder(Encoder<Int> { obj, output -> output.write(obj) }).encode(7)
+        assertEquals(9, frame.size)
+        assertEquals(1, ByteBuffer.wrap(frame).getInt())
+        assertEquals(7, frame[4])
+    }
+
+    @Test
+    fun `payload larger than the maximum frame size throws`() {
+        val encoder = FrameEncoder(UTF8StringEncoder(), maxFrameSize = 8)
+        assertEquals(16, encoder.encode("hell").size)
+        assertThrows<IllegalStateException> { encoder.encode("hello") }
+    }
+
+    @Test
+    fun `negative maximum frame size throws`() {
+        assertThrows<IllegalArgumentException> { FrameEncoder(IntEncoder(), maxFrameSize = -1) }
+    }
+
+    @Test
+    fun `payload of known size is encoded directly to the output`() {
+        val pool = CountingBufferPool()
+        val output = EncoderOutput.toByteArray()
+        FrameEncoder(UTF8StringEncoder(), pool = pool).encode("hello", output)
+        assertEquals(0, pool.acquired) // no intermediate array
+
+        val payload = UTF8StringEncoder().encode("hello")
+        val expected = ByteBuffer.allocate(payload.size + 8)
+            .putInt(payload.size)
+            .put(payload)
+            .putInt(CRC32C().apply { update(payload) }.value.toInt())
+            .array()
+        assertArrayEquals(expected, output.toByteArray())
+    }
+
+    @Test
+    fun `bits of a payload of known size are checksummed once padded`() {
+        val bits = object : Encoder<Int> {
+
+            override fun encode(obj: Int, output: EncoderOutput) = output.writeBits(obj, 3)
+
+            override fun encodedSize(obj: Int): Long = 1L
+
+        }
+        val frame = FrameEncoder(bits).encode(0b1010_0000)
+        val crc = CRC32C().apply { update(0b1010_0000) }.value.toInt()
+        assertEquals(9, frame.size)
+        assertEquals(0b1010_0000.toByte(), frame[4])
+        assertEquals(crc, ByteBuffer.wrap(frame).getInt(5))
+    }
+
+    @Test
+    fun `payload of unknown size is encoded in a pooled array`() {
+        val pool = CountingBufferPool()
+        val frame = FrameEncoder(Encoder<Int> { obj, output -> output.write(obj) }, pool = pool).encode(7)
+        assertEquals(1, pool.acquired)
+        assertEquals(1, pool.released)
+        assertEquals(CRC32C().apply { update(7) }.value.toInt(), ByteBuffer.wrap(frame).getInt(5))
+    }
+
+    @Test
+    fun `inner encoder writing another size than the announced one throws`() {
+        val lying = object : Encoder<Int> {
+
+            override fun encode(obj: Int, output: EncoderOutput) = output.write(obj)
+
+            override fun encodedSize(obj: Int): Long = 2L
+
+        }
+        assertThrows<IllegalStateException> { FrameEncoder(lying).encode(1) }
+    }
+
+    @Test
+    fun `payload of known size larger than the maximum frame size throws before writing`() {
+        val output = EncoderOutput.toByteArray()
+        assertThrows<IllegalStateException> { FrameEncoder(IntEncoder(), maxFrameSize = 3).encode(1, output) }
+        assertEquals(0, output.size)
+    }
+
+    @Test
+    fun `payload array is released to the pool`() {
+        val pool = BufferPool.create()
+        val array = pool.acquire(32)
+        pool.release(array)
+
+        FrameEncoder(Encoder<Int> { obj, output -> output.write(obj) }, pool = pool)
+            .encode(1, EncoderOutput.nullOutput())
+        assertSame(array, pool.acquire(32))
+    }
+
+    private class CountingBufferPool : BufferPool {
+
+        private val inner = BufferPool.noOp()
+
+        var acquired = 0
+            private set
+
+        var released = 0
+            private set
+
+        override fun acquire(minSize: Int): ByteArray {
+            acquired++
+            return inner.acquire(minSize)
+        }
+
+        override fun release(array: ByteArray) {
+            released++
+            inner.release(array)
+        }
+
+        override fun acquireDirect(minCapacity: Int): ByteBuffer = inner.acquireDirect(minCapacity)
+
+        override fun releaseDirect(buffer: ByteBuffer) = inner.releaseDirect(buffer)
+
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.kamelia.sprinkler.transcoder.binary.nio
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.IntDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.UTF8StringDecoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.MissingBytesException
+import com.kamelia.sprinkler.transcoder.binary.encoder.IntEncoder
+import com.kamelia.sprinkler.transcoder.binary.encoder.UTF8StringEncoder
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.SocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.SocketChannel
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class EventLoopTest {
+
+    @Test
+    fun `messages of many connections are decoded and answered`() {
+        val loop = EventLoop.create({ IntDecoder() }, { IntEncoder() }) { connection, value: Int ->
+            connection.send(value + 1)
+        }
+        loop.running { address ->
+            val clients = List(100) { SocketChannel.open(address) }
+            clients.forEachIndexed { i, client ->
+                val request = ByteBuffer.allocate(100 * Int.SIZE_BYTES)
+                repeat(100) { request.putInt(i * 1000 + it) }
+                client.writeFully(request.flip())
+            }
+            clients.forEachIndexed { i, client ->
+                val response = client.readFully(100 * Int.SIZE_BYTES)
+                repeat(100) { assertEquals(i * 1000 + it + 1, response.getInt()) }
+                client.close()
+            }
+        }
+    }
+
+    @Test
+    fun `messages split across several reads are decoded`() {
+        val loop = EventLoop.create({ IntDecoder() }, { IntEncoder() }) { connection, value: Int ->
+            connection.send(value * 2)
+        }
+        loop.running { address ->
+            SocketChannel.open(address).use { client ->
+                val bytes = IntEncoder().encode(21)
+                bytes.forEach {
+                    client.writeFully(ByteBuffer.wrap(byteArrayOf(it)))
+                    Thread.sleep(5)
+                }
+                assertEquals(42, client.readFully(Int.SIZE_BYTES).getInt())
+            }
+        }
+    }
+
+    @Test
+    fun `responses larger than the buffers are fully written`() {
+        val loop = EventLoop.create({ UTF8StringDecoder() }, { UTF8StringEncoder() }, 64) { connection, value: String ->
+            connection.send(value.repeat(1000))
+        }
+        loop.running { address ->
+            SocketChannel.open(address).use { client ->
+                val expected = "hello world ".repeat(1000)
+                client.writeFully(ByteBuffer.wrap(UTF8StringEncoder().encode("hello world ")))
+                val size = client.readFully(Int.SIZE_BYTES).getInt()
+                assertEquals(expected.length, size)
+                val content = client.readFully(size)
+                assertEquals(expected, Charsets.UTF_8.decode(content).toString())
+            }
+        }
+    }
+
+    @Test
+    fun `onClose receives the cause of the closing`() {
+        val closes = List(2) { CompletableFuture<Throwable?>() }
+        var index = 0
+        val loop = EventLoop.create({ IntDecoder() }, { IntEncoder() }, handler = object : ConnectionHandler<Int, Int> {
+            override fun onMessage(connection: Connection<Int>, message: Int) = Unit
+
+            override fun onClose(connection: Connection<Int>, cause: Throwable?) {
+                closes[index++].complete(cause)
+            }
+        })
+        loop.running { address ->
+            SocketChannel.open(address).use { it.writeFully(ByteBuffer.wrap(IntEncoder().encode(1))) }
+            assertNull(closes[0].get(5, TimeUnit.SECONDS))
+            SocketChannel.open(address).use { it.writeFully(ByteBuffer.wrap(byteArrayOf(0, 0))) }
+            assertInstanceOf(MissingBytesException::class.java, closes[1].get(5, TimeUnit.SECONDS))
+        }
+    }
+
+    @Test
+    fun `connection can be used from other threads`() {
+        val opened = CompletableFuture<Connection<Int>>()
+        val loop = EventLoop.create({ IntDecoder() }, { IntEncoder() }, handler = object : ConnectionHandler<Int, Int> {
+            override fun onMessage(connection: Connection<Int>, message: Int) = Unit
+
+            override fun onOpen(connection: Connection<Int>) {
+                opened.complete(connection)
+            }
+        })
+        loop.running { address ->
+            SocketChannel.open(address).use { client ->
+                val connection = opened.get(5, TimeUnit.SECONDS)
+                connection.send(7)
+                connection.send(8)
+                connection.close()
+                val response = client.readFully(2 * Int.SIZE_BYTES)
+                assertEquals(7, response.getInt())
+                assertEquals(8, response.getInt())
+                assertEquals(-1, client.read(ByteBuffer.allocate(1)))
+                assertFalse(connection.isOpen)
+            }
+        }
+    }
+
+    @Test
+    fun `closing the loop closes the connections`() {
+        val loop = EventLoop.create({ IntDecoder() }, { IntEncoder() }) { connection, value: Int ->
+            connection.send(value)
+        }
+        val address = loop.bind(InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+        val thread = Thread(loop).apply { start() }
+        SocketChannel.open(address).use { client ->
+            client.writeFully(ByteBuffer.wrap(IntEncoder().encode(3)))
+            assertEquals(3, client.readFully(Int.SIZE_BYTES).getInt())
+            loop.close()
+            thread.join(5000)
+            assertFalse(thread.isAlive)
+            assertEquals(-1, client.read(ByteBuffer.allocate(1)))
+        }
+        assertThrows(IllegalStateException::class.java) { loop.execute {} }
+    }
+
+    @Test
+    fun `create throws on non positive buffer size`() {
+        assertThrows(IllegalArgumentException::class.java) {
+            EventLoop.create({ IntDecoder() }, { IntEncoder() }, 0) { _, _: Int -> }
+        }
+    }
+
+    private fun EventLoop<*, *>.running(block: (SocketAddress) -> Unit) {
+        val address = bind(InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+        val thread = Thread(this).apply { start() }
+        try {
+            block(address)
+        } finally {
+            close()
+            thread.join(5000)
+        }
+    }
+
+    private fun SocketChannel.writeFully(buffer: ByteBuffer) {
+        while (buffer.hasRemaining()) {
+            write(buffer)
+        }
+    }
+
+    private fun SocketChannel.readFully(size: Int): ByteBuffer {
+        val buffer = ByteBuffer.allocate(size)
+        while (buffer.hasRemaining()) {
+            check(read(buffer) >= 0) { "Unexpected end of stream" }
+        }
+        return buffer.flip()
+    }
+
+}
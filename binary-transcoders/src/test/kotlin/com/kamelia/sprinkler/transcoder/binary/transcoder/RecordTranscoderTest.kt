@@ -0,0 +1,185 @@
+package com.kamelia.sprinkler.transcoder.binary.transcoder
+
+import com.kamelia.sprinkler.transcoder.binary.decoder.core.Decoder
+import com.kamelia.sprinkler.transcoder.binary.decoder.util.assertDoneAndGet
+import com.kamelia.sprinkler.transcoder.binary.transcoder.core.Transcoder
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertInstanceOf
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class RecordTranscoderTest {
+
+    @Test
+    fun `data class of primitives is transcoded`() {
+        val transcoder = Transcoder.forRecord(Primitives::class.java)
+        val value = Primitives(-1, true, 300, 'é', Int.MIN_VALUE, Long.MAX_VALUE, -1.5f, Double.NaN)
+
+        val encoded = transcoder.encode(value)
+        assertEquals(30, encoded.size)
+        assertEquals(Int.MIN_VALUE, ByteBuffer.wrap(encoded, 6, 4).int)
+        assertEquals(value, transcoder.decode(encoded).assertDoneAndGet())
+    }
+
+    @Test
+    fun `primitives are encoded with the given endianness`() {
+        val transcoder = Transcoder.forRecord(Point::class.java, ByteOrder.LITTLE_ENDIAN)
+
+        assertArrayEquals(byteArrayOf(1, 0, 0, 0, 2, 0, 0, 0), transcoder.encode(Point(1, 2)))
+        assertEquals(Point(1, 2), transcoder.decode(byteArrayOf(1, 0, 0, 0, 2, 0, 0, 0)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `record is transcoded`() {
+        val transcoder = Transcoder.forRecord(RecordPoint::class.java)
+        assertTrue(RecordPoint::class.java.isRecord)
+
+        val value = RecordPoint(3, "three")
+        assertEquals(value, transcoder.decode(transcoder.encode(value)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `reference components are prefixed with their presence`() {
+        val transcoder = Transcoder.forRecord(RecordPoint::class.java)
+
+        assertArrayEquals(byteArrayOf(0, 0, 0, 7, 0), transcoder.encode(RecordPoint(7, null)))
+        assertArrayEquals(byteArrayOf(0, 0, 0, 7, 1, 0, 0, 0, 1, 'a'.code.toByte()), transcoder.encode(RecordPoint(7, "a")))
+        assertNull(transcoder.decode(byteArrayOf(0, 0, 0, 7, 0)).assertDoneAndGet().name)
+    }
+
+    @Test
+    fun `all supported reference types are transcoded`() {
+        val transcoder = Transcoder.forRecord(References::class.java)
+        val value = References("héllo", 5, 'x', true, null, Color.BLUE, byteArrayOf(1, 2, 3), Point(4, 5))
+
+        val decoded = transcoder.decode(transcoder.encode(value)).assertDoneAndGet()
+        assertEquals(value.copy(bytes = null), decoded.copy(bytes = null))
+        assertArrayEquals(value.bytes, decoded.bytes)
+    }
+
+    @Test
+    fun `nested records are transcoded`() {
+        val transcoder = Transcoder.forRecord(Segment::class.java)
+        val value = Segment(Point(1, 2), RecordPoint(3, "end"), 4.5)
+
+        assertEquals(value, transcoder.decode(transcoder.encode(value)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `decoding can be resumed at any byte`() {
+        val transcoder = Transcoder.forRecord(Segment::class.java)
+        val value = Segment(Point(1, 2), RecordPoint(3, "end"), 4.5)
+        val encoded = transcoder.encode(value)
+        val buffer = ByteBuffer.allocate(1)
+
+        for (i in 0 until encoded.size - 1) {
+            buffer.put(encoded[i])
+            assertInstanceOf(Decoder.State.Processing::class.java, transcoder.decode(buffer))
+        }
+        buffer.put(encoded.last())
+        assertEquals(value, transcoder.decode(buffer).assertDoneAndGet())
+        assertEquals(value, transcoder.decode(encoded).assertDoneAndGet())
+    }
+
+    @Test
+    fun `reset discards the partially decoded object`() {
+        val transcoder = Transcoder.forRecord(Segment::class.java)
+        val value = Segment(Point(1, 2), RecordPoint(3, "end"), 4.5)
+        val encoded = transcoder.encode(value)
+
+        assertInstanceOf(Decoder.State.Processing::class.java, transcoder.decode(encoded.copyOf(12)))
+        transcoder.reset()
+        assertEquals(value, transcoder.decode(encoded).assertDoneAndGet())
+    }
+
+    @Test
+    fun `encoded size is exact`() {
+        val transcoder = Transcoder.forRecord(References::class.java)
+        val value = References("héllo", null, 'x', true, 1.0, Color.RED, byteArrayOf(1), null)
+
+        assertEquals(transcoder.encode(value).size.toLong(), transcoder.encodedSize(value))
+        assertEquals(8L, Transcoder.forRecord(Point::class.java).encodedSize(Point(1, 2)))
+    }
+
+    @Test
+    fun `private data class is transcoded`() {
+        val transcoder = Transcoder.forRecord(Hidden::class.java)
+
+        assertEquals(Hidden(9), transcoder.decode(transcoder.encode(Hidden(9))).assertDoneAndGet())
+    }
+
+    @Test
+    fun `exception of the constructor is thrown and the decoder can be reused`() {
+        val transcoder = Transcoder.forRecord(Positive::class.java)
+
+        assertThrows<IllegalArgumentException> { transcoder.decode(byteArrayOf(-1, -1, -1, -1)) }
+        assertEquals(Positive(1), transcoder.decode(byteArrayOf(0, 0, 0, 1)).assertDoneAndGet())
+    }
+
+    @Test
+    fun `throws on a class which is neither a record nor a data class`() {
+        assertThrows<IllegalArgumentException> { Transcoder.forRecord(NotARecord::class.java) }
+        assertThrows<IllegalArgumentException> { Transcoder.forRecord(String::class.java) }
+    }
+
+    @Test
+    fun `throws on an unsupported component type`() {
+        assertThrows<IllegalArgumentException> { Transcoder.forRecord(WithList::class.java) }
+    }
+
+    @Test
+    fun `throws on a recursive record`() {
+        assertThrows<IllegalArgumentException> { Transcoder.forRecord(Recursive::class.java) }
+    }
+
+    data class Primitives(
+        val byte: Byte,
+        val boolean: Boolean,
+        val short: Short,
+        val char: Char,
+        val int: Int,
+        val long: Long,
+        val float: Float,
+        val double: Double,
+    )
+
+    data class Point(val x: Int, val y: Int)
+
+    @JvmRecord
+    data class RecordPoint(val x: Int, val name: String?)
+
+    enum class Color { RED, BLUE }
+
+    data class References(
+        val string: String,
+        val boxed: Int?,
+        val char: Char?,
+        val boolean: Boolean?,
+        val double: Double?,
+        val color: Color,
+        val bytes: ByteArray?,
+        val point: Point?,
+    )
+
+    data class Segment(val start: Point, val end: RecordPoint, val weight: Double)
+
+    private data class Hidden(val value: Int)
+
+    data class Positive(val value: Int) {
+        init {
+            require(value > 0)
+        }
+    }
+
+    class NotARecord(val value: Int)
+
+    data class WithList(val values: List<Int>)
+
+    data class Recursive(val value: Int, val next: Recursive?)
+
+}